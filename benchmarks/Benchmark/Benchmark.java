@@ -0,0 +1,176 @@
+package Benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Random;
+
+import DS.Dstore.Dstore;
+import DS.Dstore.DstoreOptions;
+import Network.NetworkInterface;
+import Network.Protocol.Event.HandeledNetworkEvent;
+import Network.Protocol.Exception.HandeledNetworkException;
+
+/**
+ * Harness shared by the benchmarks of the application.
+ *
+ * A benchmark implements run(), reading its parameters with getInt() and getString(), and is
+ * started from its main method with launch(). The harness reports a failed benchmark, and
+ * provides the set up and helpers the benchmarks have in common.
+ *
+ * The benchmarks are kept out of the application's packages, and are compiled on their own (see
+ * the Makefile).
+ */
+public abstract class Benchmark{
+
+    // member variables
+    private String[] args;
+    private static volatile long sink; // consumed results, so they are not optimised away
+
+    /**
+     * Runs the benchmark.
+     *
+     * @throws Exception If the benchmark fails.
+     */
+    protected abstract void run() throws Exception;
+
+    /**
+     * Runs a benchmark with the given command line arguments, reporting it if it fails.
+     *
+     * @param benchmark The benchmark.
+     * @param args The command line arguments.
+     */
+    protected static void launch(Benchmark benchmark, String[] args){
+        try{
+            benchmark.args = args;
+            benchmark.run();
+        }
+        catch(Exception e){
+            System.out.println("Benchmark failed : " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    ////////////////
+    // PARAMETERS //
+    ////////////////
+
+    /**
+     * Returns a command line argument as an integer.
+     *
+     * @param index The index of the argument.
+     * @param defaultValue The value used if the argument is not given.
+     * @return The value of the argument.
+     */
+    protected int getInt(int index, int defaultValue){
+        return (this.args.length > index) ? Integer.parseInt(this.args[index]) : defaultValue;
+    }
+
+    /**
+     * Returns a command line argument.
+     *
+     * @param index The index of the argument.
+     * @param defaultValue The value used if the argument is not given.
+     * @return The value of the argument.
+     */
+    protected String getString(int index, String defaultValue){
+        return (this.args.length > index) ? this.args[index] : defaultValue;
+    }
+
+    ///////////////
+    // REPORTING //
+    ///////////////
+
+    /**
+     * Prints a line of the benchmark's results.
+     *
+     * @param format The format of the line (see String.format).
+     * @param values The values in the line.
+     */
+    protected static void report(String format, Object... values){
+        System.out.println(String.format(format, values));
+    }
+
+    /**
+     * Consumes a value computed by the benchmark, so the work computing it is not optimised away.
+     *
+     * @param value The value.
+     */
+    protected static void consume(long value){
+        sink += value;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Sets up a fresh Dstore storing its files in a folder (emptied first). The Dstore is never
+     * started, so it does not connect to a Controller.
+     *
+     * @param folder The folder the files are stored in.
+     * @param options The options of the Dstore.
+     * @return The Dstore.
+     * @throws IOException If the file store could not be set up.
+     */
+    protected static Dstore createDstore(File folder, DstoreOptions options) throws IOException{
+        deleteFolder(folder);
+        folder.getParentFile().mkdirs();
+
+        Dstore dstore = new Dstore(0, 0, 0, folder.getPath(), options, new SilentInterface());
+        dstore.setupFileStore(folder.getPath());
+        return dstore;
+    }
+
+    /**
+     * Returns the indexes 0 to n-1 in a random order.
+     *
+     * @param n The number of indexes.
+     * @return The shuffled indexes.
+     */
+    protected static int[] shuffle(int n){
+        int[] order = new int[n];
+        for(int i = 0; i < n; i++){
+            order[i] = i;
+        }
+
+        Random random = new Random(1);
+        for(int i = n - 1; i > 0; i--){
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        return order;
+    }
+
+    /**
+     * Deletes a folder and everything in it.
+     *
+     * @param folder The folder.
+     */
+    protected static void deleteFolder(File folder){
+        File[] children = folder.listFiles();
+        if(children != null){
+            for(File child : children){
+                deleteFolder(child);
+            }
+        }
+        folder.delete();
+    }
+
+    /**
+     * Network interface that discards everything logged by the benchmarked components.
+     */
+    protected static class SilentInterface extends NetworkInterface{
+
+        public void logMessageSent(Socket connection, String message){}
+
+        public void logMessageReceived(Socket connection, String message){}
+
+        public void logEvent(HandeledNetworkEvent event){}
+
+        public void logError(HandeledNetworkException error){}
+    }
+}
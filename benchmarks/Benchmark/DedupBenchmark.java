@@ -0,0 +1,132 @@
+package Benchmark;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import DS.Dstore.DstoreOptions;
+import DS.Dstore.Storage.DedupStorageEngine;
+import DS.Dstore.Storage.IncomingFile;
+import DS.Dstore.Storage.StorageEngine;
+
+/**
+ * Compares storing files with and without deduplication, on a workload where some of the files
+ * repeat the content of earlier ones (as when the same file is uploaded under several names).
+ *
+ * In each mode the files are received through a fresh Dstore's file store (create, write and
+ * commit, as for a STORE):
+ *
+ * - PLAIN : Every file is stored under its own name.
+ * - DEDUP : Every file is hashed, and content already held is only mapped to the new name.
+ *
+ * The store throughput, the space taken up by the store folder and (for dedup) the deduplication
+ * ratio are printed.
+ *
+ * Usage: DedupBenchmark [files] [filesize] [duplicates] [folder]
+ *
+ * The duplicates are given as the percentage of files that repeat earlier content.
+ */
+public class DedupBenchmark extends Benchmark{
+
+    // constants
+    private static final int DEFAULT_FILES = 2000;
+    private static final int DEFAULT_FILESIZE = 64 * 1024; // bytes
+    private static final int DEFAULT_DUPLICATES = 50; // %
+    private static final String DEFAULT_FOLDER = "benchmark";
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args){
+        launch(new DedupBenchmark(), args);
+    }
+
+    /**
+     * Runs the workload in both modes.
+     *
+     * @throws Exception If the storage engine fails.
+     */
+    protected void run() throws Exception{
+        // gathering parameters
+        int files = this.getInt(0, DEFAULT_FILES);
+        int filesize = this.getInt(1, DEFAULT_FILESIZE);
+        int duplicates = this.getInt(2, DEFAULT_DUPLICATES);
+        String folder = this.getString(3, DEFAULT_FOLDER);
+
+        System.out.println("Storing " + files + " files of " + filesize + " bytes, " + duplicates + "% of them duplicates.");
+
+        benchmark(false, files, filesize, duplicates, new File(folder, "plain"));
+        benchmark(true, files, filesize, duplicates, new File(folder, "dedup"));
+    }
+
+    /**
+     * Runs the workload in one mode.
+     *
+     * @param dedup Whether the files are deduplicated.
+     * @param files The number of files stored.
+     * @param filesize The size of each file.
+     * @param duplicates The percentage of files that repeat earlier content.
+     * @param folder The folder the files are stored in (emptied first).
+     * @throws Exception If the storage engine fails.
+     */
+    private static void benchmark(boolean dedup, int files, int filesize, int duplicates, File folder) throws Exception{
+        String mode = dedup ? "dedup" : "plain";
+
+        // setting up a fresh Dstore
+        DstoreOptions options = new DstoreOptions();
+        options.set("durability", "none");
+        options.set("cacheSize", "0");
+        options.set("dedup", dedup ? "on" : "off");
+        StorageEngine storage = createDstore(folder, options).getStorage();
+
+        // the same sequence of contents in both modes
+        Random random = new Random(0);
+        byte[] content = new byte[filesize];
+        int distinct = 0;
+
+        // STORE //
+        long start = System.nanoTime();
+        for(int i = 0; i < files; i++){
+            // repeating the content of an earlier file, or generating new content
+            if(distinct > 0 && random.nextInt(100) < duplicates){
+                new Random(random.nextInt(distinct)).nextBytes(content);
+            }
+            else{
+                new Random(distinct++).nextBytes(content);
+            }
+
+            IncomingFile file = storage.create("file" + i + ".bin", filesize);
+            file.write(ByteBuffer.wrap(content), 0);
+            file.commit();
+        }
+        long time = System.nanoTime() - start;
+
+        double megabytes = (double) files * filesize / (1024 * 1024);
+        double diskMegabytes = getFolderSize(folder) / (1024.0 * 1024.0);
+        String ratio = (storage instanceof DedupStorageEngine) ? String.format(", ratio %.2f", ((DedupStorageEngine) storage).getRatio()) : "";
+        report("%-6s : store %8.1f MB/s, %8.1f MB on disk for %8.1f MB of files%s",
+            mode, megabytes / (time / 1e9), diskMegabytes, megabytes, ratio);
+
+        deleteFolder(folder);
+    }
+
+    /**
+     * Returns the total size of the files in a folder and its subfolders.
+     *
+     * @param folder The folder.
+     * @return The size in bytes.
+     */
+    private static long getFolderSize(File folder){
+        long size = 0;
+        File[] children = folder.listFiles();
+        if(children != null){
+            for(File child : children){
+                size += child.isDirectory() ? getFolderSize(child) : child.length();
+            }
+        }
+
+        return size;
+    }
+}
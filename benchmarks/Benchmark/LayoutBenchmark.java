@@ -0,0 +1,117 @@
+package Benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import DS.Dstore.DstoreOptions;
+import DS.Dstore.DstoreOptions.LayoutType;
+import DS.Dstore.Storage.StorageEngine;
+
+/**
+ * Compares the layouts of a Dstore's file store as the number of stored files grows.
+ *
+ * For each layout, empty files are stored into a fresh folder in steps of the given counts (e.g.,
+ * 1000000 then 10000000). After each step the cost of storing the step's files, of looking up
+ * stored and missing files by name, and of listing the whole file store is printed.
+ *
+ * Usage: LayoutBenchmark [counts] [folder]
+ */
+public class LayoutBenchmark extends Benchmark{
+
+    // constants
+    private static final String DEFAULT_COUNTS = "1000000,10000000";
+    private static final String DEFAULT_FOLDER = "benchmark";
+    private static final int LOOKUPS = 100000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args){
+        launch(new LayoutBenchmark(), args);
+    }
+
+    /**
+     * Runs the workload against every layout.
+     *
+     * @throws IOException If the storage engine fails.
+     */
+    protected void run() throws IOException{
+        // gathering parameters
+        String[] counts = this.getString(0, DEFAULT_COUNTS).split(",");
+        String folder = this.getString(1, DEFAULT_FOLDER);
+
+        for(LayoutType layout : LayoutType.values()){
+            benchmark(layout, counts, new File(folder, layout.toString()));
+        }
+    }
+
+    /**
+     * Runs the workload against one layout.
+     *
+     * @param layout The layout used.
+     * @param counts The number of files stored after each step.
+     * @param folder The folder the files are stored in (emptied first).
+     * @throws IOException If the storage engine fails.
+     */
+    private static void benchmark(LayoutType layout, String[] counts, File folder) throws IOException{
+        // setting up a fresh Dstore
+        DstoreOptions options = new DstoreOptions();
+        options.set("layout", layout.toString());
+        options.set("durability", "none");
+        options.set("cacheSize", "0");
+        StorageEngine engine = createDstore(folder, options).getStorage();
+
+        byte[] content = new byte[0];
+        int stored = 0;
+
+        for(String count : counts){
+            int target = Integer.parseInt(count.trim());
+
+            // CREATE //
+            long start = System.nanoTime();
+            for(int i = stored; i < target; i++){
+                engine.store(getFilename(i), content);
+            }
+            long createTime = System.nanoTime() - start;
+            int created = target - stored;
+            stored = target;
+
+            // LOOKUP //
+            int lookups = Math.min(LOOKUPS, stored);
+            int[] order = shuffle(stored);
+            start = System.nanoTime();
+            for(int i = 0; i < lookups; i++){
+                engine.getSize(getFilename(order[i]));
+            }
+            long lookupTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(int i = 0; i < lookups; i++){
+                engine.getSize(getFilename(stored + i));
+            }
+            long missTime = System.nanoTime() - start;
+
+            // LIST //
+            start = System.nanoTime();
+            int listed = engine.listFiles().size();
+            long listTime = System.nanoTime() - start;
+
+            report("%-8s %10d files : create %7.1f us/file, lookup %6.1f us, missing lookup %6.1f us, list %8.0f ms (%d files)",
+                layout, stored, createTime / 1e3 / Math.max(1, created), lookupTime / 1e3 / lookups, missTime / 1e3 / lookups, listTime / 1e6, listed);
+        }
+
+        deleteFolder(folder);
+    }
+
+    /**
+     * Returns the name of the i'th file.
+     *
+     * @param i The index of the file.
+     * @return The name of the file.
+     */
+    private static String getFilename(int i){
+        return "file" + i + ".bin";
+    }
+}
@@ -0,0 +1,172 @@
+package Benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import DS.Dstore.DstoreOptions;
+import DS.Dstore.FileCommitter;
+import DS.Dstore.FileCommitter.StagedFile;
+import DS.Dstore.Storage.FileStorageEngine;
+import DS.Dstore.Storage.IncomingFile;
+
+/**
+ * Compares the sequential read speed of files received with and without preallocation.
+ *
+ * Several large files are received at once, a chunk of each in turn (as when several STOREs
+ * arrive together), which fragments files that are grown write by write as their blocks are
+ * interleaved on disk. In each mode the files are written through a fresh Dstore's file store:
+ *
+ * - INCREMENTAL : Each file is grown by appending its chunks.
+ * - PREALLOCATED : Each file is created at its full size and its chunks written into place.
+ *
+ * Each file is then read back sequentially, and the read throughput is printed. The page cache
+ * is dropped before reading where the platform allows it (as root on Linux) - otherwise the
+ * reads may be served from memory and the difference hidden.
+ *
+ * Usage: PreallocationBenchmark [files] [filesize] [folder]
+ */
+public class PreallocationBenchmark extends Benchmark{
+
+    // constants
+    private static final int DEFAULT_FILES = 8;
+    private static final int DEFAULT_FILESIZE = 64 * 1024 * 1024; // bytes
+    private static final String DEFAULT_FOLDER = "benchmark";
+    private static final int CHUNK_SIZE = 64 * 1024; // bytes written to each file in turn
+    private static final File DROP_CACHES = new File("/proc/sys/vm/drop_caches");
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args){
+        launch(new PreallocationBenchmark(), args);
+    }
+
+    /**
+     * Runs the workload in both modes.
+     *
+     * @throws Exception If the storage engine fails.
+     */
+    protected void run() throws Exception{
+        // gathering parameters
+        int files = this.getInt(0, DEFAULT_FILES);
+        int filesize = this.getInt(1, DEFAULT_FILESIZE);
+        String folder = this.getString(2, DEFAULT_FOLDER);
+
+        System.out.println("Receiving " + files + " files of " + filesize + " bytes at once.");
+
+        benchmark(false, files, filesize, new File(folder, "incremental"));
+        benchmark(true, files, filesize, new File(folder, "preallocated"));
+    }
+
+    /**
+     * Runs the workload in one mode.
+     *
+     * @param preallocate Whether the files are preallocated.
+     * @param files The number of files received.
+     * @param filesize The size of each file.
+     * @param folder The folder the files are stored in (emptied first).
+     * @throws Exception If the storage engine fails.
+     */
+    private static void benchmark(boolean preallocate, int files, int filesize, File folder) throws Exception{
+        String mode = preallocate ? "preallocated" : "incremental";
+
+        // setting up a fresh Dstore
+        DstoreOptions options = new DstoreOptions();
+        options.set("durability", "none");
+        options.set("cacheSize", "0");
+        FileStorageEngine engine = (FileStorageEngine) createDstore(folder, options).getStorage();
+        FileCommitter fileCommitter = engine.getFileCommitter();
+
+        // random content, shared by every chunk
+        byte[] chunk = new byte[CHUNK_SIZE];
+        new Random(0).nextBytes(chunk);
+
+        // WRITE //
+        long start = System.nanoTime();
+        ArrayList<IncomingFile> incomingFiles = new ArrayList<IncomingFile>();
+        ArrayList<StagedFile> stagedFiles = new ArrayList<StagedFile>();
+        for(int i = 0; i < files; i++){
+            if(preallocate){
+                incomingFiles.add(engine.create(getFilename(i), filesize));
+            }
+            else{
+                stagedFiles.add(fileCommitter.stage(getFilename(i), FileStorageEngine.getFile(folder, engine.getLayout(), getFilename(i))));
+            }
+        }
+        for(long position = 0; position < filesize; position += CHUNK_SIZE){
+            int length = (int) Math.min(CHUNK_SIZE, filesize - position);
+            for(int i = 0; i < files; i++){
+                if(preallocate){
+                    incomingFiles.get(i).write(ByteBuffer.wrap(chunk, 0, length), position);
+                }
+                else{
+                    stagedFiles.get(i).write((length == CHUNK_SIZE) ? chunk : Arrays.copyOf(chunk, length));
+                }
+            }
+        }
+        for(int i = 0; i < files; i++){
+            if(preallocate){
+                incomingFiles.get(i).commit();
+            }
+            else{
+                fileCommitter.commit(stagedFiles.get(i), filesize);
+            }
+        }
+        long writeTime = System.nanoTime() - start;
+
+        // READ //
+        boolean dropped = dropCaches();
+        byte[] buffer = new byte[1024 * 1024];
+        start = System.nanoTime();
+        for(int i = 0; i < files; i++){
+            try(FileInputStream input = new FileInputStream(FileStorageEngine.getFile(folder, engine.getLayout(), getFilename(i)))){
+                while(input.read(buffer) >= 0){
+                    // reading sequentially
+                }
+            }
+        }
+        long readTime = System.nanoTime() - start;
+
+        double megabytes = (double) files * filesize / (1024 * 1024);
+        report("%-12s : write %8.1f MB/s, sequential read %8.1f MB/s%s",
+            mode, megabytes / (writeTime / 1e9), megabytes / (readTime / 1e9), dropped ? "" : " (page cache not dropped)");
+
+        deleteFolder(folder);
+    }
+
+    /**
+     * Flushes the written files to disk and drops the page cache, so the reads come from disk.
+     *
+     * @return True if the page cache was dropped, false if the platform does not allow it.
+     */
+    private static boolean dropCaches(){
+        try{
+            new ProcessBuilder("sync").inheritIO().start().waitFor();
+            try(FileOutputStream output = new FileOutputStream(DROP_CACHES)){
+                output.write("3\n".getBytes());
+            }
+            return true;
+        }
+        catch(IOException | InterruptedException e){
+            return false;
+        }
+    }
+
+    /**
+     * Returns the name of the i'th file.
+     *
+     * @param i The index of the file.
+     * @return The name of the file.
+     */
+    private static String getFilename(int i){
+        return "large" + i + ".bin";
+    }
+}
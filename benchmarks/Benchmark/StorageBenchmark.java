@@ -0,0 +1,133 @@
+package Benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import DS.Dstore.DstoreOptions;
+import DS.Dstore.Storage.StorageEngine;
+
+/**
+ * Compares the storage engines of a Dstore on a workload of many small files.
+ *
+ * Each engine stores the same set of files into a fresh folder, loads every file in a random
+ * order, and then removes half of the files. The throughput of each phase is printed.
+ *
+ * Usage: StorageBenchmark [files] [filesize] [folder] [durability]
+ */
+public class StorageBenchmark extends Benchmark{
+
+    // constants
+    private static final int DEFAULT_FILES = 20000;
+    private static final int DEFAULT_FILESIZE = 4096; // bytes
+    private static final String DEFAULT_FOLDER = "benchmark";
+    private static final String DEFAULT_DURABILITY = "none";
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args){
+        launch(new StorageBenchmark(), args);
+    }
+
+    /**
+     * Runs the workload against every storage engine.
+     *
+     * @throws IOException If a storage engine fails.
+     */
+    protected void run() throws IOException{
+        // gathering parameters
+        int files = this.getInt(0, DEFAULT_FILES);
+        int filesize = this.getInt(1, DEFAULT_FILESIZE);
+        String folder = this.getString(2, DEFAULT_FOLDER);
+        String durability = this.getString(3, DEFAULT_DURABILITY);
+
+        System.out.println("Storing " + files + " files of " + filesize + " bytes (durability=" + durability + ").");
+
+        for(DstoreOptions.StorageType storage : DstoreOptions.StorageType.values()){
+            benchmark(storage, files, filesize, new File(folder, storage.toString()), durability);
+        }
+    }
+
+    /**
+     * Runs the workload against one storage engine.
+     *
+     * @param storage The storage engine used.
+     * @param files The number of files stored.
+     * @param filesize The size of each file.
+     * @param folder The folder the files are stored in (emptied first).
+     * @param durability The durability mode of the Dstore.
+     * @throws IOException If the storage engine fails.
+     */
+    private static void benchmark(DstoreOptions.StorageType storage, int files, int filesize, File folder, String durability) throws IOException{
+        // setting up a fresh Dstore
+        DstoreOptions options = new DstoreOptions();
+        options.set("storage", storage.toString());
+        options.set("durability", durability);
+        options.set("cacheSize", "0");
+        StorageEngine engine = createDstore(folder, options).getStorage();
+
+        // random content, shared by every file
+        byte[] content = new byte[filesize];
+        new Random(0).nextBytes(content);
+
+        // STORE //
+        long start = System.nanoTime();
+        for(int i = 0; i < files; i++){
+            engine.store(getFilename(i), content);
+        }
+        report(storage, "STORE", files, filesize, System.nanoTime() - start);
+
+        // LOAD //
+        int[] order = shuffle(files);
+        long checksum = 0;
+        start = System.nanoTime();
+        for(int i : order){
+            ByteBuffer loaded = engine.load(getFilename(i));
+            checksum += loaded.get(loaded.limit() - 1);
+        }
+        report(storage, "LOAD", files, filesize, System.nanoTime() - start);
+        consume(checksum);
+
+        // REMOVE //
+        start = System.nanoTime();
+        for(int i = 0; i < files; i += 2){
+            engine.remove(getFilename(i));
+        }
+        report(storage, "REMOVE", (files + 1) / 2, filesize, System.nanoTime() - start);
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Prints the throughput of a phase of the workload.
+     *
+     * @param storage The storage engine used.
+     * @param phase The name of the phase.
+     * @param operations The number of operations in the phase.
+     * @param filesize The size of each file.
+     * @param nanos The time taken by the phase.
+     */
+    private static void report(DstoreOptions.StorageType storage, String phase, int operations, int filesize, long nanos){
+        double seconds = nanos / 1e9;
+        double opsPerSecond = operations / seconds;
+        double mbPerSecond = ((double) operations * filesize) / (1024 * 1024) / seconds;
+
+        report("%-9s %-7s %10.0f ops/s %10.1f MB/s", storage, phase, opsPerSecond, mbPerSecond);
+    }
+
+    /**
+     * Returns the name of the i'th file.
+     *
+     * @param i The index of the file.
+     * @return The name of the file.
+     */
+    private static String getFilename(int i){
+        return "file" + i + ".bin";
+    }
+}
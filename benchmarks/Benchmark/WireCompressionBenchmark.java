@@ -0,0 +1,209 @@
+package Benchmark;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import DS.Dstore.Scheduler.TokenBucket;
+import Network.BlockCompressor;
+import Network.Connection;
+import Network.NetworkInterface;
+
+/**
+ * Compares the throughput of file content sent raw and as compressed blocks over links of
+ * several speeds.
+ *
+ * Each transfer goes between two Connections over a local socket, through a relay that limits
+ * the link to the given speed. The same content is sent both ways at each speed:
+ *
+ * - RAW : Sent as it is (Connection.sendBytes).
+ * - COMPRESSED : Sent as adaptively compressed blocks (Connection.sendCompressedBytes).
+ *
+ * Two kinds of content are sent - log-like text, which compresses well, and random bytes, which
+ * do not compress at all and show the cost of trying. The throughput of the content (not of the
+ * bytes on the link) is printed.
+ *
+ * Usage: WireCompressionBenchmark [filesize] [speeds]
+ *
+ * The speeds are given in Mbit/s, separated by commas, with 0 for an unlimited link.
+ */
+public class WireCompressionBenchmark extends Benchmark{
+
+    // constants
+    private static final int DEFAULT_FILESIZE = 16 * 1024 * 1024; // bytes
+    private static final String DEFAULT_SPEEDS = "10,100,1000,0"; // Mbit/s
+    private static final int RELAY_CHUNK_SIZE = 16 * 1024; // bytes forwarded per write by the relay
+    private static final int TIMEOUT = 60000; // ms
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args){
+        launch(new WireCompressionBenchmark(), args);
+    }
+
+    /**
+     * Sends each kind of content over links of every speed.
+     *
+     * @throws Exception If a transfer fails.
+     */
+    protected void run() throws Exception{
+        // gathering parameters
+        int filesize = this.getInt(0, DEFAULT_FILESIZE);
+        String[] speeds = this.getString(1, DEFAULT_SPEEDS).split(",");
+
+        System.out.println("Sending " + filesize + " bytes of each kind of content.");
+
+        byte[] text = getText(filesize);
+        byte[] random = new byte[filesize];
+        new Random(0).nextBytes(random);
+
+        for(String speed : speeds){
+            long mbits = Long.parseLong(speed.trim());
+            benchmark("text", text, mbits);
+            benchmark("random", random, mbits);
+        }
+    }
+
+    /**
+     * Sends some content raw and compressed over a link of one speed.
+     *
+     * @param kind The kind of content.
+     * @param content The content.
+     * @param mbits The speed of the link in Mbit/s (0 for no limit).
+     * @throws Exception If a transfer fails.
+     */
+    private static void benchmark(String kind, byte[] content, long mbits) throws Exception{
+        double raw = transfer(content, mbits, false);
+        double compressed = transfer(content, mbits, true);
+
+        // share of the content's size sent over the link when compressed
+        BlockCompressor compressor = new BlockCompressor();
+        for(int position = 0; position < content.length; position += BlockCompressor.BLOCK_SIZE){
+            int length = Math.min(BlockCompressor.BLOCK_SIZE, content.length - position);
+            byte[] block = new byte[length];
+            System.arraycopy(content, position, block, 0, length);
+            compressor.encode(block, length);
+        }
+        compressor.end();
+
+        String link = (mbits == 0) ? "unlimited" : (mbits + " Mbit/s");
+        report("%-6s %-14s : raw %8.1f MB/s, compressed %8.1f MB/s (%.2f of the content sent, %.1fx)",
+            kind, link, raw, compressed, compressor.getRatio(), compressed / raw);
+    }
+
+    /**
+     * Sends some content from one Connection to another over a throttled link.
+     *
+     * @param content The content.
+     * @param mbits The speed of the link in Mbit/s (0 for no limit).
+     * @param compressed Whether the content is sent as compressed blocks.
+     * @return The throughput of the content in MB/s.
+     * @throws Exception If the transfer fails.
+     */
+    private static double transfer(byte[] content, long mbits, boolean compressed) throws Exception{
+        NetworkInterface networkInterface = new SilentInterface();
+
+        try(ServerSocket receiverSocket = new ServerSocket(0); ServerSocket relaySocket = new ServerSocket(0)){
+            // linking sender -> relay -> receiver
+            Thread relay = new Thread(() -> relay(relaySocket, receiverSocket.getLocalPort(), mbits * 1_000_000 / 8));
+            relay.setDaemon(true);
+            relay.start();
+            Connection sender = new Connection(networkInterface, new Socket(InetAddress.getLocalHost(), relaySocket.getLocalPort()));
+            Connection receiver = new Connection(networkInterface, receiverSocket.accept());
+
+            // sending from another thread while receiving on this one
+            Exception[] error = new Exception[1];
+            Thread sending = new Thread(() -> {
+                try{
+                    if(compressed){
+                        sender.sendCompressedBytes(content);
+                    }
+                    else{
+                        sender.sendBytes(content);
+                    }
+                }
+                catch(Exception e){
+                    error[0] = e;
+                }
+            });
+
+            long start = System.nanoTime();
+            sending.start();
+            Connection.ChunkHandler handler = (ByteBuffer chunk, long position) -> {};
+            if(compressed){
+                receiver.receiveCompressedBytesWithinTimeout(content.length, TIMEOUT, handler);
+            }
+            else{
+                receiver.receiveBytesWithinTimeout(content.length, TIMEOUT, handler);
+            }
+            long time = System.nanoTime() - start;
+            sending.join();
+
+            sender.getSocket().close();
+            receiver.getSocket().close();
+            if(error[0] != null){
+                throw error[0];
+            }
+
+            return (content.length / (1024.0 * 1024.0)) / (time / 1e9);
+        }
+    }
+
+    /**
+     * Forwards the bytes of one connection to another port, at no more than the given rate. Run by
+     * the relay thread.
+     *
+     * @param relaySocket The socket the connection to forward is accepted from.
+     * @param port The port the bytes are forwarded to.
+     * @param rate The rate of the link in bytes per second (0 for no limit).
+     */
+    private static void relay(ServerSocket relaySocket, int port, long rate){
+        try(Socket in = relaySocket.accept(); Socket out = new Socket(InetAddress.getLocalHost(), port)){
+            TokenBucket link = new TokenBucket(rate);
+            link.tryTake(rate); // starting without the one second burst
+
+            InputStream input = in.getInputStream();
+            OutputStream output = out.getOutputStream();
+            byte[] chunk = new byte[RELAY_CHUNK_SIZE];
+            int length;
+            while((length = input.read(chunk)) >= 0){
+                while(!link.tryTake(length)){
+                    Thread.sleep(Math.max(1, link.getWaitTime() / 1_000_000));
+                }
+                output.write(chunk, 0, length);
+            }
+        }
+        catch(Exception e){
+            // link closed
+        }
+    }
+
+    /**
+     * Generates log-like text.
+     *
+     * @param length The length of the text in bytes.
+     * @return The text.
+     */
+    private static byte[] getText(int length){
+        Random random = new Random(0);
+        String[] levels = {"INFO", "INFO", "INFO", "DEBUG", "WARN"};
+        StringBuilder text = new StringBuilder(length + 128);
+        while(text.length() < length){
+            text.append(String.format("2024-03-%02d 12:%02d:%02d %s request %d for file%d.txt served by dstore %d in %d ms\n",
+                1 + random.nextInt(28), random.nextInt(60), random.nextInt(60), levels[random.nextInt(levels.length)],
+                random.nextInt(1000000), random.nextInt(5000), 12346 + random.nextInt(8), random.nextInt(200)));
+        }
+
+        byte[] bytes = new byte[length];
+        System.arraycopy(text.toString().getBytes(StandardCharsets.US_ASCII), 0, bytes, 0, length);
+        return bytes;
+    }
+}
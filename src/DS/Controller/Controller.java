@@ -1,6 +1,7 @@
 package DS.Controller;
 
 import DS.Controller.Index.*;
+import DS.Controller.Rebalancer.RebalanceScheduler;
 import DS.Controller.Rebalancer.Rebalancer;
 import DS.Protocol.Exception.*;
 import Network.NetworkInterface;
@@ -16,14 +17,20 @@ import Network.Server.*;
  */
 public class Controller extends Server{
 
+    // constants
+    public static final int DEFAULT_REBALANCE_WINDOW = 1000; // ms
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024; // bytes
+
     // member variables
     private int port;
     private int minDstores;
     private int timeout;
     private int rebalancePeriod;
+    private int chunkSize; // files larger than this are split into chunks
     private NetworkInterface networkInterface; 
     private volatile Index index;
     private volatile Rebalancer rebalancer;
+    private volatile RebalanceScheduler rebalanceScheduler;
 
 //       /**
 //* 类构造函数。
@@ -35,15 +42,46 @@ public class Controller extends Server{
 //* @param networkInterface 与控制器关联的 NetworkInterface。
 //     */
     public Controller(int port, int r, int timeout, int rebalancePeriod, NetworkInterface networkInterface){
+        this(port, r, timeout, rebalancePeriod, DEFAULT_REBALANCE_WINDOW, networkInterface);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param port The port the Controller should listen on.
+     * @param r The number of Dstores to replicate files across.
+     * @param timeout The timeout length for communication.
+     * @param rebalancePeriod The rebalance period.
+     * @param rebalanceWindow The window (ms) within which rebalance triggers are coalesced.
+     * @param networkInterface The NetworkInterface associated with the Controller.
+     */
+    public Controller(int port, int r, int timeout, int rebalancePeriod, int rebalanceWindow, NetworkInterface networkInterface){
+        this(port, r, timeout, rebalancePeriod, rebalanceWindow, DEFAULT_CHUNK_SIZE, networkInterface);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param port The port the Controller should listen on.
+     * @param r The number of Dstores to replicate files across.
+     * @param timeout The timeout length for communication.
+     * @param rebalancePeriod The rebalance period.
+     * @param rebalanceWindow The window (ms) within which rebalance triggers are coalesced.
+     * @param chunkSize The size (bytes) above which files are split into chunks.
+     * @param networkInterface The NetworkInterface associated with the Controller.
+     */
+    public Controller(int port, int r, int timeout, int rebalancePeriod, int rebalanceWindow, int chunkSize, NetworkInterface networkInterface){
         // initializing new member variables
         super(ServerType.CONTROLLER, port, networkInterface);
         this.port = port;
         this.minDstores = r;
         this.timeout = timeout;
         this.rebalancePeriod = rebalancePeriod;
+        this.chunkSize = chunkSize;
         this.networkInterface = networkInterface;
         this.index = new Index(this);
         this.rebalancer = new Rebalancer(this);
+        this.rebalanceScheduler = new RebalanceScheduler(this, rebalanceWindow);
         this.setRequestHandler(new ControllerRequestHandler(this));
     }
 
@@ -59,7 +97,8 @@ public class Controller extends Server{
      */
     public void setup() throws ServerSetupException{
         try{
-            // starting rebalance thread
+            // starting rebalance threads
+            this.rebalanceScheduler.start();
             this.rebalancer.start();
         }
         catch(Exception e){
@@ -112,13 +151,9 @@ public class Controller extends Server{
                     // logging the disconnect
                     this.getNetworkInterface().logError(new HandeledNetworkException(new DstoreDisconnectException(dstore.getPort(), exception)));
 
-                    // rebalancing
-                    try{
-                        this.getRebalancer().rebalance();
-                    }
-                    catch(NetworkException e){
-                        this.handleError(new RebalanceFailureException(e));
-                    }
+                    // re-replicating the Dstore's files (coalesced with any other Dstores leaving)
+                    this.getRebalancer().recordDstoreLoss();
+                    this.getRebalanceScheduler().requestRebalance();
 
                     return; // nothing else to do
                 }
@@ -185,6 +220,10 @@ public class Controller extends Server{
         return this.rebalancePeriod;
     }
 
+    public int getChunkSize(){
+        return this.chunkSize;
+    }
+
     public Index getIndex(){
         return this.index;
     }
@@ -192,4 +231,8 @@ public class Controller extends Server{
     public Rebalancer getRebalancer(){
         return this.rebalancer;
     }
+
+    public RebalanceScheduler getRebalanceScheduler(){
+        return this.rebalanceScheduler;
+    }
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package DS.Controller;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import DS.Controller.Index.ChunkMap;
 import DS.Controller.Index.State.OperationState;
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Operation.ListCompleteEvent;
@@ -93,6 +95,12 @@ public class ControllerRequestHandler extends RequestHandler{
                 this.handleLoadRequest(connection, reloadToken.filename, true);
             }
 
+            // LOAD_REPLICAS
+            else if(request instanceof LoadReplicasToken){
+                LoadReplicasToken loadReplicasToken = (LoadReplicasToken) request;
+                this.handleLoadReplicasRequest(connection, loadReplicasToken.filename);
+            }
+
             // REMOVE
             else if(request instanceof RemoveToken){
                 RemoveToken removeToken = (RemoveToken) request;
@@ -105,6 +113,12 @@ public class ControllerRequestHandler extends RequestHandler{
                 this.handleRemoveAckRequest(connection, removeAckToken.filename);
             }
 
+            // CORRUPT
+            else if(request instanceof CorruptToken){
+                CorruptToken corruptToken = (CorruptToken) request;
+                this.handleCorruptRequest(connection, corruptToken.filename);
+            }
+
             // ERROR_FILE_DOES_NOT_EXIST
             else if(request instanceof ErrorFileDoesNotExistFilenameToken){
                 // nothing to do ...
@@ -121,6 +135,24 @@ public class ControllerRequestHandler extends RequestHandler{
                 this.handleListFilesRequest(connection, listFilesToken.files);
             }
 
+            // LIST DELTA (rebalancing)
+            else if(request instanceof ListDeltaToken){
+                ListDeltaToken listDeltaToken = (ListDeltaToken) request;
+                this.handleListDeltaRequest(connection, listDeltaToken);
+            }
+
+            // REBALANCE STORE ACK
+            else if(request instanceof RebalanceStoreAckToken){
+                RebalanceStoreAckToken rebalanceStoreAckToken = (RebalanceStoreAckToken) request;
+                this.handleRebalanceStoreAckRequest(connection, rebalanceStoreAckToken.filename, rebalanceStoreAckToken.filesize);
+            }
+
+            // REBALANCE REMOVE ACK
+            else if(request instanceof RebalanceRemoveAckToken){
+                RebalanceRemoveAckToken rebalanceRemoveAckToken = (RebalanceRemoveAckToken) request;
+                this.handleRebalanceRemoveAckRequest(connection, rebalanceRemoveAckToken.filename);
+            }
+
             // REBALANCE COMPLETE
             else if(request instanceof RebalanceCompleteToken){
                 this.handleRebalanceCompleteRequest(connection);
@@ -196,8 +228,8 @@ public class ControllerRequestHandler extends RequestHandler{
         // sending JOIN_ACK to Dstore
         connection.sendMessage(Protocol.getJoinAckMessage());
 
-        // rebalancing system
-        this.controller.getRebalancer().rebalance();
+        // rebalancing system (coalesced with any other Dstores joining)
+        this.controller.getRebalanceScheduler().requestRebalance();
         //```plaintext
         //在这段代码中，`this.controller.getServerConnections().add(connection)`的作用是将新加入的Dstore的连接添加到服务器连接列表中，以便跟踪所有连接到服务器的Dstore。`connection.sendMessage(Protocol.getJoinAckMessage())`用于向新加入的Dstore发送JOIN_ACK消息，以确认其成功加入系统。`this.controller.getRebalancer().rebalance()`用于在新Dstore加入后重新平衡系统。
         //
@@ -259,7 +291,18 @@ public class ControllerRequestHandler extends RequestHandler{
 //     * @throws MessageSendException 如果无法通过连接发送消息。
 //     * @throws OperationTimeoutException：如果存储操作未在控制器超时期限内完成。
 //     */
-    public void handleStoreRequest(Connection connection, String filename, int filesize) throws Exception{
+    public void handleStoreRequest(Connection connection, String filename, long filesize) throws Exception{
+        // names of chunks are reserved for the chunks of large files
+        if(ChunkMap.isChunk(filename)){
+            throw new InvalidMessageException(Protocol.STORE_TOKEN + " " + filename + " " + filesize, connection.getPort());
+        }
+
+        // large files are stored in chunks
+        if(filesize > this.controller.getChunkSize()){
+            this.handleStoreChunksRequest(connection, filename, filesize);
+            return;
+        }
+
         // starting to store the file
         ArrayList<Integer> dstores = this.controller.getIndex().startStoring(filename, filesize);
 
@@ -276,6 +319,49 @@ public class ControllerRequestHandler extends RequestHandler{
         this.controller.handleEvent(new StoreCompleteEvent(filename, filesize));
     }
 
+    /**
+     * Handles a request to store a file larger than the chunk size, as chunks that are each
+     * stored on their own Dstores. The store only completes once every chunk has been
+     * acknowledged - if any chunk is not, the chunks already stored are removed.
+     *
+     * @param connection The connection associated with the request.
+     * @param filename The name of the file being stored.
+     * @param filesize The size of the file being stored.
+     * @throws Exception If the file could not be stored.
+     */
+    private void handleStoreChunksRequest(Connection connection, String filename, long filesize) throws Exception{
+        // starting to store the chunks
+        int chunkSize = this.controller.getChunkSize();
+        ArrayList<ArrayList<Integer>> dstores = this.controller.getIndex().startStoringChunks(filename, filesize, chunkSize);
+
+        // sending the message to the client
+        connection.sendMessage(Protocol.getStoreToChunksMessage(chunkSize, dstores));
+
+        // waiting for each chunk to be stored
+        try{
+            for(String chunkName : this.controller.getIndex().getChunkMap(filename).getChunkNames()){
+                this.controller.getIndex().waitForFileState(chunkName, OperationState.STORE_ACK_RECIEVED, this.controller.getTimeout());
+            }
+        }
+        catch(Exception e){
+            // removing the chunks that were stored
+            HashMap<String, ArrayList<Connection>> chunkDstores = this.controller.getIndex().abandonStoringChunks(filename);
+            for(HashMap.Entry<String, ArrayList<Connection>> chunk : chunkDstores.entrySet()){
+                for(Connection dstore : chunk.getValue()){
+                    dstore.sendMessage(Protocol.getRemoveMessage(chunk.getKey()));
+                }
+            }
+
+            throw e;
+        }
+
+        // store complete, sending STORE_COMPLETE message to Client
+        connection.sendMessage(Protocol.getStoreCompleteMessage());
+
+        // logging
+        this.controller.handleEvent(new StoreCompleteEvent(filename, filesize));
+    }
+
 /**
      * 处理STORE_ACK令牌。
      *
@@ -304,11 +390,23 @@ public class ControllerRequestHandler extends RequestHandler{
 //* @throws MessageSendException 如果无法通过连接发送消息。
 //     */
     private void handleLoadRequest(Connection connection, String filename, boolean isReload) throws Exception{
+        // large files are loaded chunk by chunk
+        if(this.controller.getIndex().getChunkMap(filename) != null){
+            ChunkMap chunkMap = this.controller.getIndex().getChunkMapToLoad(filename);
+
+            // sending LOAD_CHUNKS to the Client
+            connection.sendMessage(Protocol.getLoadChunksMessage(chunkMap.getFilesize(), chunkMap.getChunkSize()));
+
+            // logging
+            this.controller.handleEvent(new LoadCompleteEvent(filename));
+            return;
+        }
+
         // 获取要存储的 dstore
         int dstoreToLoadFrom = this.controller.getIndex().getDstoreToLoadFrom(connection, filename, isReload);
 
         // getting the file size
-        int filesize = this.controller.getIndex().getFileSize(filename);
+        long filesize = this.controller.getIndex().getFileSize(filename);
 
         // sending LOAD_FROM to the Client
         connection.sendMessage(Protocol.getLoadFromMessage(dstoreToLoadFrom, filesize));
@@ -318,6 +416,33 @@ public class ControllerRequestHandler extends RequestHandler{
     }
 
 
+    /**
+     * Handles a LOAD_REPLICAS request, replying with every Dstore holding the file so the client
+     * can load ranges of it from all of them at once. Large objects are answered as for LOAD, and
+     * each chunk is then asked for in turn.
+     *
+     * @param connection The connection associated with the request.
+     * @param filename The name of the file being loaded.
+     * @throws Exception If the Dstores of the file could not be gathered.
+     */
+    private void handleLoadReplicasRequest(Connection connection, String filename) throws Exception{
+        // large files are loaded chunk by chunk
+        if(this.controller.getIndex().getChunkMap(filename) != null){
+            this.handleLoadRequest(connection, filename, false);
+            return;
+        }
+
+        // gathering the Dstores holding the file
+        ArrayList<Integer> dstores = this.controller.getIndex().getDstoresToLoadFrom(filename);
+        long filesize = this.controller.getIndex().getFileSize(filename);
+
+        // sending LOAD_FROM_REPLICAS to the Client
+        connection.sendMessage(Protocol.getLoadFromReplicasMessage(filesize, dstores));
+
+        // logging
+        this.controller.handleEvent(new LoadCompleteEvent(filename));
+    }
+
     ////////////
     // REMOVE //
     ////////////
@@ -334,6 +459,12 @@ public class ControllerRequestHandler extends RequestHandler{
 //     * @throws OperationTimeoutException：如果删除操作未在控制器超时期限内完成。
 //     */
     private void handleRemoveRequest(Connection connection, String filename) throws Exception{
+        // large files are removed chunk by chunk
+        if(this.controller.getIndex().getChunkMap(filename) != null){
+            this.handleRemoveChunksRequest(connection, filename);
+            return;
+        }
+
         // starting to remove the file
         ArrayList<Connection> dstores = this.controller.getIndex().startRemoving(filename);
 
@@ -353,6 +484,42 @@ public class ControllerRequestHandler extends RequestHandler{
         this.controller.handleEvent(new RemoveCompleteEvent(filename));
     }
 
+    /**
+     * Handles a request to remove a file stored in chunks, removing every chunk.
+     *
+     * @param connection The connection associated with the request.
+     * @param filename The name of the file being removed.
+     * @throws Exception If the file could not be removed.
+     */
+    private void handleRemoveChunksRequest(Connection connection, String filename) throws Exception{
+        // starting to remove the chunks
+        HashMap<String, ArrayList<Connection>> chunkDstores = this.controller.getIndex().startRemovingChunks(filename);
+
+        // sending REMOVE messages to the Dstores
+        for(HashMap.Entry<String, ArrayList<Connection>> chunk : chunkDstores.entrySet()){
+            for(Connection dstore : chunk.getValue()){
+                dstore.sendMessage(Protocol.getRemoveMessage(chunk.getKey()));
+            }
+        }
+
+        // waiting for every chunk to be removed
+        try{
+            for(String chunkName : chunkDstores.keySet()){
+                this.controller.getIndex().waitForFileState(chunkName, OperationState.REMOVE_ACK_RECIEVED, this.controller.getTimeout());
+            }
+        }
+        finally{
+            // the file is gone from the index either way (as for a single file)
+            this.controller.getIndex().chunksRemoved(filename);
+        }
+
+        // remove complete, sending REMOVE_COMPLETE message to Client
+        connection.sendMessage(Protocol.getRemoveCompleteMessage());
+
+        // logging
+        this.controller.handleEvent(new RemoveCompleteEvent(filename));
+    }
+
     ////////////////
     // REMOVE ACK //
     ////////////////
@@ -367,6 +534,25 @@ public class ControllerRequestHandler extends RequestHandler{
         this.controller.getIndex().removeAckRecieved(connection, filename);
     }
 
+    /////////////
+    // CORRUPT //
+    /////////////
+
+    /**
+     * Handles a Dstore reporting that its copy of a file is corrupt. The copy is dropped from the
+     * index and a rebalance is requested, which re-replicates the file from a good copy.
+     *
+     * @param connection The connection the report was received from.
+     * @param filename The name of the corrupt file.
+     */
+    private void handleCorruptRequest(Connection connection, String filename){
+        // dropping the copy from the index
+        this.controller.getIndex().corruptFileReported(connection, filename);
+
+        // restoring the replication factor
+        this.controller.getRebalanceScheduler().requestRebalance();
+    }
+
     //////////
     // LIST //
     //////////
@@ -380,7 +566,7 @@ public class ControllerRequestHandler extends RequestHandler{
      */
     private void handleListRequest(Connection connection) throws Exception{
         // sending message to client
-        connection.sendMessage(Protocol.getListOfFilesMessage(this.controller.getIndex().getFileList()));
+        connection.sendMessage(Protocol.getListOfFilesEncoder(this.controller.getIndex().getFileList()));
 
         // logging
         this.controller.handleEvent(new ListCompleteEvent());
@@ -396,10 +582,50 @@ public class ControllerRequestHandler extends RequestHandler{
      * @param connection 与消息关联的连接。
      * @param files 消息中提供的文件列表。
      */
-    private void handleListFilesRequest(Connection connection, HashMap<String, Integer> files){
+    private void handleListFilesRequest(Connection connection, HashMap<String, Long> files){
         this.controller.getIndex().rebalanceListRecieved(connection, files);
     }
 
+    /**
+     * Handles the receipt of the changes to a Dstore's files (rebalancing).
+     *
+     * @param connection The connection associated with the message.
+     * @param delta The changes provided in the message.
+     * @throws IOException If the changes could not be read from the connection.
+     */
+    private void handleListDeltaRequest(Connection connection, ListDeltaToken delta) throws IOException{
+        this.controller.getIndex().listDeltaRecieved(connection, delta);
+    }
+
+    /**
+     * Handles a Dstore acknowledging a file sent to it during a rebalance.
+     *
+     * @param connection The connection the acknowledgement was received from.
+     * @param filename The name of the file stored.
+     * @param filesize The size of the file stored.
+     */
+    private void handleRebalanceStoreAckRequest(Connection connection, String filename, long filesize){
+        // recording the file in the index
+        this.controller.getIndex().rebalanceStoreAckRecieved(connection, filename, filesize);
+
+        // ticking off the move
+        this.controller.getRebalancer().storeAcknowledged(this.controller.getIndex().getIndexFromConnection(connection).getPort(), filename);
+    }
+
+    /**
+     * Handles a Dstore acknowledging the removal of a file during a rebalance.
+     *
+     * @param connection The connection the acknowledgement was received from.
+     * @param filename The name of the file removed.
+     */
+    private void handleRebalanceRemoveAckRequest(Connection connection, String filename){
+        // removing the file from the index
+        this.controller.getIndex().rebalanceRemoveAckRecieved(connection, filename);
+
+        // ticking off the move
+        this.controller.getRebalancer().removeAcknowledged(this.controller.getIndex().getIndexFromConnection(connection).getPort(), filename);
+    }
+
 ///**
 //     * 处理来自 DSTORE 的REBALANCE_COMPLETE消息的接收。
 //     *
@@ -23,7 +23,34 @@ public class ControllerTerminal extends NetworkInterface{
      * @param rebalancePeriod The rebalance period.
      */
     public ControllerTerminal(int port, int r, int timeout, int rebalancePeriod){
-        this.controller = new Controller(port, r, timeout, rebalancePeriod, this);
+        this(port, r, timeout, rebalancePeriod, Controller.DEFAULT_REBALANCE_WINDOW);
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port the controller should listen on.
+     * @param r The number of data stores to replicate files across.
+     * @param timeout The timeout length for communication.
+     * @param rebalancePeriod The rebalance period.
+     * @param rebalanceWindow The window within which rebalance triggers are coalesced.
+     */
+    public ControllerTerminal(int port, int r, int timeout, int rebalancePeriod, int rebalanceWindow){
+        this(port, r, timeout, rebalancePeriod, rebalanceWindow, Controller.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port the controller should listen on.
+     * @param r The number of data stores to replicate files across.
+     * @param timeout The timeout length for communication.
+     * @param rebalancePeriod The rebalance period.
+     * @param rebalanceWindow The window within which rebalance triggers are coalesced.
+     * @param chunkSize The size above which files are split into chunks.
+     */
+    public ControllerTerminal(int port, int r, int timeout, int rebalancePeriod, int rebalanceWindow, int chunkSize){
+        this.controller = new Controller(port, r, timeout, rebalancePeriod, rebalanceWindow, chunkSize, this);
 
         // starting Controller
         //1 开启rebalancer线程
@@ -99,9 +126,11 @@ public class ControllerTerminal extends NetworkInterface{
             int r = Integer.parseInt(args[1]);
             int timeout = Integer.parseInt(args[2]);
             int rebalancePeriod = Integer.parseInt(args[3]);
+            int rebalanceWindow = (args.length > 4) ? Integer.parseInt(args[4]) : Controller.DEFAULT_REBALANCE_WINDOW;
+            int chunkSize = (args.length > 5) ? Integer.parseInt(args[5]) : Controller.DEFAULT_CHUNK_SIZE;
 
             // Creating new DStore instance
-            ControllerTerminal controller = new ControllerTerminal(cPort, r, timeout, rebalancePeriod);
+            ControllerTerminal controller = new ControllerTerminal(cPort, r, timeout, rebalancePeriod, rebalanceWindow, chunkSize);
         }
         catch(Exception e){
             System.out.println("Unable to create Controller.");
@@ -0,0 +1,121 @@
+package DS.Controller.Index;
+
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import DS.Protocol.Protocol;
+
+/**
+ * Represents a large object that has been split into chunks.
+ *
+ * Each chunk is stored as a file of its own, named after the object and its position within it
+ * (see Protocol.getChunkName), so the chunks are placed and replicated across the Dstores
+ * independently, like any other file. As the names describe the object, the chunk map of every
+ * object can be rebuilt from the files the Dstores list.
+ */
+public class ChunkMap{
+
+    // constants
+    private static final Pattern CHUNK_NAME = Pattern.compile("^(.+)" + Pattern.quote(Protocol.CHUNK_MARKER) + "(\\d+)-of-(\\d+)$");
+
+    // member variables
+    private String filename;
+    private long filesize;
+    private int chunkSize;
+    private int numberOfChunks;
+
+    /**
+     * Class constructor.
+     *
+     * @param filename The name of the object.
+     * @param filesize The size of the object in bytes.
+     * @param chunkSize The size of each chunk (the last may be smaller).
+     */
+    public ChunkMap(String filename, long filesize, int chunkSize){
+        this.filename = filename;
+        this.filesize = filesize;
+        this.chunkSize = chunkSize;
+        this.numberOfChunks = Protocol.getNumberOfChunks(filesize, chunkSize);
+    }
+
+    /**
+     * Determines if a filename is the name of a chunk of an object.
+     *
+     * @param filename The filename.
+     * @return True if the name is that of a chunk, false if not.
+     */
+    public static boolean isChunk(String filename){
+        return CHUNK_NAME.matcher(filename).matches();
+    }
+
+    /**
+     * Reads the name of a chunk.
+     *
+     * @param chunkName The name of the chunk.
+     * @return The name of the object, the index of the chunk and the number of chunks in the
+     * object, or null if the name is not that of a chunk.
+     */
+    public static String[] parseChunkName(String chunkName){
+        Matcher matcher = CHUNK_NAME.matcher(chunkName);
+        if(!matcher.matches()){
+            return null;
+        }
+
+        return new String[]{matcher.group(1), matcher.group(2), matcher.group(3)};
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public long getFilesize(){
+        return this.filesize;
+    }
+
+    public int getChunkSize(){
+        return this.chunkSize;
+    }
+
+    public int getNumberOfChunks(){
+        return this.numberOfChunks;
+    }
+
+    /**
+     * Returns the name a chunk of the object is stored under.
+     *
+     * @param chunk The index of the chunk.
+     * @return The name of the chunk.
+     */
+    public String getChunkName(int chunk){
+        return Protocol.getChunkName(this.filename, chunk, this.numberOfChunks);
+    }
+
+    /**
+     * Returns the size of a chunk of the object.
+     *
+     * @param chunk The index of the chunk.
+     * @return The size of the chunk in bytes.
+     */
+    public long getChunkFilesize(int chunk){
+        return Math.min(this.chunkSize, this.filesize - (long) chunk * this.chunkSize);
+    }
+
+    /**
+     * Returns the names of every chunk of the object, in order.
+     *
+     * @return The names of the chunks.
+     */
+    public ArrayList<String> getChunkNames(){
+        ArrayList<String> chunkNames = new ArrayList<String>();
+        for(int i = 0; i < this.numberOfChunks; i++){
+            chunkNames.add(this.getChunkName(i));
+        }
+
+        return chunkNames;
+    }
+}
@@ -10,7 +10,7 @@ public class DstoreFile{
 
     // member variables
     private String filename;
-    private int filesize;
+    private long filesize;
     private OperationState state;
 
 //    /**
@@ -19,7 +19,7 @@ public class DstoreFile{
 //     * @param file The name of the file.
 //     * @param filesize The size of the file in bytes.
 //     */
-    public DstoreFile(String filename, int filesize){
+    public DstoreFile(String filename, long filesize){
         this.filename = filename;
         this.filesize = filesize;
         this.state = OperationState.STORE_IN_PROGRESS;
@@ -54,7 +54,7 @@ public class DstoreFile{
         return this.filename;
     }
 
-    public int getFilesize(){
+    public long getFilesize(){
         return this.filesize;
     }
 
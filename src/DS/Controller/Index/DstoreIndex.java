@@ -1,10 +1,12 @@
 package DS.Controller.Index;
 //分布式存储索引的管理。
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 import DS.Controller.Index.State.OperationState;
 import DS.Controller.Index.State.RebalanceState;
+import DS.Protocol.Token.TokenType.FileChange;
 import Network.Connection;
 
 /**
@@ -16,8 +18,10 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
     // member variables
     private volatile int port; // the port the Dstore is listening on
     private volatile Connection connection;
-    private volatile CopyOnWriteArrayList<DstoreFile> files;
+    private volatile ConcurrentHashMap<String, DstoreFile> files; // filename -> file
     private volatile RebalanceState rebalanceState;
+    private volatile long listVersion; // the Dstore's list version the files are up to date with
+    private volatile boolean unseenChanges; // the Dstore reported changes not reflected in the files
 
     /**
      * Class constructor.
@@ -28,8 +32,10 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
     public DstoreIndex(int port, Connection connection){
         this.port = port;
         this.connection = connection;
-        this.files = new CopyOnWriteArrayList<DstoreFile>();
+        this.files = new ConcurrentHashMap<String, DstoreFile>();
         this.rebalanceState = RebalanceState.IDLE;
+        this.listVersion = -1; // no version known - Dstore will send a full listing
+        this.unseenChanges = false;
     }
 
     ///////////////////////
@@ -42,8 +48,8 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
      * @param filename The name of the file to be added.
      * @param filesize The size of the file to be added in bytes.
      */
-    public void addFile(String filename, int filesize){
-        this.files.add(new DstoreFile(filename, filesize));
+    public void addFile(String filename, long filesize){
+        this.files.put(filename, new DstoreFile(filename, filesize));
     }
 
     /**
@@ -52,19 +58,48 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
      * @param filename The file to be removed
      */
     public void removeFile(String filename){
-        // place holder for the file object
-        DstoreFile foundFile = null;
-
-        // finding the file object
-        for(DstoreFile file : this.files){
-            if(file.getFilename().equals(filename)){
-                foundFile = file;
-            }
+        this.files.remove(filename);
+    }
+
+    /**
+     * Applies a change reported by the Dstore in a LIST_DELTA message to the index.
+     * 
+     * @param change The change made to the Dstore's files.
+     */
+    public void applyChange(FileChange change){
+        // replacing any previous record of the file
+        if(change.removed){
+            this.files.remove(change.filename);
         }
+        else{
+            DstoreFile dstoreFile = new DstoreFile(change.filename, change.filesize);
+            dstoreFile.setState(OperationState.IDLE);
 
-        // removing the file if it was found
-        if(foundFile != null){
-            this.files.remove(foundFile);
+            this.files.put(change.filename, dstoreFile);
+        }
+    }
+
+    /**
+     * Clears the files of the index, before a full listing of the Dstore's files is applied.
+     */
+    public void clearFiles(){
+        this.files.clear();
+    }
+
+    /**
+     * Determines if a change reported by the Dstore is already reflected in the index.
+     * 
+     * @param change The change made to the Dstore's files.
+     * @return True if the index already holds the result of the change, false if not.
+     */
+    public boolean reflectsChange(FileChange change){
+        DstoreFile file = this.files.get(change.filename);
+
+        if(change.removed){
+            return file == null;
+        }
+        else{
+            return file != null && file.getFilesize() == change.filesize;
         }
     }
 
@@ -79,10 +114,10 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
      * @param state The state the file will be changed to.
      */
     public void updateFileState(String filename, OperationState state){
-        for(DstoreFile file : this.files){
-            if(file.getFilename().equals(filename)){
-                file.setState(state);
-            }
+        DstoreFile file = this.files.get(filename);
+
+        if(file != null){
+            file.setState(state);
         }
     }
 
@@ -93,13 +128,7 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
      * @return True if the file is stored on the Dstore, false if not.
      */
     public boolean hasFile(String filename){
-        for(DstoreFile file : this.files){
-            if(file.getFilename().equals(filename)){
-                return true;
-            }
-        }
-
-        return false;
+        return this.files.containsKey(filename);
     }
 
     /**
@@ -135,21 +164,15 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
         return this.connection;
     }
 
-    public CopyOnWriteArrayList<DstoreFile> getFiles(){
-        return this.files;
+    public Collection<DstoreFile> getFiles(){
+        return this.files.values();
     }
 
     public DstoreFile getFile(String filename){
-        for(DstoreFile file : this.files){
-            if(file.getFilename().equals(filename)){
-                return file;
-            }
-        }
-        
-        return null;
+        return this.files.get(filename);
     }
 
-    public void setFiles(HashMap<String, Integer> files){
+    public void setFiles(HashMap<String, Long> files){
         // clearing old files
         this.files.clear();
 
@@ -158,7 +181,7 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
             DstoreFile dstoreFile = new DstoreFile(file, files.get(file));
             dstoreFile.setState(OperationState.IDLE);
 
-            this.files.add(dstoreFile);
+            this.files.put(file, dstoreFile);
         }
     }
 
@@ -170,7 +193,23 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
         this.rebalanceState = rebalanceState;
     }
 
+    public long getListVersion(){
+        return this.listVersion;
+    }
+
+    public void setListVersion(long listVersion){
+        this.listVersion = listVersion;
+    }
+
+    public boolean hasUnseenChanges(){
+        return this.unseenChanges;
+    }
+
+    public void setUnseenChanges(boolean unseenChanges){
+        this.unseenChanges = unseenChanges;
+    }
+
     public String toString(){
-        return (this.port + " : " + this.files.toString());
+        return (this.port + " : " + this.files.values().toString());
     }
 }
\ No newline at end of file
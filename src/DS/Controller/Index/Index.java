@@ -1,5 +1,6 @@
 package DS.Controller.Index;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -11,6 +12,8 @@ import DS.Controller.Controller;
 import DS.Controller.Index.State.OperationState;
 import DS.Controller.Index.State.RebalanceState;
 import DS.Protocol.Exception.*;
+import DS.Protocol.Token.TokenType.FileChange;
+import DS.Protocol.Token.TokenType.ListDeltaToken;
 import Network.Connection;
 import Network.Client.Client.ClientType;
 import Network.Protocol.Event.ServerConnectionEvent;
@@ -34,6 +37,7 @@ public class Index {
     private volatile CopyOnWriteArrayList<DstoreIndex> dstores;
     private volatile int minDstores;
     private volatile ConcurrentHashMap<Connection, ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>>> loadRecord;
+    private volatile ConcurrentHashMap<String, ChunkMap> chunkMaps; // object name -> chunks, for large objects
 
     /**
      * Class constructor.
@@ -46,6 +50,7 @@ public class Index {
         this.minDstores = controller.getMinDstores();
         this.dstores = new CopyOnWriteArrayList<DstoreIndex>();
         this.loadRecord = new ConcurrentHashMap<Connection, ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>>>();
+        this.chunkMaps = new ConcurrentHashMap<String, ChunkMap>();
     }
 
 
@@ -110,7 +115,7 @@ public class Index {
      * @return ArrayList 存储在系统中的所有文件。
      * @throws NotEnoughDstoresException 在连接的 Dstores 不够的情况下。
      */
-    public HashMap<String, Integer> getFileList() throws Exception{
+    public HashMap<String, Long> getFileList() throws Exception{
         // ERROR CHECKING //
 
         // not enough dstores
@@ -120,13 +125,18 @@ public class Index {
 
         // CHECKS COMPLETE //
 
-        // getting map of file names and sizes
-        HashMap<String, Integer> files = new HashMap<String, Integer>();
+        // getting map of file names and sizes (large objects listed whole rather than by chunk)
+        HashMap<String, Long> files = new HashMap<String, Long>();
         for(DstoreIndex dstore : this.dstores){
             for(DstoreFile file : dstore.getFiles()){
-                files.put(file.getFilename(), file.getFilesize());
+                if(!ChunkMap.isChunk(file.getFilename())){
+                    files.put(file.getFilename(), file.getFilesize());
+                }
             }
         }
+        for(ChunkMap chunkMap : this.chunkMaps.values()){
+            files.put(chunkMap.getFilename(), chunkMap.getFilesize());
+        }
 
         // returning map
         return files;
@@ -147,7 +157,7 @@ public class Index {
 //* @throws NotEnoughDstoresException 如果没有足够的 Dstores 连接到控制器来处理请求。
 //* @throws FileAlreadyExists 如果正在存储的文件已存在于索引中。
 //     */
-    public synchronized ArrayList<Integer> startStoring(String filename, int filesize) throws Exception{
+    public synchronized ArrayList<Integer> startStoring(String filename, long filesize) throws Exception{
         // ERROR CHECKING //
 
         // not enough dstores
@@ -156,7 +166,7 @@ public class Index {
         }
 
         // file already exists
-        if(this.hasFile(filename)){
+        if(this.hasFile(filename) || this.chunkMaps.containsKey(filename)){
             throw new FileAlreadyExistsException(filename);
         }
 
@@ -175,6 +185,76 @@ public class Index {
         return dstoresToStoreOn;
     }
 
+    /**
+     * Starts adding a large object to the system, split into chunks that are each placed on their
+     * own R Dstores.
+     *
+     * @param filename The name of the object.
+     * @param filesize The size of the object in bytes.
+     * @param chunkSize The size of each chunk (the last may be smaller).
+     * @return The chunk map of the object, with the ports of the Dstores each chunk is to be
+     * stored on, in chunk order.
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to the
+     * controller to handle the request.
+     * @throws FileAlreadyExistsException If the object already exists in the index.
+     */
+    public synchronized ArrayList<ArrayList<Integer>> startStoringChunks(String filename, long filesize, int chunkSize) throws Exception{
+        // ERROR CHECKING //
+
+        // not enough dstores
+        if(!this.hasEnoughDstores()){
+            throw new NotEnoughDstoresException();
+        }
+
+        // file already exists
+        if(this.hasFile(filename) || this.chunkMaps.containsKey(filename)){
+            throw new FileAlreadyExistsException(filename);
+        }
+
+        // ADDING CHUNKS //
+
+        // placing each chunk in turn (on the Dstores holding the fewest files at the time)
+        ChunkMap chunkMap = new ChunkMap(filename, filesize, chunkSize);
+        ArrayList<ArrayList<Integer>> dstoresToStoreOn = new ArrayList<ArrayList<Integer>>();
+        for(int chunk = 0; chunk < chunkMap.getNumberOfChunks(); chunk++){
+            ArrayList<Integer> chunkDstores = this.getDstoresToStoreOn(this.controller.getMinDstores());
+            for(Integer port : chunkDstores){
+                this.getIndexFromPort(port).addFile(chunkMap.getChunkName(chunk), chunkMap.getChunkFilesize(chunk));
+            }
+            dstoresToStoreOn.add(chunkDstores);
+        }
+        this.chunkMaps.put(filename, chunkMap);
+
+        return dstoresToStoreOn;
+    }
+
+    /**
+     * Abandons storing a large object whose chunks were not all stored in time. The chunks are
+     * dropped from the index, along with the object.
+     *
+     * @param filename The name of the object.
+     * @return The Dstores that hold (or may still receive) each chunk, so the chunks can be
+     * removed from them.
+     */
+    public synchronized HashMap<String, ArrayList<Connection>> abandonStoringChunks(String filename){
+        HashMap<String, ArrayList<Connection>> chunkDstores = new HashMap<String, ArrayList<Connection>>();
+        ChunkMap chunkMap = this.chunkMaps.remove(filename);
+        if(chunkMap == null){
+            return chunkDstores;
+        }
+
+        for(String chunkName : chunkMap.getChunkNames()){
+            ArrayList<Connection> connections = new ArrayList<Connection>();
+            for(DstoreIndex dstore : this.getDstoresStoredOn(chunkName)){
+                dstore.removeFile(chunkName);
+                connections.add(dstore.getConnection());
+            }
+            chunkDstores.put(chunkName, connections);
+        }
+
+        return chunkDstores;
+    }
+
     /**
      * 根据从给定 Dstore 接收的STORE_ACK更新索引。
      *
@@ -288,7 +368,7 @@ public class Index {
 //     * @return 搜索文件的大小（以字节为单位）。
 //     * @throws 例外：如果文件未存储在索引中。
 //     */
-    public synchronized int getFileSize(String filename) throws Exception{
+    public synchronized long getFileSize(String filename) throws Exception{
         // file exists
         if(this.hasFile(filename)){
             // gathering a dstore the file is stored on
@@ -304,6 +384,59 @@ public class Index {
     }
 
 
+    /**
+     * Gathers every Dstore a file can be loaded from, so it can be loaded from all of them at once.
+     *
+     * @param filename The name of the file.
+     * @return The ports of the Dstores holding the file.
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to the
+     * controller to handle the request.
+     * @throws FileDoesNotExistException If there is no file with this name in the index.
+     */
+    public synchronized ArrayList<Integer> getDstoresToLoadFrom(String filename) throws Exception{
+        // not enough dstores
+        if(!this.hasEnoughDstores()){
+            throw new NotEnoughDstoresException();
+        }
+
+        // file does not exist
+        if((!this.hasFile(filename) || !this.fileHasState(filename, OperationState.IDLE))){
+            throw new FileDoesNotExistException(filename);
+        }
+
+        ArrayList<Integer> ports = new ArrayList<Integer>();
+        for(DstoreIndex dstore : this.getDstoresStoredOn(filename)){
+            ports.add(dstore.getPort());
+        }
+
+        return ports;
+    }
+
+    /**
+     * Gathers the chunk map of a large object that is stored and idle, so it can be loaded.
+     *
+     * @param filename The name of the object.
+     * @return The chunk map of the object.
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to the
+     * controller to handle the request.
+     * @throws FileDoesNotExistException If the object is not stored in the index, or any of its
+     * chunks is missing or busy.
+     */
+    public synchronized ChunkMap getChunkMapToLoad(String filename) throws Exception{
+        // not enough dstores
+        if(!this.hasEnoughDstores()){
+            throw new NotEnoughDstoresException();
+        }
+
+        // object (or one of its chunks) does not exist
+        ChunkMap chunkMap = this.chunkMaps.get(filename);
+        if(chunkMap == null || !this.objectHasState(chunkMap, OperationState.IDLE)){
+            throw new FileDoesNotExistException(filename);
+        }
+
+        return chunkMap;
+    }
+
     ////////////////////
     // REMOVING FILES //
     ////////////////////
@@ -347,6 +480,59 @@ public class Index {
         return connections;
     }
 
+    /**
+     * Starts removing a large object from the system, along with every chunk of it.
+     *
+     * @param filename The name of the object.
+     * @return The Dstores each chunk is to be removed from.
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to the
+     * controller to handle the request.
+     * @throws FileDoesNotExistException If the object is not stored in the index, or any of its
+     * chunks is busy.
+     */
+    public synchronized HashMap<String, ArrayList<Connection>> startRemovingChunks(String filename) throws Exception{
+        // ERROR CHECKING //
+
+        // not enough dstores
+        if(!this.hasEnoughDstores()){
+            throw new NotEnoughDstoresException();
+        }
+
+        // object does not exist (chunks that are already missing are simply not removed)
+        ChunkMap chunkMap = this.chunkMaps.get(filename);
+        if(chunkMap == null){
+            throw new FileDoesNotExistException(filename);
+        }
+        for(String chunkName : chunkMap.getChunkNames()){
+            if(!this.fileHasState(chunkName, OperationState.IDLE)){
+                throw new FileDoesNotExistException(filename);
+            }
+        }
+
+        // CHECKS COMPLETE //
+
+        HashMap<String, ArrayList<Connection>> chunkDstores = new HashMap<String, ArrayList<Connection>>();
+        for(String chunkName : chunkMap.getChunkNames()){
+            ArrayList<Connection> connections = new ArrayList<Connection>();
+            for(DstoreIndex dstore : this.getDstoresStoredOn(chunkName)){
+                dstore.updateFileState(chunkName, OperationState.REMOVE_IN_PROGRESS);
+                connections.add(dstore.getConnection());
+            }
+            chunkDstores.put(chunkName, connections);
+        }
+
+        return chunkDstores;
+    }
+
+    /**
+     * Drops a large object from the index once all of its chunks have been removed.
+     *
+     * @param filename The name of the object.
+     */
+    public synchronized void chunksRemoved(String filename){
+        this.chunkMaps.remove(filename);
+    }
+
     /**
      * 收到REMOVE_ACK后更新索引。
      *
@@ -358,6 +544,20 @@ public class Index {
         this.getIndexFromConnection(dstore).updateFileState(filename, OperationState.REMOVE_ACK_RECIEVED);
     }
 
+    /**
+     * Updates the index after a Dstore reports that its copy of a file is corrupt (and has been
+     * removed), so that the copy is no longer loaded from.
+     *
+     * @param dstore The connection of the Dstore the report was received from.
+     * @param filename The name of the corrupt file.
+     */
+    public synchronized void corruptFileReported(Connection dstore, String filename){
+        DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+        if(dstoreIndex != null){
+            dstoreIndex.removeFile(filename);
+        }
+    }
+
     //////////////////////////
     // OPERATION COMPLETION //
     //////////////////////////
@@ -453,6 +653,54 @@ public class Index {
     /////////////////
 
 
+    /**
+     * Starts probing the Dstores for changes to their files ahead of a periodic rebalance.
+     *
+     * Unlike starting a rebalance, the Controller request handler is left enabled, as the probe
+     * only compares what the Dstores report against the index.
+     *
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to rebalance
+     * the system.
+     * @throws RebalanceAlreadyInProgressException If there is already a rebalance in progress.
+     */
+    public synchronized void startRebalanceProbe() throws NetworkException{
+        // ERROR CHECKING //
+
+        // not enough dstores
+        if(!this.hasEnoughDstores()){
+            throw new NotEnoughDstoresException();
+        }
+
+        // rebalance already in progress
+        if(this.rebalanceInProgress()){
+            throw new RebalanceAlreadyInProgressException();
+        }
+
+        // CHECKS COMPLETE //
+
+        // updating the state of all Dstores in the index
+        for(DstoreIndex dstore : this.dstores){
+            dstore.setUnseenChanges(false);
+            dstore.setRebalanceState(RebalanceState.REBALANCE_PROBE_IN_PROGRESS);
+        }
+    }
+
+    /**
+     * Determines if any Dstore reported changes in the last probe that are not reflected in the
+     * index.
+     *
+     * @return True if there are unseen changes, false if not.
+     */
+    public synchronized boolean hasUnseenChanges(){
+        for(DstoreIndex dstore : this.dstores){
+            if(dstore.hasUnseenChanges()){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * 启动系统重新平衡。
      *
@@ -501,7 +749,7 @@ public class Index {
      * @param files 映射到其文件大小的文件名列表（文件
      * 存储在此 Dstore 上）。
      */
-    public synchronized void rebalanceListRecieved(Connection dstore, HashMap<String, Integer> files){
+    public synchronized void rebalanceListRecieved(Connection dstore, HashMap<String, Long> files){
         // updating the dstore index state
         this.getIndexFromConnection(dstore).setRebalanceState(RebalanceState.REBALANCE_LIST_RECIEVED);
 
@@ -509,6 +757,64 @@ public class Index {
         this.getIndexFromConnection(dstore).setFiles(files);
     }
 
+    /**
+     * Updates the index after receiving a LIST_DELTA from a Dstore.
+     *
+     * During a probe the changes are only compared against the index. During a rebalance they
+     * are applied to the index.
+     *
+     * The changes are read from the Dstore's connection one at a time as they are handled, so
+     * the index is not locked while they are being read. Only the Dstore's own index is updated,
+     * which is safe to modify concurrently.
+     *
+     * @param dstore The connection of the Dstore the LIST_DELTA was received from.
+     * @param delta The changes reported by the Dstore.
+     * @throws IOException If the changes could not be read from the Dstore.
+     */
+    public void listDeltaRecieved(Connection dstore, ListDeltaToken delta) throws IOException{
+        DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+        // PROBE
+        if(dstoreIndex.getRebalanceState() == RebalanceState.REBALANCE_PROBE_IN_PROGRESS){
+            // a full listing must also not be missing any files in the index
+            boolean unseenChanges = delta.full && delta.numberOfChanges != dstoreIndex.getFiles().size();
+
+            FileChange change;
+            while((change = delta.nextChange()) != null){
+                if(!dstoreIndex.reflectsChange(change)){
+                    unseenChanges = true;
+                }
+            }
+            dstoreIndex.setUnseenChanges(unseenChanges);
+
+            // nothing new - the index is up to date with this version
+            if(!unseenChanges){
+                dstoreIndex.setListVersion(delta.version);
+            }
+
+            // updating the dstore index state
+            dstoreIndex.setRebalanceState(RebalanceState.REBALANCE_PROBE_RECIEVED);
+        }
+
+        // REBALANCE LIST
+        else if(dstoreIndex.getRebalanceState() == RebalanceState.REBALANCE_LIST_IN_PROGRESS){
+            // a full listing replaces the DstoreIndex's files
+            if(delta.full){
+                dstoreIndex.clearFiles();
+            }
+
+            // updating the DstoreIndex for this Dstore
+            FileChange change;
+            while((change = delta.nextChange()) != null){
+                dstoreIndex.applyChange(change);
+            }
+            dstoreIndex.setListVersion(delta.version);
+
+            // updating the dstore index state
+            dstoreIndex.setRebalanceState(RebalanceState.REBALANCE_LIST_RECIEVED);
+        }
+    }
+
     /**
      * 开始系统重新平衡的移动阶段。更新索引
      * REBALANCE_MOVE_IN_PROGRESS。
@@ -520,6 +826,32 @@ public class Index {
         }
     }
 
+    /**
+     * Updates the index after a Dstore acknowledges storing a file sent to it during a rebalance.
+     *
+     * @param dstore The connection of the Dstore the acknowledgement was received from.
+     * @param filename The name of the file stored.
+     * @param filesize The size of the file stored in bytes.
+     */
+    public synchronized void rebalanceStoreAckRecieved(Connection dstore, String filename, long filesize){
+        DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+        // replacing any previous record of the file
+        dstoreIndex.removeFile(filename);
+        dstoreIndex.addFile(filename, filesize);
+        dstoreIndex.updateFileState(filename, OperationState.IDLE);
+    }
+
+    /**
+     * Updates the index after a Dstore acknowledges removing a file during a rebalance.
+     *
+     * @param dstore The connection of the Dstore the acknowledgement was received from.
+     * @param filename The name of the file removed.
+     */
+    public synchronized void rebalanceRemoveAckRecieved(Connection dstore, String filename){
+        this.getIndexFromConnection(dstore).removeFile(filename);
+    }
+
     /**
      * 在从 Dstore 收到REBALANCE_COMPLETE消息后更新索引。
      *
@@ -565,6 +897,9 @@ public class Index {
      * 处理系统重新平衡的完成。
      */
     private synchronized void handleRebalanceComplete(){
+        // picking up large objects from the files the Dstores listed
+        this.rebuildChunkMaps();
+
         // enabling controller request handler
         this.controller.getRequestHandler().enable();
 
@@ -582,6 +917,9 @@ public class Index {
      * 在超时范围内。
      */
     private void handleRebalanceTimeout(RebalanceState expectedRebalancetate){
+        // picking up large objects from the files the Dstores listed
+        this.rebuildChunkMaps();
+
         // enabling controller request handler
         this.controller.getRequestHandler().enable();
 
@@ -592,6 +930,50 @@ public class Index {
     }
 
 
+    /**
+     * Brings the chunk maps in line with the chunks held by the Dstores. Objects whose chunks are
+     * all gone are dropped, and objects the index does not know of (the Controller has restarted)
+     * are added from the names and sizes of their chunks.
+     */
+    private synchronized void rebuildChunkMaps(){
+        // gathering the chunks of each object
+        HashMap<String, HashMap<Integer, Long>> objects = new HashMap<String, HashMap<Integer, Long>>();
+        HashMap<String, Integer> numberOfChunks = new HashMap<String, Integer>();
+        for(DstoreIndex dstore : this.dstores){
+            for(DstoreFile file : dstore.getFiles()){
+                String[] chunk = ChunkMap.parseChunkName(file.getFilename());
+                if(chunk != null){
+                    objects.computeIfAbsent(chunk[0], object -> new HashMap<Integer, Long>()).put(Integer.parseInt(chunk[1]), file.getFilesize());
+                    numberOfChunks.put(chunk[0], Integer.parseInt(chunk[2]));
+                }
+            }
+        }
+
+        // dropping objects with no chunks left
+        this.chunkMaps.keySet().retainAll(objects.keySet());
+
+        // adding objects not yet known
+        for(String filename : objects.keySet()){
+            if(this.chunkMaps.containsKey(filename)){
+                continue;
+            }
+
+            // every chunk but the last is a full chunk
+            HashMap<Integer, Long> chunks = objects.get(filename);
+            int lastChunk = numberOfChunks.get(filename) - 1;
+            long chunkSize = this.controller.getChunkSize();
+            for(HashMap.Entry<Integer, Long> chunk : chunks.entrySet()){
+                if(chunk.getKey() != lastChunk){
+                    chunkSize = chunk.getValue();
+                }
+            }
+            long lastChunkSize = chunks.containsKey(lastChunk) ? chunks.get(lastChunk) : chunkSize;
+            long filesize = lastChunk * chunkSize + lastChunkSize;
+
+            this.chunkMaps.put(filename, new ChunkMap(filename, filesize, (int) chunkSize));
+        }
+    }
+
     ////////////////////
     // HELPER METHODS //
     ////////////////////
@@ -651,6 +1033,23 @@ public class Index {
         return true;
     }
 
+    /**
+     * Determines if every chunk of a large object is stored and has the given state.
+     *
+     * @param chunkMap The chunk map of the object.
+     * @param state The state of the chunks.
+     * @return True if every chunk is stored with the state, false if not.
+     */
+    public synchronized boolean objectHasState(ChunkMap chunkMap, OperationState state){
+        for(String chunkName : chunkMap.getChunkNames()){
+            if(!this.hasFile(chunkName) || !this.fileHasState(chunkName, state)){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * 获取与提供的 Dstore 服务器端口关联的 DstoreIndex 对象。
      *
@@ -738,13 +1137,13 @@ public class Index {
      *
      * @return Dstore 到存储在其上的文件的映射。
      */
-    public HashMap<Integer, HashMap<String, Integer>> getFileDistribution(){
+    public HashMap<Integer, HashMap<String, Long>> getFileDistribution(){
         // 创建对象以保存文件分发
-        HashMap<Integer, HashMap<String,Integer>> fileDistribution = new HashMap<Integer, HashMap<String,Integer>>();
+        HashMap<Integer, HashMap<String,Long>> fileDistribution = new HashMap<Integer, HashMap<String,Long>>();
         
         // 遍历 dstore 和每个 dstore 文件到对象
         for(DstoreIndex dstore : this.dstores){
-            HashMap<String, Integer> files = new HashMap<String, Integer>();
+            HashMap<String, Long> files = new HashMap<String, Long>();
 
             for(DstoreFile file : dstore.getFiles()){
                 files.put(file.getFilename(), file.getFilesize());
@@ -762,7 +1161,7 @@ public class Index {
      *
      * @param fileDistribution 要设置到索引中的文件分布。
      */
-    public void setFileDistribution(HashMap<Integer, HashMap<String, Integer>> fileDistribution){
+    public void setFileDistribution(HashMap<Integer, HashMap<String, Long>> fileDistribution){
         // iterating through file distribution
         for(Integer dstore : fileDistribution.keySet()){
             // setting the file list into the index
@@ -855,6 +1254,16 @@ public class Index {
         return this.dstores;
     }
 
+    /**
+     * Returns the chunk map of a large object.
+     *
+     * @param filename The name of the object.
+     * @return The chunk map, or null if there is no large object with the name.
+     */
+    public ChunkMap getChunkMap(String filename){
+        return this.chunkMaps.get(filename);
+    }
+
     /**
      * 返回系统上所有 Dstores 的端口列表。
      *
@@ -40,6 +40,8 @@ public class State{
      */
     public enum RebalanceState{
         //states
+        REBALANCE_PROBE_IN_PROGRESS("Rebalance Probe In Progress"),
+        REBALANCE_PROBE_RECIEVED("Rebalance Probe Recieved"),
         REBALANCE_LIST_IN_PROGRESS("Rebalance List In Progess"),//Progess 中的再平衡列表
         REBALANCE_LIST_RECIEVED("Rebalance List Recieved"),//已收到的再平衡清单
         REBALANCE_MOVE_IN_PROGRESS("Rebalance Move In Progress"),//再平衡行动进行中
@@ -8,7 +8,7 @@ public class FileOnDstore{
     // member variables
     private Integer dstore;
     private String filename;
-    private int filesize;
+    private long filesize;
 
     /**
      * Class constructor.
@@ -17,7 +17,7 @@ public class FileOnDstore{
      * @param filename The name of the file.
      * @param filesize The size of the file in bytes.
      */
-    public FileOnDstore(Integer dstore, String filename, int filesize){
+    public FileOnDstore(Integer dstore, String filename, long filesize){
         // initializing
         this.dstore = dstore;
         this.filename = filename;
@@ -36,7 +36,7 @@ public class FileOnDstore{
         return this.filename;
     }
     
-    public int getFileSize(){
+    public long getFileSize(){
         return this.filesize;
     }
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 import DS.Protocol.Protocol;
 import DS.Protocol.Token.TokenType.FileToSend;
+import Network.MessageEncoder;
 
 /**
  * 存储在重新平衡期间发送/删除的文件。用于存储在重新平衡期间需要发送或删除的文件信息。
@@ -37,6 +38,16 @@ public class RebalanceInformation{
         return Protocol.getRebalanceMessage(this.getFilesToSend(), this.getFilesToRemove());
     }
 
+    /**
+     * Returns an encoder that writes the rebalance message for this rebalance information
+     * directly to a connection.
+     *
+     * @return The encoder for the rebalance message.
+     */
+    public MessageEncoder getRebalanceEncoder(){
+        return Protocol.getRebalanceEncoder(this.getFilesToSend(), this.getFilesToRemove());
+    }
+
     /////////////////////////
     // GETTERS AND SETTERS //
     /////////////////////////
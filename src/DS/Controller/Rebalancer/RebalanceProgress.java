@@ -0,0 +1,158 @@
+package DS.Controller.Rebalancer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import DS.Protocol.Token.TokenType.FileToSend;
+
+/**
+ * Tracks the moves of a rebalance that have not yet been acknowledged by the Dstores.
+ *
+ * Dstores acknowledge each file stored (REBALANCE_STORE_ACK) and removed (REBALANCE_REMOVE_ACK)
+ * during a rebalance. Each acknowledgement removes the move from the remaining work, so that if
+ * the rebalance times out the next rebalance can resume from what is left instead of planning
+ * (and copying) everything again.
+ */
+public class RebalanceProgress{
+
+    // member variables
+    private HashMap<Integer, RebalanceInformation> remaining;
+
+    /**
+     * Class constructor.
+     *
+     * @param rebalanceInformation The moves of the rebalance being tracked.
+     */
+    public RebalanceProgress(HashMap<Integer, RebalanceInformation> rebalanceInformation){
+        // initializing (copying so the moves can be ticked off)
+        this.remaining = new HashMap<Integer, RebalanceInformation>();
+        for(Integer dstore : rebalanceInformation.keySet()){
+            RebalanceInformation information = new RebalanceInformation();
+
+            for(FileToSend fileToSend : rebalanceInformation.get(dstore).getFilesToSend()){
+                information.getFilesToSend().add(new FileToSend(fileToSend.filename, fileToSend.filesize, new ArrayList<Integer>(fileToSend.dStores)));
+            }
+            information.getFilesToRemove().addAll(rebalanceInformation.get(dstore).getFilesToRemove());
+
+            this.remaining.put(dstore, information);
+        }
+    }
+
+    ////////////////////////////
+    // ACKNOWLEDGING PROGRESS //
+    ////////////////////////////
+
+    /**
+     * Records a file having been stored on a Dstore during the rebalance.
+     *
+     * @param dstore The Dstore the file was stored on.
+     * @param filename The name of the file stored.
+     */
+    public synchronized void storeCompleted(int dstore, String filename){
+        for(RebalanceInformation information : this.remaining.values()){
+            for(FileToSend fileToSend : information.getFilesToSend()){
+                if(fileToSend.filename.equals(filename)){
+                    fileToSend.dStores.remove(Integer.valueOf(dstore));
+                }
+            }
+
+            // dropping files that have reached all of their Dstores
+            information.getFilesToSend().removeIf(fileToSend -> fileToSend.dStores.isEmpty());
+        }
+    }
+
+    /**
+     * Records a file having been removed from a Dstore during the rebalance.
+     *
+     * @param dstore The Dstore the file was removed from.
+     * @param filename The name of the file removed.
+     */
+    public synchronized void removeCompleted(int dstore, String filename){
+        RebalanceInformation information = this.remaining.get(dstore);
+
+        if(information != null){
+            information.getFilesToRemove().remove(filename);
+        }
+    }
+
+    ///////////////////////
+    // RESUMING PROGRESS //
+    ///////////////////////
+
+    /**
+     * Creates a RebalancedSystem for the remaining moves that still apply to the given system.
+     *
+     * Moves are dropped if a Dstore involved is no longer in the system, the sending Dstore no
+     * longer has the file, the receiving Dstore already has it, or the file to remove is
+     * already gone.
+     *
+     * @param system The current state of the system.
+     * @return The RebalancedSystem carrying out the remaining moves.
+     */
+    public synchronized RebalancedSystem getRemainingRebalance(System system){
+        // creating the rebalance information objects
+        HashMap<Integer, RebalanceInformation> rebalanceInformation = new HashMap<Integer, RebalanceInformation>();
+        for(Integer dstore : system.getDstores()){
+            rebalanceInformation.put(dstore, new RebalanceInformation());
+        }
+        RebalancedSystem rebalancedSystem = new RebalancedSystem(system, rebalanceInformation);
+
+        // files currently on each Dstore (the system is updated as moves are added)
+        HashMap<Integer, HashSet<String>> current = new HashMap<Integer, HashSet<String>>();
+        for(Integer dstore : system.getDstores()){
+            current.put(dstore, new HashSet<String>(system.getFilesOnDstore(dstore).keySet()));
+        }
+
+        for(Integer dstore : this.remaining.keySet()){
+            // Dstore no longer in the system
+            if(!current.containsKey(dstore)){
+                continue;
+            }
+
+            // files to send
+            for(FileToSend fileToSend : this.remaining.get(dstore).getFilesToSend()){
+                if(!current.get(dstore).contains(fileToSend.filename)){
+                    continue;
+                }
+
+                ArrayList<Integer> dstoresToSendTo = new ArrayList<Integer>();
+                for(Integer dstoreToSendTo : fileToSend.dStores){
+                    if(current.containsKey(dstoreToSendTo) && !current.get(dstoreToSendTo).contains(fileToSend.filename)){
+                        dstoresToSendTo.add(dstoreToSendTo);
+                    }
+                }
+
+                if(!dstoresToSendTo.isEmpty()){
+                    rebalancedSystem.addFileToSend(dstore, new FileToSend(fileToSend.filename, fileToSend.filesize, dstoresToSendTo));
+                }
+            }
+
+            // files to remove
+            for(String fileToRemove : this.remaining.get(dstore).getFilesToRemove()){
+                if(current.get(dstore).contains(fileToRemove)){
+                    rebalancedSystem.addFileToRemove(dstore, fileToRemove);
+                }
+            }
+        }
+
+        return rebalancedSystem;
+    }
+
+    /**
+     * Returns the number of moves not yet acknowledged.
+     *
+     * @return The number of transfers and removals remaining.
+     */
+    public synchronized int getRemainingMoves(){
+        int moves = 0;
+        for(RebalanceInformation information : this.remaining.values()){
+            for(FileToSend fileToSend : information.getFilesToSend()){
+                moves += fileToSend.dStores.size();
+            }
+            moves += information.getFilesToRemove().size();
+        }
+
+        return moves;
+    }
+}
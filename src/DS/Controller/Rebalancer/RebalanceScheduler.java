@@ -0,0 +1,214 @@
+package DS.Controller.Rebalancer;
+
+import DS.Controller.Controller;
+import DS.Protocol.Event.Rebalance.RebalanceRetryScheduledEvent;
+import DS.Protocol.Exception.NotEnoughDstoresException;
+import DS.Protocol.Exception.RebalanceFailureException;
+
+/**
+ * Debounces and coalesces rebalance triggers so that only one rebalance runs at a time.
+ *
+ * Dstores joining, Dstores leaving and the periodic rebalance timer all request a rebalance
+ * through the scheduler instead of running one directly. A request marks a rebalance as
+ * pending; the rebalance is only started once no new request has arrived for the rebalance
+ * window (or once the first pending request has waited for the maximum delay), so that a burst
+ * of Dstores joining or leaving together results in a single rebalance against the final
+ * membership of the system.
+ *
+ * If a rebalance fails it is rescheduled with an exponential backoff, capped at the rebalance
+ * period.
+ *
+ * A rebalance requested only by the periodic timer is run as a periodic rebalance, which is
+ * skipped if no Dstore reports any changes. Any other request makes the pending rebalance a full
+ * one.
+ */
+public class RebalanceScheduler extends Thread{
+
+    // constants
+    private static final int MAX_DELAY_WINDOWS = 10; // max delay as a multiple of the window
+    private static final long MIN_BACKOFF = 500; // smallest delay before retrying a failed rebalance
+
+    // member variables
+    private Controller controller;
+    private long window;
+    private long maxDelay;
+    private long maxBackoff;
+    private boolean pending;
+    private boolean full; // pending rebalance was requested other than periodically
+    private long firstRequestTime;
+    private long lastRequestTime;
+    private long backoff;
+    private long backoffUntil;
+
+    /**
+     * Class constructor.
+     *
+     * @param controller The Controller whose rebalances are being scheduled.
+     * @param window The length of time (ms) with no new requests before a pending rebalance is started.
+     */
+    public RebalanceScheduler(Controller controller, long window){
+        // initializing
+        this.controller = controller;
+        this.window = window;
+        this.maxDelay = window * MAX_DELAY_WINDOWS;
+        this.maxBackoff = Math.max(MIN_BACKOFF, controller.getRebalancePeriod());
+        this.pending = false;
+        this.full = false;
+        this.backoff = 0;
+        this.backoffUntil = 0;
+    }
+
+    /**
+     * Method run when the thread is started. Runs pending rebalances once they are due.
+     */
+    public void run(){
+        while(this.controller.isActive()){
+            try{
+                // waiting for a rebalance to become due
+                boolean full = this.waitUntilDue();
+
+                // carrying out the rebalance
+                this.runRebalance(full);
+            }
+            catch(InterruptedException e){
+                return;
+            }
+        }
+    }
+
+    //////////////////////////
+    // REQUESTING REBALANCE //
+    //////////////////////////
+
+    /**
+     * Requests a rebalance of the system. The request is coalesced with any other requests made
+     * within the rebalance window.
+     */
+    public synchronized void requestRebalance(){
+        this.full = true;
+        this.request();
+    }
+
+    /**
+     * Requests a periodic rebalance of the system. Unless coalesced with a full rebalance
+     * request, the rebalance is skipped if no Dstore reports any changes.
+     */
+    public synchronized void requestPeriodicRebalance(){
+        this.request();
+    }
+
+    /**
+     * Marks a rebalance as pending and pushes back its start.
+     */
+    private void request(){
+        long now = java.lang.System.currentTimeMillis();
+
+        // first request since the last rebalance
+        if(!this.pending){
+            this.pending = true;
+            this.firstRequestTime = now;
+        }
+
+        // pushing the start of the rebalance back
+        this.lastRequestTime = now;
+
+        this.notifyAll();
+    }
+
+    ///////////////////////////
+    // RUNNING THE REBALANCE //
+    ///////////////////////////
+
+    /**
+     * Blocks until there is a pending rebalance that is due to be started.
+     *
+     * A pending rebalance is due once the window has passed since the last request (or the maximum
+     * delay has passed since the first request), and any failure backoff has expired.
+     *
+     * @return True if the rebalance is a full rebalance, false if it is periodic.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    private synchronized boolean waitUntilDue() throws InterruptedException{
+        while(true){
+            if(!this.pending){
+                this.wait();
+                continue;
+            }
+
+            long now = java.lang.System.currentTimeMillis();
+            long dueTime = Math.min(this.lastRequestTime + this.window, this.firstRequestTime + this.maxDelay);
+            dueTime = Math.max(dueTime, this.backoffUntil);
+
+            if(now >= dueTime){
+                // rebalance is due - all requests so far are served by this rebalance
+                boolean full = this.full;
+                this.pending = false;
+                this.full = false;
+                return full;
+            }
+
+            this.wait(dueTime - now);
+        }
+    }
+
+    /**
+     * Carries out a rebalance, rescheduling it with a backoff if it fails.
+     *
+     * @param full Whether to carry out a full rebalance rather than a periodic one.
+     */
+    private void runRebalance(boolean full){
+        try{
+            this.controller.getRebalancer().rebalance(!full);
+
+            // rebalance succeeded - resetting the backoff
+            synchronized(this){
+                this.backoff = 0;
+                this.backoffUntil = 0;
+            }
+        }
+        catch(Exception e){
+            // handling failure through controller
+            this.controller.handleError(new RebalanceFailureException(e));
+
+            // nothing to retry until the membership changes
+            if(e instanceof NotEnoughDstoresException){
+                return;
+            }
+
+            // rescheduling with backoff
+            this.scheduleRetry();
+        }
+    }
+
+    /**
+     * Reschedules a failed rebalance after an exponentially increasing backoff.
+     */
+    private synchronized void scheduleRetry(){
+        this.backoff = (this.backoff == 0) ? Math.max(MIN_BACKOFF, this.window) : Math.min(this.backoff * 2, this.maxBackoff);
+        long now = java.lang.System.currentTimeMillis();
+        this.backoffUntil = now + this.backoff;
+        this.full = true; // retries always gather the files again
+
+        // a newer request may already be pending - it keeps its own timing
+        if(!this.pending){
+            this.pending = true;
+            this.firstRequestTime = now;
+            this.lastRequestTime = now;
+        }
+
+        // logging
+        this.controller.handleEvent(new RebalanceRetryScheduledEvent(this.backoff));
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getWindow(){
+        return this.window;
+    }
+
+    public synchronized boolean isPending(){
+        return this.pending;
+    }
+}
@@ -2,6 +2,7 @@ package DS.Controller.Rebalancer;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 
@@ -14,10 +15,14 @@ import DS.Protocol.Exception.RebalanceAlreadyInProgressException;
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Rebalance.RebalanceCompleteEvent;
 import DS.Protocol.Event.Rebalance.RebalanceFileListGatheredEvent;
+import DS.Protocol.Event.Rebalance.RebalanceNoChangesEvent;
 import DS.Protocol.Event.Rebalance.RebalanceNotRequiredEvent;
+import DS.Protocol.Event.Rebalance.RebalanceResumedEvent;
 import DS.Protocol.Event.Rebalance.RebalanceStartedEvent;
+import DS.Protocol.Event.Rebalance.ReplicationCompleteEvent;
 import DS.Protocol.Exception.RebalanceFailureException;
 import DS.Protocol.Token.TokenType.FileToSend;
+import Network.MessageEncoder;
 import Network.Protocol.Exception.MessageSendException;
 import Network.Protocol.Exception.NetworkException;
 
@@ -28,6 +33,8 @@ public class Rebalancer extends Thread{
     
     // member variables
     private Controller controller;
+    private long redundancyLostTime; // time a Dstore was lost with redundancy not yet restored
+    private volatile RebalanceProgress progress; // moves of the last rebalance not yet acknowledged
     /**
      * 类构造函数。
      *
@@ -36,6 +43,8 @@ public class Rebalancer extends Thread{
     public Rebalancer(Controller controller){
         // initializing
         this.controller = controller;
+        this.redundancyLostTime = 0;
+        this.progress = null;
     }
 
     /**
@@ -52,6 +61,9 @@ public class Rebalancer extends Thread{
 
     /**
      * 持续等待“再平衡期”过去，然后再重新平衡系统。持续等待重新平衡周期结束，然后执行重新平衡。
+     *
+     * The rebalance is requested through the RebalanceScheduler so that it is coalesced with
+     * rebalances triggered by Dstores joining and leaving.
      */
     private void waitForRebalance(){
         while(controller.isActive()){
@@ -60,7 +72,7 @@ public class Rebalancer extends Thread{
                 Thread.sleep(this.controller.getRebalancePeriod());
 
                 // 再平衡系统
-                this.rebalance();
+                this.controller.getRebalanceScheduler().requestPeriodicRebalance();
             }
             catch(Exception e){
                 // handling failure through controller
@@ -82,6 +94,30 @@ public class Rebalancer extends Thread{
      * @throws MessageSendException：如果无法通过连接通道发送消息
      */
     public void rebalance() throws NetworkException{
+        this.rebalance(false);
+    }
+
+    /**
+     * Rebalances the system.
+     *
+     * A periodic rebalance first probes the Dstores for changes since the versions last
+     * gathered. If no Dstore reports a change the index does not already reflect, and the index
+     * is balanced, the rebalance is skipped entirely without disabling the request handler.
+     *
+     * @param periodic Whether the rebalance was requested by the rebalance period only.
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to the system.
+     * @throws RebalanceAlreadyInProgressException If there is already a rebalance in progress.
+     * @throws NetworkTimeoutException If the Dstores do not respond within the timeout.
+     * @throws MessageSendException If a message could not be sent through a connection.
+     */
+    public void rebalance(boolean periodic) throws NetworkException{
+
+        // checking for changes before a periodic rebalance
+        if(periodic && this.progress == null && !this.hasChanges()){
+            // event for rebalance not being required
+            this.controller.handleEvent(new RebalanceNoChangesEvent());
+            return;
+        }
 
         // 重新平衡开始的事件
         this.controller.handleEvent(new RebalanceStartedEvent());
@@ -91,9 +127,9 @@ public class Rebalancer extends Thread{
         //开始重新平衡列表，* 禁用控制器请求处理程序，等待系统变为 IDLE 并将索引更新为 REBALANCE_LIST_IN_PROGRESS。
         this.controller.getIndex().startRebalanceList();
 
-        // 向 dstores 发送 LIST 请求
+        // 向 dstores 发送 LIST 请求 (only the changes since the last version gathered)
         for(DstoreIndex dstore : this.controller.getIndex().getDstores()){
-            dstore.getConnection().sendMessage(Protocol.getListMessage());
+            dstore.getConnection().sendMessage(Protocol.getListSinceMessage(dstore.getListVersion()));
         }
 
         // 等待所有 Dstores 响应
@@ -105,45 +141,238 @@ public class Rebalancer extends Thread{
         // 收集的文件列表的事件
         this.controller.handleEvent(new RebalanceFileListGatheredEvent());
 
-        // 检查系统是否平衡
+        // RESUMING //
 
-        if(!system.isBalanced()){
+        // moves left over from a rebalance that did not complete are carried out first
+        if(this.progress != null){
+            this.resume(system);
 
-            // REBALANCING //
+            // gathering the system after resuming
+            system = new System(this.controller.getMinDstores(), this.controller.getIndex().getFileDistribution());
+        }
 
-            // 开始搬家过程， * 开始系统重新平衡的移动阶段。更新索引
-            //     * REBALANCE_MOVE_IN_PROGRESS。
-            this.controller.getIndex().startRebalanceMove();
+        // RE-REPLICATION //
 
-            //计算调整
-            RebalancedSystem rebalancedSystem = Rebalancer.getRebalancedSystem(system);
+        // under-replicated files are restored before any evenness moves are made
+        boolean replicated = false;
+        if(!system.filesStoredMinTimes()){
+            this.reReplicate(system);
+            replicated = true;
 
-            // 发送再平衡消息
-            for(Integer dstore : rebalancedSystem.getRebalanceInformation().keySet()){
-                // 形成信息
-                String rebalanceMessage = rebalancedSystem.getRebalanceInformation().get(dstore).getRebalanceMessage();
+            // gathering the system after re-replication
+            system = new System(this.controller.getMinDstores(), this.controller.getIndex().getFileDistribution());
+        }
 
-                // 发送消息
-                this.controller.getIndex().getIndexFromPort(dstore).getConnection().sendMessage(rebalanceMessage);
-            }
+        // 检查系统是否平衡
+
+        if(!system.isBalanced()){
 
-            // 等待重新平衡完成响应
-            this.controller.getIndex().waitForRebalanceState(RebalanceState.REBALANCE_COMPLETE_RECIEVED, this.controller.getTimeout());
+            // REBALANCING //
 
-            // REBALANCE COMPLETE
+            //计算调整
+            RebalancedSystem rebalancedSystem = Rebalancer.getRebalancedSystem(system);
 
-            // 更新索引
-            this.controller.getIndex().setFileDistribution(rebalancedSystem.getSystem().getFileDistribution());
+            // carrying out the moves
+            this.carryOut(rebalancedSystem);
 
             //创建事件以显示重新平衡成功
             this.controller.handleEvent(new RebalanceCompleteEvent());
         }
+        else if(replicated){
+            //创建事件以显示重新平衡成功
+            this.controller.handleEvent(new RebalanceCompleteEvent());
+        }
         else{
             //不需要重新平衡的事件
             this.controller.handleEvent(new RebalanceNotRequiredEvent());
         }
     }
 
+    /**
+     * Re-replicates the files in the system that are not stored on the minimum number of
+     * Dstores, without making any moves to even out the files across Dstores.
+     *
+     * Reports the time taken to restore full redundancy once every file is stored on the
+     * minimum number of Dstores.
+     *
+     * @param system The system being re-replicated.
+     * @throws NetworkTimeoutException If the Dstores do not complete within the timeout.
+     * @throws MessageSendException If a message could not be sent through a connection.
+     */
+    private void reReplicate(System system) throws NetworkException{
+        // time redundancy was lost (or this round started if no Dstore was lost)
+        long startTime;
+        synchronized(this){
+            startTime = (this.redundancyLostTime != 0) ? this.redundancyLostTime : java.lang.System.currentTimeMillis();
+        }
+
+        // calculating the re-replication
+        RebalancedSystem replicatedSystem = Rebalancer.getReplicatedSystem(system);
+
+        // carrying out the re-replication
+        this.carryOut(replicatedSystem);
+
+        // checking redundancy has been restored
+        if(replicatedSystem.getSystem().filesStoredMinTimes()){
+            // gathering the work done
+            int numberOfFiles = 0;
+            long bytes = 0;
+            for(RebalanceInformation information : replicatedSystem.getRebalanceInformation().values()){
+                for(FileToSend fileToSend : information.getFilesToSend()){
+                    numberOfFiles++;
+                    bytes += fileToSend.filesize * fileToSend.dStores.size();
+                }
+            }
+
+            synchronized(this){
+                this.redundancyLostTime = 0;
+            }
+
+            // logging
+            this.controller.handleEvent(new ReplicationCompleteEvent(numberOfFiles, bytes, java.lang.System.currentTimeMillis() - startTime));
+        }
+    }
+
+    /**
+     * Resumes the moves of a previous rebalance that did not complete, skipping any that have
+     * already been carried out or no longer apply.
+     *
+     * @param system The system as gathered from the Dstores.
+     * @throws NetworkTimeoutException If the Dstores do not complete within the timeout.
+     * @throws MessageSendException If a message could not be sent through a connection.
+     */
+    private void resume(System system) throws NetworkException{
+        // gathering the remaining moves
+        RebalancedSystem remainingSystem = this.progress.getRemainingRebalance(system);
+
+        int remainingMoves = 0;
+        for(RebalanceInformation information : remainingSystem.getRebalanceInformation().values()){
+            for(FileToSend fileToSend : information.getFilesToSend()){
+                remainingMoves += fileToSend.dStores.size();
+            }
+            remainingMoves += information.getFilesToRemove().size();
+        }
+
+        // nothing left to do
+        if(remainingMoves == 0){
+            this.progress = null;
+            return;
+        }
+
+        // logging
+        this.controller.handleEvent(new RebalanceResumedEvent(remainingMoves));
+
+        // carrying out the remaining moves
+        this.carryOut(remainingSystem);
+    }
+
+    /**
+     * Carries out the moves of a rebalanced system - sends the REBALANCE messages to the Dstores,
+     * waits for them to complete and updates the index.
+     *
+     * The moves are tracked as they are acknowledged, so that if the Dstores do not complete in
+     * time the next rebalance can resume them.
+     *
+     * @param rebalancedSystem The rebalanced system being carried out.
+     * @throws NetworkTimeoutException If the Dstores do not complete within the timeout.
+     * @throws MessageSendException If a message could not be sent through a connection.
+     */
+    private void carryOut(RebalancedSystem rebalancedSystem) throws NetworkException{
+        // 开始搬家过程， * 开始系统重新平衡的移动阶段。更新索引
+        //     * REBALANCE_MOVE_IN_PROGRESS。
+        this.controller.getIndex().startRebalanceMove();
+
+        // tracking the moves
+        this.progress = new RebalanceProgress(rebalancedSystem.getRebalanceInformation());
+
+        // 发送再平衡消息
+        for(Integer dstore : rebalancedSystem.getRebalanceInformation().keySet()){
+            // 形成信息 (written straight to the connection)
+            MessageEncoder rebalanceMessage = rebalancedSystem.getRebalanceInformation().get(dstore).getRebalanceEncoder();
+
+            // 发送消息
+            this.controller.getIndex().getIndexFromPort(dstore).getConnection().sendMessage(rebalanceMessage);
+        }
+
+        // 等待重新平衡完成响应
+        this.controller.getIndex().waitForRebalanceState(RebalanceState.REBALANCE_COMPLETE_RECIEVED, this.controller.getTimeout());
+
+        // 更新索引
+        this.controller.getIndex().setFileDistribution(rebalancedSystem.getSystem().getFileDistribution());
+
+        // all moves complete
+        this.progress = null;
+    }
+
+    /**
+     * Records a file sent during a rebalance having been stored on a Dstore.
+     *
+     * @param dstore The Dstore the file was stored on.
+     * @param filename The name of the file stored.
+     */
+    public void storeAcknowledged(int dstore, String filename){
+        RebalanceProgress progress = this.progress;
+        if(progress != null){
+            progress.storeCompleted(dstore, filename);
+        }
+    }
+
+    /**
+     * Records a file having been removed from a Dstore during a rebalance.
+     *
+     * @param dstore The Dstore the file was removed from.
+     * @param filename The name of the file removed.
+     */
+    public void removeAcknowledged(int dstore, String filename){
+        RebalanceProgress progress = this.progress;
+        if(progress != null){
+            progress.removeCompleted(dstore, filename);
+        }
+    }
+
+    /**
+     * Records that a Dstore has been lost, so that the time taken to restore full redundancy
+     * can be reported. Only the first loss since redundancy was last full is recorded.
+     */
+    public synchronized void recordDstoreLoss(){
+        if(this.redundancyLostTime == 0){
+            this.redundancyLostTime = java.lang.System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Probes the Dstores for changes to their files since the versions last gathered.
+     *
+     * @return True if a Dstore reported changes not reflected in the index or the index is not
+     * balanced, false if a rebalance is not required.
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to the system.
+     * @throws RebalanceAlreadyInProgressException If there is already a rebalance in progress.
+     * @throws NetworkTimeoutException If the Dstores do not respond within the timeout.
+     * @throws MessageSendException If a message could not be sent through a connection.
+     */
+    private boolean hasChanges() throws NetworkException{
+        // starting the probe
+        this.controller.getIndex().startRebalanceProbe();
+
+        // sending LIST_SINCE requests to dstores
+        for(DstoreIndex dstore : this.controller.getIndex().getDstores()){
+            dstore.getConnection().sendMessage(Protocol.getListSinceMessage(dstore.getListVersion()));
+        }
+
+        // waiting for all Dstores to respond
+        this.controller.getIndex().waitForRebalanceState(RebalanceState.REBALANCE_PROBE_RECIEVED, this.controller.getTimeout());
+
+        // changes not yet in the index
+        if(this.controller.getIndex().hasUnseenChanges()){
+            return true;
+        }
+
+        // index is up to date - checking it is balanced
+        System system = new System(this.controller.getMinDstores(), this.controller.getIndex().getFileDistribution());
+
+        return !system.isBalanced();
+    }
+
     /////////////////////////////
     // CALCULATING ADJUSTMENTS //
     /////////////////////////////
@@ -184,6 +413,25 @@ public class Rebalancer extends Thread{
         return rebalancedSystem;
     }
 
+    /**
+     * Creates a RebalancedSystem object that only re-replicates the files in the system that
+     * are not stored on the minimum number of Dstores.
+     *
+     * @param system The system being re-replicated.
+     * @return A RebalancedSystem object containing the re-replicated file distribution and
+     * rebalance information.
+     */
+    private static RebalancedSystem getReplicatedSystem(System system){
+        // creating the rebalance information objects
+        HashMap<Integer, RebalanceInformation> rebalanceInformation = new HashMap<Integer, RebalanceInformation>();
+        for(Integer dstore : system.getDstores()){
+            rebalanceInformation.put(dstore, new RebalanceInformation());
+        }
+
+        // re-replicating
+        return Rebalancer.rebalanceForNotStoredMinTimes(new RebalancedSystem(system, rebalanceInformation));
+    }
+
 /**
      * 在一个或多个文件未存储 R 次的情况下重新平衡给定系统。
      *
@@ -198,18 +446,37 @@ public class Rebalancer extends Thread{
         // 收集未存储R 次的文件列表
         HashMap<String, Integer> filesNotStoredMinTimes = rebalancedSystem.getSystem().getFilesNotStoredMinTimes();
 
+        // files with the fewest replicas left go first, smaller files first within them, so
+        // that as many files as possible regain a replica as soon as possible
+        ArrayList<String> orderedFiles = new ArrayList<String>(filesNotStoredMinTimes.keySet());
+        orderedFiles.sort(
+            Comparator.<String>comparingInt(file -> filesNotStoredMinTimes.get(file))
+                .thenComparingLong(file -> rebalancedSystem.getSystem().getFileSize(file))
+                .thenComparing(Comparator.naturalOrder())
+        );
+
+        // bytes each Dstore has been given to send
+        HashMap<Integer, Long> sourceLoad = new HashMap<Integer, Long>();
+
         // 循环访问未存储R 次的文件
-        for(String file : filesNotStoredMinTimes.keySet()){
+        for(String file : orderedFiles){
             int neededDstores = rebalancedSystem.getSystem().getMinDstores() - filesNotStoredMinTimes.get(file);
+            long filesize = rebalancedSystem.getSystem().getFileSize(file);
 
             //收集 dstore 以存储文件
             ArrayList<Integer> dstoresToStoreOn = Rebalancer.getDstoresToSendTo(rebalancedSystem.getSystem(), file,  neededDstores);
 
-            // 收集 dstore 以将文件发送给其他人
-            Integer dstoreToSendFrom = rebalancedSystem.getSystem().getDstoreThatHasFile(file);
+            // no Dstore can take the file
+            if(dstoresToStoreOn.isEmpty()){
+                continue;
+            }
+
+            // 收集 dstore 以将文件发送给其他人 (the surviving replica with the least to send)
+            Integer dstoreToSendFrom = Rebalancer.getLeastLoadedDstoreWithFile(rebalancedSystem.getSystem(), file, sourceLoad);
+            sourceLoad.merge(dstoreToSendFrom, filesize * dstoresToStoreOn.size(), Long::sum);
 
             // 创建文件以发送对象
-            FileToSend fileToSend = new FileToSend(file, rebalancedSystem.getSystem().getFileSize(file), dstoresToStoreOn);
+            FileToSend fileToSend = new FileToSend(file, filesize, dstoresToStoreOn);
 
             // 添加 FileToSend 对象以重新平衡信息
             rebalancedSystem.addFileToSend(dstoreToSendFrom, fileToSend);
@@ -292,6 +559,33 @@ public class Rebalancer extends Thread{
     // HELPER METHODS //
     ////////////////////
 
+    /**
+     * Finds the Dstore storing the provided file that has been given the fewest bytes to send
+     * so far, so that re-replication is spread across all surviving replicas.
+     *
+     * @param system The system being rebalanced.
+     * @param filename The name of the file being sent.
+     * @param sourceLoad Mapping of Dstores to the number of bytes they have been given to send.
+     * @return The Dstore the file should be sent from.
+     */
+    public static Integer getLeastLoadedDstoreWithFile(System system, String filename, HashMap<Integer, Long> sourceLoad){
+        Integer leastLoaded = null;
+        long leastLoad = Long.MAX_VALUE;
+
+        for(Integer dstore : system.getDstores()){
+            if(system.getFilesOnDstore(dstore).containsKey(filename)){
+                long load = sourceLoad.getOrDefault(dstore, 0L);
+
+                if(load < leastLoad){
+                    leastLoaded = dstore;
+                    leastLoad = load;
+                }
+            }
+        }
+
+        return leastLoaded;
+    }
+
 /**
      * 收集指定数量的 Dstore，以便可以发送所提供的文件。文件
      * 可以发送到任何尚未存储的 Dstore。
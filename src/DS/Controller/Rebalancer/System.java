@@ -18,7 +18,7 @@ public class System{
 
     // member variables
     private int minDstores;
-    private HashMap<Integer, HashMap<String, Integer>> fileDistribution;
+    private HashMap<Integer, HashMap<String, Long>> fileDistribution;
 
     /**
      * 类构造函数。
@@ -26,7 +26,7 @@ public class System{
      * @param minDstores 每个文件必须复制的最小 Dstore 数。
      * @param fileDistribution 系统内各存储之间的文件分布。
      */
-    public System(int minDstores, HashMap<Integer, HashMap<String, Integer>> fileDistribution){
+    public System(int minDstores, HashMap<Integer, HashMap<String, Long>> fileDistribution){
         // initializing
         this.minDstores = minDstores;
         this.fileDistribution = fileDistribution;
@@ -42,7 +42,7 @@ public class System{
 //     * @param dstore 要将文件添加到的 Dstore。
 //     * @param 文件 要添加到 Dstore 的文件。
 //     */
-    public void addFileToDstore(Integer dstore, String file, int filesize){
+    public void addFileToDstore(Integer dstore, String file, long filesize){
         // adding the file to the dstore's file list
         this.fileDistribution.get(dstore).put(file, filesize);
     }
@@ -236,12 +236,12 @@ public class System{
      *
      * @return 系统中所有文件的文件名到文件大小的映射。
      */
-    public HashMap<String, Integer> getFiles(){
+    public HashMap<String, Long> getFiles(){
         // hashmap to hold the list of files
-        HashMap<String, Integer> files = new HashMap<String, Integer>();
+        HashMap<String, Long> files = new HashMap<String, Long>();
 
         // iterating over dstores and adding each ones files to the map
-        for(HashMap<String, Integer> dstoreFiles : this.fileDistribution.values()){
+        for(HashMap<String, Long> dstoreFiles : this.fileDistribution.values()){
             files.putAll(dstoreFiles);
         }
 
@@ -287,7 +287,7 @@ public class System{
      * @param dstore 正在收集文件列表的 Dstore。
      * @return 存储在提供的 Dstore 上的文件列表，作为文件名到文件大小的映射。
      */
-    public HashMap<String, Integer> getFilesOnDstore(Integer dstore){
+    public HashMap<String, Long> getFilesOnDstore(Integer dstore){
         return this.fileDistribution.get(dstore);
     }
 
@@ -298,9 +298,9 @@ public class System{
      *
      * @return 所提供文件的文件大小，如果在文件分发中找不到该文件，则为 -1。
      */
-    public int getFileSize(String file){
+    public long getFileSize(String file){
         // setting initial value for the filesize
-        int filesize = -1;
+        long filesize = -1;
 
         // iterating through the file distributio to find the file
         for(Integer dstore : this.fileDistribution.keySet()){
@@ -374,7 +374,7 @@ public class System{
         return this.minDstores;
     }
 
-    public HashMap<Integer, HashMap<String, Integer>> getFileDistribution(){
+    public HashMap<Integer, HashMap<String, Long>> getFileDistribution(){
         return this.fileDistribution;
     }
 
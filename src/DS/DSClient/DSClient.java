@@ -1,18 +1,32 @@
 package DS.DSClient;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.zip.CRC32C;
 
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Operation.ListCompleteEvent;
 import DS.Protocol.Event.Operation.LoadCompleteEvent;
+import DS.Protocol.Event.Operation.LoadRangeCompleteEvent;
 import DS.Protocol.Event.Operation.RemoveCompleteEvent;
 import DS.Protocol.Event.Operation.StoreCompleteEvent;
 import DS.Protocol.Exception.*;
 import DS.Protocol.Token.*;
 import DS.Protocol.Token.TokenType.*;
 import Network.*;
+import Network.Connection.ChunkHandler;
+import Network.Connection.ContentOutput;
 import Network.Client.Client;
 import Network.Protocol.Event.HandeledNetworkEvent;
 import Network.Protocol.Event.NetworkEvent;
@@ -29,6 +43,16 @@ import Network.Server.Server.ServerType;
  */
 public class DSClient extends Client{
 
+    // constants
+    public static final int MAX_LOAD_SIZE = Integer.MAX_VALUE - 8; // largest file loaded into one array
+    public static final int TRANSFER_BUFFER_SIZE = 64 * 1024; // bytes read per piece when streaming content
+    public static final int MAX_RESUME_ATTEMPTS = 3; // times a store cut off part way is resumed before giving up
+
+    // member variables
+    private boolean wireCompression; // offer to send and receive file content as compressed blocks
+    private boolean parallelLoad; // load files from every Dstore holding them at once
+    private boolean chainStore; // send one copy of a file to the first Dstore, which forwards it along the rest
+
     /**
      * Class Constructor.
      * 
@@ -39,6 +63,9 @@ public class DSClient extends Client{
     public DSClient(int cPort, int timeout, NetworkInterface networkInterface) {
         // initialising member variables
         super(cPort, timeout, networkInterface);
+        this.wireCompression = false;
+        this.parallelLoad = false;
+        this.chainStore = false;
     }
 
     ///////////
@@ -168,9 +195,56 @@ public class DSClient extends Client{
 //     * @throws FileAlreadyExistsException If there is already a file with this name stored in the Dstore.
 //     * @throws InvalidMessageException If a message of the wrong form is receieved during the communication.
 //     */
-    public void storeFile(File file, int filesize) throws Exception{
+    public void storeFile(File file, long filesize) throws Exception{
+        // streaming the first filesize bytes of the file
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            this.store(file.getName(), filesize, channel, null);
+        }
+    }
+
+    /**
+     * Stores a local file under the given name. The content is streamed to the Dstores through a
+     * fixed buffer, so memory use does not grow with the size of the file. The file is read twice
+     * - once for its CRC32C (so the Dstores can check it) and once as it is sent.
+     *
+     * @param filename The name the file is stored under.
+     * @param path The local file.
+     * @throws Exception If the file could not be stored.
+     */
+    public void storeFrom(String filename, Path path) throws Exception{
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            this.store(filename, channel.size(), channel, null);
+        }
+    }
+
+    /**
+     * Stores the content of a stream under the given name. The stream is only read once, through
+     * a fixed buffer, with each piece sent to every Dstore as it is read, so memory use does not
+     * grow with the size of the content. As the CRC32C of the content is not known before it is
+     * sent, the Dstores compute their own.
+     *
+     * @param filename The name the content is stored under.
+     * @param input The stream the content is read from (not closed).
+     * @param filesize The size of the content.
+     * @throws EOFException If the stream ended before the content did.
+     * @throws Exception If the content could not be stored.
+     */
+    public void storeFrom(String filename, InputStream input, long filesize) throws Exception{
+        this.store(filename, filesize, null, input);
+    }
+
+    /**
+     * Stores content read from a local file or a stream.
+     *
+     * @param filename The name the content is stored under.
+     * @param filesize The size of the content.
+     * @param channel The file the content is read from (null if read from the stream).
+     * @param input The stream the content is read from (null if read from the file).
+     * @throws Exception If the content could not be stored.
+     */
+    private void store(String filename, long filesize, FileChannel channel, InputStream input) throws Exception{
         // sending the store message to the controller
-        this.getServerConnection().sendMessage(Protocol.getStoreMessage(file.getName(), filesize));
+        this.getServerConnection().sendMessage(Protocol.getStoreMessage(filename, filesize));
 
         // 收集响应
         Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
@@ -179,25 +253,30 @@ public class DSClient extends Client{
         if(response instanceof StoreToToken){
             // gathering the token
             StoreToToken storeToToken = (StoreToToken) response;
-            
-            // sending file to each dstore
-            for(int dstore : storeToToken.ports){
-                this.sendFileToDstore(file, filesize, dstore);
-            }
 
-            // waiting for response from Controller
-            response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+            // sending the content to the dstores
+            this.sendContentToDstores(filename, 0, filesize, channel, input, storeToToken.ports);
 
-            // STORE_COMPLETE
-            if(response instanceof StoreCompleteToken){
-                // logging operation complete
-                this.handleEvent(new StoreCompleteEvent(file.getName(), filesize));
-            }
+            // waiting for STORE_COMPLETE from Controller
+            this.waitForStoreComplete(filename, filesize);
+        }
 
-            // Invalid Response
-            else{
-                throw new InvalidMessageException(response.message, this.getServerPort());
+        // STORE_TO_CHUNKS
+        else if(response instanceof StoreToChunksToken){
+            // gathering the token
+            StoreToChunksToken storeToChunksToken = (StoreToChunksToken) response;
+            int numberOfChunks = storeToChunksToken.ports.size();
+
+            // sending each chunk to its dstores in turn, under its own name
+            for(int chunk = 0; chunk < numberOfChunks; chunk++){
+                long offset = (long) chunk * storeToChunksToken.chunkSize;
+                long chunkSize = Math.min(storeToChunksToken.chunkSize, filesize - offset);
+                String chunkName = Protocol.getChunkName(filename, chunk, numberOfChunks);
+                this.sendContentToDstores(chunkName, offset, chunkSize, channel, input, storeToChunksToken.ports.get(chunk));
             }
+
+            // waiting for STORE_COMPLETE from Controller
+            this.waitForStoreComplete(filename, filesize);
         }
 
         // ERROR_NOT_ENOUGH_DSTORES
@@ -207,7 +286,7 @@ public class DSClient extends Client{
 
         // ERROR_FILE_ALREADY_EXISTS
         else if(response instanceof ErrorFileAlreadyExistsToken){
-            throw new FileAlreadyExistsException(file.getName());
+            throw new FileAlreadyExistsException(filename);
         }
 
         // Invalid Response
@@ -215,23 +294,200 @@ public class DSClient extends Client{
             throw new InvalidMessageException(response.message, this.getServerPort());
         }
     }
-//
-//  /**
-//* 将具有给定名称的文件发送到侦听提供的端口的 Dstore。
-//     *
-//* @param文件：要发送到Dstore的文件
-//* @param dstore 文件要发送到的 Dstore。
-//     *
-//* @throws MessageSendException：如果无法通过连接发送消息。
-//* @throws MessageReceievedException 如果无法通过连接接收消息。
-//* @throws InvalidMessageException 如果在通信过程中收到错误形式的消息。
-//     */
-    private void sendFileToDstore(File file, int filesize, int dstore) throws Exception{
-        // loading the file
-        FileInputStream fileInput = new FileInputStream(file);
 
+    /**
+     * Waits for the Controller to confirm that a file has been stored.
+     *
+     * @param filename The name of the file being stored.
+     * @param filesize The size of the file being stored.
+     * @throws Exception If the confirmation was not received.
+     */
+    private void waitForStoreComplete(String filename, long filesize) throws Exception{
+        // waiting for response from Controller
+        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+
+        // STORE_COMPLETE
+        if(response instanceof StoreCompleteToken){
+            // logging operation complete
+            this.handleEvent(new StoreCompleteEvent(filename, filesize));
+        }
+
+        // Invalid Response
+        else{
+            throw new InvalidMessageException(response.message, this.getServerPort());
+        }
+    }
+    /**
+     * Sends a file (or a chunk of one) to every Dstore it is to be stored on. The content is read
+     * into one fixed buffer at a time and sent to every Dstore at once. With chain storing on, the
+     * content is only sent to the first Dstore, which forwards it along the rest as it arrives.
+     *
+     * If the content is read from a file, a Dstore the content could not be sent to part way
+     * through is left while the others are sent the rest, and then resumed (see resumeStore).
+     * Content read from a stream cannot be read again, so the store fails instead.
+     *
+     * @param filename The name the content is stored under.
+     * @param offset The position of the content in the local file (ignored for a stream, which is
+     * read from where it is).
+     * @param length The length of the content.
+     * @param channel The file the content is read from (null if read from the stream).
+     * @param input The stream the content is read from (null if read from the file).
+     * @param dstores The Dstores the content is stored on.
+     * @throws Exception If the content could not be sent to one of the Dstores.
+     */
+    private void sendContentToDstores(String filename, long offset, long length, FileChannel channel, InputStream input, ArrayList<Integer> dstores) throws Exception{
+        // computing the checksum first if the content can be read twice
+        long checksum = (channel != null) ? getChecksum(channel, offset, length) : Protocol.NO_CHECKSUM;
+
+        // the dstores sent the content (only the first with chain storing, which forwards it along the rest)
+        ArrayList<Integer> targets = this.chainStore ? new ArrayList<Integer>(dstores.subList(0, 1)) : dstores;
+        ArrayList<Integer> chain = this.chainStore ? new ArrayList<Integer>(dstores.subList(1, dstores.size())) : new ArrayList<Integer>();
+
+        ContentOutput[] outputs = new ContentOutput[targets.size()];
+        ArrayList<Connection> connections = new ArrayList<Connection>();
+        try{
+            // starting the store on each dstore
+            for(int i = 0; i < targets.size(); i++){
+                outputs[i] = this.startStore(filename, length, checksum, targets.get(i), chain, connections);
+            }
+
+            // sending the content as it is read (leaving a dstore that fails to be resumed)
+            ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+            for(long position = 0; position < length; position += buffer.limit()){
+                buffer.clear().limit((int) Math.min(buffer.capacity(), length - position));
+                readFully(channel, input, offset + position, buffer);
+                for(int i = 0; i < outputs.length; i++){
+                    if(outputs[i] != null){
+                        outputs[i] = this.sendContent(outputs[i], buffer, channel != null);
+                    }
+                }
+            }
+            for(int i = 0; i < outputs.length; i++){
+                if(outputs[i] != null){
+                    outputs[i] = this.sendContent(outputs[i], null, channel != null);
+                }
+            }
+        }
+        finally{
+            // closing connections
+            for(Connection connection : connections){
+                connection.close();
+            }
+        }
+
+        // resuming the store on each dstore that failed
+        for(int i = 0; i < outputs.length; i++){
+            if(outputs[i] == null){
+                this.resumeStore(filename, offset, length, checksum, targets.get(i), chain, channel);
+            }
+        }
+    }
+
+    /**
+     * Sends a piece of content through an output, or finishes sending the content.
+     *
+     * @param output The output.
+     * @param buffer The piece of content (null to finish the content).
+     * @param resumable Whether the store can be resumed if the content could not be sent.
+     * @return The output, or null if the content could not be sent and the store is to be resumed.
+     * @throws MessageSendException If the content could not be sent and the store cannot be resumed.
+     */
+    private ContentOutput sendContent(ContentOutput output, ByteBuffer buffer, boolean resumable) throws MessageSendException{
+        try{
+            if(buffer != null){
+                output.write(buffer);
+            }
+            else{
+                output.finish();
+            }
+
+            return output;
+        }
+        catch(MessageSendException e){
+            if(!resumable){
+                throw e;
+            }
+
+            // logging error
+            this.handleError(e);
+            return null;
+        }
+    }
+
+    /**
+     * Resumes a store on a Dstore the content could not all be sent to. The Dstore is sent
+     * STORE_RESUME, replies RESUME_FROM with the length of the content it (and the Dstores along
+     * its chain) already hold, and is then sent only the rest of the content. A resume that fails
+     * too is tried again, up to MAX_RESUME_ATTEMPTS times.
+     *
+     * @param filename The name the content is stored under.
+     * @param offset The position of the content in the local file.
+     * @param length The length of the content.
+     * @param checksum The CRC32C of the content.
+     * @param dstore The port of the Dstore.
+     * @param chain The Dstores the Dstore forwards the content to (empty if none).
+     * @param channel The file the content is read from.
+     * @throws Exception If the store could not be resumed.
+     */
+    private void resumeStore(String filename, long offset, long length, long checksum, int dstore, ArrayList<Integer> chain, FileChannel channel) throws Exception{
+        for(int attempt = 1; ; attempt++){
+            ArrayList<Connection> connections = new ArrayList<Connection>();
+            try{
+                // asking the dstore to resume the store
+                Connection connection = this.joinDstore(dstore, connections);
+                connection.sendMessage(Protocol.getStoreResumeMessage(filename, length, checksum, this.wireCompression, chain));
+
+                // waiting for the length already held
+                Token response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
+                if(response instanceof ErrorNotEnoughSpaceToken){
+                    throw new NotEnoughSpaceException(filename, connection.getPort());
+                }
+                if(!(response instanceof ResumeFromToken) || ((ResumeFromToken) response).offset > length){
+                    throw new InvalidMessageException(response.message, connection.getPort());
+                }
+                ResumeFromToken resumeFromToken = (ResumeFromToken) response;
+
+                // sending the rest of the content
+                ContentOutput output = connection.getContentOutput(resumeFromToken.compressed);
+                ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+                for(long position = resumeFromToken.offset; position < length; position += buffer.limit()){
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), length - position));
+                    readFully(channel, null, offset + position, buffer);
+                    output.write(buffer);
+                }
+                output.finish();
+
+                return;
+            }
+            catch(MessageSendException | MessageReceivedException | ConnectionSetupException e){
+                if(attempt >= MAX_RESUME_ATTEMPTS){
+                    throw e;
+                }
+
+                // logging error
+                this.handleError(e);
+            }
+            finally{
+                // closing connections
+                for(Connection connection : connections){
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Connects to a Dstore as a client.
+     *
+     * @param dstore The port of the Dstore.
+     * @param connections The connections opened so far, which the new connection is added to.
+     * @return The connection.
+     * @throws InvalidMessageException If the Dstore did not reply JOIN_ACK.
+     */
+    private Connection joinDstore(int dstore, ArrayList<Connection> connections) throws Exception{
         // setting up the connection
         Connection connection = new Connection(this.getNetworkInterface(), dstore, ServerType.DSTORE);
+        connections.add(connection);
 
         // adding connection to client
         this.getSecondaryServerConnections().add(connection);
@@ -239,55 +495,99 @@ public class DSClient extends Client{
         // sending client join message
         connection.sendMessage(Protocol.getJoinClientMessage());
 
-        try{
-            // waiting for acknowledgement
-            Token response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
+        // waiting for acknowledgement
+        Token response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
+        if(!(response instanceof JoinAckToken)){
+            throw new InvalidMessageException(response.message, connection.getPort());
+        }
 
-            // making sure response is JOIN_ACK
-            if(response instanceof JoinAckToken){
-                // sending store message
-                connection.sendMessage(Protocol.getStoreMessage(file.getName(), filesize));
+        return connection;
+    }
 
-                // waiting for acknowledgement
-                response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
+    /**
+     * Connects to a Dstore and sends it a STORE, waiting for it to accept the content.
+     *
+     * @param filename The name the content is stored under.
+     * @param length The length of the content.
+     * @param checksum The CRC32C of the content (Protocol.NO_CHECKSUM if not known).
+     * @param dstore The port of the Dstore.
+     * @param chain The Dstores the Dstore forwards the content to (empty if none).
+     * @param connections The connections opened so far, which the new connection is added to.
+     * @return The output the content is sent through.
+     * @throws NotEnoughSpaceException If the Dstore (or one along the chain) does not have space
+     * for the content.
+     * @throws InvalidMessageException If a message of the wrong form is receieved.
+     */
+    private ContentOutput startStore(String filename, long length, long checksum, int dstore, ArrayList<Integer> chain, ArrayList<Connection> connections) throws Exception{
+        // connecting to the dstore
+        Connection connection = this.joinDstore(dstore, connections);
 
-                // making sure acknowledgement was receieved
-                if(response instanceof AckToken){
-                    // sending the file to the dstore
-                    byte[] fileContent = fileInput.readNBytes(filesize);
-                    connection.sendBytes(fileContent);
+        // sending store message
+        connection.sendMessage(Protocol.getStoreMessage(filename, length, checksum, this.wireCompression, chain));
 
-                    // closing streams
-                    connection.close();
-                    fileInput.close();
-                }
-                // invalid response received
-                else{
-                    // closing streams
-                    connection.close();
-                    fileInput.close();
+        // waiting for acknowledgement
+        Token response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
 
-                    // throwing exception
-                    throw new InvalidMessageException(response.message, connection.getPort());
-                }
-            }
-            // invalid response received
-            else{
-                // closing streams
-                connection.close();
-                fileInput.close();
+        // file rejected for lack of space
+        if(response instanceof ErrorNotEnoughSpaceToken){
+            throw new NotEnoughSpaceException(filename, connection.getPort());
+        }
 
-                // throwing exception
-                throw new InvalidMessageException(response.message, connection.getPort());
-            }
+        // making sure acknowledgement was receieved
+        if(!(response instanceof AckToken)){
+            throw new InvalidMessageException(response.message, connection.getPort());
         }
-        catch(Exception e){
-            // closing connection
-            connection.close();
 
-            // throwing exception
-            throw e;
+        // sending the content compressed if the Dstore accepted
+        return connection.getContentOutput(((AckToken) response).compressed);
+    }
+
+    /**
+     * Computes the CRC32C of a range of a file, reading it through a fixed buffer.
+     *
+     * @param channel The file.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @return The checksum.
+     * @throws IOException If the file could not be read, or ended before the range.
+     */
+    private static long getChecksum(FileChannel channel, long offset, long length) throws IOException{
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+        for(long position = 0; position < length; position += buffer.limit()){
+            buffer.clear().limit((int) Math.min(buffer.capacity(), length - position));
+            readFully(channel, null, offset + position, buffer);
+            crc.update(buffer.duplicate());
+        }
+
+        return crc.getValue();
+    }
+
+    /**
+     * Fills a buffer from a file or a stream. The buffer is left ready to be read.
+     *
+     * @param channel The file read from (null if read from the stream).
+     * @param input The stream read from (null if read from the file).
+     * @param position The position in the file the buffer is filled from.
+     * @param buffer The buffer, filled up to its limit.
+     * @throws EOFException If the file or stream ended before the buffer was filled.
+     * @throws IOException If the file or stream could not be read.
+     */
+    private static void readFully(FileChannel channel, InputStream input, long position, ByteBuffer buffer) throws IOException{
+        if(channel != null){
+            while(buffer.hasRemaining()){
+                if(channel.read(buffer, position + buffer.position()) < 0){
+                    throw new EOFException("File ended " + buffer.remaining() + " bytes before its content.");
+                }
+            }
         }
+        else{
+            int length = input.readNBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if(length < buffer.remaining()){
+                throw new EOFException("Stream ended " + (buffer.remaining() - length) + " bytes before its content.");
+            }
+        }
+        buffer.rewind();
     }
 
     //////////
@@ -329,26 +629,124 @@ public class DSClient extends Client{
             // gathering the token
             LoadFromToken loadFromToken = (LoadFromToken) response;
 
-            // LOADING FILE
-            try{
-                // loading file from Dstore
-                byte[] fileContent = this.loadFileFromDstore(loadFromToken.port, filename, loadFromToken.filesize);
+            // loading file from Dstore (resumed on the next Dstore if it fails part way through)
+            if(loadFromToken.filesize > MAX_LOAD_SIZE){
+                throw new IOException("File '" + filename + "' of " + loadFromToken.filesize + " bytes is too large to load into memory.");
+            }
+            byte[] fileContent = new byte[(int) loadFromToken.filesize];
+            this.loadResumably(filename, loadFromToken.port, loadFromToken.filesize, (ByteBuffer chunk, long position) -> {
+                chunk.get(fileContent, (int) position, chunk.remaining());
+            });
 
-                // logging operation complete
-                this.handleEvent(new LoadCompleteEvent(filename));
+            // logging operation complete
+            this.handleEvent(new LoadCompleteEvent(filename));
 
-                // returning the file content
-                return fileContent;
+            // returning the file content
+            return fileContent;
+        }
+
+        // LOAD_CHUNKS
+        else if(response instanceof LoadChunksToken){
+            // gathering the token
+            LoadChunksToken loadChunksToken = (LoadChunksToken) response;
+            if(loadChunksToken.filesize > MAX_LOAD_SIZE){
+                throw new IOException("File '" + filename + "' of " + loadChunksToken.filesize + " bytes is too large to load into memory.");
+            }
+
+            // loading each chunk in turn (each reloaded from its other replicas if need be)
+            byte[] fileContent = new byte[(int) loadChunksToken.filesize];
+            int numberOfChunks = Protocol.getNumberOfChunks(loadChunksToken.filesize, loadChunksToken.chunkSize);
+            for(int chunk = 0; chunk < numberOfChunks; chunk++){
+                byte[] chunkContent = this.loadFile(Protocol.getChunkName(filename, chunk, numberOfChunks), false);
+                System.arraycopy(chunkContent, 0, fileContent, chunk * loadChunksToken.chunkSize, chunkContent.length);
+            }
+
+            // logging operation complete
+            this.handleEvent(new LoadCompleteEvent(filename));
+
+            return fileContent;
+        }
+
+        // ERROR_NOT_ENOUGH_DSTORES
+        else if(response instanceof ErrorNotEnoughDStoresToken){
+            throw new NotEnoughDstoresException();
+        }
+
+        // ERROR_FILE_DOES_NOT_EXIST
+        else if(response instanceof ErrorFileDoesNotExistToken){
+            throw new FileDoesNotExistException(filename);
+        }
+
+        // ERROR_LOAD
+        else if(response instanceof ErrorLoadToken){
+            throw new NoValidDstoresException();
+        }
+
+        // Invalid Response
+        else{
+            throw new InvalidMessageException(response.message, this.getServerPort());
+        }
+    }
+
+    /**
+     * Loads a file from a Dstore, handing the content to an output as it arrives. If the Dstore
+     * fails part way through, the file is asked for again with RELOAD, and loaded from the next
+     * Dstore holding it from the first byte not yet received (with a ranged LOAD_DATA), so no
+     * content is loaded twice.
+     *
+     * @param filename The name of the file.
+     * @param port The port of the first Dstore holding the file.
+     * @param filesize The size of the file.
+     * @param output The handler the content is passed to, with its position in the file.
+     * @throws NoValidDstoresException If no Dstore holding the file could send the rest of it.
+     */
+    private void loadResumably(String filename, int port, long filesize, ChunkHandler output) throws Exception{
+        long[] received = {0};
+        while(true){
+            long from = received[0];
+            try{
+                // asking for the content not yet received
+                String message = (from == 0) ? Protocol.getLoadDataMessage(filename, this.wireCompression) : Protocol.getLoadDataMessage(filename, from, (int) (filesize - from), this.wireCompression);
+                this.loadFromDstore(port, message, filesize - from, (ByteBuffer chunk, long position) -> {
+                    int length = chunk.remaining();
+                    output.handle(chunk, from + position);
+                    received[0] = from + position + length;
+                });
+
+                return;
             }
             // unable to load file content
             catch(Exception e){
                 // Logging error
-                this.handleError(new FileLoadException(filename, loadFromToken.port, e));
+                this.handleError(new FileLoadException(filename, port, e));
 
-                // reloading if data could not be gathered
-                return this.loadFile(filename, true);
+                // moving to the next dstore holding the file
+                port = this.reload(filename, filesize);
             }
         }
+    }
+
+    /**
+     * Asks the Controller for the next Dstore holding a file, after loading it from the previous
+     * one failed.
+     *
+     * @param filename The name of the file.
+     * @param filesize The size of the file being loaded.
+     * @return The port of the next Dstore.
+     * @throws NoValidDstoresException If there are no more Dstores holding the file.
+     * @throws Exception If the Dstore could not be gathered.
+     */
+    private int reload(String filename, long filesize) throws Exception{
+        // sending RELOAD message to controller
+        this.getServerConnection().sendMessage(Protocol.getReloadMessage(filename));
+
+        // gathering response
+        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+
+        // LOAD_FROM (of the same file)
+        if(response instanceof LoadFromToken && ((LoadFromToken) response).filesize == filesize){
+            return ((LoadFromToken) response).port;
+        }
 
         // ERROR_NOT_ENOUGH_DSTORES
         else if(response instanceof ErrorNotEnoughDStoresToken){
@@ -371,18 +769,49 @@ public class DSClient extends Client{
         }
     }
 
-//    /**
-//     * 从提供的 Dstore 加载给定文件。
-//     *
-//     * @param port 从中加载文件的端口。
-//     * @param filename 从 Dstore 加载的文件的名称。
-//     * @param filesize 正在加载的文件的大小。
-//     * @return 从 Dstore 加载的文件作为字节数组。
-//     *
-//     * @throws MessageSendException 如果无法通过连接发送消息。
-//     * @throws MessageReceievedException 如果无法通过连接接收消息。
-//     */
-    private byte[] loadFileFromDstore(int port, String filename, int filesize) throws Exception{
+    /**
+     * Loads a range of a file from the provided Dstore.
+     *
+     * @param port The port of the Dstore.
+     * @param filename The name of the file.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @return The content of the range.
+     * @throws Exception If the range could not be loaded.
+     */
+    byte[] loadRangeFromDstore(int port, String filename, long offset, int length) throws Exception{
+        return this.loadFromDstore(port, Protocol.getLoadDataMessage(filename, offset, length, this.wireCompression), length);
+    }
+
+    /**
+     * Sends a LOAD_DATA message to the provided Dstore and gathers the content it sends back.
+     *
+     * @param port The port of the Dstore.
+     * @param message The LOAD_DATA message.
+     * @param length The length of the content asked for.
+     * @return The content.
+     * @throws Exception If the content could not be loaded.
+     */
+    private byte[] loadFromDstore(int port, String message, int length) throws Exception{
+        byte[] content = new byte[length];
+        this.loadFromDstore(port, message, length, (ByteBuffer chunk, long position) -> {
+            chunk.get(content, (int) position, chunk.remaining());
+        });
+
+        return content;
+    }
+
+    /**
+     * Sends a LOAD_DATA message to the provided Dstore and hands the content it sends back to a
+     * handler, one piece at a time as it arrives.
+     *
+     * @param port The port of the Dstore.
+     * @param message The LOAD_DATA message.
+     * @param length The length of the content asked for.
+     * @param handler The handler the content is passed to, in order.
+     * @throws Exception If the content could not be loaded.
+     */
+    private void loadFromDstore(int port, String message, long length, ChunkHandler handler) throws Exception{
         // setting up the connection
         Connection connection = new Connection(this.getNetworkInterface(), port, ServerType.DSTORE);
         
@@ -399,15 +828,18 @@ public class DSClient extends Client{
             // making sure response is JOIN_ACK
             if(response instanceof JoinAckToken){
                  // sending LOAD_DATA message
-                connection.sendMessage(Protocol.getLoadDataMessage(filename));
+                connection.sendMessage(message);
 
-                // reading file data
-                byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.getTimeout());
+                // reading file data (as blocks if they were asked for)
+                if(this.wireCompression){
+                    connection.receiveCompressedBytesWithinTimeout(length, this.getTimeout(), handler);
+                }
+                else{
+                    connection.receiveBytesWithinTimeout(length, this.getTimeout(), handler);
+                }
 
                 // closing connection
                 connection.close();
-
-                return fileContent;
             }
             // invalid response received
             else{
@@ -428,6 +860,314 @@ public class DSClient extends Client{
     }
 
 
+    /**
+     * Loads a file into a stream. The content is written to the stream piece by piece as it
+     * arrives, so memory use does not grow with the size of the file.
+     *
+     * @param filename The name of the file.
+     * @param output The stream the content is written to (not closed).
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to the
+     * controller to handle the request.
+     * @throws FileDoesNotExistException If there is no file with the provided name.
+     * @throws NoValidDstoresException If no Dstore holding the file could send it.
+     */
+    public void loadTo(String filename, OutputStream output) throws Exception{
+        this.loadTo(filename, (ByteBuffer chunk, long position) -> {
+            output.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        }, 0);
+    }
+
+    /**
+     * Loads a file into a local file, writing each piece into place as it arrives, so memory use
+     * does not grow with the size of the file. The local file is deleted if the file could not
+     * be loaded.
+     *
+     * @param filename The name of the file.
+     * @param path The local file the content is written to.
+     * @throws Exception If the file could not be loaded.
+     */
+    public void loadTo(String filename, Path path) throws Exception{
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            this.loadTo(filename, (ByteBuffer chunk, long position) -> {
+                while(chunk.hasRemaining()){
+                    position += channel.write(chunk, position);
+                }
+            }, 0);
+        }
+        catch(Exception e){
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a file into an output.
+     *
+     * @param filename The name of the file.
+     * @param output The handler the content is passed to, with its position in the output.
+     * @param outputOffset The position of the file in the output.
+     * @throws Exception If the file could not be loaded.
+     */
+    private void loadTo(String filename, ChunkHandler output, long outputOffset) throws Exception{
+        // sending LOAD message to controller
+        this.getServerConnection().sendMessage(Protocol.getLoadMessage(filename));
+
+        // gathering response
+        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+
+        // LOAD_FROM
+        if(response instanceof LoadFromToken){
+            // gathering the token
+            LoadFromToken loadFromToken = (LoadFromToken) response;
+
+            // loading file from Dstore (resumed on the next Dstore if it fails part way through)
+            this.loadResumably(filename, loadFromToken.port, loadFromToken.filesize, (ByteBuffer chunk, long position) -> {
+                output.handle(chunk, outputOffset + position);
+            });
+
+            // logging operation complete
+            this.handleEvent(new LoadCompleteEvent(filename));
+        }
+
+        // LOAD_CHUNKS
+        else if(response instanceof LoadChunksToken){
+            // gathering the token
+            LoadChunksToken loadChunksToken = (LoadChunksToken) response;
+
+            // loading each chunk in turn (each reloaded from its other replicas if need be)
+            int numberOfChunks = Protocol.getNumberOfChunks(loadChunksToken.filesize, loadChunksToken.chunkSize);
+            for(int chunk = 0; chunk < numberOfChunks; chunk++){
+                this.loadTo(Protocol.getChunkName(filename, chunk, numberOfChunks), output, outputOffset + (long) chunk * loadChunksToken.chunkSize);
+            }
+
+            // logging operation complete
+            this.handleEvent(new LoadCompleteEvent(filename));
+        }
+
+        // ERROR_NOT_ENOUGH_DSTORES
+        else if(response instanceof ErrorNotEnoughDStoresToken){
+            throw new NotEnoughDstoresException();
+        }
+
+        // ERROR_FILE_DOES_NOT_EXIST
+        else if(response instanceof ErrorFileDoesNotExistToken){
+            throw new FileDoesNotExistException(filename);
+        }
+
+        // ERROR_LOAD
+        else if(response instanceof ErrorLoadToken){
+            throw new NoValidDstoresException();
+        }
+
+        // Invalid Response
+        else{
+            throw new InvalidMessageException(response.message, this.getServerPort());
+        }
+    }
+
+    /**
+     * Loads a range of a file, without loading the rest of it - only the range is read by the
+     * Dstore and sent over the network. The range is loaded from another Dstore holding the file if
+     * it cannot be loaded from the first.
+     *
+     * @param filename The name of the file.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @return The content of the range.
+     * @throws EOFException If the range is not within the file.
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to the
+     * controller to handle the request.
+     * @throws FileDoesNotExistException If there is no file with the provided name.
+     * @throws NoValidDstoresException If no Dstore holding the file could send the range.
+     */
+    public byte[] loadRange(String filename, long offset, int length) throws Exception{
+        return this.loadRange(filename, offset, length, false);
+    }
+
+    /**
+     * Loads a range of a file, from the next Dstore holding it if this is a reload.
+     *
+     * @param filename The name of the file.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @param isReload Whether the range failed to load from the previous Dstore.
+     * @return The content of the range.
+     * @throws Exception If the range could not be loaded.
+     */
+    private byte[] loadRange(String filename, long offset, int length, boolean isReload) throws Exception{
+        // sending LOAD (or RELOAD) message to controller
+        this.getServerConnection().sendMessage(isReload ? Protocol.getReloadMessage(filename) : Protocol.getLoadMessage(filename));
+
+        // gathering response
+        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+
+        // LOAD_FROM
+        if(response instanceof LoadFromToken){
+            // gathering the token
+            LoadFromToken loadFromToken = (LoadFromToken) response;
+            checkRange(filename, loadFromToken.filesize, offset, length);
+
+            // LOADING RANGE
+            try{
+                // loading the range from the Dstore
+                byte[] content = this.loadFromDstore(loadFromToken.port, Protocol.getLoadRangeMessage(filename, offset, length, this.wireCompression), length);
+
+                // logging operation complete
+                this.handleEvent(new LoadRangeCompleteEvent(filename, offset, length));
+
+                return content;
+            }
+            // unable to load the range
+            catch(Exception e){
+                // Logging error
+                this.handleError(new FileLoadException(filename, loadFromToken.port, e));
+
+                // reloading if data could not be gathered
+                return this.loadRange(filename, offset, length, true);
+            }
+        }
+
+        // LOAD_CHUNKS
+        else if(response instanceof LoadChunksToken){
+            // gathering the token
+            LoadChunksToken loadChunksToken = (LoadChunksToken) response;
+            checkRange(filename, loadChunksToken.filesize, offset, length);
+
+            // loading the part of the range in each chunk it covers
+            byte[] content = new byte[length];
+            int numberOfChunks = Protocol.getNumberOfChunks(loadChunksToken.filesize, loadChunksToken.chunkSize);
+            long position = offset;
+            while(position < offset + length){
+                int chunk = (int) (position / loadChunksToken.chunkSize);
+                long chunkOffset = position - (long) chunk * loadChunksToken.chunkSize;
+                int chunkLength = (int) Math.min(loadChunksToken.chunkSize - chunkOffset, offset + length - position);
+
+                byte[] chunkContent = this.loadRange(Protocol.getChunkName(filename, chunk, numberOfChunks), chunkOffset, chunkLength, false);
+                System.arraycopy(chunkContent, 0, content, (int) (position - offset), chunkLength);
+                position += chunkLength;
+            }
+
+            // logging operation complete
+            this.handleEvent(new LoadRangeCompleteEvent(filename, offset, length));
+
+            return content;
+        }
+
+        // ERROR_NOT_ENOUGH_DSTORES
+        else if(response instanceof ErrorNotEnoughDStoresToken){
+            throw new NotEnoughDstoresException();
+        }
+
+        // ERROR_FILE_DOES_NOT_EXIST
+        else if(response instanceof ErrorFileDoesNotExistToken){
+            throw new FileDoesNotExistException(filename);
+        }
+
+        // ERROR_LOAD
+        else if(response instanceof ErrorLoadToken){
+            throw new NoValidDstoresException();
+        }
+
+        // Invalid Response
+        else{
+            throw new InvalidMessageException(response.message, this.getServerPort());
+        }
+    }
+
+    /**
+     * Checks that a range is within a file.
+     *
+     * @param filename The name of the file.
+     * @param filesize The size of the file.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @throws EOFException If the range is not within the file.
+     */
+    private static void checkRange(String filename, long filesize, long offset, int length) throws EOFException{
+        if(offset < 0 || length < 0 || offset + length > filesize){
+            throw new EOFException("The range " + offset + "+" + length + " is not within '" + filename + "' of " + filesize + " bytes.");
+        }
+    }
+
+    /**
+     * Loads a file from every Dstore holding it at once, writing it straight into a local file (see
+     * ParallelDownload). The local file is deleted if the file could not be loaded.
+     *
+     * @param filename The name of the file.
+     * @param file The local file the content is written to.
+     * @throws Exception If the file could not be loaded.
+     */
+    public void loadFileParallel(String filename, File file) throws Exception{
+        try(RandomAccessFile output = new RandomAccessFile(file, "rw")){
+            output.setLength(0);
+            this.loadFileParallel(filename, output, 0);
+        }
+        catch(Exception e){
+            file.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a file from every Dstore holding it at once, into its place in an output file.
+     *
+     * @param filename The name of the file.
+     * @param output The output file.
+     * @param outputOffset The position of the file in the output file.
+     * @throws Exception If the file could not be loaded.
+     */
+    private void loadFileParallel(String filename, RandomAccessFile output, long outputOffset) throws Exception{
+        // sending LOAD_REPLICAS message to controller
+        this.getServerConnection().sendMessage(Protocol.getLoadReplicasMessage(filename));
+
+        // gathering response
+        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+
+        // LOAD_FROM_REPLICAS
+        if(response instanceof LoadFromReplicasToken){
+            // gathering the token
+            LoadFromReplicasToken loadFromReplicasToken = (LoadFromReplicasToken) response;
+
+            // preallocating the output and loading the ranges of the file into place
+            output.setLength(Math.max(output.length(), outputOffset + loadFromReplicasToken.filesize));
+            new ParallelDownload(this, filename, loadFromReplicasToken.filesize, output.getChannel(), outputOffset).run(loadFromReplicasToken.ports);
+
+            // logging operation complete
+            this.handleEvent(new LoadCompleteEvent(filename));
+        }
+
+        // LOAD_CHUNKS
+        else if(response instanceof LoadChunksToken){
+            // gathering the token
+            LoadChunksToken loadChunksToken = (LoadChunksToken) response;
+
+            // preallocating the output and loading each chunk into place in turn
+            output.setLength(Math.max(output.length(), outputOffset + loadChunksToken.filesize));
+            int numberOfChunks = Protocol.getNumberOfChunks(loadChunksToken.filesize, loadChunksToken.chunkSize);
+            for(int chunk = 0; chunk < numberOfChunks; chunk++){
+                this.loadFileParallel(Protocol.getChunkName(filename, chunk, numberOfChunks), output, outputOffset + (long) chunk * loadChunksToken.chunkSize);
+            }
+
+            // logging operation complete
+            this.handleEvent(new LoadCompleteEvent(filename));
+        }
+
+        // ERROR_NOT_ENOUGH_DSTORES
+        else if(response instanceof ErrorNotEnoughDStoresToken){
+            throw new NotEnoughDstoresException();
+        }
+
+        // ERROR_FILE_DOES_NOT_EXIST
+        else if(response instanceof ErrorFileDoesNotExistToken){
+            throw new FileDoesNotExistException(filename);
+        }
+
+        // Invalid Response
+        else{
+            throw new InvalidMessageException(response.message, this.getServerPort());
+        }
+    }
+
     ////////////
     // REMOVE //
     ////////////
@@ -482,7 +1222,7 @@ public class DSClient extends Client{
 //     * @throws MessageSendException If a message couldn't be sent through the connection.
 //     * @throws MessageReceievedException If a message could not be receieved through the connection.
 //     */
-    public HashMap<String, Integer> getFileList() throws Exception{
+    public HashMap<String, Long> getFileList() throws Exception{
         // sending message to Controller
         this.getServerConnection().sendMessage(Protocol.getListMessage());
 
@@ -511,4 +1251,45 @@ public class DSClient extends Client{
             throw new InvalidMessageException(response.message, this.getServerPort());
         }
     }
-}
\ No newline at end of file
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public boolean getChainStore(){
+        return this.chainStore;
+    }
+
+    /**
+     * Sets whether files are stored through a chain of Dstores. The file is then sent once, to the
+     * first Dstore it is stored on, which forwards it to the next as it arrives, and so on - each
+     * Dstore still acknowledges the file to the Controller itself.
+     *
+     * @param chainStore True to store through a chain, false to send a copy to every Dstore.
+     */
+    public void setChainStore(boolean chainStore){
+        this.chainStore = chainStore;
+    }
+
+    public boolean getParallelLoad(){
+        return this.parallelLoad;
+    }
+
+    public void setParallelLoad(boolean parallelLoad){
+        this.parallelLoad = parallelLoad;
+    }
+
+    public boolean getWireCompression(){
+        return this.wireCompression;
+    }
+
+    /**
+     * Sets whether the client offers to send and receive file content as compressed blocks. The
+     * content of a STORE is only compressed if the Dstore accepts.
+     *
+     * @param wireCompression True to offer compression, false to send and receive content raw.
+     */
+    public void setWireCompression(boolean wireCompression){
+        this.wireCompression = wireCompression;
+    }
+}
@@ -2,8 +2,9 @@ package DS.DSClient;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -62,8 +63,47 @@ public class DSClientTerminal extends NetworkInterface{
      * @param timeout The message timeout period.
      */
     public DSClientTerminal(int cPort, int timeout) {
+        this(cPort, timeout, false);
+    }
+
+    /**
+     * Class Constructor.
+     * 
+     * @param cPort The port of the Controller.
+     * @param timeout The message timeout period.
+     * @param wireCompression Whether file content is offered to be sent as compressed blocks.
+     */
+    public DSClientTerminal(int cPort, int timeout, boolean wireCompression) {
+        this(cPort, timeout, wireCompression, false);
+    }
+
+    /**
+     * Class Constructor.
+     * 
+     * @param cPort The port of the Controller.
+     * @param timeout The message timeout period.
+     * @param wireCompression Whether file content is offered to be sent as compressed blocks.
+     * @param parallelLoad Whether files are loaded from every Dstore holding them at once.
+     */
+    public DSClientTerminal(int cPort, int timeout, boolean wireCompression, boolean parallelLoad) {
+        this(cPort, timeout, wireCompression, parallelLoad, false);
+    }
+
+    /**
+     * Class Constructor.
+     * 
+     * @param cPort The port of the Controller.
+     * @param timeout The message timeout period.
+     * @param wireCompression Whether file content is offered to be sent as compressed blocks.
+     * @param parallelLoad Whether files are loaded from every Dstore holding them at once.
+     * @param chainStore Whether files are stored through a chain of Dstores (sent only once).
+     */
+    public DSClientTerminal(int cPort, int timeout, boolean wireCompression, boolean parallelLoad, boolean chainStore) {
         // initialising member variables
         this.client = new DSClient(cPort, timeout, this);
+        this.client.setWireCompression(wireCompression);
+        this.client.setParallelLoad(parallelLoad);
+        this.client.setChainStore(chainStore);
 
         // connecting to network
         //1 Sets up a connection between the Client and the Controller.
@@ -143,6 +183,12 @@ public class DSClientTerminal extends NetworkInterface{
                 this.handleLoadInput(loadToken.filename);
             }
 
+            // LOAD_RANGE //
+            else if(requestToken instanceof LoadRangeToken){
+                LoadRangeToken loadRangeToken = (LoadRangeToken) requestToken;
+                this.handleLoadRangeInput(loadRangeToken.filename, loadRangeToken.offset, loadRangeToken.length);
+            }
+
             // REMOVE //
             else if(requestToken instanceof RemoveToken){
                 RemoveToken removeToken = (RemoveToken) requestToken;
@@ -176,12 +222,15 @@ public class DSClientTerminal extends NetworkInterface{
      * 
      * @throws Exception If the request could not be handeled.
      */
-    public void handleStoreInput(String filename, int filesize) throws Exception{
-        // loading the file
+    public void handleStoreInput(String filename, long filesize) throws Exception{
+        // checking the file is the size given
         File file = new File(filename);
+        if(file.length() != filesize){
+            throw new IOException("File '" + filename + "' is " + file.length() + " bytes, not " + filesize + ".");
+        }
 
-        // send the file to the DSClient
-        this.client.storeFile(file, filesize);
+        // streaming the file to the Dstores
+        this.client.storeFrom(filename, file.toPath());
     }
 
     //////////
@@ -196,15 +245,35 @@ public class DSClientTerminal extends NetworkInterface{
      * @throws Exception If the request could not be handeled.
      */
     public void handleLoadInput(String filename) throws Exception{
-        // gathering the file content
-        byte[] fileContent = this.client.loadFile(filename, false);
+        // loading the file from every Dstore holding it, straight into the local file
+        if(this.client.getParallelLoad()){
+            this.client.loadFileParallel(filename, new File(filename));
+            return;
+        }
 
-        // storing the file
-        File file = new File(filename);
-        FileOutputStream fileOutput = new FileOutputStream(file);
-        fileOutput.write(fileContent);
-        fileOutput.flush();
-        fileOutput.close();
+        // streaming the file content into the local file
+        this.client.loadTo(filename, new File(filename).toPath());
+    }
+
+    /**
+     * Handles the input of a LOAD_RANGE request into the terminal, writing the range into its
+     * place in the local file.
+     * 
+     * @param filename The name of the file.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * 
+     * @throws Exception If the request could not be handeled.
+     */
+    public void handleLoadRangeInput(String filename, long offset, int length) throws Exception{
+        // gathering the range
+        byte[] content = this.client.loadRange(filename, offset, length);
+
+        // writing the range into place
+        try(RandomAccessFile file = new RandomAccessFile(filename, "rw")){
+            file.seek(offset);
+            file.write(content);
+        }
     }
 
     ////////////
@@ -234,7 +303,7 @@ public class DSClientTerminal extends NetworkInterface{
      */
     public void handleListInput() throws Exception{
         // gathering the list of files
-        HashMap<String, Integer> files = this.client.getFileList();
+        HashMap<String, Long> files = this.client.getFileList();
 
         // nothing to do with the list ...
     }
@@ -333,8 +402,28 @@ public class DSClientTerminal extends NetworkInterface{
             int cPort = Integer.parseInt(args[0]);
             int timeout = Integer.parseInt(args[1]);
 
+            // optional wire compression (wireCompression=on|off), parallel loads (parallelLoad=on|off)
+            // and chain stores (chainStore=on|off)
+            boolean wireCompression = false;
+            boolean parallelLoad = false;
+            boolean chainStore = false;
+            for(int i = 2; i < args.length; i++){
+                if(args[i].equalsIgnoreCase("wireCompression=on") || args[i].equalsIgnoreCase("wireCompression=off")){
+                    wireCompression = args[i].equalsIgnoreCase("wireCompression=on");
+                }
+                else if(args[i].equalsIgnoreCase("parallelLoad=on") || args[i].equalsIgnoreCase("parallelLoad=off")){
+                    parallelLoad = args[i].equalsIgnoreCase("parallelLoad=on");
+                }
+                else if(args[i].equalsIgnoreCase("chainStore=on") || args[i].equalsIgnoreCase("chainStore=off")){
+                    chainStore = args[i].equalsIgnoreCase("chainStore=on");
+                }
+                else{
+                    throw new IllegalArgumentException("Unknown option '" + args[i] + "'.");
+                }
+            }
+
             // Creating new Client instance
-            new DSClientTerminal(cPort, timeout);
+            new DSClientTerminal(cPort, timeout, wireCompression, parallelLoad, chainStore);
         }
         catch(Exception e){
             System.out.println("Unable to create Client.");
@@ -0,0 +1,259 @@
+package DS.DSClient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import DS.Protocol.Exception.FileLoadException;
+import DS.Protocol.Exception.NoValidDstoresException;
+
+/**
+ * Downloads a file from every Dstore holding it at once, each Dstore sending ranges of the file
+ * over connections of its own.
+ *
+ * The file is split into ranges that the Dstores take from a shared queue, so a faster Dstore
+ * takes on more of the file. Once the queue is empty, a Dstore with nothing left to do steals a
+ * range that has been in flight on another Dstore for twice as long as ranges usually take, and
+ * fetches it too - whichever copy arrives first is written. A range that fails is put back on the queue for the
+ * other Dstores, and the Dstore it failed on is not used again.
+ *
+ * Each range is written to its place in the (preallocated) output file as soon as it arrives.
+ */
+public class ParallelDownload{
+
+    // constants
+    public static final int RANGE_SIZE = 4 * 1024 * 1024; // bytes
+    private static final int MAX_FETCHES = 2; // copies of a range fetched at once
+    private static final long MIN_STEAL_TIME = 100_000_000; // ns a range is in flight before it may be stolen
+
+    // member variables
+    private DSClient client;
+    private String filename;
+    private FileChannel output;
+    private long outputOffset; // position of the file in the output
+    private ArrayDeque<Range> queue; // ranges not yet fetched
+    private ArrayList<Range> inFlight; // ranges being fetched
+    private int remaining; // ranges not yet written
+    private long fetchTime; // total time taken by the ranges written (ns)
+    private int fetched; // ranges written
+
+    /**
+     * Class constructor.
+     *
+     * @param client The client downloading the file.
+     * @param filename The name of the file.
+     * @param filesize The size of the file.
+     * @param output The file the content is written to.
+     * @param outputOffset The position of the content in the output file.
+     */
+    public ParallelDownload(DSClient client, String filename, long filesize, FileChannel output, long outputOffset){
+        // initializing
+        this.client = client;
+        this.filename = filename;
+        this.output = output;
+        this.outputOffset = outputOffset;
+        this.queue = new ArrayDeque<Range>();
+        this.inFlight = new ArrayList<Range>();
+
+        // splitting the file into ranges
+        for(long offset = 0; offset < filesize; offset += RANGE_SIZE){
+            this.queue.add(new Range(offset, (int) Math.min(RANGE_SIZE, filesize - offset)));
+        }
+        this.remaining = this.queue.size();
+        this.fetchTime = 0;
+        this.fetched = 0;
+    }
+
+    /**
+     * Downloads the file, fetching ranges from every given Dstore at once.
+     *
+     * @param ports The ports of the Dstores holding the file.
+     * @throws NoValidDstoresException If the file could not be downloaded from any of the Dstores.
+     * @throws InterruptedException If interrupted while waiting for the download.
+     */
+    public void run(ArrayList<Integer> ports) throws Exception{
+        // one worker per Dstore
+        ArrayList<Thread> workers = new ArrayList<Thread>();
+        for(int port : ports){
+            Thread worker = new Thread(() -> this.runWorker(port), "download-" + port);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        // waiting for the workers to finish
+        for(Thread worker : workers){
+            worker.join();
+        }
+
+        // every Dstore failed before the file was complete
+        if(this.remaining > 0){
+            throw new NoValidDstoresException();
+        }
+    }
+
+    /**
+     * Fetches ranges from one Dstore until there are none left, or the Dstore fails. Run by the
+     * worker for the Dstore.
+     *
+     * @param port The port of the Dstore.
+     */
+    private void runWorker(int port){
+        while(true){
+            // gathering the next range
+            Range range;
+            try{
+                range = this.nextRange();
+            }
+            catch(InterruptedException e){
+                return;
+            }
+            if(range == null){
+                return;
+            }
+
+            // fetching and writing the range
+            try{
+                byte[] content = this.client.loadRangeFromDstore(port, this.filename, range.offset, range.length);
+                this.rangeLoaded(range, content);
+            }
+            catch(Exception e){
+                // handing the range back, and giving up on the Dstore
+                this.client.handleError(new FileLoadException(this.filename, port, e));
+                this.rangeFailed(range);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gathers the next range for a worker to fetch - the next range in the queue, or once the queue
+     * is empty, the range that has been in flight the longest (once it is slow enough to steal).
+     * Waits while there is no range to take.
+     *
+     * @return The range, or null if every range has been written.
+     * @throws InterruptedException If interrupted while waiting for a range.
+     */
+    private synchronized Range nextRange() throws InterruptedException{
+        while(this.remaining > 0){
+            // taking the next range from the queue
+            Range range = this.queue.poll();
+            if(range != null){
+                range.fetches++;
+                range.started = System.nanoTime();
+                this.inFlight.add(range);
+                return range;
+            }
+
+            // finding the range in flight the longest
+            Range slowest = null;
+            for(Range inFlightRange : this.inFlight){
+                if(inFlightRange.fetches < MAX_FETCHES && !inFlightRange.writing && (slowest == null || inFlightRange.started < slowest.started)){
+                    slowest = inFlightRange;
+                }
+            }
+
+            // nothing to steal - waiting for a range to complete or fail
+            if(slowest == null){
+                this.wait();
+                continue;
+            }
+
+            // stealing the range once it is slow enough, or waiting until then
+            long stealTime = Math.max(MIN_STEAL_TIME, (this.fetched == 0) ? 0 : 2 * this.fetchTime / this.fetched);
+            long waitTime = slowest.started + stealTime - System.nanoTime();
+            if(waitTime <= 0){
+                slowest.fetches++;
+                return slowest;
+            }
+            this.wait(waitTime / 1_000_000 + 1);
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a fetched range to the output file, unless another copy of it has been written already.
+     *
+     * @param range The range.
+     * @param content The content of the range.
+     * @throws IOException If the range could not be written.
+     */
+    private void rangeLoaded(Range range, byte[] content) throws IOException{
+        // claiming the range
+        synchronized(this){
+            if(range.written || range.writing){
+                range.fetches--;
+                return;
+            }
+            range.writing = true;
+        }
+
+        // writing the range into place
+        try{
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            long position = this.outputOffset + range.offset;
+            while(buffer.hasRemaining()){
+                position += this.output.write(buffer, position);
+            }
+        }
+        catch(IOException e){
+            synchronized(this){
+                range.writing = false;
+            }
+            throw e;
+        }
+
+        // range complete
+        synchronized(this){
+            range.writing = false;
+            range.written = true;
+            range.fetches--;
+            this.inFlight.remove(range);
+            this.remaining--;
+            this.fetchTime += System.nanoTime() - range.started;
+            this.fetched++;
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Hands a range that could not be fetched back to the queue, unless another copy of it is still
+     * being fetched or has been written.
+     *
+     * @param range The range.
+     */
+    private synchronized void rangeFailed(Range range){
+        range.fetches--;
+        if(!range.written && range.fetches == 0){
+            this.inFlight.remove(range);
+            this.queue.addFirst(range);
+        }
+        this.notifyAll();
+    }
+
+    /**
+     * A range of the file.
+     */
+    private static class Range{
+
+        // member variables
+        private long offset;
+        private int length;
+        private int fetches; // copies being fetched
+        private long started; // when the range was first fetched (ns)
+        private boolean writing;
+        private boolean written;
+
+        private Range(long offset, int length){
+            this.offset = offset;
+            this.length = length;
+            this.fetches = 0;
+            this.started = 0;
+            this.writing = false;
+            this.written = false;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package DS.Dstore.Cache;
+
+/**
+ * Approximate count of how often each file has been requested recently (a count-min sketch with
+ * 4-bit counters).
+ *
+ * Used by the read cache to decide whether a new file is requested often enough to replace a
+ * file already in the cache. Counts are halved once enough requests have been recorded, so the
+ * sketch reflects recent popularity rather than all-time popularity.
+ *
+ * Not thread safe - callers must synchronize.
+ */
+public class FrequencySketch{
+
+    // constants
+    private static final int DEPTH = 4; // number of counters per file
+    private static final int MAX_COUNT = 15;
+    private static final int RESET_MULTIPLIER = 10; // requests recorded per counter before ageing
+    private static final int[] SEEDS = {0x97cb3127, 0x2f5b8a3d, 0x8d9c1e5b, 0x5bd1e995};
+
+    // member variables
+    private int[] counters;
+    private int mask;
+    private int additions;
+    private int resetThreshold;
+
+    /**
+     * Class constructor.
+     *
+     * @param expectedEntries The number of entries the sketch should be sized for.
+     */
+    public FrequencySketch(int expectedEntries){
+        int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) * 2);
+
+        // initializing
+        this.counters = new int[width];
+        this.mask = width - 1;
+        this.additions = 0;
+        this.resetThreshold = width * RESET_MULTIPLIER;
+    }
+
+    /**
+     * Records a request for a file.
+     *
+     * @param key The file requested.
+     */
+    public void increment(Object key){
+        int hash = spread(key.hashCode());
+        boolean added = false;
+
+        for(int i = 0; i < DEPTH; i++){
+            int index = this.indexOf(hash, i);
+            if(this.counters[index] < MAX_COUNT){
+                this.counters[index]++;
+                added = true;
+            }
+        }
+
+        // ageing the counts
+        if(added && ++this.additions >= this.resetThreshold){
+            this.reset();
+        }
+    }
+
+    /**
+     * Estimates how often a file has been requested recently.
+     *
+     * @param key The file.
+     * @return The estimated number of recent requests (at most 15).
+     */
+    public int frequency(Object key){
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+
+        for(int i = 0; i < DEPTH; i++){
+            frequency = Math.min(frequency, this.counters[this.indexOf(hash, i)]);
+        }
+
+        return frequency;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Halves every count.
+     */
+    private void reset(){
+        for(int i = 0; i < this.counters.length; i++){
+            this.counters[i] >>>= 1;
+        }
+        this.additions /= 2;
+    }
+
+    /**
+     * Returns the index of one of a file's counters.
+     *
+     * @param hash The spread hash of the file.
+     * @param i The number of the counter (0 to DEPTH - 1).
+     * @return The index of the counter.
+     */
+    private int indexOf(int hash, int i){
+        int h = (hash ^ SEEDS[i]) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & this.mask;
+    }
+
+    /**
+     * Spreads the bits of a hash code.
+     *
+     * @param hashCode The hash code.
+     * @return The spread hash.
+     */
+    private static int spread(int hashCode){
+        int h = hashCode * 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
@@ -0,0 +1,394 @@
+package DS.Dstore.Cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import DS.Protocol.Event.Storage.ReadCacheStatisticsEvent;
+
+/**
+ * Byte-budgeted cache of the content of recently loaded files, held in direct (off-heap) buffers.
+ *
+ * Eviction follows the W-TinyLFU policy, so a scan over many files loaded once does not flush
+ * the popular files out of the cache:
+ *
+ * - New files enter a small LRU window (1% of the budget).
+ * - Files leaving the window only enter the main cache if they have been requested more often
+ * recently (according to a frequency sketch) than the file the main cache would evict for them.
+ * - The main cache is a segmented LRU - files requested again while in the probation segment are
+ * promoted to the protected segment (80% of the main cache).
+ *
+ * Concurrent misses for the same file are coalesced into a single read of the file. Files larger
+ * than an eighth of the budget are never cached.
+ *
+ * Entries must be invalidated whenever a file is stored or removed.
+ */
+public class ReadCache{
+
+    // constants
+    public static final int STATISTICS_INTERVAL = 1000; // loads between reports of the cache statistics
+    private static final double WINDOW_FRACTION = 0.01;
+    private static final double PROTECTED_FRACTION = 0.8;
+    private static final int MAX_ENTRY_FRACTION = 8; // largest cached file as a fraction of the budget
+    private static final int EXPECTED_ENTRY_SIZE = 16 * 1024; // used to size the frequency sketch
+
+    // member variables
+    private long budget;
+    private long windowBudget;
+    private long protectedBudget;
+    private long maxEntrySize;
+    private LinkedHashMap<String, CacheEntry> window; // access ordered - eldest first
+    private LinkedHashMap<String, CacheEntry> probation;
+    private LinkedHashMap<String, CacheEntry> protectedEntries;
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+    private FrequencySketch sketch;
+    private ConcurrentHashMap<String, CompletableFuture<ByteBuffer>> loading; // reads in progress
+    private AtomicLong hits;
+    private AtomicLong misses;
+    private AtomicLong coalesced;
+    private AtomicLong evictions;
+
+    /**
+     * Class constructor.
+     *
+     * @param budget The maximum number of bytes of file content held by the cache (0 disables
+     * the cache).
+     */
+    public ReadCache(long budget){
+        // initializing
+        this.budget = budget;
+        this.windowBudget = Math.max(1, (long) (budget * WINDOW_FRACTION));
+        this.protectedBudget = (long) ((budget - this.windowBudget) * PROTECTED_FRACTION);
+        this.maxEntrySize = budget / MAX_ENTRY_FRACTION;
+        this.window = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+        this.probation = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+        this.protectedEntries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, Math.max(1, budget / EXPECTED_ENTRY_SIZE)));
+        this.loading = new ConcurrentHashMap<String, CompletableFuture<ByteBuffer>>();
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.coalesced = new AtomicLong(0);
+        this.evictions = new AtomicLong(0);
+    }
+
+    /////////////
+    // READING //
+    /////////////
+
+    /**
+     * Gets the content of a file, from the cache if it is held there, or otherwise from the file
+     * store. If another request is already reading the file, its read is shared.
+     *
+     * The returned buffer must not be modified.
+     *
+     * @param filename The name of the file.
+     * @param file The file in the file store.
+     * @return The content of the file.
+     * @throws IOException If the file could not be read.
+     */
+    public ByteBuffer get(String filename, File file) throws IOException{
+        // cache hit
+        ByteBuffer content = this.getCached(filename);
+        if(content != null){
+            this.hits.incrementAndGet();
+            return content;
+        }
+
+        // joining a read already in progress
+        CompletableFuture<ByteBuffer> read = new CompletableFuture<ByteBuffer>();
+        CompletableFuture<ByteBuffer> existingRead = this.loading.putIfAbsent(filename, read);
+        if(existingRead != null){
+            this.coalesced.incrementAndGet();
+            return this.await(existingRead);
+        }
+
+        // cache miss - reading the file
+        this.misses.incrementAndGet();
+        try{
+            content = this.read(file);
+
+            // only caching the content if the file was not changed while being read
+            synchronized(this){
+                if(this.loading.remove(filename, read)){
+                    this.put(filename, content);
+                }
+            }
+            read.complete(content);
+
+            return content;
+        }
+        catch(IOException e){
+            this.loading.remove(filename, read);
+            read.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes a file from the cache, and stops any read in progress from adding it.
+     *
+     * @param filename The name of the file.
+     */
+    public void invalidate(String filename){
+        synchronized(this){
+            this.loading.remove(filename);
+
+            CacheEntry entry;
+            if((entry = this.window.remove(filename)) != null){
+                this.windowBytes -= entry.size;
+            }
+            else if((entry = this.probation.remove(filename)) != null){
+                this.probationBytes -= entry.size;
+            }
+            else if((entry = this.protectedEntries.remove(filename)) != null){
+                this.protectedBytes -= entry.size;
+            }
+        }
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Looks up a file in the cache, recording the request and updating the file's position.
+     *
+     * @param filename The name of the file.
+     * @return The content of the file, or null if it is not cached.
+     */
+    private synchronized ByteBuffer getCached(String filename){
+        this.sketch.increment(filename);
+
+        CacheEntry entry;
+
+        // window - moved to most recently used by the lookup
+        if((entry = this.window.get(filename)) != null){
+            return entry.content;
+        }
+
+        // protected - moved to most recently used by the lookup
+        if((entry = this.protectedEntries.get(filename)) != null){
+            return entry.content;
+        }
+
+        // probation - requested again, so promoted
+        if((entry = this.probation.remove(filename)) != null){
+            this.probationBytes -= entry.size;
+            this.protectedEntries.put(filename, entry);
+            this.protectedBytes += entry.size;
+
+            // demoting the least recently used protected files back to probation
+            while(this.protectedBytes > this.protectedBudget){
+                String demoted = this.eldest(this.protectedEntries);
+                CacheEntry demotedEntry = this.protectedEntries.remove(demoted);
+                this.protectedBytes -= demotedEntry.size;
+                this.probation.put(demoted, demotedEntry);
+                this.probationBytes += demotedEntry.size;
+            }
+
+            return entry.content;
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds a file to the cache window, moving files out of the window into the main cache if they
+     * are popular enough.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     */
+    private synchronized void put(String filename, ByteBuffer content){
+        // too large to cache
+        if(content.capacity() > this.maxEntrySize){
+            return;
+        }
+
+        CacheEntry entry = new CacheEntry(content);
+        this.window.put(filename, entry);
+        this.windowBytes += entry.size;
+
+        // moving files out of the window
+        while(this.windowBytes > this.windowBudget && !this.window.isEmpty()){
+            String candidate = this.eldest(this.window);
+            CacheEntry candidateEntry = this.window.remove(candidate);
+            this.windowBytes -= candidateEntry.size;
+
+            this.admit(candidate, candidateEntry);
+        }
+    }
+
+    /**
+     * Admits a file leaving the window into the main cache if there is room for it, or if it is
+     * requested more often than the files it would replace.
+     *
+     * @param candidate The name of the file leaving the window.
+     * @param candidateEntry The cache entry for the file.
+     */
+    private void admit(String candidate, CacheEntry candidateEntry){
+        long mainBudget = this.budget - this.windowBudget;
+        int candidateFrequency = this.sketch.frequency(candidate);
+
+        // evicting files until there is room for the candidate
+        while(this.probationBytes + this.protectedBytes + candidateEntry.size > mainBudget){
+            // victims are taken from probation first
+            LinkedHashMap<String, CacheEntry> segment = this.probation.isEmpty() ? this.protectedEntries : this.probation;
+            String victim = this.eldest(segment);
+
+            // candidate not popular enough - rejected
+            if(victim == null || candidateFrequency <= this.sketch.frequency(victim)){
+                this.evictions.incrementAndGet();
+                return;
+            }
+
+            CacheEntry victimEntry = segment.remove(victim);
+            if(segment == this.probation){
+                this.probationBytes -= victimEntry.size;
+            }
+            else{
+                this.protectedBytes -= victimEntry.size;
+            }
+            this.evictions.incrementAndGet();
+        }
+
+        this.probation.put(candidate, candidateEntry);
+        this.probationBytes += candidateEntry.size;
+    }
+
+    /**
+     * Returns the least recently used file in a segment.
+     *
+     * @param segment The segment.
+     * @return The least recently used file, or null if the segment is empty.
+     */
+    private String eldest(LinkedHashMap<String, CacheEntry> segment){
+        Iterator<String> iterator = segment.keySet().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Reads the content of a file into a buffer - a direct buffer if the content may be cached.
+     *
+     * @param file The file.
+     * @return The content of the file.
+     * @throws IOException If the file could not be read.
+     */
+    private ByteBuffer read(File file) throws IOException{
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            int size = (int) channel.size();
+            ByteBuffer content = (size <= this.maxEntrySize) ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+
+            while(content.hasRemaining()){
+                if(channel.read(content) < 0){
+                    break;
+                }
+            }
+            content.flip();
+
+            return content.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Waits for a read in progress by another request.
+     *
+     * @param read The read in progress.
+     * @return The content read.
+     * @throws IOException If the read failed.
+     */
+    private ByteBuffer await(CompletableFuture<ByteBuffer> read) throws IOException{
+        try{
+            return read.get();
+        }
+        catch(ExecutionException e){
+            throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        catch(InterruptedException e){
+            throw new IOException(e);
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getBudget(){
+        return this.budget;
+    }
+
+    public synchronized long getCachedBytes(){
+        return this.windowBytes + this.probationBytes + this.protectedBytes;
+    }
+
+    public synchronized int getNumberOfFiles(){
+        return this.window.size() + this.probation.size() + this.protectedEntries.size();
+    }
+
+    public long getHits(){
+        return this.hits.get();
+    }
+
+    public long getMisses(){
+        return this.misses.get();
+    }
+
+    public long getCoalescedMisses(){
+        return this.coalesced.get();
+    }
+
+    public long getEvictions(){
+        return this.evictions.get();
+    }
+
+    public long getRequests(){
+        return this.hits.get() + this.misses.get() + this.coalesced.get();
+    }
+
+    /**
+     * Returns the statistics of the cache as an event to be logged.
+     *
+     * @return The statistics event.
+     */
+    public ReadCacheStatisticsEvent getStatistics(){
+        return new ReadCacheStatisticsEvent(this.getHitRate(), this.getHits(), this.getMisses(), this.getCoalescedMisses(), this.getEvictions(), this.getCachedBytes(), this.getBudget());
+    }
+
+    /**
+     * Returns the proportion of requests served without reading the file store (cache hits and
+     * misses coalesced into another request's read).
+     *
+     * @return The hit rate between 0 and 1, or 0 if there have been no requests.
+     */
+    public double getHitRate(){
+        long hits = this.hits.get() + this.coalesced.get();
+        long total = hits + this.misses.get();
+
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    /**
+     * The content of a cached file.
+     */
+    private static class CacheEntry{
+
+        // member variables
+        private ByteBuffer content;
+        private long size;
+
+        private CacheEntry(ByteBuffer content){
+            this.content = content;
+            this.size = content.capacity();
+        }
+    }
+}
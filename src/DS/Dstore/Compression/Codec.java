@@ -0,0 +1,65 @@
+package DS.Dstore.Compression;
+
+/**
+ * The codecs a Dstore can compress a stored file with. The codec of each file is recorded in the
+ * header of its stored content.
+ */
+public enum Codec {
+    // codecs
+    NONE("none", 0), // stored as it is (incompressible content)
+    DEFLATE("deflate", 1), // deflate with a preset dictionary - best for small files
+    FAST("fast", 2); // fastest deflate level - cheap enough for large files
+
+    private String codec;
+    private int id;
+
+    private Codec(String codec, int id){
+        this.codec = codec;
+        this.id = id;
+    }
+
+    /**
+     * Converts the codec to a string.
+     * @return String equivalent of the codec.
+     */
+    @Override
+    public String toString(){
+        return this.codec;
+    }
+
+    /**
+     * Returns the id the codec is recorded as in a stored file's header.
+     * @return The id of the codec.
+     */
+    public int getId(){
+        return this.id;
+    }
+
+    /**
+     * Gathers the codec with the given id.
+     * @param id The id of the codec.
+     * @return The Codec with the id, or null if there is none.
+     */
+    public static Codec fromId(int id) {
+        for (Codec codec : Codec.values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gathers the codec from the given string.
+     * @param text The String form of the codec.
+     * @return The Codec for the string, or null if there is none.
+     */
+    public static Codec fromString(String text) {
+        for (Codec codec : Codec.values()) {
+            if (codec.codec.equalsIgnoreCase(text)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,736 @@
+package DS.Dstore.Compression;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import DS.Dstore.DstoreOptions;
+import DS.Dstore.DstoreOptions.CompressionMode;
+
+/**
+ * Compresses the content of the files stored on a Dstore, and decompresses it when they are
+ * loaded, so the storage engines only ever see the stored form and everything else only ever
+ * sees the original content and size.
+ *
+ * Stored content begins with a header recording how it was stored:
+ *
+ *   magic (4) | codec (1) | filesize (8) | compression CPU time in us (4) | CRC32C of the header (4)
+ *
+ * The codec of each file is chosen by the Dstore's compression mode. In AUTO mode, small files are
+ * compressed with deflate and a preset dictionary (of strings common in text, JSON, HTML and logs,
+ * so even a file too small to repeat itself compresses well) and larger files with the fastest
+ * deflate level. Content that does not shrink by at least a tenth is stored as it is (behind a
+ * header) - a large file is first tested by compressing a sample, so incompressible content costs
+ * little CPU.
+ *
+ * Files stored while compression is off have no header, and are loaded as they are.
+ *
+ * The ratio and CPU cost of each codec, and of each file compressed or loaded since the Dstore
+ * started, are tracked.
+ */
+public class Compressor{
+
+    // constants
+    public static final int HEADER_SIZE = 21;
+    private static final int MAGIC = 0x44535a31; // 'DSZ1'
+    private static final int CHECKED_HEADER_SIZE = HEADER_SIZE - 4; // header bytes covered by its checksum
+    private static final int DICTIONARY_MAX_SIZE = 32 * 1024; // largest file compressed with the dictionary in AUTO mode
+    private static final int SAMPLE_SIZE = 64 * 1024; // bytes compressed to test a large file
+    private static final double MAX_RATIO = 0.9; // largest stored size (as a fraction) worth compressing to
+    private static final int WINDOW_SIZE = 32 * 1024; // deflate only uses the end of a dictionary
+    private static final String DICTIONARY_FOLDER = "dictionaries"; // in the metadata folder, every dictionary files were compressed with
+    private static final String DICTIONARY_EXTENSION = ".dict";
+    private static final byte[] DEFAULT_DICTIONARY = (
+        "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title></title><link rel=\"stylesheet\" href=\"" +
+        "<script type=\"text/javascript\" src=\"</script></head><body><div class=\"</div><span></span>" +
+        "<p></p><a href=\"https://www.</a><img src=\"\" alt=\"\"/><ul><li></li></ul><table><tr><td></td></tr></table>" +
+        "</body></html>\n" +
+        "The quick brown fox jumps over the lazy dog. This is a file that contains some of the most common " +
+        "words in English text, which are the, and, that, have, with, this, from, they, will, would, there, " +
+        "their, what, about, which, when, make, like, time, just, know, take, people, into, year, your, good, " +
+        "some, could, them, other, than, then, only, come, over, think, also, back, after, because, these.\n" +
+        "DEBUG INFO WARN ERROR Exception at java.lang. Caused by: java.io.IOException: null\n" +
+        "2024-01-01T00:00:00.000Z 2025-12-31 23:59:59,000 GET POST PUT DELETE HTTP/1.1\" 200 404 500 " +
+        "Content-Type: application/json; charset=UTF-8\r\nContent-Length: \r\n" +
+        "id,name,value,type,date,time,status,description,count,total\n0,1,2,3,4,5,6,7,8,9,10,100,1000\n" +
+        "{\"id\": \"name\": \"value\": \"type\": \"data\": [{\"key\": \"created_at\": \"updated_at\": " +
+        "\"status\": \"description\": \"true\", \"false\", null}, {\"version\": \"1.0\", \"items\": [], " +
+        "\"timestamp\": \"message\": \"error\": \"result\": \"count\": 0, \"url\": \"https://\"}]}\n" +
+        "    public static void main(String[] args){ return; } private final int long double float " +
+        "boolean char byte class interface import package if else for while switch case break new " +
+        "the of and to in is that for it with as was on be at by this are from or an have not which " +
+        "the the the "
+    ).getBytes(StandardCharsets.UTF_8);
+
+    // member variables
+    private CompressionMode mode;
+    private String dictionaryPath;
+    private int maxBufferedSize;
+    private byte[] dictionary; // preset dictionary new files are compressed with
+    private ConcurrentHashMap<Integer, byte[]> dictionaries; // every known dictionary by its Adler-32
+    private EnumMap<Codec, CodecStatistics> statistics;
+    private ConcurrentHashMap<String, ObjectStatistics> objects;
+    private ThreadLocal<Deflater> dictionaryDeflaters;
+    private ThreadLocal<Deflater> fastDeflaters;
+    private ThreadLocal<Inflater> inflaters;
+    private ThreadMXBean threads;
+
+    /**
+     * Class constructor.
+     *
+     * @param options The Dstore's options.
+     */
+    public Compressor(DstoreOptions options){
+        // initializing
+        this.mode = options.getCompression();
+        this.dictionaryPath = options.getCompressionDictionary();
+        this.maxBufferedSize = options.getCompressionMaxSize();
+        this.dictionary = DEFAULT_DICTIONARY;
+        this.dictionaries = new ConcurrentHashMap<Integer, byte[]>();
+        this.statistics = new EnumMap<Codec, CodecStatistics>(Codec.class);
+        for(Codec codec : Codec.values()){
+            this.statistics.put(codec, new CodecStatistics());
+        }
+        this.objects = new ConcurrentHashMap<String, ObjectStatistics>();
+        this.dictionaryDeflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION));
+        this.fastDeflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+        this.inflaters = ThreadLocal.withInitial(() -> new Inflater());
+        this.threads = ManagementFactory.getThreadMXBean();
+    }
+
+    ///////////
+    // SETUP //
+    ///////////
+
+    /**
+     * Loads the preset dictionaries - the built in one, every one kept in the metadata folder, and
+     * the Dstore's own if it has one (which new files are then compressed with).
+     *
+     * Files compressed with a dictionary can only be decompressed while that dictionary is known,
+     * so the Dstore's own dictionary is copied into the metadata folder before any file is
+     * compressed with it. Files written with a dictionary that is no longer configured can then
+     * still be loaded.
+     *
+     * @param metadataFolder The Dstore's metadata folder.
+     * @throws IOException If a dictionary could not be read or kept.
+     */
+    public void setup(File metadataFolder) throws IOException{
+        this.addDictionary(DEFAULT_DICTIONARY);
+
+        // loading every dictionary files have been compressed with
+        File dictionaryFolder = new File(metadataFolder, DICTIONARY_FOLDER);
+        File[] keptDictionaries = dictionaryFolder.listFiles();
+        if(keptDictionaries != null){
+            for(File keptDictionary : keptDictionaries){
+                if(keptDictionary.getName().endsWith(DICTIONARY_EXTENSION)){
+                    this.addDictionary(Files.readAllBytes(keptDictionary.toPath()));
+                }
+            }
+        }
+
+        // loading the Dstore's own dictionary (kept before it is used)
+        if(this.dictionaryPath != null){
+            byte[] dictionary = Files.readAllBytes(new File(this.dictionaryPath).toPath());
+            if(dictionary.length > WINDOW_SIZE){
+                dictionary = Arrays.copyOfRange(dictionary, dictionary.length - WINDOW_SIZE, dictionary.length);
+            }
+
+            keepDictionary(dictionaryFolder, this.addDictionary(dictionary), dictionary);
+            this.dictionary = dictionary;
+        }
+    }
+
+    /**
+     * Makes a preset dictionary known for decompression.
+     *
+     * @param dictionary The dictionary.
+     * @return The Adler-32 of the dictionary (which identifies it in compressed content).
+     */
+    private int addDictionary(byte[] dictionary){
+        Adler32 adler = new Adler32();
+        adler.update(dictionary);
+        this.dictionaries.put((int) adler.getValue(), dictionary);
+
+        return (int) adler.getValue();
+    }
+
+    /**
+     * Copies a dictionary into the dictionary folder (durably) if it is not there already.
+     *
+     * @param dictionaryFolder The dictionary folder.
+     * @param adler The Adler-32 of the dictionary.
+     * @param dictionary The dictionary.
+     * @throws IOException If the dictionary could not be written.
+     */
+    private static void keepDictionary(File dictionaryFolder, int adler, byte[] dictionary) throws IOException{
+        File keptDictionary = new File(dictionaryFolder, String.format("%08x", adler) + DICTIONARY_EXTENSION);
+        if(keptDictionary.exists()){
+            return;
+        }
+
+        // writing to a temporary file, and moving it into place once it is on disk
+        dictionaryFolder.mkdirs();
+        File tempDictionary = new File(dictionaryFolder, keptDictionary.getName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(tempDictionary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            ByteBuffer buffer = ByteBuffer.wrap(dictionary);
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tempDictionary.toPath(), keptDictionary.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /////////////////
+    // COMPRESSING //
+    /////////////////
+
+    /**
+     * Converts the content of a file into the form it is stored in.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     * @return The stored form of the content (the content itself if compression is off).
+     */
+    public ByteBuffer encode(String filename, byte[] content){
+        // compression off
+        if(this.mode == CompressionMode.OFF){
+            return ByteBuffer.wrap(content);
+        }
+
+        long startTime = this.getCpuTime();
+        Codec codec = this.chooseCodec(content.length);
+        byte[] stored = new byte[HEADER_SIZE + (int) (content.length * MAX_RATIO)];
+        int storedSize = -1;
+
+        // testing a sample of a large file first
+        if(codec != Codec.NONE && content.length > SAMPLE_SIZE){
+            if(this.deflate(Codec.FAST, content, SAMPLE_SIZE, stored, HEADER_SIZE, HEADER_SIZE + (int) (SAMPLE_SIZE * MAX_RATIO)) < 0){
+                codec = Codec.NONE;
+            }
+        }
+
+        // compressing the file
+        if(codec != Codec.NONE){
+            storedSize = this.deflate(codec, content, content.length, stored, HEADER_SIZE, stored.length);
+            if(storedSize < 0){
+                codec = Codec.NONE;
+            }
+        }
+
+        // incompressible - stored as it is
+        if(codec == Codec.NONE){
+            stored = new byte[HEADER_SIZE + content.length];
+            System.arraycopy(content, 0, stored, HEADER_SIZE, content.length);
+            storedSize = content.length;
+        }
+
+        long compressTime = this.getCpuTime() - startTime;
+        writeHeader(ByteBuffer.wrap(stored), codec, content.length, compressTime);
+
+        // recording the compression
+        this.statistics.get(codec).recordCompression(content.length, storedSize, compressTime);
+        this.objects.put(filename, new ObjectStatistics(codec, content.length, storedSize, compressTime / 1000, 0));
+
+        return ByteBuffer.wrap(stored, 0, HEADER_SIZE + storedSize);
+    }
+
+    /**
+     * Returns the header of a file that is stored as it is, for content that is too large to be
+     * compressed in memory and is written straight after the header as it arrives.
+     *
+     * @param filename The name of the file.
+     * @param filesize The size of the file in bytes.
+     * @return The header, or an empty buffer if compression is off.
+     */
+    public ByteBuffer frame(String filename, long filesize){
+        // compression off
+        if(this.mode == CompressionMode.OFF){
+            return ByteBuffer.allocate(0);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        writeHeader(header, Codec.NONE, filesize, 0);
+
+        // recording the file
+        this.statistics.get(Codec.NONE).recordCompression(filesize, filesize, 0);
+        this.objects.put(filename, new ObjectStatistics(Codec.NONE, filesize, filesize, 0, 0));
+
+        return header;
+    }
+
+    /**
+     * Chooses the codec for a file according to the compression mode.
+     *
+     * @param filesize The size of the file in bytes.
+     * @return The codec to try.
+     */
+    private Codec chooseCodec(int filesize){
+        if(this.mode == CompressionMode.DEFLATE){
+            return Codec.DEFLATE;
+        }
+        else if(this.mode == CompressionMode.FAST){
+            return Codec.FAST;
+        }
+        else{
+            return (filesize <= DICTIONARY_MAX_SIZE) ? Codec.DEFLATE : Codec.FAST;
+        }
+    }
+
+    /**
+     * Compresses content into an array, giving up if it does not fit.
+     *
+     * @param codec The codec (DEFLATE or FAST).
+     * @param content The content.
+     * @param length The number of bytes of the content to compress.
+     * @param output The array the compressed content is written to.
+     * @param offset The position in the array to write from.
+     * @param limit The position in the array the compressed content must end by.
+     * @return The size of the compressed content, or -1 if it did not fit.
+     */
+    private int deflate(Codec codec, byte[] content, int length, byte[] output, int offset, int limit){
+        Deflater deflater = (codec == Codec.DEFLATE) ? this.dictionaryDeflaters.get() : this.fastDeflaters.get();
+
+        try{
+            if(codec == Codec.DEFLATE){
+                deflater.setDictionary(this.dictionary);
+            }
+            deflater.setInput(content, 0, length);
+            deflater.finish();
+
+            int position = offset;
+            while(!deflater.finished()){
+                if(position >= limit){
+                    return -1;
+                }
+                position += deflater.deflate(output, position, limit - position);
+            }
+
+            return position - offset;
+        }
+        finally{
+            deflater.reset();
+        }
+    }
+
+    ///////////////////
+    // DECOMPRESSING //
+    ///////////////////
+
+    /**
+     * Converts the stored form of a file back into its content.
+     *
+     * The returned buffer must not be modified.
+     *
+     * @param filename The name of the file.
+     * @param stored The stored form of the file (not modified).
+     * @return The content of the file.
+     * @throws ZipException If the stored form is damaged and cannot be decompressed.
+     * @throws UnknownDictionaryException If the content was compressed with a dictionary that is
+     * not known (the content is not damaged).
+     */
+    public ByteBuffer decode(String filename, ByteBuffer stored) throws ZipException, UnknownDictionaryException{
+        Codec codec = getCodec(stored);
+
+        // stored without a header
+        if(codec == null){
+            return stored;
+        }
+
+        long filesize = stored.getLong(stored.position() + 5);
+        long compressTime = stored.getInt(stored.position() + 13) & 0xffffffffL;
+        int storedSize = stored.remaining() - HEADER_SIZE;
+        ByteBuffer input = stored.duplicate();
+        input.position(input.position() + HEADER_SIZE);
+
+        // stored as it is
+        if(codec == Codec.NONE){
+            if(storedSize != filesize){
+                throw new ZipException("The stored content of '" + filename + "' is " + storedSize + " bytes rather than " + filesize + ".");
+            }
+            this.objects.put(filename, new ObjectStatistics(codec, filesize, storedSize, compressTime, 0));
+
+            return input.slice();
+        }
+
+        // decompressing
+        long startTime = this.getCpuTime();
+        ByteBuffer content = ByteBuffer.allocate((int) filesize);
+        Inflater inflater = this.inflaters.get();
+        try{
+            inflater.setInput(input);
+            while(!inflater.finished()){
+                if(inflater.needsDictionary()){
+                    byte[] dictionary = this.dictionaries.get(inflater.getAdler());
+                    if(dictionary == null){
+                        throw new UnknownDictionaryException(filename, inflater.getAdler());
+                    }
+                    inflater.setDictionary(dictionary);
+                }
+                else if(inflater.inflate(content) == 0 && (inflater.needsInput() || !content.hasRemaining())){
+                    throw new ZipException("The compressed content of '" + filename + "' does not match its size.");
+                }
+            }
+            if(content.hasRemaining()){
+                throw new ZipException("The compressed content of '" + filename + "' does not match its size.");
+            }
+        }
+        catch(DataFormatException e){
+            throw new ZipException("The compressed content of '" + filename + "' is damaged : " + e.getMessage());
+        }
+        finally{
+            inflater.reset();
+        }
+        content.flip();
+
+        // recording the decompression
+        long decompressTime = this.getCpuTime() - startTime;
+        this.statistics.get(codec).recordDecompression(decompressTime);
+        this.objects.put(filename, new ObjectStatistics(codec, filesize, storedSize, compressTime, decompressTime / 1000));
+
+        return content.asReadOnlyBuffer();
+    }
+
+    /**
+     * Converts a range of a file's content back from its stored form. Content stored uncompressed
+     * is only sliced, while compressed content has to be decompressed whole first.
+     *
+     * The returned buffer must not be modified.
+     *
+     * @param filename The name of the file.
+     * @param stored The stored form of the file (not modified).
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @return The range of the content.
+     * @throws ZipException If the stored form is damaged and cannot be decompressed.
+     * @throws UnknownDictionaryException If the content was compressed with a dictionary that is
+     * not known.
+     * @throws EOFException If the range is not within the file.
+     */
+    public ByteBuffer decodeRange(String filename, ByteBuffer stored, long offset, int length) throws IOException{
+        return getRange(filename, this.decode(filename, stored), offset, length);
+    }
+
+    /**
+     * Forgets the statistics of a file that has been removed.
+     *
+     * @param filename The name of the file.
+     */
+    public void forget(String filename){
+        this.objects.remove(filename);
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Writes the header of a stored file at the start of a buffer.
+     *
+     * @param stored The buffer.
+     * @param codec The codec the file is stored with.
+     * @param filesize The size of the file's content in bytes.
+     * @param compressTime The CPU time (ns) taken to compress the file.
+     */
+    private static void writeHeader(ByteBuffer stored, Codec codec, long filesize, long compressTime){
+        stored.putInt(0, MAGIC);
+        stored.put(4, (byte) codec.getId());
+        stored.putLong(5, filesize);
+        stored.putInt(13, (int) Math.min(compressTime / 1000, 0xffffffffL));
+        stored.putInt(CHECKED_HEADER_SIZE, getHeaderChecksum(stored));
+    }
+
+    /**
+     * Returns the codec a file is stored with, as recorded in its header.
+     *
+     * @param stored The stored form of the file (not modified).
+     * @return The codec, or null if the content has no header.
+     */
+    public static Codec getCodec(ByteBuffer stored){
+        if(stored.remaining() < HEADER_SIZE || stored.getInt(stored.position()) != MAGIC){
+            return null;
+        }
+        if(stored.getInt(stored.position() + CHECKED_HEADER_SIZE) != getHeaderChecksum(stored)){
+            return null;
+        }
+
+        return Codec.fromId(stored.get(stored.position() + 4));
+    }
+
+    /**
+     * Returns the size of a file's content from its stored form.
+     *
+     * @param stored The stored form of the file (not modified).
+     * @return The size of the file in bytes.
+     */
+    public static long getFilesize(ByteBuffer stored){
+        return (getCodec(stored) == null) ? stored.remaining() : stored.getLong(stored.position() + 5);
+    }
+
+    /**
+     * Returns the size of a file's content from the file it is stored in, reading only its header.
+     *
+     * @param file The file.
+     * @return The size of the file in bytes.
+     * @throws IOException If the file could not be read.
+     */
+    public static long getFilesize(File file) throws IOException{
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while(header.hasRemaining() && channel.read(header) >= 0){
+                // reading the header
+            }
+            header.flip();
+
+            return (getCodec(header) == null) ? channel.size() : getFilesize(header);
+        }
+    }
+
+    /**
+     * Returns where the content of a file starts within the file it is stored in, reading only its
+     * header, so that ranges of content stored uncompressed can be read in place.
+     *
+     * @param channel The file (its position is not changed).
+     * @return The position of the content, or -1 if the content is compressed.
+     * @throws IOException If the file could not be read.
+     */
+    public static long getContentPosition(FileChannel channel) throws IOException{
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while(header.hasRemaining() && channel.read(header, header.position()) >= 0){
+            // reading the header
+        }
+        header.flip();
+
+        Codec codec = getCodec(header);
+        if(codec == null){
+            return 0;
+        }
+
+        return (codec == Codec.NONE) ? HEADER_SIZE : -1;
+    }
+
+    /**
+     * Returns a range of a file's content.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file (not modified).
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @return The range, sharing the content.
+     * @throws EOFException If the range is not within the file.
+     */
+    public static ByteBuffer getRange(String filename, ByteBuffer content, long offset, int length) throws EOFException{
+        if(offset < 0 || length < 0 || offset + length > content.remaining()){
+            throw new EOFException("The range " + offset + "+" + length + " is not within '" + filename + "' of " + content.remaining() + " bytes.");
+        }
+
+        ByteBuffer range = content.duplicate();
+        range.position(content.position() + (int) offset);
+        range.limit(range.position() + length);
+
+        return range.slice();
+    }
+
+    /**
+     * Computes the checksum of the header at the start of a buffer.
+     *
+     * @param stored The buffer (not modified).
+     * @return The CRC32C of the header.
+     */
+    private static int getHeaderChecksum(ByteBuffer stored){
+        ByteBuffer header = stored.duplicate();
+        header.limit(header.position() + CHECKED_HEADER_SIZE);
+
+        CRC32C crc = new CRC32C();
+        crc.update(header);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the CPU time used by the current thread (or the wall clock time if the platform
+     * does not measure it).
+     *
+     * @return The time in ns.
+     */
+    private long getCpuTime(){
+        return this.threads.isCurrentThreadCpuTimeSupported() ? this.threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public boolean isEnabled(){
+        return this.mode != CompressionMode.OFF;
+    }
+
+    public CompressionMode getMode(){
+        return this.mode;
+    }
+
+    /**
+     * Returns whether a file received from a connection is small enough to be gathered in memory
+     * and compressed before it is stored - larger files are stored as they are.
+     *
+     * @param filesize The size of the file in bytes.
+     * @return True if the file should be compressed, false if not.
+     */
+    public boolean shouldBuffer(long filesize){
+        return this.isEnabled() && filesize <= this.maxBufferedSize;
+    }
+
+    public CodecStatistics getStatistics(Codec codec){
+        return this.statistics.get(codec);
+    }
+
+    /**
+     * Returns the statistics of a file compressed or loaded since the Dstore started.
+     *
+     * @param filename The name of the file.
+     * @return The statistics, or null if the file has not been compressed or loaded.
+     */
+    public ObjectStatistics getStatistics(String filename){
+        return this.objects.get(filename);
+    }
+
+    /**
+     * The sizes and CPU cost of the files stored with one codec.
+     */
+    public static class CodecStatistics{
+
+        // member variables
+        private long objects;
+        private long bytes;
+        private long storedBytes;
+        private long compressTime; // ns
+        private long decompressions;
+        private long decompressTime; // ns
+
+        private CodecStatistics(){}
+
+        /**
+         * Records a file being stored with the codec.
+         *
+         * @param bytes The size of the file's content.
+         * @param storedBytes The size of the file's stored content (without its header).
+         * @param compressTime The CPU time (ns) taken to compress the file.
+         */
+        private synchronized void recordCompression(long bytes, long storedBytes, long compressTime){
+            this.objects++;
+            this.bytes += bytes;
+            this.storedBytes += storedBytes;
+            this.compressTime += compressTime;
+        }
+
+        /**
+         * Records a file stored with the codec being decompressed.
+         *
+         * @param decompressTime The CPU time (ns) taken to decompress the file.
+         */
+        private synchronized void recordDecompression(long decompressTime){
+            this.decompressions++;
+            this.decompressTime += decompressTime;
+        }
+
+        public synchronized long getObjects(){
+            return this.objects;
+        }
+
+        public synchronized long getBytes(){
+            return this.bytes;
+        }
+
+        public synchronized long getStoredBytes(){
+            return this.storedBytes;
+        }
+
+        /**
+         * Returns the stored size of the files as a fraction of their size.
+         *
+         * @return The compression ratio (1 if no files have been stored).
+         */
+        public synchronized double getRatio(){
+            return (this.bytes == 0) ? 1 : (double) this.storedBytes / this.bytes;
+        }
+
+        public synchronized double getCompressTime(){
+            return this.compressTime / 1e6;
+        }
+
+        public synchronized long getDecompressions(){
+            return this.decompressions;
+        }
+
+        public synchronized double getDecompressTime(){
+            return this.decompressTime / 1e6;
+        }
+    }
+
+    /**
+     * The codec, sizes and CPU cost of one stored file.
+     */
+    public static class ObjectStatistics{
+
+        // member variables
+        private Codec codec;
+        private long filesize;
+        private long storedSize;
+        private long compressTime; // us
+        private long decompressTime; // us, of the last load
+
+        private ObjectStatistics(Codec codec, long filesize, long storedSize, long compressTime, long decompressTime){
+            this.codec = codec;
+            this.filesize = filesize;
+            this.storedSize = storedSize;
+            this.compressTime = compressTime;
+            this.decompressTime = decompressTime;
+        }
+
+        public Codec getCodec(){
+            return this.codec;
+        }
+
+        public long getFilesize(){
+            return this.filesize;
+        }
+
+        public long getStoredSize(){
+            return this.storedSize;
+        }
+
+        /**
+         * Returns the stored size of the file as a fraction of its size.
+         *
+         * @return The compression ratio (1 for an empty file).
+         */
+        public double getRatio(){
+            return (this.filesize == 0) ? 1 : (double) this.storedSize / this.filesize;
+        }
+
+        public long getCompressTime(){
+            return this.compressTime;
+        }
+
+        public long getDecompressTime(){
+            return this.decompressTime;
+        }
+    }
+}
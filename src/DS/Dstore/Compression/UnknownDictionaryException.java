@@ -0,0 +1,21 @@
+package DS.Dstore.Compression;
+
+import java.io.IOException;
+
+/**
+ * Exception for when the stored content of a file was compressed with a preset dictionary the
+ * Dstore does not know. The content is not damaged - it cannot be decompressed until the
+ * dictionary is known again, so the file must not be treated as corrupt.
+ */
+public class UnknownDictionaryException extends IOException{
+
+    /**
+     * Class constructor.
+     *
+     * @param filename The name of the file.
+     * @param adler The Adler-32 of the dictionary the file was compressed with.
+     */
+    public UnknownDictionaryException(String filename, int adler){
+        super("The content of '" + filename + "' was compressed with an unknown dictionary (" + String.format("%08x", adler) + ").");
+    }
+}
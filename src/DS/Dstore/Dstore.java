@@ -1,9 +1,21 @@
 package DS.Dstore;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import DS.Dstore.DstoreOptions.StorageType;
+import DS.Dstore.Cache.ReadCache;
+import DS.Dstore.Compression.Compressor;
+import DS.Dstore.Scheduler.IOScheduler;
+import DS.Dstore.Storage.DedupIndex;
+import DS.Dstore.Storage.DedupStorageEngine;
+import DS.Dstore.Storage.FileStorageEngine;
+import DS.Dstore.Storage.MultiDiskStorageEngine;
+import DS.Dstore.Storage.SegmentStorageEngine;
+import DS.Dstore.Storage.StorageEngine;
 import DS.Protocol.Protocol;
 import DS.Protocol.Exception.*;
 import DS.Protocol.Token.RequestTokenizer;
@@ -30,14 +42,29 @@ import Network.Server.ServerThread;
   */
 public class Dstore extends Server{
 
+    // constants
+    public static final String METADATA_FOLDER = ".dstore";
+    public static final int PARTIAL_STORE_TIMEOUTS = 2; // timeout periods a STORE cut off part way is kept for
+    public static final int MAX_RESUME_ATTEMPTS = 3; // times forwarding cut off part way is resumed before giving up
+
     // member variables
     private int port;
     private int cPort;
     private int timeout;
     private String folderPath;
     private File fileStore;
+    private File metadataFolder;
     private ServerThread controllerThread;
     private NetworkInterface networkInterface;
+    private FileChangeLog changeLog;
+    private DstoreOptions options;
+    private DstoreCatalog catalog;
+    private ReadCache readCache;
+    private StorageEngine storage;
+    private IOScheduler scheduler;
+    private Scrubber scrubber;
+    private Compressor compressor;
+    private PartialStores partialStores;
 //
 //    /**
 //* 类构造函数。
@@ -49,6 +76,20 @@ public class Dstore extends Server{
 //* @param networkInterface Dstore 的网络接口。
 //     */
     public Dstore(int port, int cPort, int timeout, String folderPath, NetworkInterface networkInterface){
+        this(port, cPort, timeout, folderPath, new DstoreOptions(), networkInterface);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param port The port the DStore will listen on.
+     * @param cPort The port the Controller the DStore will connect to is on.
+     * @param timeout The timeout period for the DStore.
+     * @param folderPath The folder the DStore will store files in.
+     * @param options The optional settings for the DStore.
+     * @param networkInterface The network interface for the Dstore.
+     */
+    public Dstore(int port, int cPort, int timeout, String folderPath, DstoreOptions options, NetworkInterface networkInterface){
         // initializing member variables
         super(ServerType.DSTORE, port, networkInterface);
         this.port = port;
@@ -56,6 +97,14 @@ public class Dstore extends Server{
         this.timeout = timeout;
         this.folderPath = folderPath;
         this.networkInterface = networkInterface;
+        this.options = options;
+        this.changeLog = new FileChangeLog(FileChangeLog.DEFAULT_MAX_CHANGES);
+        this.catalog = new DstoreCatalog(this);
+        this.readCache = new ReadCache(options.getCacheSize());
+        this.scheduler = new IOScheduler(options);
+        this.scrubber = new Scrubber(this, options);
+        this.compressor = new Compressor(options);
+        this.partialStores = new PartialStores((long) PARTIAL_STORE_TIMEOUTS * timeout);
         this.setRequestHandler(new DstoreRequestHandler(this));
     }
 
@@ -68,15 +117,21 @@ public class Dstore extends Server{
      *
      * 创建记录器，连接到控制器并创建文件存储。
      *
+     * The file store is set up first, so the file catalog is loaded before the Controller can
+     * ask for the Dstore's files.
+     *
      * @throws ServerSetupException 如果无法设置 Dstore。
      */
     public void setup() throws ServerSetupException{
         try{
+            // setting up file storage folder
+            this.setupFileStore(this.folderPath);
+
             // connecting to controller
             this.connectToController();
 
-            // setting up file storage folder
-            this.setupFileStore(this.folderPath);
+            // starting the background scrubber
+            this.scrubber.start();
         }
         catch(Exception e){
             throw new ServerSetupException(ServerType.DSTORE, e);
@@ -123,8 +178,9 @@ public class Dstore extends Server{
      * 如果尚不存在。
      *
      * @param folderPath 文件存储目录。
+     * @throws IOException If the storage engine or file catalog could not be set up.
      */
-    public void setupFileStore(String folderPath){
+    public void setupFileStore(String folderPath) throws IOException{
         // creating file object
         this.fileStore = new File(folderPath);
 
@@ -132,6 +188,52 @@ public class Dstore extends Server{
         if(!this.fileStore.exists()){
             this.fileStore.mkdir();
         }
+
+        // creating the metadata folder if it doesnt exist
+        this.metadataFolder = new File(this.fileStore, METADATA_FOLDER);
+        if(!this.metadataFolder.exists()){
+            this.metadataFolder.mkdir();
+        }
+
+        // loading the compression dictionaries (needed to load compressed files)
+        this.compressor.setup(this.metadataFolder);
+
+        // preparing the storage engine (spread across the file store and any other disks)
+        if(this.options.getDisks().isEmpty()){
+            this.storage = this.createStorageEngine(this.fileStore);
+        }
+        else{
+            ArrayList<File> roots = new ArrayList<File>();
+            roots.add(this.fileStore);
+            for(String disk : this.options.getDisks()){
+                roots.add(new File(disk));
+            }
+            this.storage = new MultiDiskStorageEngine(this, roots);
+        }
+
+        // storing content by its hash (kept once turned off, so deduplicated files are still found)
+        if(this.options.getDedup() || DedupIndex.exists(this.metadataFolder)){
+            this.storage = new DedupStorageEngine(this, this.storage);
+        }
+        this.storage.setup();
+
+        // loading the catalog of stored files
+        this.catalog.load();
+    }
+
+    /**
+     * Creates the storage engine for files stored in a folder, according to the Dstore's options.
+     *
+     * @param root The folder.
+     * @return The storage engine.
+     */
+    public StorageEngine createStorageEngine(File root){
+        if(this.options.getStorage() == StorageType.SEGMENTS){
+            return new SegmentStorageEngine(this, root);
+        }
+        else{
+            return new FileStorageEngine(this, root);
+        }
     }
 
     ////////////////////
@@ -196,28 +298,60 @@ public class Dstore extends Server{
         }
     }
 
+    /**
+     * Handles a stored file being found to be corrupt.
+     *
+     * The file is removed from the file store and reported to the Controller, which drops this
+     * Dstore's replica from its index and re-replicates the file from a good copy. On a
+     * deduplicating Dstore every file sharing the corrupt content is removed and reported.
+     *
+     * @param filename The name of the file.
+     * @param error The damage found in the file (a checksum mismatch, or compressed content that
+     * could not be decompressed).
+     */
+    public void handleCorruptFile(String filename, NetworkException error){
+        // logging the corruption
+        this.handleError(error);
+
+        // removing the corrupt copy (and every file sharing its content, if deduplicated)
+        ArrayList<String> filenames = new ArrayList<String>();
+        filenames.add(filename);
+        try{
+            if(this.storage instanceof DedupStorageEngine){
+                filenames = ((DedupStorageEngine) this.storage).removeContent(filename);
+            }
+            else{
+                this.storage.remove(filename);
+            }
+        }
+        catch(IOException e){
+            this.handleError(new ScrubException(filename, e));
+        }
+
+        // reporting them to the Controller
+        for(String corruptFile : filenames){
+            try{
+                this.getControllerThread().getConnection().sendMessage(Protocol.getCorruptMessage(corruptFile));
+            }
+            catch(NetworkException e){
+                this.handleError(e);
+            }
+        }
+    }
+
     ////////////////////
     // HELPER METHODS //
     ////////////////////
 
     /**
      * Returns a list of files stored in the Dstore as a mapping of
-     * filenames to filesizes.
+     * filenames to filesizes. The list is taken from the file catalog rather than
+     * the file store.
      * 
      * @return A mapping of filenames to filesizes.
      */
     public HashMap<String, Integer> getFiles(){
-        // gathering list of files
-        File[] fileList = this.getFileStore().listFiles();
-
-        // creating hashmap of files
-        HashMap<String, Integer> files = new HashMap<String, Integer>();
-        for(File file : fileList){
-            files.put(file.getName(), (int) file.length());
-        }
-
-        // returning map of files
-        return files;
+        return this.catalog.getFiles();
     }
 
 
@@ -245,7 +379,47 @@ public class Dstore extends Server{
         return this.fileStore;
     }
 
+    public File getMetadataFolder(){
+        return this.metadataFolder;
+    }
+
     public ServerThread getControllerThread(){
         return this.controllerThread;
     }
+
+    public FileChangeLog getChangeLog(){
+        return this.changeLog;
+    }
+
+    public DstoreOptions getOptions(){
+        return this.options;
+    }
+
+    public DstoreCatalog getCatalog(){
+        return this.catalog;
+    }
+
+    public ReadCache getReadCache(){
+        return this.readCache;
+    }
+
+    public StorageEngine getStorage(){
+        return this.storage;
+    }
+
+    public IOScheduler getScheduler(){
+        return this.scheduler;
+    }
+
+    public Scrubber getScrubber(){
+        return this.scrubber;
+    }
+
+    public PartialStores getPartialStores(){
+        return this.partialStores;
+    }
+
+    public Compressor getCompressor(){
+        return this.compressor;
+    }
 }
\ No newline at end of file
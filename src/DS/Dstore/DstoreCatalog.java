@@ -0,0 +1,524 @@
+package DS.Dstore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import DS.Dstore.Storage.DedupStorageEngine;
+import DS.Protocol.Event.Storage.CatalogLoadedEvent;
+import DS.Protocol.Event.Storage.CatalogVerifiedEvent;
+import DS.Protocol.Exception.CatalogPersistException;
+
+/**
+ * In-memory catalog of the files stored on a Dstore, mapping filenames to filesizes and the
+ * CRC32C checksums of their content (where known).
+ *
+ * The catalog is updated as files are stored and removed, so listing the Dstore's files does not
+ * require scanning the file store. It is persisted in the Dstore's metadata folder as a compact
+ * manifest plus a journal of the changes made since the manifest was written. The journal is
+ * folded into a new manifest once it grows larger than the catalog.
+ *
+ * On startup the manifest and journal are loaded instead of rescanning the file store. Loaded
+ * entries are not trusted until they have been verified against the file store - either when the
+ * file is next loaded, or by a background verifier that works through the catalog after startup.
+ * Any difference found is corrected in the catalog and recorded in the Dstore's change log, so
+ * the Controller picks it up in the next rebalance.
+ *
+ * Every change to a file also invalidates it in the Dstore's read cache.
+ *
+ * If there is no manifest (the first start of a file store) the file store is scanned once.
+ *
+ * The objects holding the content of a deduplicating Dstore are not files of their own, and are
+ * not recorded.
+ */
+public class DstoreCatalog{
+
+    // constants
+    private static final String MANIFEST_FILE = "manifest";
+    private static final String MANIFEST_TEMP_FILE = "manifest.tmp";
+    private static final String JOURNAL_FILE = "journal";
+    private static final int MANIFEST_MAGIC_V1 = 0x44534d31; // "DSM1" - without checksums
+    private static final int MANIFEST_MAGIC = 0x44534d32; // "DSM2"
+    private static final byte JOURNAL_STORED = '+';
+    private static final byte JOURNAL_REMOVED = '-';
+    private static final byte JOURNAL_CHECKSUM = '#';
+    public static final long NO_CHECKSUM = -1;
+    private static final int MIN_JOURNAL_ENTRIES = 1000; // journal length before it may be compacted
+    private static final int VERIFY_BATCH_SIZE = 1000; // entries verified between pauses
+    private static final long VERIFY_PAUSE = 10; // ms pause between batches of verification
+
+    // member variables
+    private Dstore dstore;
+    private File metadataFolder;
+    private ConcurrentHashMap<String, CatalogEntry> files;
+    private FileOutputStream journalOutput;
+    private DataOutputStream journal;
+    private int journalEntries;
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the catalog is for.
+     */
+    public DstoreCatalog(Dstore dstore){
+        // initializing
+        this.dstore = dstore;
+        this.files = new ConcurrentHashMap<String, CatalogEntry>();
+        this.journalEntries = 0;
+    }
+
+    /////////////
+    // LOADING //
+    /////////////
+
+    /**
+     * Loads the catalog for the Dstore's file store, and starts verifying the loaded entries in
+     * the background.
+     *
+     * @throws IOException If the catalog could not be loaded or written.
+     */
+    public synchronized void load() throws IOException{
+        long startTime = System.currentTimeMillis();
+
+        this.metadataFolder = this.dstore.getMetadataFolder();
+
+        File manifest = new File(this.metadataFolder, MANIFEST_FILE);
+        boolean fromManifest = manifest.exists();
+
+        // loading the persisted catalog (entries to be verified lazily)
+        if(fromManifest){
+            this.readManifest(manifest);
+            this.replayJournal(new File(this.metadataFolder, JOURNAL_FILE));
+        }
+        // no manifest - scanning the file store once
+        else{
+            this.scanFileStore();
+        }
+
+        // starting from a fresh manifest and an empty journal
+        this.writeManifest();
+
+        // logging
+        this.dstore.handleEvent(new CatalogLoadedEvent(this.files.size(), fromManifest, System.currentTimeMillis() - startTime));
+
+        // verifying the loaded entries in the background
+        if(fromManifest){
+            this.startVerifier();
+        }
+    }
+
+    /**
+     * Reads the entries of a manifest into the catalog. The entries are marked as unverified.
+     *
+     * @param manifest The manifest file.
+     * @throws IOException If the manifest could not be read, or is not a valid manifest.
+     */
+    private void readManifest(File manifest) throws IOException{
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)))){
+            int magic = input.readInt();
+            if(magic != MANIFEST_MAGIC && magic != MANIFEST_MAGIC_V1){
+                throw new IOException("Invalid manifest : " + manifest.getPath());
+            }
+
+            int numberOfFiles = input.readInt();
+            for(int i = 0; i < numberOfFiles; i++){
+                String filename = input.readUTF();
+                int filesize = input.readInt();
+                long checksum = (magic == MANIFEST_MAGIC) ? input.readLong() : NO_CHECKSUM;
+
+                CatalogEntry entry = new CatalogEntry(filesize, false);
+                entry.checksum = checksum;
+                this.files.put(filename, entry);
+            }
+        }
+    }
+
+    /**
+     * Applies the changes in a journal to the catalog. A partially written record at the end of
+     * the journal (the Dstore stopped while writing it) is ignored.
+     *
+     * @param journalFile The journal file.
+     * @throws IOException If the journal could not be read.
+     */
+    private void replayJournal(File journalFile) throws IOException{
+        if(!journalFile.exists()){
+            return;
+        }
+
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))){
+            while(true){
+                byte type = input.readByte();
+                String filename = input.readUTF();
+
+                if(type == JOURNAL_STORED){
+                    this.files.put(filename, new CatalogEntry(input.readInt(), false));
+                }
+                else if(type == JOURNAL_REMOVED){
+                    this.files.remove(filename);
+                }
+                else if(type == JOURNAL_CHECKSUM){
+                    long checksum = input.readInt() & 0xffffffffL;
+                    CatalogEntry entry = this.files.get(filename);
+                    if(entry != null){
+                        entry.checksum = checksum;
+                    }
+                }
+                else{
+                    throw new IOException("Invalid journal record in : " + journalFile.getPath());
+                }
+            }
+        }
+        catch(EOFException e){
+            // end of journal
+        }
+    }
+
+    /**
+     * Builds the catalog from the contents of the file store.
+     */
+    private void scanFileStore(){
+        HashMap<String, Integer> storedFiles = this.dstore.getStorage().listFiles();
+
+        for(String filename : storedFiles.keySet()){
+            this.files.put(filename, new CatalogEntry(storedFiles.get(filename), true));
+        }
+    }
+
+    //////////////////////
+    // UPDATING ENTRIES //
+    //////////////////////
+
+    /**
+     * Records a file having been stored on the Dstore.
+     *
+     * @param filename The name of the file stored.
+     * @param filesize The size of the file stored in bytes.
+     */
+    public synchronized void fileStored(String filename, int filesize){
+        if(DedupStorageEngine.isObject(filename)){
+            this.dstore.getReadCache().invalidate(filename);
+            return;
+        }
+
+        this.files.put(filename, new CatalogEntry(filesize, true));
+        this.dstore.getReadCache().invalidate(filename);
+        this.dstore.getChangeLog().recordStored(filename, filesize);
+
+        this.appendToJournal(JOURNAL_STORED, filename, filesize);
+    }
+
+    /**
+     * Records a file having been removed from the Dstore.
+     *
+     * @param filename The name of the file removed.
+     */
+    public synchronized void fileRemoved(String filename){
+        this.files.remove(filename);
+        this.dstore.getReadCache().invalidate(filename);
+        this.dstore.getCompressor().forget(filename);
+        if(DedupStorageEngine.isObject(filename)){
+            return;
+        }
+        this.dstore.getChangeLog().recordRemoved(filename);
+
+        this.appendToJournal(JOURNAL_REMOVED, filename, 0);
+    }
+
+    /**
+     * Records the CRC32C checksum of the content of a stored file.
+     *
+     * @param filename The name of the file.
+     * @param checksum The checksum of the file's content.
+     */
+    public synchronized void checksumComputed(String filename, long checksum){
+        CatalogEntry entry = this.files.get(filename);
+        if(entry == null){
+            return;
+        }
+
+        entry.checksum = checksum;
+        this.appendToJournal(JOURNAL_CHECKSUM, filename, (int) checksum);
+    }
+
+    /**
+     * Records that the whole content of a stored file has been checked against its checksum, so
+     * later requests for ranges of the file need not check it again. Storing the file again
+     * clears this.
+     *
+     * @param filename The name of the file.
+     */
+    public void contentChecked(String filename){
+        CatalogEntry entry = this.files.get(filename);
+        if(entry != null){
+            entry.contentChecked = true;
+        }
+    }
+
+    /**
+     * Checks an entry against the file store if it has not yet been verified, correcting the
+     * catalog if the file is missing or has a different size.
+     *
+     * @param filename The name of the file being verified.
+     * @return True if the file is in the catalog (after verification), false if not.
+     */
+    public boolean verify(String filename){
+        CatalogEntry entry = this.files.get(filename);
+
+        // not in the catalog
+        if(entry == null){
+            return false;
+        }
+
+        // already verified
+        if(entry.verified){
+            return true;
+        }
+
+        return this.verifyEntry(filename, entry);
+    }
+
+    /**
+     * Checks an unverified entry against the file store.
+     *
+     * @param filename The name of the file being verified.
+     * @param entry The entry for the file.
+     * @return True if the file is still in the catalog, false if it was removed.
+     */
+    private synchronized boolean verifyEntry(String filename, CatalogEntry entry){
+        // entry replaced since it was read
+        if(this.files.get(filename) != entry){
+            return this.files.containsKey(filename);
+        }
+
+        long filesize = this.dstore.getStorage().getSize(filename);
+
+        // file missing from the file store
+        if(filesize < 0){
+            this.fileRemoved(filename);
+            return false;
+        }
+
+        // file has a different size in the file store
+        if(filesize != entry.filesize){
+            this.fileStored(filename, (int) filesize);
+            return true;
+        }
+
+        entry.verified = true;
+        return true;
+    }
+
+    /**
+     * Starts a background thread that verifies every unverified entry in the catalog.
+     */
+    private void startVerifier(){
+        Runnable runnable = () -> {
+            long startTime = System.currentTimeMillis();
+            int verified = 0;
+            int corrected = 0;
+
+            try{
+                for(Map.Entry<String, CatalogEntry> file : this.files.entrySet()){
+                    if(!file.getValue().verified){
+                        CatalogEntry entry = file.getValue();
+
+                        // checking the entry
+                        boolean present = this.verifyEntry(file.getKey(), entry);
+                        if(!present || this.files.get(file.getKey()) != entry){
+                            corrected++;
+                        }
+                        verified++;
+
+                        // leaving the disk to requests
+                        if(verified % VERIFY_BATCH_SIZE == 0){
+                            Thread.sleep(VERIFY_PAUSE);
+                        }
+                    }
+                }
+            }
+            catch(InterruptedException e){
+                return;
+            }
+
+            // logging
+            this.dstore.handleEvent(new CatalogVerifiedEvent(verified, corrected, System.currentTimeMillis() - startTime));
+        };
+
+        // verifying at low priority
+        Thread verifier = new Thread(runnable);
+        verifier.setDaemon(true);
+        verifier.setPriority(Thread.MIN_PRIORITY);
+        verifier.start();
+    }
+
+    /////////////////
+    // PERSISTENCE //
+    /////////////////
+
+    /**
+     * Appends a change to the journal, compacting the journal into a new manifest once it is
+     * larger than the catalog.
+     *
+     * @param type The type of the change.
+     * @param filename The name of the file changed.
+     * @param value The new size of the file (stored files), or its checksum (checksums).
+     */
+    private void appendToJournal(byte type, String filename, int value){
+        try{
+            // catalog not yet loaded
+            if(this.journal == null){
+                return;
+            }
+
+            this.journal.writeByte(type);
+            this.journal.writeUTF(filename);
+            if(type == JOURNAL_STORED || type == JOURNAL_CHECKSUM){
+                this.journal.writeInt(value);
+            }
+            this.journal.flush();
+            this.journalEntries++;
+
+            // compacting the journal
+            if(this.journalEntries > Math.max(MIN_JOURNAL_ENTRIES, this.files.size())){
+                this.writeManifest();
+            }
+        }
+        catch(IOException e){
+            this.dstore.handleError(new CatalogPersistException(e));
+        }
+    }
+
+    /**
+     * Writes the catalog to a new manifest and starts a new, empty journal. The manifest is
+     * written to a temporary file and moved into place, so a crash never leaves a partial
+     * manifest.
+     *
+     * @throws IOException If the manifest could not be written.
+     */
+    private void writeManifest() throws IOException{
+        File manifest = new File(this.metadataFolder, MANIFEST_FILE);
+        File tempManifest = new File(this.metadataFolder, MANIFEST_TEMP_FILE);
+
+        // snapshot of the catalog
+        HashMap<String, CatalogEntry> snapshot = new HashMap<String, CatalogEntry>(this.files);
+
+        // writing the manifest
+        FileOutputStream fileOutput = new FileOutputStream(tempManifest);
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput))){
+            output.writeInt(MANIFEST_MAGIC);
+            output.writeInt(snapshot.size());
+            for(Map.Entry<String, CatalogEntry> file : snapshot.entrySet()){
+                output.writeUTF(file.getKey());
+                output.writeInt(file.getValue().filesize);
+                output.writeLong(file.getValue().checksum);
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+        Files.move(tempManifest.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // starting a new journal
+        if(this.journal != null){
+            this.journal.close();
+        }
+        this.journalOutput = new FileOutputStream(new File(this.metadataFolder, JOURNAL_FILE), false);
+        this.journal = new DataOutputStream(new BufferedOutputStream(this.journalOutput));
+        this.journalEntries = 0;
+    }
+
+    /**
+     * Forces the changes recorded in the journal so far to disk.
+     *
+     * @throws IOException If the journal could not be synced.
+     */
+    public synchronized void sync() throws IOException{
+        if(this.journal != null){
+            this.journal.flush();
+            this.journalOutput.getFD().sync();
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Returns the files in the catalog as a mapping of filenames to filesizes.
+     *
+     * @return A mapping of filenames to filesizes.
+     */
+    public HashMap<String, Integer> getFiles(){
+        HashMap<String, Integer> files = new HashMap<String, Integer>(this.files.size() * 2);
+        for(Map.Entry<String, CatalogEntry> file : this.files.entrySet()){
+            files.put(file.getKey(), file.getValue().filesize);
+        }
+
+        return files;
+    }
+
+    /**
+     * Returns the CRC32C checksum of the content of a file.
+     *
+     * @param filename The name of the file.
+     * @return The checksum, or NO_CHECKSUM if the file is not in the catalog or its checksum is
+     * not known (e.g., it was stored before checksums were kept).
+     */
+    public long getChecksum(String filename){
+        CatalogEntry entry = this.files.get(filename);
+
+        return (entry != null) ? entry.checksum : NO_CHECKSUM;
+    }
+
+    /**
+     * Returns whether the whole content of a stored file has been checked against its checksum
+     * since it was stored.
+     *
+     * @param filename The name of the file.
+     * @return True if the content has been checked, false if not (or the file is not in the
+     * catalog).
+     */
+    public boolean isContentChecked(String filename){
+        CatalogEntry entry = this.files.get(filename);
+
+        return entry != null && entry.contentChecked;
+    }
+
+    public boolean hasFile(String filename){
+        return this.files.containsKey(filename);
+    }
+
+    public int getNumberOfFiles(){
+        return this.files.size();
+    }
+
+    /**
+     * The size and checksum of a file in the catalog, whether it has been checked against the
+     * file store, and whether its content has been checked against the checksum.
+     */
+    private static class CatalogEntry{
+
+        // member variables
+        private int filesize;
+        private volatile boolean verified;
+        private volatile long checksum;
+        private volatile boolean contentChecked;
+
+        private CatalogEntry(int filesize, boolean verified){
+            this.filesize = filesize;
+            this.verified = verified;
+            this.checksum = NO_CHECKSUM;
+            this.contentChecked = false;
+        }
+    }
+}
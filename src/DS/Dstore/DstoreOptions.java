@@ -0,0 +1,524 @@
+package DS.Dstore;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+
+import DS.Dstore.Scheduler.IOClass;
+
+/**
+ * Optional settings for a Dstore, given on the command line after the required parameters as
+ * 'name=value' pairs (e.g., 'durability=per-file').
+ *
+ * Any setting not given keeps its default.
+ */
+public class DstoreOptions{
+
+    // constants
+    public static final DurabilityMode DEFAULT_DURABILITY = DurabilityMode.GROUP_COMMIT;
+    public static final int DEFAULT_GROUP_COMMIT_WINDOW = 5; // ms
+    public static final long DEFAULT_CACHE_SIZE = 64 * 1024 * 1024; // bytes
+    public static final StorageType DEFAULT_STORAGE = StorageType.FILES;
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024; // bytes
+    public static final int DEFAULT_SEGMENT_OBJECT_SIZE = 64 * 1024; // bytes
+    public static final LayoutType DEFAULT_LAYOUT = LayoutType.FLAT;
+    public static final int DEFAULT_DISK_THREADS = 4;
+    public static final long DEFAULT_IO_LIMIT = 0; // bytes per second (no limit)
+    public static final long DEFAULT_SCRUB_LIMIT = 4 * 1024 * 1024; // bytes per second
+    public static final long DEFAULT_SCRUB_INTERVAL = 60 * 60 * 1000; // ms
+    public static final CompressionMode DEFAULT_COMPRESSION = CompressionMode.OFF;
+    public static final int DEFAULT_COMPRESSION_MAX_SIZE = 16 * 1024 * 1024; // bytes
+    public static final boolean DEFAULT_WIRE_COMPRESSION = false;
+    public static final boolean DEFAULT_DEDUP = false;
+    public static final int DEFAULT_DEDUP_MAX_SIZE = 16 * 1024 * 1024; // bytes
+
+    // member variables
+    private DurabilityMode durability;
+    private int groupCommitWindow;
+    private long cacheSize;
+    private StorageType storage;
+    private int segmentSize;
+    private int segmentObjectSize;
+    private LayoutType layout;
+    private ArrayList<String> disks; // folders on other disks, in addition to the file store
+    private int diskThreads;
+    private long ioLimit; // shared by every I/O class
+    private EnumMap<IOClass, Long> ioLimits; // limit of each I/O class
+    private long scrubLimit;
+    private long scrubInterval; // pause between scrubs of the whole file store (0 to never scrub)
+    private CompressionMode compression;
+    private String compressionDictionary; // file holding the preset dictionary (null for the built in one)
+    private int compressionMaxSize; // largest received file gathered in memory to be compressed
+    private boolean wireCompression; // offer and accept compressed content in transfers
+    private boolean dedup; // store file content by its hash
+    private int dedupMaxSize; // largest received file gathered in memory to be deduplicated
+
+    /**
+     * Class constructor. Creates a set of options with every setting at its default.
+     */
+    public DstoreOptions(){
+        // initializing
+        this.durability = DEFAULT_DURABILITY;
+        this.groupCommitWindow = DEFAULT_GROUP_COMMIT_WINDOW;
+        this.cacheSize = DEFAULT_CACHE_SIZE;
+        this.storage = DEFAULT_STORAGE;
+        this.segmentSize = DEFAULT_SEGMENT_SIZE;
+        this.segmentObjectSize = DEFAULT_SEGMENT_OBJECT_SIZE;
+        this.layout = DEFAULT_LAYOUT;
+        this.disks = new ArrayList<String>();
+        this.diskThreads = DEFAULT_DISK_THREADS;
+        this.ioLimit = DEFAULT_IO_LIMIT;
+        this.ioLimits = new EnumMap<IOClass, Long>(IOClass.class);
+        for(IOClass ioClass : IOClass.values()){
+            this.ioLimits.put(ioClass, DEFAULT_IO_LIMIT);
+        }
+        this.scrubLimit = DEFAULT_SCRUB_LIMIT;
+        this.scrubInterval = DEFAULT_SCRUB_INTERVAL;
+        this.compression = DEFAULT_COMPRESSION;
+        this.compressionDictionary = null;
+        this.compressionMaxSize = DEFAULT_COMPRESSION_MAX_SIZE;
+        this.wireCompression = DEFAULT_WIRE_COMPRESSION;
+        this.dedup = DEFAULT_DEDUP;
+        this.dedupMaxSize = DEFAULT_DEDUP_MAX_SIZE;
+    }
+
+    /////////////
+    // PARSING //
+    /////////////
+
+    /**
+     * Parses a set of options from command line arguments.
+     *
+     * @param args The command line arguments.
+     * @param start The index of the first option within the arguments.
+     * @return The parsed options.
+     * @throws IllegalArgumentException If an argument is not a valid option.
+     */
+    public static DstoreOptions parse(String[] args, int start) throws IllegalArgumentException{
+        DstoreOptions options = new DstoreOptions();
+
+        for(int i = start; i < args.length; i++){
+            int separator = args[i].indexOf('=');
+            if(separator < 0){
+                throw new IllegalArgumentException("Invalid option '" + args[i] + "' - expected name=value.");
+            }
+
+            options.set(args[i].substring(0, separator), args[i].substring(separator + 1));
+        }
+
+        return options;
+    }
+
+    /**
+     * Sets an option from its name and the String form of its value.
+     *
+     * @param name The name of the option.
+     * @param value The value of the option.
+     * @throws IllegalArgumentException If the option is unknown or the value is not valid for it.
+     */
+    public void set(String name, String value) throws IllegalArgumentException{
+        try{
+            // durability
+            if(name.equals("durability")){
+                DurabilityMode durability = DurabilityMode.fromString(value);
+                if(durability == null){
+                    throw new IllegalArgumentException("Unknown durability mode '" + value + "'.");
+                }
+                this.durability = durability;
+            }
+
+            // group commit window
+            else if(name.equals("groupCommitWindow")){
+                this.groupCommitWindow = Integer.parseInt(value);
+            }
+
+            // read cache size
+            else if(name.equals("cacheSize")){
+                this.cacheSize = Long.parseLong(value);
+            }
+
+            // storage engine
+            else if(name.equals("storage")){
+                StorageType storage = StorageType.fromString(value);
+                if(storage == null){
+                    throw new IllegalArgumentException("Unknown storage type '" + value + "'.");
+                }
+                this.storage = storage;
+            }
+
+            // segment size
+            else if(name.equals("segmentSize")){
+                this.segmentSize = Integer.parseInt(value);
+            }
+
+            // largest file stored in segments
+            else if(name.equals("segmentObjectSize")){
+                this.segmentObjectSize = Integer.parseInt(value);
+            }
+
+            // directory layout of stored files
+            else if(name.equals("layout")){
+                LayoutType layout = LayoutType.fromString(value);
+                if(layout == null){
+                    throw new IllegalArgumentException("Unknown layout '" + value + "'.");
+                }
+                this.layout = layout;
+            }
+
+            // additional disks
+            else if(name.equals("disks")){
+                this.disks.clear();
+                for(String disk : value.split(",")){
+                    if(!disk.isEmpty()){
+                        this.disks.add(disk);
+                    }
+                }
+            }
+
+            // I/O threads per disk
+            else if(name.equals("diskThreads")){
+                this.diskThreads = Integer.parseInt(value);
+            }
+
+            // I/O bandwidth limit of the Dstore
+            else if(name.equals("ioLimit")){
+                this.ioLimit = Long.parseLong(value);
+            }
+
+            // I/O bandwidth limits of each class
+            else if(name.equals("clientReadLimit")){
+                this.ioLimits.put(IOClass.CLIENT_READ, Long.parseLong(value));
+            }
+            else if(name.equals("clientWriteLimit")){
+                this.ioLimits.put(IOClass.CLIENT_WRITE, Long.parseLong(value));
+            }
+            else if(name.equals("rebalanceLimit")){
+                this.ioLimits.put(IOClass.REBALANCE, Long.parseLong(value));
+            }
+            else if(name.equals("backgroundLimit")){
+                this.ioLimits.put(IOClass.BACKGROUND, Long.parseLong(value));
+            }
+
+            // read bandwidth of the scrubber
+            else if(name.equals("scrubLimit")){
+                this.scrubLimit = Long.parseLong(value);
+            }
+
+            // pause between scrubs
+            else if(name.equals("scrubInterval")){
+                this.scrubInterval = Long.parseLong(value);
+            }
+
+            // at-rest compression
+            else if(name.equals("compression")){
+                CompressionMode compression = CompressionMode.fromString(value);
+                if(compression == null){
+                    throw new IllegalArgumentException("Unknown compression mode '" + value + "'.");
+                }
+                this.compression = compression;
+            }
+
+            // preset dictionary for compression
+            else if(name.equals("compressionDictionary")){
+                this.compressionDictionary = value;
+            }
+
+            // largest file compressed when received
+            else if(name.equals("compressionMaxSize")){
+                this.compressionMaxSize = Integer.parseInt(value);
+            }
+
+            // compression of transferred content
+            else if(name.equals("wireCompression")){
+                if(value.equalsIgnoreCase("on")){
+                    this.wireCompression = true;
+                }
+                else if(value.equalsIgnoreCase("off")){
+                    this.wireCompression = false;
+                }
+                else{
+                    throw new IllegalArgumentException("Invalid value '" + value + "' for option '" + name + "' - expected on or off.");
+                }
+            }
+
+            // content-addressed storage
+            else if(name.equals("dedup")){
+                if(value.equalsIgnoreCase("on")){
+                    this.dedup = true;
+                }
+                else if(value.equalsIgnoreCase("off")){
+                    this.dedup = false;
+                }
+                else{
+                    throw new IllegalArgumentException("Invalid value '" + value + "' for option '" + name + "' - expected on or off.");
+                }
+            }
+
+            // largest file deduplicated
+            else if(name.equals("dedupMaxSize")){
+                this.dedupMaxSize = Integer.parseInt(value);
+            }
+
+            // unknown
+            else{
+                throw new IllegalArgumentException("Unknown option '" + name + "'.");
+            }
+        }
+        catch(NumberFormatException e){
+            throw new IllegalArgumentException("Invalid value '" + value + "' for option '" + name + "'.", e);
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public DurabilityMode getDurability(){
+        return this.durability;
+    }
+
+    public int getGroupCommitWindow(){
+        return this.groupCommitWindow;
+    }
+
+    public long getCacheSize(){
+        return this.cacheSize;
+    }
+
+    public StorageType getStorage(){
+        return this.storage;
+    }
+
+    public int getSegmentSize(){
+        return this.segmentSize;
+    }
+
+    public int getSegmentObjectSize(){
+        return this.segmentObjectSize;
+    }
+
+    public LayoutType getLayout(){
+        return this.layout;
+    }
+
+    public ArrayList<String> getDisks(){
+        return this.disks;
+    }
+
+    public int getDiskThreads(){
+        return this.diskThreads;
+    }
+
+    public long getIoLimit(){
+        return this.ioLimit;
+    }
+
+    public long getIoLimit(IOClass ioClass){
+        return this.ioLimits.get(ioClass);
+    }
+
+    public long getScrubLimit(){
+        return this.scrubLimit;
+    }
+
+    public long getScrubInterval(){
+        return this.scrubInterval;
+    }
+
+    public CompressionMode getCompression(){
+        return this.compression;
+    }
+
+    public String getCompressionDictionary(){
+        return this.compressionDictionary;
+    }
+
+    public int getCompressionMaxSize(){
+        return this.compressionMaxSize;
+    }
+
+    public boolean getWireCompression(){
+        return this.wireCompression;
+    }
+
+    public boolean getDedup(){
+        return this.dedup;
+    }
+
+    public int getDedupMaxSize(){
+        return this.dedupMaxSize;
+    }
+
+    /////////////////////
+    // DURABILITY MODE //
+    /////////////////////
+
+    /**
+     * How durably the Dstore writes files before acknowledging them.
+     *
+     * In every mode a file is written to a temporary file and renamed into place, so a partially
+     * written file is never visible under its name.
+     */
+    public enum DurabilityMode {
+        // modes
+        NONE("none"), // files are left for the operating system to write back
+        GROUP_COMMIT("group-commit"), // files stored within a short window are synced together
+        PER_FILE("per-file"); // every file is synced before it is acknowledged
+
+        private String mode;
+
+        private DurabilityMode(String mode){
+            this.mode = mode;
+        }
+
+        /**
+         * Converts the durability mode to a string.
+         * @return String equivalent of the durability mode.
+         */
+        @Override
+        public String toString(){
+            return this.mode;
+        }
+
+        /**
+         * Gathers the durability mode from the given string.
+         * @param text The String form of the durability mode.
+         * @return The DurabilityMode for the string, or null if there is none.
+         */
+        public static DurabilityMode fromString(String text) {
+            for (DurabilityMode mode : DurabilityMode.values()) {
+                if (mode.mode.equalsIgnoreCase(text)) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
+    //////////////////
+    // STORAGE TYPE //
+    //////////////////
+
+    /**
+     * How the Dstore lays out the content of its files on disk.
+     */
+    public enum StorageType {
+        // types
+        FILES("files"), // every file stored as a file of its own
+        SEGMENTS("segments"); // small files packed into large segment files
+
+        private String type;
+
+        private StorageType(String type){
+            this.type = type;
+        }
+
+        /**
+         * Converts the storage type to a string.
+         * @return String equivalent of the storage type.
+         */
+        @Override
+        public String toString(){
+            return this.type;
+        }
+
+        /**
+         * Gathers the storage type from the given string.
+         * @param text The String form of the storage type.
+         * @return The StorageType for the string, or null if there is none.
+         */
+        public static StorageType fromString(String text) {
+            for (StorageType type : StorageType.values()) {
+                if (type.type.equalsIgnoreCase(text)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /////////////////
+    // LAYOUT TYPE //
+    /////////////////
+
+    /**
+     * How the files stored as files of their own are arranged within the file store.
+     */
+    public enum LayoutType {
+        // types
+        FLAT("flat"), // every file directly within the file store
+        SHARDED("sharded"); // files nested in two levels of subfolders named by a hash of the filename
+
+        private String type;
+
+        private LayoutType(String type){
+            this.type = type;
+        }
+
+        /**
+         * Converts the layout type to a string.
+         * @return String equivalent of the layout type.
+         */
+        @Override
+        public String toString(){
+            return this.type;
+        }
+
+        /**
+         * Gathers the layout type from the given string.
+         * @param text The String form of the layout type.
+         * @return The LayoutType for the string, or null if there is none.
+         */
+        public static LayoutType fromString(String text) {
+            for (LayoutType type : LayoutType.values()) {
+                if (type.type.equalsIgnoreCase(text)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    //////////////////////
+    // COMPRESSION MODE //
+    //////////////////////
+
+    /**
+     * How the Dstore compresses the files it stores.
+     */
+    public enum CompressionMode {
+        // modes
+        OFF("off"), // files are stored as they are
+        AUTO("auto"), // small files are compressed with a preset dictionary, larger ones with a fast codec
+        DEFLATE("deflate"), // every file is compressed with a preset dictionary
+        FAST("fast"); // every file is compressed with a fast codec
+
+        private String mode;
+
+        private CompressionMode(String mode){
+            this.mode = mode;
+        }
+
+        /**
+         * Converts the compression mode to a string.
+         * @return String equivalent of the compression mode.
+         */
+        @Override
+        public String toString(){
+            return this.mode;
+        }
+
+        /**
+         * Gathers the compression mode from the given string.
+         * @param text The String form of the compression mode.
+         * @return The CompressionMode for the string, or null if there is none.
+         */
+        public static CompressionMode fromString(String text) {
+            for (CompressionMode mode : CompressionMode.values()) {
+                if (mode.mode.equalsIgnoreCase(text)) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+}
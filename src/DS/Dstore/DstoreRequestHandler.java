@@ -3,30 +3,50 @@ package DS.Dstore;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import DS.Dstore.Cache.ReadCache;
+import DS.Dstore.Compression.Codec;
+import DS.Dstore.Compression.Compressor;
+import DS.Dstore.Compression.Compressor.CodecStatistics;
+import DS.Dstore.Compression.Compressor.ObjectStatistics;
+import DS.Dstore.Compression.UnknownDictionaryException;
+import DS.Dstore.PartialStores.PartialStore;
+import DS.Dstore.Scheduler.IOClass;
+import DS.Dstore.Storage.DedupIndex;
+import DS.Dstore.Storage.DedupStorageEngine;
+import DS.Dstore.Storage.IncomingFile;
+import DS.Dstore.Storage.StorageEngine;
+import DS.Dstore.Scheduler.IOScheduler;
+import DS.Dstore.Scheduler.IOScheduler.ClassStatistics;
 import DS.Protocol.Protocol;
+import DS.Protocol.Event.Operation.ForwardingResumedEvent;
 import DS.Protocol.Event.Operation.ListCompleteEvent;
 import DS.Protocol.Event.Operation.LoadCompleteEvent;
+import DS.Protocol.Event.Operation.LoadRangeCompleteEvent;
 import DS.Protocol.Event.Operation.RemoveCompleteEvent;
 import DS.Protocol.Event.Operation.StoreCompleteEvent;
 import DS.Protocol.Event.Rebalance.RebalanceCompleteEvent;
 import DS.Protocol.Event.Rebalance.RebalanceStoreCompleteEvent;
+import DS.Protocol.Event.Storage.IOLimitChangedEvent;
 import DS.Protocol.Exception.*;
 import DS.Protocol.Token.*;
 import DS.Protocol.Token.TokenType.*;
 import Network.*;
 import Network.Client.Client.ClientType;
+import Network.Connection.ChunkHandler;
+import Network.Connection.ContentOutput;
 import Network.Protocol.Event.ServerConnectionEvent;
+import Network.Protocol.Exception.ConnectionSetupException;
+import Network.Protocol.Exception.MessageReceivedException;
 import Network.Protocol.Exception.MessageSendException;
 import Network.Protocol.Exception.RequestHandlingException;
 import Network.Server.RequestHandler;
 import Network.Server.Server.ServerType;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.nio.file.Files;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
 import java.nio.file.NoSuchFileException;
-import java.nio.file.Paths;
+import java.util.zip.CRC32C;
+import java.util.zip.ZipException;
 
 /**
  * Handles requests sent to a Dstore by a DSClient and Controller.
@@ -51,6 +71,19 @@ public class DstoreRequestHandler extends RequestHandler{
     // MAIN //
     //////////
 
+    /**
+     * Determines if handling the given request reads further data from the connection it
+     * arrived on. STORE, STORE_RESUME and REBALANCE_STORE read the file content from the
+     * connection, so the next request must not be read until the content has been received.
+     * 
+     * @param request The request being handled.
+     * @return True if the request reads from its connection, false if not.
+     */
+    @Override
+    public boolean readsFromConnection(Token request){
+        return (request instanceof StoreToken) || (request instanceof StoreResumeToken) || (request instanceof RebalanceStoreToken) || super.readsFromConnection(request);
+    }
+
     /**
      * Handles a given request.
      * 
@@ -73,13 +106,25 @@ public class DstoreRequestHandler extends RequestHandler{
             // STORE //
             else if(request instanceof StoreToken){
                 StoreToken storeToken = (StoreToken) request;
-                this.handleStoreRequest(connection, storeToken.filename, storeToken.filesize);
+                this.handleStoreRequest(connection, storeToken.filename, storeToken.filesize, storeToken.checksum, storeToken.compressed, storeToken.chain, false);
+            }
+
+            // STORE_RESUME //
+            else if(request instanceof StoreResumeToken){
+                StoreResumeToken storeResumeToken = (StoreResumeToken) request;
+                this.handleStoreRequest(connection, storeResumeToken.filename, storeResumeToken.filesize, storeResumeToken.checksum, storeResumeToken.compressed, storeResumeToken.chain, true);
             }
 
             // LOAD_DATA //
             else if(request instanceof LoadDataToken){
                 LoadDataToken loadToken = (LoadDataToken) request;
-                this.handleLoadDataRequest(connection, loadToken.filename);
+                this.handleLoadDataRequest(connection, loadToken.filename, loadToken.offset, loadToken.length, loadToken.compressed);
+            }
+
+            // LOAD_RANGE //
+            else if(request instanceof LoadRangeToken){
+                LoadRangeToken loadRangeToken = (LoadRangeToken) request;
+                this.handleLoadRangeRequest(connection, loadRangeToken.filename, loadRangeToken.offset, loadRangeToken.length, loadRangeToken.compressed);
             }
 
             // REMOVE //
@@ -93,6 +138,12 @@ public class DstoreRequestHandler extends RequestHandler{
                 this.handleListRequest(connection);
             }
 
+            // LIST_SINCE //
+            else if(request instanceof ListSinceToken){
+                ListSinceToken listSinceToken = (ListSinceToken) request;
+                this.handleListSinceRequest(connection, listSinceToken.version);
+            }
+
             // REBALANCE //
             else if(request instanceof RebalanceToken){
                 RebalanceToken rebalanceToken = (RebalanceToken) request;
@@ -102,7 +153,34 @@ public class DstoreRequestHandler extends RequestHandler{
             // REBALANCE_STORE //
             else if(request instanceof RebalanceStoreToken){
                 RebalanceStoreToken rebalanceStoreToken = (RebalanceStoreToken) request;
-                this.handleRebalanceStoreRequest(connection, rebalanceStoreToken.filename, rebalanceStoreToken.filesize);
+                this.handleRebalanceStoreRequest(connection, rebalanceStoreToken.filename, rebalanceStoreToken.filesize, rebalanceStoreToken.checksum, rebalanceStoreToken.compressed);
+            }
+
+            // IO_LIMIT //
+            else if(request instanceof IoLimitToken){
+                IoLimitToken ioLimitToken = (IoLimitToken) request;
+                this.handleIoLimitRequest(connection, request, ioLimitToken.ioClass, ioLimitToken.limit);
+            }
+
+            // IO_STATS //
+            else if(request instanceof IoStatsToken){
+                this.handleIoStatsRequest(connection);
+            }
+
+            // SCRUB_STATS //
+            else if(request instanceof ScrubStatsToken){
+                this.handleScrubStatsRequest(connection);
+            }
+
+            // COMPRESSION_STATS //
+            else if(request instanceof CompressionStatsToken){
+                CompressionStatsToken compressionStatsToken = (CompressionStatsToken) request;
+                this.handleCompressionStatsRequest(connection, compressionStatsToken.filename);
+            }
+
+            // DEDUP_STATS //
+            else if(request instanceof DedupStatsToken){
+                this.handleDedupStatsRequest(connection);
             }
 
             // Invalid //
@@ -124,6 +202,12 @@ public class DstoreRequestHandler extends RequestHandler{
                     // sending error to controller
                     connection.sendMessage(Protocol.getErrorFileDoesNotExistMessage(token.filename));
                 }
+
+                // Not Enough Space Exception //
+                else if(e instanceof NotEnoughSpaceException){
+                    // rejecting the file before its content is sent
+                    connection.sendMessage(Protocol.getErrorNotEnoughSpaceMessage(((NotEnoughSpaceException) e).getFilename()));
+                }
             }
             catch(MessageSendException ex){
                 this.dstore.handleError(ex);
@@ -177,22 +261,19 @@ public class DstoreRequestHandler extends RequestHandler{
      * @param connection The connection associated with the request.
      * @param filename The name of the file being stored.
      * @param filesize The size of the file being stored.
+     * @param checksum The CRC32C of the file's content (Protocol.NO_CHECKSUM if not given).
+     * @param compressed Whether the client offered to send the content as compressed blocks.
+     * @param chain The Dstores the content is forwarded to as it arrives (empty if none).
+     * @param resume Whether this is a STORE_RESUME, continuing the content received by an
+     * earlier STORE of the file.
      * @throws MessageSendException If a message couldn't be sent through the connection.
      * @throws MessageReceievedException If a message could not be receieved through the connection.
+     * @throws ChecksumMismatchException If the content received does not match the checksum.
      */
-    private void handleStoreRequest(Connection connection, String filename, int filesize) throws Exception{
-        // sending ACK back to client
-        connection.sendMessage(Protocol.getAckMessage());
-
-        // reading file data
-        byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.dstore.getTimeout());
-
-        // storing file data
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
-        FileOutputStream fileOutput = new FileOutputStream(file);
-        fileOutput.write(fileContent);
-        fileOutput.flush();
-        fileOutput.close();
+    private void handleStoreRequest(Connection connection, String filename, long filesize, long checksum, boolean compressed, ArrayList<Integer> chain, boolean resume) throws Exception{
+        // receiving the file from the client or the previous Dstore of the chain (sends the ACK
+        // or RESUME_FROM)
+        this.receiveFile(connection, filename, filesize, checksum, compressed, IOClass.CLIENT_WRITE, chain, resume);
 
         // sending STORE_ACK to contoller
         this.dstore.getControllerThread().getConnection().sendMessage(Protocol.getStoreAckMessage(filename));
@@ -210,25 +291,63 @@ public class DstoreRequestHandler extends RequestHandler{
      * 
      * @param connection The connection associated with the request.
      * @param filename The name of the file being loaded.
+     * @param offset The start of the range of the file being loaded.
+     * @param length The length of the range being loaded (LoadDataToken.WHOLE_FILE for all of the
+     * file).
+     * @param compressed Whether the client asked for the content as compressed blocks (sent as
+     * blocks either way, only compressed if wire compression is on).
      * @throws MessageSendException If a message couldn't be sent through the connection.
      * @throws FileDoesNotExistException If the file being requested does not exist.
+     * @throws InvalidMessageException If the range is not within the file.
      */
-    private void handleLoadDataRequest(Connection connection, String filename) throws Exception{
-        // getting file
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
+    private void handleLoadDataRequest(Connection connection, String filename, long offset, int length, boolean compressed) throws Exception{
+        // a range of the file - read on its own
+        if(length != LoadDataToken.WHOLE_FILE){
+            this.handleRangedLoadDataRequest(connection, filename, offset, length, compressed);
+            return;
+        }
+
+        // gathering file (checked against the file store if not yet verified)
+        ByteBuffer fileContent;
+        try{
+            fileContent = this.dstore.getCatalog().verify(filename) ? this.dstore.getStorage().load(filename) : null;
+        }
+        catch(ZipException e){
+            // compressed content too damaged to decompress - treated as a corrupt copy
+            connection.close();
+            this.dstore.handleCorruptFile(filename, new DecompressionException(filename, e));
+            return;
+        }
+        catch(UnknownDictionaryException e){
+            // compressed with a dictionary no longer known - not damage, so the copy is kept
+            connection.close();
+            throw e;
+        }
 
         // file exists - sending file to client
-        if(file.exists()){
-            // gathering file
-            FileInputStream fileInput = new FileInputStream(file);
+        if(fileContent != null){
+            // checking the content against its checksum (a corrupt copy is never sent)
+            try{
+                this.verifyChecksum(filename, fileContent);
+                this.dstore.getCatalog().contentChecked(filename);
+            }
+            catch(ChecksumMismatchException e){
+                // closing the connection, so the client reloads from another Dstore
+                connection.close();
+
+                // removing the corrupt copy and reporting it to the Controller
+                this.dstore.handleCorruptFile(filename, e);
+                return;
+            }
 
-            // sending file to client
-            byte[] fileContent = fileInput.readAllBytes();
-            connection.sendBytes(fileContent);
-            fileInput.close();
+            // sending file to client (within the client read bandwidth)
+            this.sendContent(connection, fileContent, compressed, this.dstore.getOptions().getWireCompression(), IOClass.CLIENT_READ);
 
             // logging
             this.dstore.handleEvent(new LoadCompleteEvent(filename));
+            if(this.dstore.getReadCache().getRequests() % ReadCache.STATISTICS_INTERVAL == 0){
+                this.dstore.handleEvent(this.dstore.getReadCache().getStatistics());
+            }
         }
         // file does not exist - closing connection
         else{
@@ -239,6 +358,128 @@ public class DstoreRequestHandler extends RequestHandler{
         }
     }
 
+    /**
+     * Handles a LOAD_DATA request for a range of a file (as sent by parallel and resumed loads).
+     * The range is read with positional reads, as for LOAD_RANGE. The whole content of the file
+     * is checked against its checksum by the first such request after the file is stored, and
+     * not again for the requests for its other ranges.
+     * 
+     * @param connection The connection associated with the request.
+     * @param filename The name of the file being loaded.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @param compressed Whether the client asked for the content as compressed blocks.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     * @throws FileDoesNotExistException If the file being requested does not exist.
+     * @throws InvalidMessageException If the range is not within the file.
+     */
+    private void handleRangedLoadDataRequest(Connection connection, String filename, long offset, int length, boolean compressed) throws Exception{
+        // file does not exist - closing connection
+        if(!this.dstore.getCatalog().verify(filename)){
+            connection.close();
+            throw new FileDoesNotExistException(filename);
+        }
+
+        // reading the range (after checking the whole file once)
+        ByteBuffer range;
+        try{
+            if(!this.dstore.getCatalog().isContentChecked(filename)){
+                ByteBuffer fileContent = this.dstore.getStorage().load(filename);
+                if(fileContent != null){
+                    this.verifyChecksum(filename, fileContent);
+                    this.dstore.getCatalog().contentChecked(filename);
+                }
+            }
+            range = this.dstore.getStorage().readRange(filename, offset, length);
+        }
+        catch(ZipException e){
+            // compressed content too damaged to decompress - treated as a corrupt copy
+            connection.close();
+            this.dstore.handleCorruptFile(filename, new DecompressionException(filename, e));
+            return;
+        }
+        catch(UnknownDictionaryException e){
+            // compressed with a dictionary no longer known - not damage, so the copy is kept
+            connection.close();
+            throw e;
+        }
+        catch(ChecksumMismatchException e){
+            // closing the connection, so the client reloads from another Dstore
+            connection.close();
+
+            // removing the corrupt copy and reporting it to the Controller
+            this.dstore.handleCorruptFile(filename, e);
+            return;
+        }
+        catch(EOFException e){
+            // range not within the file
+            connection.close();
+            throw new InvalidMessageException(Protocol.getLoadDataMessage(filename, offset, length, compressed), connection.getPort(), e);
+        }
+
+        // file removed since it was found - closing connection
+        if(range == null){
+            connection.close();
+            throw new FileDoesNotExistException(filename);
+        }
+
+        // sending the range to the client (within the client read bandwidth)
+        this.sendContent(connection, range, compressed, this.dstore.getOptions().getWireCompression(), IOClass.CLIENT_READ);
+
+        // logging
+        this.dstore.handleEvent(new LoadCompleteEvent(filename));
+    }
+
+    /**
+     * Handles a LOAD_RANGE request, sending only a range of a file. The range is read with
+     * positional reads, so the rest of the file is neither read nor checked against its checksum
+     * (damage elsewhere in the file is left to the scrubber).
+     * 
+     * @param connection The connection associated with the request.
+     * @param filename The name of the file.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @param compressed Whether the client asked for the content as compressed blocks.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     * @throws FileDoesNotExistException If the file being requested does not exist.
+     * @throws InvalidMessageException If the range is not within the file.
+     */
+    private void handleLoadRangeRequest(Connection connection, String filename, long offset, int length, boolean compressed) throws Exception{
+        // reading the range
+        ByteBuffer range;
+        try{
+            range = this.dstore.getCatalog().verify(filename) ? this.dstore.getStorage().readRange(filename, offset, length) : null;
+        }
+        catch(ZipException e){
+            // compressed content too damaged to decompress - treated as a corrupt copy
+            connection.close();
+            this.dstore.handleCorruptFile(filename, new DecompressionException(filename, e));
+            return;
+        }
+        catch(UnknownDictionaryException e){
+            // compressed with a dictionary no longer known - not damage, so the copy is kept
+            connection.close();
+            throw e;
+        }
+        catch(EOFException e){
+            // range not within the file
+            connection.close();
+            throw new InvalidMessageException(Protocol.getLoadRangeMessage(filename, offset, length, compressed), connection.getPort(), e);
+        }
+
+        // file does not exist - closing connection
+        if(range == null){
+            connection.close();
+            throw new FileDoesNotExistException(filename);
+        }
+
+        // sending the range to the client (within the client read bandwidth)
+        this.sendContent(connection, range, compressed, this.dstore.getOptions().getWireCompression(), IOClass.CLIENT_READ);
+
+        // logging
+        this.dstore.handleEvent(new LoadRangeCompleteEvent(filename, offset, length));
+    }
+
     ////////////
     // REMOVE //
     ////////////
@@ -252,20 +493,8 @@ public class DstoreRequestHandler extends RequestHandler{
      * @throws FileDoesNotExistException If the file being requested does not exist.
      */
     private void handleRemoveRequest(Connection connection, String filename) throws Exception{
-        // creating file object
-        /*File.separatorChar: File.separatorChar 是一个常量，表示文件路径中的分隔符。在不同操作系统中，
-        文件路径的分隔符可能不同，例如在 Windows 系统中为 \，在 Unix/Linux 系统中为 /。
-        使用 File.separatorChar 可以保证在不同操作系统上构建文件路径时使用正确的分隔符。
-        Paths.get(file.getAbsolutePath()): Paths.get() 是 Java NIO 中的方法，用于创建一个 Path 对象。
-        file.getAbsolutePath() 返回文件的绝对路径，Paths.get(file.getAbsolutePath()) 将文件的绝对路径转换为 Path 对象，以便进行文件操作。
-        Path 对象提供了一种抽象表示文件路径的方式，可以用于执行文件操作，如删除文件、复制文件等。*/
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
-
-        // deleting file
-        try{
-            Files.delete(Paths.get(file.getAbsolutePath()));
-        }
-        catch(Exception e){
+        // removing file (records the change)
+        if(!this.dstore.getStorage().remove(filename)){
             throw new FileDoesNotExistException(filename);
         }
 
@@ -290,8 +519,8 @@ public class DstoreRequestHandler extends RequestHandler{
         // creating hashmap of files
         HashMap<String, Integer> files = this.dstore.getFiles();
 
-        // creating message
-        String message = Protocol.getListOfFilesMessage(files);
+        // creating message (written straight to the connection)
+        MessageEncoder message = Protocol.getListOfFilesEncoder(files);
 
         // sending the list of files back to the connector
         connection.sendMessage(message);
@@ -300,6 +529,39 @@ public class DstoreRequestHandler extends RequestHandler{
         this.dstore.handleEvent(new ListCompleteEvent());
     }
 
+    ////////////////
+    // LIST_SINCE //
+    ////////////////
+
+    /**
+     * Handles a LIST_SINCE request. Sends the changes made to the Dstore's files since the given
+     * version, or a full listing if the changes since that version are not known.
+     * 
+     * @param connection The connection associated with the request.
+     * @param version The version the changes are requested since.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     */
+    private void handleListSinceRequest(Connection connection, long version) throws Exception{
+        // version is read first so that a change made while gathering is sent again next time
+        long currentVersion = this.dstore.getChangeLog().getVersion();
+        ArrayList<FileChange> changes = this.dstore.getChangeLog().getChangesSince(version);
+
+        // creating message (written straight to the connection)
+        MessageEncoder message;
+        if(changes != null){
+            message = Protocol.getListDeltaEncoder(currentVersion, changes);
+        }
+        else{
+            message = Protocol.getFullListDeltaEncoder(currentVersion, this.dstore.getFiles());
+        }
+
+        // sending the changes back to the connector
+        connection.sendMessage(message);
+
+        // logging
+        this.dstore.handleEvent(new ListCompleteEvent());
+    }
+
     ///////////////
     // REBALANCE //
     ///////////////
@@ -310,121 +572,36 @@ public class DstoreRequestHandler extends RequestHandler{
      * @param connection The connection associated with the request.
      * @param filesToSend The files that must be sent to other Dstores.
      * @param filesToRemove The files to be removed from the Dstore.
-     * @throws MessageSendException If a message could not be sent through a connection.
-     * @throws MessageRecievedException If a message could not be receieved from a connection.
-     * @throws FileDoesNotExistException If a file referenced in the request does not exist.
-     * @throws InvalidMessageException If an invalid message is receieved from a Dstore whilst
-     * sending files.
+     * @throws MessageSendException If a message could not be sent to the controller.
      */
     private void handleRebalanceRequest(Connection connection, ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove) throws Exception{
         // FILES TO SEND //
 
-        // iterate over files
+        // iterate over files - each transfer is acknowledged to the controller by the receiving
+        // Dstore, so a failed transfer is logged and the rest carried on with
         for(FileToSend fileToSend : filesToSend){
-            // forming REBALANCE_STORE message
-            String message = Protocol.getRebalanceStoreMessage(fileToSend.filename, fileToSend.filesize);
-
-            // loading file to be sent
-            File file = new File(this.dstore.getFolderPath() + File.separatorChar + fileToSend.filename);
-
-            // file exists - sending file to dstore's that need it
-            if(file.exists()){
-                // gathering file
-                FileInputStream fileInput = new FileInputStream(file);
-
-                // iterating over Dstores to send to
-                for(int dstore : fileToSend.dStores){
-                    // setting up the connection
-                    Connection dstoreConnection = new Connection(this.dstore.getNetworkInterface(), dstore, ServerType.DSTORE);
-
-                    // adding connection to server
-                    this.dstore.getServerConnections().add(dstoreConnection);
-
-                    // sending dstore join message
-                    dstoreConnection.sendMessage(Protocol.getJoinDstoreMessage(this.dstore.getPort()));
-
-                    try{
-                        // wait for acknowledgement
-                        Token response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
-
-                        // making sure response is JOIN_ACK
-                        if(response instanceof JoinAckToken){
-                            // sending rebalance message
-                            dstoreConnection.sendMessage(message);
-
-                            try{
-                                // waiting for acknowledgement
-                                response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
-                    
-                                // making sure acknowledgement was receieved
-                                if(response instanceof AckToken){
-                                    // sending file to client
-                                    byte[] fileContent = fileInput.readAllBytes();
-                                    dstoreConnection.sendBytes(fileContent);
-                                    fileInput.close();
-                
-                                    // closing streams
-                                    dstoreConnection.close();
-                                    fileInput.close();
-                                }
-                                // invalid response received
-                                else{
-                                    // closing streams
-                                    dstoreConnection.close();
-                                    fileInput.close();
-                
-                                    // throwing exception
-                                    throw new InvalidMessageException(response.message, dstoreConnection.getPort());
-                                }
-                            }
-                            catch(Exception e){
-                                // closing streams
-                                dstoreConnection.close();
-                                fileInput.close();
-                    
-                                // throwing exception
-                                throw e;
-                            }
-                        }
-                        else{
-                            // closing streams
-                            dstoreConnection.close();
-                            fileInput.close();
-        
-                            // throwing exception
-                            throw new InvalidMessageException(response.message, dstoreConnection.getPort());
-                        }
-                    }
-                    catch(Exception e){
-                        // closing streams
-                        dstoreConnection.close();
-                        fileInput.close();
-            
-                        // throwing exception
-                        throw e;
-                    }
+            // iterating over Dstores to send to
+            for(int dstore : fileToSend.dStores){
+                try{
+                    this.sendRebalanceFile(fileToSend, dstore);
+                }
+                catch(Exception e){
+                    this.dstore.handleError(new RequestHandlingException(Protocol.getRebalanceStoreMessage(fileToSend.filename, fileToSend.filesize), e));
                 }
-            }
-            // file does not exist - throwing exception
-            else{
-                // throwing exception
-                throw new FileDoesNotExistException(fileToSend.filename);
             }
         }
 
         // FILES TO REMOVE //
 
         for(String fileToRemove : filesToRemove){
-            // creating file object
-            File file = new File(this.dstore.getFolderPath() + File.separatorChar + fileToRemove);
-
-            // deleting file
-            try{
-                Files.delete(Paths.get(file.getAbsolutePath()));
-            }
-            catch(Exception e){
-                throw new FileDoesNotExistException(fileToRemove);
+            // removing file (records the change)
+            if(!this.dstore.getStorage().remove(fileToRemove)){
+                this.dstore.handleError(new RequestHandlingException(Protocol.getRemoveMessage(fileToRemove), new FileDoesNotExistException(fileToRemove)));
+                continue;
             }
+
+            // acknowledging the removal to the controller
+            connection.sendMessage(Protocol.getRebalanceRemoveAckMessage(fileToRemove));
         }
 
         // REBALANCE COMPLETE //
@@ -433,12 +610,78 @@ public class DstoreRequestHandler extends RequestHandler{
         HashMap<String, Integer> files = this.dstore.getFiles();
 
         // sending message to controller
-        connection.sendMessage(Protocol.getRebalanceCompleteMessage(files));
+        connection.sendMessage(Protocol.getRebalanceCompleteEncoder(files));
 
         // logging
         this.dstore.handleEvent(new RebalanceCompleteEvent());
     }
 
+    /**
+     * Sends a file to another Dstore as part of a rebalance.
+     * 
+     * @param fileToSend The file being sent.
+     * @param dstore The port of the Dstore the file is being sent to.
+     * @throws FileDoesNotExistException If the file being sent does not exist.
+     * @throws MessageSendException If a message could not be sent through a connection.
+     * @throws MessageRecievedException If a message could not be receieved from a connection.
+     * @throws InvalidMessageException If an invalid message is receieved from the Dstore.
+     */
+    private void sendRebalanceFile(FileToSend fileToSend, int dstore) throws Exception{
+        // loading file to be sent
+        ByteBuffer fileContent = this.dstore.getStorage().load(fileToSend.filename);
+
+        // file does not exist - throwing exception
+        if(fileContent == null){
+            throw new FileDoesNotExistException(fileToSend.filename);
+        }
+
+        // checking the content against its checksum (a corrupt copy is never spread)
+        long checksum = this.verifyChecksum(fileToSend.filename, fileContent);
+
+        // setting up the connection
+        Connection dstoreConnection = new Connection(this.dstore.getNetworkInterface(), dstore, ServerType.DSTORE);
+
+        // adding connection to server
+        this.dstore.getServerConnections().add(dstoreConnection);
+
+        try{
+            // sending dstore join message
+            dstoreConnection.sendMessage(Protocol.getJoinDstoreMessage(this.dstore.getPort()));
+
+            // wait for acknowledgement
+            Token response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
+
+            // making sure response is JOIN_ACK
+            if(!(response instanceof JoinAckToken)){
+                throw new InvalidMessageException(response.message, dstoreConnection.getPort());
+            }
+
+            // sending rebalance message
+            dstoreConnection.sendMessage(Protocol.getRebalanceStoreMessage(fileToSend.filename, fileToSend.filesize, checksum, this.dstore.getOptions().getWireCompression()));
+
+            // waiting for acknowledgement
+            response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
+
+            // file rejected for lack of space
+            if(response instanceof ErrorNotEnoughSpaceToken){
+                throw new NotEnoughSpaceException(fileToSend.filename, dstoreConnection.getPort());
+            }
+
+            // making sure acknowledgement was receieved
+            if(!(response instanceof AckToken)){
+                throw new InvalidMessageException(response.message, dstoreConnection.getPort());
+            }
+
+            // sending file to dstore (compressed if the Dstore accepted, within the rebalance bandwidth)
+            boolean compressed = ((AckToken) response).compressed;
+            this.sendContent(dstoreConnection, fileContent, compressed, compressed, IOClass.REBALANCE);
+        }
+        finally{
+            // closing connection
+            dstoreConnection.close();
+        }
+    }
+
     /////////////////////
     // REBALANCE STORE //
     /////////////////////
@@ -449,25 +692,525 @@ public class DstoreRequestHandler extends RequestHandler{
      * @param connection The connection associated with the request.
      * @param filename The name of the file being sent.
      * @param filesize The size of the file being sent.
+     * @param checksum The CRC32C of the file's content (Protocol.NO_CHECKSUM if not given).
+     * @param compressed Whether the Dstore offered to send the content as compressed blocks.
      */
-    private void handleRebalanceStoreRequest(Connection connection, String filename, int filesize) throws Exception{
-        // sending ACK back to dstore
-        connection.sendMessage(Protocol.getAckMessage());
-
-        // reading file data
-        byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.dstore.getTimeout());
+    private void handleRebalanceStoreRequest(Connection connection, String filename, long filesize, long checksum, boolean compressed) throws Exception{
+        // receiving the file from the dstore (sends the ACK)
+        this.receiveFile(connection, filename, filesize, checksum, compressed, IOClass.REBALANCE, new ArrayList<Integer>(), false);
 
-        // storing file data
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
-        FileOutputStream fileOutput = new FileOutputStream(file);
-        fileOutput.write(fileContent);
-        fileOutput.flush();
-        fileOutput.close();
+        // acknowledging the transfer to the controller
+        this.dstore.getControllerThread().getConnection().sendMessage(Protocol.getRebalanceStoreAckMessage(filename, filesize));
 
         // logging
         this.dstore.handleEvent(new RebalanceStoreCompleteEvent(filename, filesize));
     }
 
+    /**
+     * Receives the content of a file from a connection into the Dstore's storage.
+     * 
+     * The file is created at its full size before the sender is acknowledged, so a file there is
+     * not enough space for is rejected before any of its content is sent. The content is then
+     * written into place chunk by chunk as it arrives, and the file only becomes visible once
+     * it is complete.
+     * 
+     * The CRC32C of the content is computed as it arrives. If the sender gave a checksum, the
+     * file is only stored if the two match. The checksum is kept in the catalog, so the file can
+     * be verified whenever it is loaded.
+     * 
+     * If a chain of Dstores is given, the content is also forwarded to the first of them as it
+     * arrives, with the rest of the chain passed on, so the sender only sends one copy however
+     * many Dstores store it. The sender is only acknowledged once the next Dstore has accepted
+     * the file, so a rejection anywhere along the chain reaches the sender. If forwarding fails
+     * part way through, the file is still received and stored here, and the next Dstore is then
+     * sent STORE_RESUME for the rest of the file from the stored copy (see resumeForwarding).
+     * 
+     * If the connection to the sender of a STORE fails part way through, the content received so
+     * far is kept (see PartialStores), and a STORE_RESUME continues it - the sender is replied
+     * RESUME_FROM with the length held, and only sends the rest. Along a chain, the reply is the
+     * shortest length held by any Dstore from here on, and each Dstore skips the content it
+     * already holds.
+     * 
+     * @param connection The connection the file is received through.
+     * @param filename The name of the file.
+     * @param filesize The size of the file.
+     * @param checksum The CRC32C of the file's content given by the sender (Protocol.NO_CHECKSUM
+     * if not given).
+     * @param compressed Whether the sender offered to send the content as compressed blocks
+     * (accepted if wire compression is on).
+     * @param ioClass The I/O class the transfer is scheduled under.
+     * @param chain The Dstores the content is forwarded to as it arrives (empty if none).
+     * @param resume Whether the content received by an earlier STORE of the file is continued.
+     * @throws NotEnoughSpaceException If there is not enough space to store the file (here or
+     * further along the chain), or it is too large to hold in one piece.
+     * @throws MessageSendException If the ACK could not be sent through the connection.
+     * @throws MessageReceivedException If the content could not be received through the connection.
+     * @throws ChecksumMismatchException If the content received does not match the checksum.
+     */
+    private void receiveFile(Connection connection, String filename, long filesize, long checksum, boolean compressed, IOClass ioClass, ArrayList<Integer> chain, boolean resume) throws Exception{
+        PartialStores partialStores = this.dstore.getPartialStores();
+
+        // gathering the content received before (if resuming and there is any)
+        PartialStore partial = null;
+        if(resume){
+            partial = partialStores.take(filename, filesize, checksum, this.dstore.getTimeout());
+        }
+        else{
+            partialStores.discard(filename);
+        }
+
+        // each file is held in one piece (larger objects are split into chunks by the Controller)
+        if(partial == null && filesize > StorageEngine.MAX_FILESIZE){
+            throw new NotEnoughSpaceException(filename, filesize, StorageEngine.MAX_FILESIZE);
+        }
+
+        // creating the file at its full size (throws if there is not enough space)
+        IncomingFile file = (partial != null) ? partial.file : this.dstore.getStorage().create(filename, (int) filesize);
+        CRC32C crc = (partial != null) ? partial.crc : new CRC32C();
+        long[] stored = {(partial != null) ? partial.received : 0};
+        partialStores.receiving(filename);
+
+        // the connection to the next Dstore of the chain, and the content sent through it
+        // (dropped if forwarding fails, to be resumed once the file is stored)
+        Connection[] next = new Connection[1];
+        ContentOutput[] forward = new ContentOutput[1];
+        boolean[] forwardFailed = {false};
+
+        try{
+            // passing the file on to the next Dstore of the chain before accepting it
+            long forwardFrom = 0;
+            if(!chain.isEmpty()){
+                next[0] = new Connection(this.dstore.getNetworkInterface(), chain.get(0), ServerType.DSTORE);
+                this.dstore.getServerConnections().add(next[0]);
+                ArrayList<Integer> rest = new ArrayList<Integer>(chain.subList(1, chain.size()));
+                Token reply = this.startForwarding(next[0], filename, filesize, checksum, rest, resume);
+                if(reply instanceof ResumeFromToken){
+                    forwardFrom = Math.min(((ResumeFromToken) reply).offset, filesize);
+                    forward[0] = next[0].getContentOutput(((ResumeFromToken) reply).compressed);
+                }
+                else{
+                    forward[0] = next[0].getContentOutput(((AckToken) reply).compressed);
+                }
+            }
+
+            // the content is sent from the shortest length held from here on
+            long start = (forward[0] != null) ? Math.min(stored[0], forwardFrom) : stored[0];
+            long nextFrom = forwardFrom;
+
+            // sending ACK (or RESUME_FROM) back to the sender (accepting compression if offered and turned on)
+            compressed = compressed && this.dstore.getOptions().getWireCompression();
+            connection.sendMessage(resume ? Protocol.getResumeFromMessage(start, compressed) : Protocol.getAckMessage(compressed));
+
+            // writing the file data into place as it arrives (checksumming it on the way)
+            long[] acquired = {0};
+            ChunkHandler handler = (ByteBuffer chunk, long position) -> {
+                // acquiring the bandwidth of the class a chunk at a time, ahead of the content
+                while(acquired[0] < position + chunk.remaining()){
+                    long bytes = Math.min(IOScheduler.CHUNK_SIZE, filesize - start - acquired[0]);
+                    this.dstore.getScheduler().acquire(ioClass, bytes);
+                    acquired[0] += bytes;
+                }
+
+                position += start;
+                int length = chunk.remaining();
+                ByteBuffer forwarded = chunk.duplicate();
+
+                // writing the part not already held
+                long skip = stored[0] - position;
+                if(skip < length){
+                    chunk.position(chunk.position() + (int) Math.max(0, skip));
+                    crc.update(chunk.duplicate());
+                    file.write(chunk, position + Math.max(0, skip));
+                    stored[0] = position + length;
+                }
+
+                // forwarding the part the next Dstore does not hold down the chain
+                long forwardSkip = nextFrom - position;
+                if(forward[0] != null && forwardSkip < length){
+                    forwarded.position(forwarded.position() + (int) Math.max(0, forwardSkip));
+                    try{
+                        forward[0].write(forwarded);
+                    }
+                    catch(MessageSendException e){
+                        this.dstore.handleError(e);
+                        forward[0] = null;
+                        forwardFailed[0] = true;
+                    }
+                }
+            };
+            if(compressed){
+                connection.receiveCompressedBytesWithinTimeout(filesize - start, this.dstore.getTimeout(), handler);
+            }
+            else{
+                connection.receiveBytesWithinTimeout(filesize - start, this.dstore.getTimeout(), handler);
+            }
+
+            // finishing forwarding the content
+            if(forward[0] != null){
+                try{
+                    forward[0].finish();
+                }
+                catch(MessageSendException e){
+                    this.dstore.handleError(e);
+                    forwardFailed[0] = true;
+                }
+            }
+
+            // checking the content against the sender's checksum
+            if(checksum != Protocol.NO_CHECKSUM && crc.getValue() != checksum){
+                throw new ChecksumMismatchException(filename, checksum, crc.getValue());
+            }
+
+            // storing the file (durably, and only visible once complete - records the change)
+            file.commit();
+            this.dstore.getCatalog().checksumComputed(filename, crc.getValue());
+        }
+        catch(Exception e){
+            // keeping the content of a STORE cut off by a connection failure, to be resumed
+            boolean networkFailure = (e instanceof MessageReceivedException) || (e instanceof MessageSendException) || (e instanceof ConnectionSetupException);
+            if(ioClass == IOClass.CLIENT_WRITE && checksum != Protocol.NO_CHECKSUM && stored[0] > 0 && networkFailure){
+                partialStores.park(new PartialStore(filename, filesize, checksum, file, crc, stored[0]));
+            }
+            else{
+                file.discard();
+            }
+            throw e;
+        }
+        finally{
+            partialStores.received(filename);
+            if(next[0] != null){
+                next[0].close();
+            }
+        }
+
+        // resuming the rest of the chain from the stored file (the file stays stored here if it
+        // cannot be, and the Controller times the store out)
+        if(forwardFailed[0]){
+            try{
+                this.resumeForwarding(filename, filesize, checksum, chain);
+            }
+            catch(Exception e){
+                this.dstore.handleError(new RequestHandlingException(Protocol.getStoreResumeMessage(filename, filesize, checksum, this.dstore.getOptions().getWireCompression(), new ArrayList<Integer>(chain.subList(1, chain.size()))), e));
+            }
+        }
+    }
+
+    /**
+     * Resumes forwarding a stored file to the next Dstore of a chain, after the connection to it
+     * failed part way through. The next Dstore is sent STORE_RESUME (with the rest of the chain),
+     * replies RESUME_FROM with the shortest length held from there on, and is then sent only the
+     * rest of the file. A resume that fails too is tried again, up to Dstore.MAX_RESUME_ATTEMPTS
+     * times.
+     * 
+     * @param filename The name of the file.
+     * @param filesize The size of the file.
+     * @param checksum The CRC32C of the file's content (Protocol.NO_CHECKSUM if not known).
+     * @param chain The Dstores the content is forwarded to.
+     * @throws FileDoesNotExistException If the file is no longer stored.
+     * @throws NotEnoughSpaceException If the next Dstore does not have space for the file.
+     * @throws MessageSendException If the content could not be sent on the last attempt.
+     */
+    private void resumeForwarding(String filename, long filesize, long checksum, ArrayList<Integer> chain) throws Exception{
+        // gathering the stored file
+        ByteBuffer fileContent = this.dstore.getStorage().load(filename);
+        if(fileContent == null){
+            throw new FileDoesNotExistException(filename);
+        }
+
+        ArrayList<Integer> rest = new ArrayList<Integer>(chain.subList(1, chain.size()));
+        for(int attempt = 1; ; attempt++){
+            Connection next = null;
+            try{
+                // asking the next Dstore to resume the store
+                next = new Connection(this.dstore.getNetworkInterface(), chain.get(0), ServerType.DSTORE);
+                this.dstore.getServerConnections().add(next);
+                ResumeFromToken reply = (ResumeFromToken) this.startForwarding(next, filename, filesize, checksum, rest, true);
+
+                // sending the rest of the file
+                ByteBuffer content = fileContent.duplicate();
+                content.position(content.position() + (int) Math.min(reply.offset, filesize));
+                ContentOutput output = next.getContentOutput(reply.compressed);
+                output.write(content);
+                output.finish();
+
+                // logging
+                this.dstore.handleEvent(new ForwardingResumedEvent(filename, chain.get(0), reply.offset));
+                return;
+            }
+            catch(MessageSendException | MessageReceivedException | ConnectionSetupException e){
+                if(attempt >= Dstore.MAX_RESUME_ATTEMPTS){
+                    throw e;
+                }
+
+                // logging error
+                this.dstore.handleError(e);
+            }
+            finally{
+                if(next != null){
+                    next.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a STORE (or STORE_RESUME) for a file to the next Dstore of a chain, and waits for it
+     * to accept the file.
+     * 
+     * @param next The connection to the next Dstore.
+     * @param filename The name of the file.
+     * @param filesize The size of the file.
+     * @param checksum The CRC32C of the file's content (Protocol.NO_CHECKSUM if not known).
+     * @param chain The Dstores that follow the next Dstore (empty if none).
+     * @param resume Whether the next Dstore is asked to continue the content it holds.
+     * @return The reply of the next Dstore - ACK, or RESUME_FROM if resuming.
+     * @throws NotEnoughSpaceException If the next Dstore does not have space for the file.
+     * @throws InvalidMessageException If the next Dstore replied with anything else.
+     */
+    private Token startForwarding(Connection next, String filename, long filesize, long checksum, ArrayList<Integer> chain, boolean resume) throws Exception{
+        // joining the next Dstore on the client's behalf
+        next.sendMessage(Protocol.getJoinClientMessage());
+        Token response = RequestTokenizer.getToken(next.getMessageWithinTimeout(this.dstore.getTimeout()));
+        if(!(response instanceof JoinAckToken)){
+            throw new InvalidMessageException(response.message, next.getPort());
+        }
+
+        // sending the store message, with the rest of the chain
+        boolean wireCompression = this.dstore.getOptions().getWireCompression();
+        next.sendMessage(resume
+            ? Protocol.getStoreResumeMessage(filename, filesize, checksum, wireCompression, chain)
+            : Protocol.getStoreMessage(filename, filesize, checksum, wireCompression, chain));
+
+        // waiting for acknowledgement (a resuming Dstore may first wait up to a timeout for the
+        // content of the failed transfer to stop arriving)
+        int timeout = resume ? 2 * this.dstore.getTimeout() : this.dstore.getTimeout();
+        response = RequestTokenizer.getToken(next.getMessageWithinTimeout(timeout));
+
+        // file rejected for lack of space
+        if(response instanceof ErrorNotEnoughSpaceToken){
+            throw new NotEnoughSpaceException(filename, next.getPort());
+        }
+
+        // making sure acknowledgement was receieved
+        if(!(resume ? (response instanceof ResumeFromToken) : (response instanceof AckToken))){
+            throw new InvalidMessageException(response.message, next.getPort());
+        }
+
+        return response;
+    }
+
+    /**
+     * Sends file content through a connection, acquiring the bandwidth of its class from the I/O
+     * scheduler one chunk at a time just before the chunk is sent, so the transfer is held to the
+     * limits while it runs.
+     * 
+     * @param connection The connection.
+     * @param content The content (not modified).
+     * @param blocks Whether the content is sent as blocks (see BlockCompressor).
+     * @param compress Whether the blocks are compressed.
+     * @param ioClass The I/O class of the transfer.
+     * @throws MessageSendException If the content could not be sent.
+     * @throws InterruptedException If interrupted while waiting for the bandwidth.
+     */
+    private void sendContent(Connection connection, ByteBuffer content, boolean blocks, boolean compress, IOClass ioClass) throws Exception{
+        ContentOutput output = connection.getContentOutput(blocks, compress);
+        ByteBuffer remaining = content.duplicate();
+        while(remaining.hasRemaining()){
+            int length = Math.min(IOScheduler.CHUNK_SIZE, remaining.remaining());
+            ByteBuffer chunk = remaining.duplicate();
+            chunk.limit(chunk.position() + length);
+
+            this.dstore.getScheduler().acquire(ioClass, length);
+            output.write(chunk);
+            remaining.position(remaining.position() + length);
+        }
+        output.finish();
+    }
+
+    /**
+     * Checks the content of a stored file against the checksum kept in the catalog. A file with
+     * no known checksum has one computed and recorded.
+     * 
+     * @param filename The name of the file.
+     * @param content The content of the file (not modified).
+     * @return The checksum of the content.
+     * @throws ChecksumMismatchException If the content does not match the checksum.
+     */
+    private long verifyChecksum(String filename, ByteBuffer content) throws ChecksumMismatchException{
+        CRC32C crc = new CRC32C();
+        crc.update(content.duplicate());
+
+        long checksum = this.dstore.getCatalog().getChecksum(filename);
+        if(checksum == DstoreCatalog.NO_CHECKSUM){
+            this.dstore.getCatalog().checksumComputed(filename, crc.getValue());
+        }
+        else if(crc.getValue() != checksum){
+            throw new ChecksumMismatchException(filename, checksum, crc.getValue());
+        }
+
+        return crc.getValue();
+    }
+
+    //////////////
+    // IO_LIMIT //
+    //////////////
+
+    /**
+     * Handles an IO_LIMIT request, changing an I/O bandwidth limit of the Dstore.
+     * 
+     * @param connection The connection associated with the request.
+     * @param request The request.
+     * @param ioClass The I/O class the limit is for ('total' for the limit shared by every class).
+     * @param limit The new limit in bytes per second (0 for no limit).
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     * @throws InvalidMessageException If the I/O class is not known.
+     */
+    private void handleIoLimitRequest(Connection connection, Token request, String ioClass, long limit) throws Exception{
+        // gathering the class (null for the shared limit)
+        IOClass limitedClass = IOClass.fromString(ioClass);
+        if(limitedClass == null && !ioClass.equals(Protocol.IO_LIMIT_TOTAL)){
+            this.handleInvalidRequest(connection, request);
+            return;
+        }
+
+        // changing the limit
+        this.dstore.getScheduler().setLimit(limitedClass, limit);
+
+        // acknowledging the change
+        connection.sendMessage(Protocol.getAckMessage());
+
+        // logging
+        this.dstore.handleEvent(new IOLimitChangedEvent(ioClass, limit));
+    }
+
+    //////////////
+    // IO_STATS //
+    //////////////
+
+    /**
+     * Handles an IO_STATS request, sending the I/O statistics of each class.
+     * 
+     * @param connection The connection associated with the request.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     */
+    private void handleIoStatsRequest(Connection connection) throws Exception{
+        IOScheduler scheduler = this.dstore.getScheduler();
+
+        // gathering the statistics of each class
+        ArrayList<String> classStatistics = new ArrayList<String>();
+        for(IOClass ioClass : IOClass.values()){
+            ClassStatistics statistics = scheduler.getStatistics(ioClass);
+            classStatistics.add(ioClass + " " + scheduler.getLimit(ioClass) + " " + (long) statistics.getThroughput() + " " + statistics.getBytes() + " " + statistics.getOperations() + " " + String.format("%.3f", statistics.getAverageQueueTime()));
+        }
+
+        // sending the statistics
+        connection.sendMessage(Protocol.getIoStatsMessage(scheduler.getLimit(null), classStatistics));
+    }
+
+    /////////////////
+    // SCRUB_STATS //
+    /////////////////
+
+    /**
+     * Handles a SCRUB_STATS request, sending the progress and statistics of the scrubber.
+     * 
+     * @param connection The connection associated with the request.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     */
+    private void handleScrubStatsRequest(Connection connection) throws Exception{
+        Scrubber scrubber = this.dstore.getScrubber();
+
+        connection.sendMessage(Protocol.getScrubStatsMessage(scrubber.getPass(), scrubber.getFilesScanned(), scrubber.getFilesInPass(), scrubber.getBytesScanned(), (long) scrubber.getRate(), scrubber.getCorruptFiles(), scrubber.getLimit()));
+    }
+
+    ///////////////////////
+    // COMPRESSION_STATS //
+    ///////////////////////
+
+    /**
+     * Handles a COMPRESSION_STATS request, sending the compression ratio and CPU cost of each
+     * codec, or of one stored file.
+     * 
+     * @param connection The connection associated with the request.
+     * @param filename The name of the file the statistics are for (null for every codec).
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     * @throws IOException If the file could not be read.
+     */
+    private void handleCompressionStatsRequest(Connection connection, String filename) throws Exception{
+        Compressor compressor = this.dstore.getCompressor();
+
+        // statistics of every codec
+        if(filename == null){
+            ArrayList<String> codecStatistics = new ArrayList<String>();
+            long bytes = 0;
+            long storedBytes = 0;
+            for(Codec codec : Codec.values()){
+                CodecStatistics statistics = compressor.getStatistics(codec);
+                codecStatistics.add(codec + " " + statistics.getObjects() + " " + statistics.getBytes() + " " + statistics.getStoredBytes() + " " + String.format("%.3f", statistics.getRatio()) + " " + String.format("%.3f", statistics.getCompressTime()) + " " + statistics.getDecompressions() + " " + String.format("%.3f", statistics.getDecompressTime()));
+                bytes += statistics.getBytes();
+                storedBytes += statistics.getStoredBytes();
+            }
+
+            connection.sendMessage(Protocol.getCompressionStatsMessage(compressor.getMode().toString(), bytes, storedBytes, codecStatistics));
+            return;
+        }
+
+        // file not stored
+        if(!this.dstore.getCatalog().verify(filename)){
+            connection.sendMessage(Protocol.getErrorFileDoesNotExistMessage(filename));
+            return;
+        }
+
+        // deduplicated content is compressed under the name of its object
+        String objectName = filename;
+        if(this.dstore.getStorage() instanceof DedupStorageEngine){
+            String hash = ((DedupStorageEngine) this.dstore.getStorage()).getIndex().getHash(filename);
+            if(hash != null){
+                objectName = DedupStorageEngine.getObjectName(hash);
+            }
+        }
+
+        // statistics of the file (read once if it has not been stored or loaded since startup)
+        ObjectStatistics statistics = compressor.getStatistics(objectName);
+        if(statistics == null){
+            ByteBuffer content = this.dstore.getStorage().read(filename);
+            statistics = compressor.getStatistics(objectName);
+
+            // stored while compression was off
+            if(statistics == null){
+                long filesize = (content != null) ? content.remaining() : 0;
+                connection.sendMessage(Protocol.getObjectCompressionStatsMessage(filename, Codec.NONE.toString(), filesize, filesize, 1, 0, 0));
+                return;
+            }
+        }
+
+        connection.sendMessage(Protocol.getObjectCompressionStatsMessage(filename, statistics.getCodec().toString(), statistics.getFilesize(), statistics.getStoredSize(), statistics.getRatio(), statistics.getCompressTime(), statistics.getDecompressTime()));
+    }
+
+    /////////////////
+    // DEDUP_STATS //
+    /////////////////
+
+    /**
+     * Handles a DEDUP_STATS request, sending how much stored content is shared between files.
+     * 
+     * @param connection The connection associated with the request.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     */
+    private void handleDedupStatsRequest(Connection connection) throws Exception{
+        // not deduplicating
+        if(!(this.dstore.getStorage() instanceof DedupStorageEngine)){
+            connection.sendMessage(Protocol.getDedupStatsMessage("off", 0, 0, 0, 0, 1, 0, 0));
+            return;
+        }
+
+        DedupStorageEngine storage = (DedupStorageEngine) this.dstore.getStorage();
+        DedupIndex index = storage.getIndex();
+        String mode = storage.isEnabled() ? "on" : "off";
+
+        connection.sendMessage(Protocol.getDedupStatsMessage(mode, index.getNumberOfFiles(), index.getNumberOfContents(), index.getBytes(), index.getStoredBytes(), storage.getRatio(), storage.getStores(), storage.getHits()));
+    }
+
     /////////////
     // INVALID //
     /////////////
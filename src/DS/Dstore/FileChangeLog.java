@@ -0,0 +1,138 @@
+package DS.Dstore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import DS.Protocol.Token.TokenType.FileChange;
+
+/**
+ * Records the changes made to the files stored on a Dstore, each tagged with a sequence number.
+ *
+ * The current sequence number is the Dstore's list version. The Controller remembers the last
+ * version it was sent and asks for the changes since that version (LIST_SINCE) instead of the
+ * full file list, so a rebalance only has to transfer what actually changed.
+ *
+ * Only a bounded number of changes are retained. If the Controller asks for changes from a
+ * version that is no longer retained (or has never been sent a version), the Dstore falls back
+ * to sending a full listing.
+ */
+public class FileChangeLog{
+
+    // constants
+    public static final int DEFAULT_MAX_CHANGES = 10000;
+
+    // member variables
+    private int maxChanges;
+    private long version;
+    private ArrayDeque<LoggedChange> changes;
+
+    /**
+     * Class constructor.
+     *
+     * @param maxChanges The maximum number of changes retained by the log.
+     */
+    public FileChangeLog(int maxChanges){
+        // initializing
+        this.maxChanges = maxChanges;
+        this.version = 0;
+        this.changes = new ArrayDeque<LoggedChange>();
+    }
+
+    ///////////////////////
+    // RECORDING CHANGES //
+    ///////////////////////
+
+    /**
+     * Records a file having been stored on the Dstore.
+     *
+     * @param filename The name of the file stored.
+     * @param filesize The size of the file stored in bytes.
+     */
+    public synchronized void recordStored(String filename, int filesize){
+        this.record(new FileChange(filename, filesize, false));
+    }
+
+    /**
+     * Records a file having been removed from the Dstore.
+     *
+     * @param filename The name of the file removed.
+     */
+    public synchronized void recordRemoved(String filename){
+        this.record(new FileChange(filename, 0, true));
+    }
+
+    /**
+     * Adds a change to the log under the next version, discarding the oldest change if the log
+     * is full.
+     *
+     * @param change The change being recorded.
+     */
+    private void record(FileChange change){
+        this.version++;
+        this.changes.addLast(new LoggedChange(this.version, change));
+
+        if(this.changes.size() > this.maxChanges){
+            this.changes.removeFirst();
+        }
+    }
+
+    ///////////////////////
+    // GATHERING CHANGES //
+    ///////////////////////
+
+    /**
+     * Gathers the changes made since the given version. Only the latest change to each file is
+     * returned.
+     *
+     * @param since The version the changes are wanted since.
+     * @return The changes made since the version, or null if they cannot be determined from the
+     * log (the version is unknown or no longer retained) and a full listing must be sent instead.
+     */
+    public synchronized ArrayList<FileChange> getChangesSince(long since){
+        // version unknown to this log
+        if(since < 0 || since > this.version){
+            return null;
+        }
+
+        // changes since the version have been discarded
+        long oldestRetained = this.changes.isEmpty() ? this.version + 1 : this.changes.peekFirst().version;
+        if(since < oldestRetained - 1){
+            return null;
+        }
+
+        // collapsing the changes to the latest per file
+        LinkedHashMap<String, FileChange> latest = new LinkedHashMap<String, FileChange>();
+        for(LoggedChange loggedChange : this.changes){
+            if(loggedChange.version > since){
+                latest.remove(loggedChange.change.filename);
+                latest.put(loggedChange.change.filename, loggedChange.change);
+            }
+        }
+
+        return new ArrayList<FileChange>(latest.values());
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public synchronized long getVersion(){
+        return this.version;
+    }
+
+    /**
+     * A change together with the version it was recorded under.
+     */
+    private static class LoggedChange{
+
+        // member variables
+        private long version;
+        private FileChange change;
+
+        private LoggedChange(long version, FileChange change){
+            this.version = version;
+            this.change = change;
+        }
+    }
+}
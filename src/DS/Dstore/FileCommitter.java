@@ -0,0 +1,373 @@
+package DS.Dstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import DS.Dstore.DstoreOptions.DurabilityMode;
+
+/**
+ * Writes files into a Dstore's file store with the Dstore's durability mode.
+ *
+ * A file is first written to a temporary file in the Dstore's metadata folder (staged), and only
+ * renamed into its place in the file store once it is complete (committed), so a crash never leaves a
+ * truncated file under the name of a stored file. Committing also records the file in the
+ * Dstore's catalog.
+ *
+ * - NONE : The file is renamed into place without being synced.
+ * - PER_FILE : The file, the catalog and the file's folder are synced before the commit returns.
+ * - GROUP_COMMIT : Files committed within the group commit window are synced together by a
+ * single committer thread, so concurrent stores share the cost of syncing the catalog and the
+ * folders they were renamed into. Each commit returns once its group has been synced.
+ *
+ * Temporary files left by a crash are deleted when the committer is set up.
+ */
+public class FileCommitter{
+
+    // constants
+    private static final String TEMP_FOLDER = "tmp";
+
+    // member variables
+    private Dstore dstore;
+    private File root;
+    private DurabilityMode durability;
+    private long groupCommitWindow;
+    private File tempFolder;
+    private AtomicLong tempCounter;
+    private ArrayList<StagedFile> pending; // files waiting for the next group commit
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the files are written for.
+     * @param options The Dstore's options.
+     * @param root The folder the files are written into (temporary files are kept in its metadata
+     * folder, so they can be renamed into place).
+     */
+    public FileCommitter(Dstore dstore, DstoreOptions options, File root){
+        // initializing
+        this.dstore = dstore;
+        this.root = root;
+        this.durability = options.getDurability();
+        this.groupCommitWindow = options.getGroupCommitWindow();
+        this.tempCounter = new AtomicLong(0);
+        this.pending = new ArrayList<StagedFile>();
+    }
+
+    ///////////
+    // SETUP //
+    ///////////
+
+    /**
+     * Sets up the committer - clears out any temporary files and starts the group committer if
+     * needed.
+     */
+    public void setup(){
+        // clearing temporary files left behind by a crash
+        this.tempFolder = new File(new File(this.root, Dstore.METADATA_FOLDER), TEMP_FOLDER);
+        if(this.tempFolder.exists()){
+            for(File file : this.tempFolder.listFiles()){
+                file.delete();
+            }
+        }
+        else{
+            this.tempFolder.mkdirs();
+        }
+
+        // starting the group committer
+        if(this.durability == DurabilityMode.GROUP_COMMIT){
+            Thread committer = new Thread(() -> this.runGroupCommits());
+            committer.setDaemon(true);
+            committer.start();
+        }
+    }
+
+    /////////////
+    // STAGING //
+    /////////////
+
+    /**
+     * Creates a temporary file that the content of a file can be written to before it is
+     * committed.
+     *
+     * @param filename The name the file will be stored under.
+     * @param target The location of the file once committed.
+     * @return The staged file.
+     * @throws IOException If the temporary file could not be created.
+     */
+    public StagedFile stage(String filename, File target) throws IOException{
+        File tempFile = new File(this.tempFolder, this.tempCounter.incrementAndGet() + ".tmp");
+
+        return new StagedFile(filename, target, tempFile);
+    }
+
+    /**
+     * Discards a staged file that will not be committed.
+     *
+     * @param file The staged file.
+     */
+    public void discard(StagedFile file){
+        try{
+            file.output.close();
+        }
+        catch(IOException e){
+            // nothing to do
+        }
+        file.tempFile.delete();
+    }
+
+    ////////////////
+    // COMMITTING //
+    ////////////////
+
+    /**
+     * Commits a staged file into the file store, returning once it is as durable as the Dstore's
+     * durability mode requires.
+     *
+     * @param file The staged file.
+     * @param filesize The size of the file in bytes.
+     * @throws IOException If the file could not be committed.
+     */
+    public void commit(StagedFile file, int filesize) throws IOException{
+        file.filesize = filesize;
+
+        try{
+            // NONE
+            if(this.durability == DurabilityMode.NONE){
+                file.output.close();
+                this.moveIntoPlace(file);
+            }
+
+            // PER_FILE
+            else if(this.durability == DurabilityMode.PER_FILE){
+                file.output.getFD().sync();
+                file.output.close();
+                this.moveIntoPlace(file);
+
+                this.dstore.getCatalog().sync();
+                this.syncFolder(file.target.getParentFile());
+            }
+
+            // GROUP_COMMIT
+            else{
+                this.commitInGroup(file);
+            }
+        }
+        catch(IOException e){
+            this.discard(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Hands a file to the group committer and waits for its group to be committed.
+     *
+     * @param file The staged file.
+     * @throws IOException If the file's group could not be committed.
+     */
+    private synchronized void commitInGroup(StagedFile file) throws IOException{
+        this.pending.add(file);
+        this.notifyAll();
+
+        // waiting for the group to be committed
+        while(!file.committed){
+            try{
+                this.wait();
+            }
+            catch(InterruptedException e){
+                throw new IOException("Interrupted waiting for the file to be committed.", e);
+            }
+        }
+
+        if(file.error != null){
+            throw file.error;
+        }
+    }
+
+    /**
+     * Repeatedly commits the files staged within each group commit window. Run by the group
+     * committer thread.
+     */
+    private void runGroupCommits(){
+        while(true){
+            ArrayList<StagedFile> group;
+
+            try{
+                // waiting for a file to commit
+                synchronized(this){
+                    while(this.pending.isEmpty()){
+                        this.wait();
+                    }
+                }
+
+                // letting the group fill up
+                Thread.sleep(this.groupCommitWindow);
+
+                // taking the group
+                synchronized(this){
+                    group = this.pending;
+                    this.pending = new ArrayList<StagedFile>();
+                }
+            }
+            catch(InterruptedException e){
+                return;
+            }
+
+            // syncing each file and moving it into place
+            for(StagedFile file : group){
+                try{
+                    file.output.getFD().sync();
+                    file.output.close();
+                    this.moveIntoPlace(file);
+                }
+                catch(IOException e){
+                    file.error = e;
+                }
+            }
+
+            // syncing the catalog and each folder renamed into once for the group
+            HashSet<File> folders = new HashSet<File>();
+            for(StagedFile file : group){
+                folders.add(file.target.getParentFile());
+            }
+            try{
+                this.dstore.getCatalog().sync();
+                for(File folder : folders){
+                    this.syncFolder(folder);
+                }
+            }
+            catch(IOException e){
+                for(StagedFile file : group){
+                    if(file.error == null){
+                        file.error = e;
+                    }
+                }
+            }
+
+            // releasing the group
+            synchronized(this){
+                for(StagedFile file : group){
+                    file.committed = true;
+                }
+                this.notifyAll();
+            }
+        }
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Renames a complete file into its place in the file store (creating its folder if needed)
+     * and records it in the catalog.
+     *
+     * @param file The staged file.
+     * @throws IOException If the file could not be renamed.
+     */
+    private void moveIntoPlace(StagedFile file) throws IOException{
+        try{
+            Files.move(file.tempFile.toPath(), file.target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(NoSuchFileException e){
+            // folder not yet created
+            Files.createDirectories(file.target.getParentFile().toPath());
+            Files.move(file.tempFile.toPath(), file.target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        this.dstore.getCatalog().fileStored(file.filename, file.filesize);
+    }
+
+    /**
+     * Syncs a folder of the file store, so that renames into it are durable.
+     *
+     * @param folder The folder.
+     */
+    private void syncFolder(File folder){
+        try(FileChannel directory = FileChannel.open(folder.toPath(), StandardOpenOption.READ)){
+            directory.force(true);
+        }
+        catch(IOException e){
+            // directories cannot be synced on every platform
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public DurabilityMode getDurability(){
+        return this.durability;
+    }
+
+    /**
+     * A file being written to a temporary file before it is committed into the file store.
+     */
+    public static class StagedFile{
+
+        // member variables
+        private String filename;
+        private int filesize;
+        private File target;
+        private File tempFile;
+        private RandomAccessFile output;
+        private boolean committed;
+        private IOException error;
+
+        private StagedFile(String filename, File target, File tempFile) throws IOException{
+            this.filename = filename;
+            this.target = target;
+            this.tempFile = tempFile;
+            this.output = new RandomAccessFile(tempFile, "rw");
+            this.committed = false;
+        }
+
+        /**
+         * Writes content to the file.
+         *
+         * @param content The content being written.
+         * @throws IOException If the content could not be written.
+         */
+        public void write(byte[] content) throws IOException{
+            this.output.write(content);
+        }
+
+        /**
+         * Sets the file to its full size before its content is written, so the file system can
+         * give it one contiguous extent rather than growing it write by write.
+         *
+         * @param filesize The size of the file in bytes.
+         * @throws IOException If the file could not be resized.
+         */
+        public void preallocate(long filesize) throws IOException{
+            this.output.setLength(filesize);
+        }
+
+        /**
+         * Writes content at a position within the file.
+         *
+         * @param content The content being written (its remaining bytes are written).
+         * @param position The position of the content within the file.
+         * @throws IOException If the content could not be written.
+         */
+        public void write(ByteBuffer content, long position) throws IOException{
+            FileChannel channel = this.output.getChannel();
+            while(content.hasRemaining()){
+                position += channel.write(content, position);
+            }
+        }
+
+        public String getFilename(){
+            return this.filename;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package DS.Dstore;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.zip.CRC32C;
+
+import DS.Dstore.Storage.IncomingFile;
+
+/**
+ * Keeps the files of STOREs that failed part way through, so the sender can resume them with
+ * STORE_RESUME rather than sending the whole file again.
+ *
+ * A partial file is kept with the CRC32C of the content received so far, and is only resumed
+ * by a STORE_RESUME for the same size and checksum. It is discarded (releasing the space held
+ * for it) if it is not resumed within its lifetime, or if the file is stored again from the
+ * start.
+ */
+public class PartialStores{
+
+    // member variables
+    private long lifetime; // time a partial file is kept for (ms)
+    private HashMap<String, PartialStore> parked;
+    private HashSet<String> receiving;
+    private Timer expiryTimer;
+
+    /**
+     * Class constructor.
+     *
+     * @param lifetime The time a partial file is kept for before it is discarded (ms).
+     */
+    public PartialStores(long lifetime){
+        // initializing
+        this.lifetime = lifetime;
+        this.parked = new HashMap<String, PartialStore>();
+        this.receiving = new HashSet<String>();
+        this.expiryTimer = new Timer("partial-store-expiry", true);
+    }
+
+    ///////////////
+    // RECEIVING //
+    ///////////////
+
+    /**
+     * Records that the content of a file has started to arrive.
+     *
+     * @param filename The name of the file.
+     */
+    public synchronized void receiving(String filename){
+        this.receiving.add(filename);
+    }
+
+    /**
+     * Records that the content of a file has stopped arriving (it was stored, discarded or
+     * parked).
+     *
+     * @param filename The name of the file.
+     */
+    public synchronized void received(String filename){
+        this.receiving.remove(filename);
+        this.notifyAll();
+    }
+
+    /////////////
+    // PARKING //
+    /////////////
+
+    /**
+     * Keeps the file of a STORE that failed part way through, replacing any file kept for the
+     * name before. The file is discarded once its lifetime has passed.
+     *
+     * @param partial The partial file.
+     */
+    public synchronized void park(PartialStore partial){
+        PartialStore old = this.parked.put(partial.filename, partial);
+        if(old != null){
+            old.file.discard();
+        }
+        this.received(partial.filename);
+
+        // discarding the file if it is not resumed in time
+        this.expiryTimer.schedule(new TimerTask(){
+            public void run(){
+                PartialStores.this.discard(partial);
+            }
+        }, this.lifetime);
+    }
+
+    /**
+     * Takes the partial file kept for a name, to resume it. If the content of the file is still
+     * arriving (the sender noticed the failure before this Dstore did), waits up to the timeout
+     * for it to stop.
+     *
+     * A partial file of a different size or checksum is discarded.
+     *
+     * @param filename The name of the file.
+     * @param filesize The size of the file being resumed.
+     * @param checksum The CRC32C of the file being resumed.
+     * @param timeout The longest time to wait for the content to stop arriving (ms).
+     * @return The partial file, or null if there is none to resume.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized PartialStore take(String filename, long filesize, long checksum, long timeout) throws InterruptedException{
+        long deadline = System.currentTimeMillis() + timeout;
+        while(this.receiving.contains(filename) && System.currentTimeMillis() < deadline){
+            this.wait(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+
+        PartialStore partial = this.parked.remove(filename);
+        if(partial != null && (partial.filesize != filesize || partial.checksum != checksum)){
+            partial.file.discard();
+            return null;
+        }
+
+        return partial;
+    }
+
+    /**
+     * Discards the partial file kept for a name (if any), as the file is being stored again from
+     * the start.
+     *
+     * @param filename The name of the file.
+     */
+    public synchronized void discard(String filename){
+        PartialStore partial = this.parked.remove(filename);
+        if(partial != null){
+            partial.file.discard();
+        }
+    }
+
+    /**
+     * Discards a partial file if it is still kept.
+     *
+     * @param partial The partial file.
+     */
+    private synchronized void discard(PartialStore partial){
+        if(this.parked.get(partial.filename) == partial){
+            this.parked.remove(partial.filename);
+            partial.file.discard();
+        }
+    }
+
+    /**
+     * The file of a STORE that failed part way through.
+     */
+    public static class PartialStore{
+
+        // member variables
+        public final String filename;
+        public final long filesize;
+        public final long checksum; // CRC32C given by the sender
+        public final IncomingFile file;
+        public final CRC32C crc; // CRC32C of the content received so far
+        public final long received; // length of the content received so far
+
+        public PartialStore(String filename, long filesize, long checksum, IncomingFile file, CRC32C crc, long received){
+            this.filename = filename;
+            this.filesize = filesize;
+            this.checksum = checksum;
+            this.file = file;
+            this.crc = crc;
+            this.received = received;
+        }
+    }
+}
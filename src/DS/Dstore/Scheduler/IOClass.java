@@ -0,0 +1,42 @@
+package DS.Dstore.Scheduler;
+
+/**
+ * The priority classes of the I/O scheduled by a Dstore's IOScheduler, from highest to lowest
+ * priority.
+ */
+public enum IOClass {
+    // classes
+    CLIENT_READ("client-read"), // LOAD_DATA from Clients
+    CLIENT_WRITE("client-write"), // STORE from Clients
+    REBALANCE("rebalance"), // files sent to and received from other Dstores in a rebalance
+    BACKGROUND("background"); // maintenance work, such as compacting segments
+
+    private String name;
+
+    private IOClass(String name){
+        this.name = name;
+    }
+
+    /**
+     * Converts the I/O class to a string.
+     * @return String equivalent of the I/O class.
+     */
+    @Override
+    public String toString(){
+        return this.name;
+    }
+
+    /**
+     * Gathers the I/O class from the given string.
+     * @param text The String form of the I/O class.
+     * @return The IOClass for the string, or null if there is none.
+     */
+    public static IOClass fromString(String text) {
+        for (IOClass ioClass : IOClass.values()) {
+            if (ioClass.name.equalsIgnoreCase(text)) {
+                return ioClass;
+            }
+        }
+        return null;
+    }
+}
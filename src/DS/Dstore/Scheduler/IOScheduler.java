@@ -0,0 +1,247 @@
+package DS.Dstore.Scheduler;
+
+import java.util.EnumMap;
+
+import DS.Dstore.DstoreOptions;
+
+/**
+ * Schedules the disk and network I/O of a Dstore by priority class, so that a large rebalance or
+ * background task cannot crowd out Client requests.
+ *
+ * A transfer acquires its bytes for its class as it goes, CHUNK_SIZE bytes at a time just before
+ * they are sent or written (larger requests are split into chunks), so a transfer is held to the
+ * limits while it runs. Each chunk is acquired:
+ *
+ * - First from its class's token bucket, which caps the bandwidth of the class.
+ * - Then from the shared token bucket, which caps the bandwidth of the whole Dstore. While the
+ * shared bucket is empty, waiting requests are granted bytes in order of class priority. Only the
+ * highest priority class may borrow from the shared bucket - the other classes wait until it
+ * holds their whole chunk, so they never leave a debt for Client reads to wait out.
+ *
+ * Any limit of 0 means no limit. Limits can be changed while the Dstore is running, and the
+ * throughput and queue time of each class are tracked.
+ */
+public class IOScheduler{
+
+    // constants
+    public static final int CHUNK_SIZE = 1024 * 1024; // bytes acquired at a time
+    private static final long RATE_WINDOW = 10_000_000_000L; // ns over which throughput is measured
+    private static final long MAX_WAIT = 100; // ms between checks while waiting for the shared bucket
+
+    // member variables
+    private TokenBucket total;
+    private EnumMap<IOClass, TokenBucket> buckets;
+    private EnumMap<IOClass, ClassStatistics> statistics;
+    private int[] waiting; // requests of each class waiting for the shared bucket
+
+    /**
+     * Class constructor.
+     *
+     * @param options The Dstore's options, holding the initial limits.
+     */
+    public IOScheduler(DstoreOptions options){
+        // initializing
+        this.total = new TokenBucket(options.getIoLimit());
+        this.buckets = new EnumMap<IOClass, TokenBucket>(IOClass.class);
+        this.statistics = new EnumMap<IOClass, ClassStatistics>(IOClass.class);
+        for(IOClass ioClass : IOClass.values()){
+            this.buckets.put(ioClass, new TokenBucket(options.getIoLimit(ioClass)));
+            this.statistics.put(ioClass, new ClassStatistics());
+        }
+        this.waiting = new int[IOClass.values().length];
+    }
+
+    ///////////////
+    // ACQUIRING //
+    ///////////////
+
+    /**
+     * Waits until a transfer of bytes of a class is allowed by the limits, acquiring them one
+     * chunk at a time. Transfers should acquire their bytes as they go, rather than all at once
+     * before they start.
+     *
+     * @param ioClass The class of the transfer.
+     * @param bytes The number of bytes transferred.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void acquire(IOClass ioClass, long bytes) throws InterruptedException{
+        long startTime = System.nanoTime();
+
+        for(long remaining = bytes; remaining > 0; remaining -= CHUNK_SIZE){
+            this.acquireChunk(ioClass, Math.min(CHUNK_SIZE, remaining));
+        }
+
+        // recording the transfer
+        this.statistics.get(ioClass).record(bytes, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Waits until a chunk of a transfer is allowed by the limits.
+     *
+     * @param ioClass The class of the transfer.
+     * @param bytes The number of bytes in the chunk.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private void acquireChunk(IOClass ioClass, long bytes) throws InterruptedException{
+        // the class's own limit
+        TokenBucket bucket = this.buckets.get(ioClass);
+        while(!bucket.tryTake(bytes)){
+            sleep(bucket.getWaitTime());
+        }
+
+        // the shared limit, granted to the highest priority class waiting (only the highest
+        // priority class may borrow)
+        boolean borrow = (ioClass.ordinal() == 0);
+        synchronized(this){
+            this.waiting[ioClass.ordinal()]++;
+            try{
+                while(this.isHigherPriorityWaiting(ioClass) || !this.total.tryTake(bytes, borrow)){
+                    this.wait(Math.max(1, Math.min(MAX_WAIT, this.total.getWaitTime(bytes, borrow) / 1_000_000)));
+                }
+            }
+            finally{
+                this.waiting[ioClass.ordinal()]--;
+                this.notifyAll();
+            }
+        }
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Determines if a request of a higher priority class is waiting for the shared bucket.
+     *
+     * @param ioClass The class of the request checking.
+     * @return True if a higher priority request is waiting, false if not.
+     */
+    private boolean isHigherPriorityWaiting(IOClass ioClass){
+        for(int i = 0; i < ioClass.ordinal(); i++){
+            if(this.waiting[i] > 0){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sleeps for a number of nanoseconds (at least a millisecond).
+     *
+     * @param nanos The time to sleep for.
+     * @throws InterruptedException If interrupted while sleeping.
+     */
+    private static void sleep(long nanos) throws InterruptedException{
+        Thread.sleep(Math.max(1, nanos / 1_000_000));
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Changes the limit of a class.
+     *
+     * @param ioClass The class (null for the shared limit).
+     * @param limit The new limit in bytes per second (0 for no limit).
+     */
+    public void setLimit(IOClass ioClass, long limit){
+        if(ioClass == null){
+            this.total.setRate(limit);
+        }
+        else{
+            this.buckets.get(ioClass).setRate(limit);
+        }
+
+        // waiters re-check the shared limit
+        synchronized(this){
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the limit of a class.
+     *
+     * @param ioClass The class (null for the shared limit).
+     * @return The limit in bytes per second (0 for no limit).
+     */
+    public long getLimit(IOClass ioClass){
+        return (ioClass == null) ? this.total.getRate() : this.buckets.get(ioClass).getRate();
+    }
+
+    public ClassStatistics getStatistics(IOClass ioClass){
+        return this.statistics.get(ioClass);
+    }
+
+    /**
+     * The throughput and queue time of the transfers of one class.
+     */
+    public static class ClassStatistics{
+
+        // member variables
+        private long bytes;
+        private long operations;
+        private long queueTime; // ns
+        private long windowStart; // ns
+        private long windowBytes;
+        private double rate; // bytes per second over the last complete window
+
+        private ClassStatistics(){
+            this.windowStart = System.nanoTime();
+        }
+
+        /**
+         * Records a transfer.
+         *
+         * @param bytes The number of bytes transferred.
+         * @param queueTime The time (ns) the transfer waited for the limits.
+         */
+        private synchronized void record(long bytes, long queueTime){
+            this.bytes += bytes;
+            this.operations++;
+            this.queueTime += queueTime;
+            this.roll();
+            this.windowBytes += bytes;
+        }
+
+        /**
+         * Starts a new throughput window if the current one is over.
+         */
+        private void roll(){
+            long now = System.nanoTime();
+            if(now - this.windowStart >= RATE_WINDOW){
+                this.rate = this.windowBytes * 1e9 / (now - this.windowStart);
+                this.windowStart = now;
+                this.windowBytes = 0;
+            }
+        }
+
+        public synchronized long getBytes(){
+            return this.bytes;
+        }
+
+        public synchronized long getOperations(){
+            return this.operations;
+        }
+
+        /**
+         * Returns the average time transfers waited for the limits.
+         *
+         * @return The average queue time in ms (0 if there have been no transfers).
+         */
+        public synchronized double getAverageQueueTime(){
+            return (this.operations == 0) ? 0 : this.queueTime / 1e6 / this.operations;
+        }
+
+        /**
+         * Returns the throughput of the class over the last complete measuring window.
+         *
+         * @return The throughput in bytes per second.
+         */
+        public synchronized double getThroughput(){
+            this.roll();
+            return this.rate;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package DS.Dstore.Scheduler;
+
+/**
+ * Token bucket limiting a flow of bytes to a rate, with bursts of up to one second of the rate.
+ *
+ * A request for more bytes than the bucket holds may borrow - it is granted as soon as the bucket
+ * is not empty, leaving the bucket in debt, so requests of any size are admitted while the rate
+ * is still kept to over time. A request that may not borrow waits until the bucket holds all of
+ * it (or is full, for a request larger than the bucket).
+ */
+public class TokenBucket{
+
+    // member variables
+    private long rate; // bytes per second (0 means unlimited)
+    private double tokens;
+    private long lastRefill; // ns
+
+    /**
+     * Class constructor.
+     *
+     * @param rate The rate in bytes per second (0 for no limit).
+     */
+    public TokenBucket(long rate){
+        // initializing
+        this.rate = rate;
+        this.tokens = rate;
+        this.lastRefill = System.nanoTime();
+    }
+
+    ///////////////
+    // ACQUIRING //
+    ///////////////
+
+    /**
+     * Takes bytes from the bucket if it is not empty, borrowing any it does not hold.
+     *
+     * @param bytes The number of bytes.
+     * @return True if the bytes were taken, false if the bucket is empty.
+     */
+    public boolean tryTake(long bytes){
+        return this.tryTake(bytes, true);
+    }
+
+    /**
+     * Takes bytes from the bucket if it holds enough of them.
+     *
+     * @param bytes The number of bytes.
+     * @param borrow Whether the bytes may be taken as soon as the bucket is not empty, leaving it
+     * in debt (if not, the bucket must hold all of them, or be full).
+     * @return True if the bytes were taken, false if not.
+     */
+    public synchronized boolean tryTake(long bytes, boolean borrow){
+        // no limit
+        if(this.rate <= 0){
+            return true;
+        }
+
+        this.refill();
+        if(this.tokens >= this.getNeeded(bytes, borrow)){
+            this.tokens -= bytes;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns how long until the bucket is no longer empty.
+     *
+     * @return The time in ns (0 if the bucket is not empty).
+     */
+    public long getWaitTime(){
+        return this.getWaitTime(0, true);
+    }
+
+    /**
+     * Returns how long until bytes can be taken from the bucket.
+     *
+     * @param bytes The number of bytes.
+     * @param borrow Whether the bytes may be borrowed (see tryTake).
+     * @return The time in ns (0 if they can be taken now).
+     */
+    public synchronized long getWaitTime(long bytes, boolean borrow){
+        if(this.rate <= 0){
+            return 0;
+        }
+
+        this.refill();
+        double needed = this.getNeeded(bytes, borrow);
+        return (this.tokens >= needed) ? 0 : (long) ((needed - this.tokens) * 1e9 / this.rate);
+    }
+
+    /**
+     * Returns the tokens the bucket must hold for bytes to be taken.
+     *
+     * @param bytes The number of bytes.
+     * @param borrow Whether the bytes may be borrowed.
+     * @return The tokens needed (just over none if the bytes may be borrowed).
+     */
+    private double getNeeded(long bytes, boolean borrow){
+        return borrow ? Double.MIN_VALUE : Math.min(bytes, this.rate);
+    }
+
+    /**
+     * Adds the tokens accumulated since the last refill, up to one second of the rate.
+     */
+    private void refill(){
+        long now = System.nanoTime();
+        this.tokens = Math.min(this.rate, this.tokens + (now - this.lastRefill) * this.rate / 1e9);
+        this.lastRefill = now;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public synchronized long getRate(){
+        return this.rate;
+    }
+
+    /**
+     * Changes the rate of the bucket, keeping any debt.
+     *
+     * @param rate The new rate in bytes per second (0 for no limit).
+     */
+    public synchronized void setRate(long rate){
+        this.refill();
+        this.rate = rate;
+        this.tokens = Math.min(this.tokens, rate);
+    }
+}
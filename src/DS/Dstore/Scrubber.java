@@ -0,0 +1,264 @@
+package DS.Dstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.zip.CRC32C;
+import java.util.zip.ZipException;
+
+import DS.Dstore.Scheduler.IOClass;
+import DS.Dstore.Scheduler.TokenBucket;
+import DS.Protocol.Event.Storage.ScrubCompleteEvent;
+import DS.Protocol.Exception.ChecksumMismatchException;
+import DS.Protocol.Exception.DecompressionException;
+import DS.Protocol.Exception.ScrubException;
+
+/**
+ * Background scrubber that re-reads every file stored on a Dstore and checks its content against
+ * the checksum in the catalog, so that damage on disk is found before a Client loads the file.
+ *
+ * Files are read straight from the storage (bypassing the read cache) in chunks, each of which
+ * must be allowed both by the scrubber's own bandwidth limit and by the Dstore's background I/O
+ * limit, so scrubbing never competes with requests for more than its budget. Once every file has
+ * been checked the scrubber waits for the scrub interval before starting again.
+ *
+ * A file that fails its check is removed and reported to the Controller, which drops the replica
+ * from its index and re-replicates the file from the Dstores holding good copies.
+ */
+public class Scrubber{
+
+    // constants
+    private static final int CHUNK_SIZE = 1024 * 1024; // bytes checked per budget request
+
+    // member variables
+    private Dstore dstore;
+    private TokenBucket budget;
+    private long interval;
+    private volatile int pass; // number of the current (or last) scrub
+    private volatile int filesInPass;
+    private volatile int filesScanned; // in the current pass
+    private volatile long passStart; // ms
+    private volatile long passBytes;
+    private volatile long bytesScanned; // over every pass
+    private volatile int corruptFiles; // over every pass
+    private volatile double rate; // bytes per second of the current (or last) pass
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore being scrubbed.
+     * @param options The Dstore's options.
+     */
+    public Scrubber(Dstore dstore, DstoreOptions options){
+        // initializing
+        this.dstore = dstore;
+        this.budget = new TokenBucket(options.getScrubLimit());
+        this.interval = options.getScrubInterval();
+        this.pass = 0;
+    }
+
+    ///////////
+    // SETUP //
+    ///////////
+
+    /**
+     * Starts the scrubber thread (unless scrubbing is turned off).
+     */
+    public void start(){
+        if(this.interval <= 0){
+            return;
+        }
+
+        Thread scrubber = new Thread(() -> this.run());
+        scrubber.setDaemon(true);
+        scrubber.setPriority(Thread.MIN_PRIORITY);
+        scrubber.start();
+    }
+
+    ///////////////
+    // SCRUBBING //
+    ///////////////
+
+    /**
+     * Repeatedly scrubs the whole file store. Run by the scrubber thread.
+     */
+    private void run(){
+        try{
+            while(true){
+                this.scrub();
+                Thread.sleep(this.interval);
+            }
+        }
+        catch(InterruptedException e){
+            return;
+        }
+    }
+
+    /**
+     * Checks every file in the catalog once.
+     *
+     * @throws InterruptedException If interrupted while waiting for the budget.
+     */
+    private void scrub() throws InterruptedException{
+        // starting the pass
+        ArrayList<String> filenames = new ArrayList<String>(this.dstore.getCatalog().getFiles().keySet());
+        this.pass++;
+        this.filesInPass = filenames.size();
+        this.filesScanned = 0;
+        this.passStart = System.currentTimeMillis();
+        this.passBytes = 0;
+        this.rate = 0;
+        int corruptInPass = 0;
+
+        for(String filename : filenames){
+            try{
+                if(!this.check(filename)){
+                    corruptInPass++;
+                }
+            }
+            catch(IOException e){
+                this.dstore.handleError(new ScrubException(filename, e));
+            }
+            this.filesScanned++;
+        }
+
+        // logging
+        this.dstore.handleEvent(new ScrubCompleteEvent(this.pass, this.filesScanned, this.passBytes, corruptInPass, System.currentTimeMillis() - this.passStart));
+    }
+
+    /**
+     * Checks the content of a file against its checksum, reporting it if it does not match.
+     *
+     * @param filename The name of the file.
+     * @return False if the file was found to be corrupt, true if not (including if it has been
+     * removed or has no checksum).
+     * @throws IOException If the file could not be read (including if it was compressed with a
+     * dictionary that is no longer known, which is not damage).
+     * @throws InterruptedException If interrupted while waiting for the budget.
+     */
+    private boolean check(String filename) throws IOException, InterruptedException{
+        long checksum = this.dstore.getCatalog().getChecksum(filename);
+        ByteBuffer content;
+        try{
+            content = this.dstore.getStorage().read(filename);
+        }
+        catch(ZipException e){
+            // compressed content too damaged to decompress
+            this.corruptFiles++;
+            this.dstore.handleCorruptFile(filename, new DecompressionException(filename, e));
+            return false;
+        }
+
+        // removed since the pass started
+        if(content == null){
+            return true;
+        }
+
+        // checksumming the content one chunk at a time, within the budget
+        CRC32C crc = new CRC32C();
+        ByteBuffer remaining = content.duplicate();
+        while(remaining.hasRemaining()){
+            int length = Math.min(CHUNK_SIZE, remaining.remaining());
+            this.acquire(length);
+
+            ByteBuffer chunk = remaining.duplicate();
+            chunk.limit(chunk.position() + length);
+            crc.update(chunk);
+            remaining.position(remaining.position() + length);
+            this.record(length);
+        }
+
+        // file replaced or removed while being read, or stored before checksums were kept
+        if(checksum == DstoreCatalog.NO_CHECKSUM || checksum != this.dstore.getCatalog().getChecksum(filename)){
+            return true;
+        }
+
+        // corrupt - removing it and reporting it to the Controller
+        if(crc.getValue() != checksum){
+            this.corruptFiles++;
+            this.dstore.handleCorruptFile(filename, new ChecksumMismatchException(filename, checksum, crc.getValue()));
+            return false;
+        }
+
+        return true;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Waits until reading a number of bytes is allowed by the scrubber's own limit and the
+     * Dstore's background I/O limit.
+     *
+     * @param bytes The number of bytes.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private void acquire(long bytes) throws InterruptedException{
+        while(!this.budget.tryTake(bytes)){
+            Thread.sleep(Math.max(1, this.budget.getWaitTime() / 1_000_000));
+        }
+        this.dstore.getScheduler().acquire(IOClass.BACKGROUND, bytes);
+    }
+
+    /**
+     * Records bytes having been scanned, updating the rate of the current pass.
+     *
+     * @param bytes The number of bytes.
+     */
+    private void record(long bytes){
+        this.passBytes += bytes;
+        this.bytesScanned += bytes;
+
+        long elapsed = System.currentTimeMillis() - this.passStart;
+        if(elapsed > 0){
+            this.rate = this.passBytes * 1000.0 / elapsed;
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getPass(){
+        return this.pass;
+    }
+
+    public int getFilesInPass(){
+        return this.filesInPass;
+    }
+
+    public int getFilesScanned(){
+        return this.filesScanned;
+    }
+
+    /**
+     * Returns how far through the current (or last) pass the scrubber is.
+     *
+     * @return The fraction of the pass's files scanned (1 if the pass had no files).
+     */
+    public double getProgress(){
+        return (this.filesInPass == 0) ? 1 : (double) this.filesScanned / this.filesInPass;
+    }
+
+    public long getBytesScanned(){
+        return this.bytesScanned;
+    }
+
+    public int getCorruptFiles(){
+        return this.corruptFiles;
+    }
+
+    /**
+     * Returns the read rate of the current (or last) pass.
+     *
+     * @return The rate in bytes per second.
+     */
+    public double getRate(){
+        return this.rate;
+    }
+
+    public long getLimit(){
+        return this.budget.getRate();
+    }
+}
@@ -0,0 +1,371 @@
+package DS.Dstore.Storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of a deduplicating Dstore, mapping the names of stored files to the hashes of their
+ * content and counting the references to each piece of content.
+ *
+ * The index is the only record of which content a file holds, so every change is written to a
+ * journal in the Dstore's metadata folder before it is acknowledged (and synced, unless the
+ * Dstore's durability mode is none). The journal starts with a snapshot of the index, and is
+ * rewritten as a new snapshot once it grows larger than the index.
+ *
+ * Reference counts are not persisted - they are rebuilt from the mappings when the index is
+ * loaded.
+ */
+public class DedupIndex{
+
+    // constants
+    private static final String INDEX_FILE = "dedup";
+    private static final String INDEX_TEMP_FILE = "dedup.tmp";
+    private static final int INDEX_MAGIC = 0x44534431; // "DSD1"
+    private static final byte MAPPED = '+';
+    private static final byte UNMAPPED = '-';
+    private static final int MIN_JOURNAL_ENTRIES = 1000; // journal length before it may be rewritten
+
+    // member variables
+    private File metadataFolder;
+    private boolean sync; // sync every change before it is acknowledged
+    private HashMap<String, String> names; // filename -> hash of its content
+    private HashMap<String, ContentEntry> contents; // hash -> references and size
+    private FileOutputStream journalOutput;
+    private DataOutputStream journal;
+    private int journalEntries;
+    private long bytes; // total size of the mapped files
+    private long storedBytes; // total size of the distinct content
+
+    /**
+     * Class constructor.
+     *
+     * @param metadataFolder The Dstore's metadata folder.
+     * @param sync Whether every change is synced to disk before it is acknowledged.
+     */
+    public DedupIndex(File metadataFolder, boolean sync){
+        // initializing
+        this.metadataFolder = metadataFolder;
+        this.sync = sync;
+        this.names = new HashMap<String, String>();
+        this.contents = new HashMap<String, ContentEntry>();
+        this.journalEntries = 0;
+        this.bytes = 0;
+        this.storedBytes = 0;
+    }
+
+    /**
+     * Determines if a metadata folder holds the index of a deduplicating Dstore.
+     *
+     * @param metadataFolder The metadata folder.
+     * @return True if the folder holds an index, false if not.
+     */
+    public static boolean exists(File metadataFolder){
+        return new File(metadataFolder, INDEX_FILE).exists();
+    }
+
+    /////////////
+    // LOADING //
+    /////////////
+
+    /**
+     * Loads the index from its journal (if there is one) and starts a new journal. A partially
+     * written record at the end of the journal (the Dstore stopped while writing it) is ignored.
+     *
+     * @throws IOException If the journal could not be read or written.
+     */
+    public synchronized void load() throws IOException{
+        File indexFile = new File(this.metadataFolder, INDEX_FILE);
+
+        if(indexFile.exists()){
+            try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))){
+                if(input.readInt() != INDEX_MAGIC){
+                    throw new IOException("Invalid dedup index : " + indexFile.getPath());
+                }
+
+                while(true){
+                    byte type = input.readByte();
+                    String filename = input.readUTF();
+
+                    if(type == MAPPED){
+                        String hash = input.readUTF();
+                        int filesize = input.readInt();
+                        this.apply(filename, hash, filesize);
+                    }
+                    else if(type == UNMAPPED){
+                        this.apply(filename, null, 0);
+                    }
+                    else{
+                        throw new IOException("Invalid dedup index record in : " + indexFile.getPath());
+                    }
+                }
+            }
+            catch(EOFException e){
+                // end of journal
+            }
+        }
+
+        this.writeSnapshot();
+    }
+
+    //////////////////////
+    // UPDATING ENTRIES //
+    //////////////////////
+
+    /**
+     * Maps a file to a piece of content, replacing any content it was mapped to before.
+     *
+     * @param filename The name of the file.
+     * @param hash The hash of the content.
+     * @param filesize The size of the content in bytes.
+     * @return The hash of the content the file was mapped to before, or null if there was none.
+     * @throws IOException If the change could not be persisted.
+     */
+    public synchronized String map(String filename, String hash, int filesize) throws IOException{
+        this.journal.writeByte(MAPPED);
+        this.journal.writeUTF(filename);
+        this.journal.writeUTF(hash);
+        this.journal.writeInt(filesize);
+        this.persist();
+
+        return this.apply(filename, hash, filesize);
+    }
+
+    /**
+     * Removes the mapping of a file.
+     *
+     * @param filename The name of the file.
+     * @return The hash of the content the file was mapped to, or null if it was not mapped.
+     * @throws IOException If the change could not be persisted.
+     */
+    public synchronized String unmap(String filename) throws IOException{
+        if(!this.names.containsKey(filename)){
+            return null;
+        }
+
+        this.journal.writeByte(UNMAPPED);
+        this.journal.writeUTF(filename);
+        this.persist();
+
+        return this.apply(filename, null, 0);
+    }
+
+    /**
+     * Applies a change to the index in memory.
+     *
+     * @param filename The name of the file.
+     * @param hash The hash of the file's new content (null if the file is unmapped).
+     * @param filesize The size of the file's new content.
+     * @return The hash of the content the file was mapped to before, or null if there was none.
+     */
+    private String apply(String filename, String hash, int filesize){
+        // adding the reference to the new content
+        if(hash != null){
+            ContentEntry content = this.contents.get(hash);
+            if(content == null){
+                content = new ContentEntry(filesize);
+                this.contents.put(hash, content);
+                this.storedBytes += filesize;
+            }
+            content.references++;
+            this.bytes += filesize;
+        }
+
+        // dropping the reference to the old content
+        String oldHash = (hash != null) ? this.names.put(filename, hash) : this.names.remove(filename);
+        if(oldHash != null){
+            ContentEntry oldContent = this.contents.get(oldHash);
+            oldContent.references--;
+            this.bytes -= oldContent.filesize;
+            if(oldContent.references == 0){
+                this.contents.remove(oldHash);
+                this.storedBytes -= oldContent.filesize;
+            }
+        }
+
+        return oldHash;
+    }
+
+    /////////////////
+    // PERSISTENCE //
+    /////////////////
+
+    /**
+     * Flushes (and syncs, if required) a record written to the journal, rewriting the journal as
+     * a snapshot once it is larger than the index.
+     *
+     * @throws IOException If the record could not be persisted.
+     */
+    private void persist() throws IOException{
+        this.journal.flush();
+        if(this.sync){
+            this.journalOutput.getFD().sync();
+        }
+        this.journalEntries++;
+
+        if(this.journalEntries > Math.max(MIN_JOURNAL_ENTRIES, this.names.size())){
+            this.writeSnapshot();
+        }
+    }
+
+    /**
+     * Writes the index to a new journal holding only its current mappings. The journal is written
+     * to a temporary file and moved into place, so a crash never leaves a partial index.
+     *
+     * @throws IOException If the journal could not be written.
+     */
+    private void writeSnapshot() throws IOException{
+        File indexFile = new File(this.metadataFolder, INDEX_FILE);
+        File tempFile = new File(this.metadataFolder, INDEX_TEMP_FILE);
+
+        FileOutputStream fileOutput = new FileOutputStream(tempFile);
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput))){
+            output.writeInt(INDEX_MAGIC);
+            for(Map.Entry<String, String> name : this.names.entrySet()){
+                output.writeByte(MAPPED);
+                output.writeUTF(name.getKey());
+                output.writeUTF(name.getValue());
+                output.writeInt(this.contents.get(name.getValue()).filesize);
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // appending to the new journal
+        if(this.journal != null){
+            this.journal.close();
+        }
+        this.journalOutput = new FileOutputStream(indexFile, true);
+        this.journal = new DataOutputStream(new BufferedOutputStream(this.journalOutput));
+        this.journalEntries = 0;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Returns the hash of the content of a file.
+     *
+     * @param filename The name of the file.
+     * @return The hash, or null if the file is not mapped.
+     */
+    public synchronized String getHash(String filename){
+        return this.names.get(filename);
+    }
+
+    /**
+     * Determines if a piece of content is referenced by any file.
+     *
+     * @param hash The hash of the content.
+     * @return True if the content is referenced, false if not.
+     */
+    public synchronized boolean hasContent(String hash){
+        return this.contents.containsKey(hash);
+    }
+
+    /**
+     * Returns the size of a mapped file.
+     *
+     * @param filename The name of the file.
+     * @return The size of the file in bytes, or -1 if the file is not mapped.
+     */
+    public synchronized long getSize(String filename){
+        String hash = this.names.get(filename);
+
+        return (hash != null) ? this.contents.get(hash).filesize : -1;
+    }
+
+    /**
+     * Returns every file mapped to a piece of content.
+     *
+     * @param hash The hash of the content.
+     * @return The names of the files.
+     */
+    public synchronized ArrayList<String> getFilenames(String hash){
+        ArrayList<String> filenames = new ArrayList<String>();
+        for(Map.Entry<String, String> name : this.names.entrySet()){
+            if(name.getValue().equals(hash)){
+                filenames.add(name.getKey());
+            }
+        }
+
+        return filenames;
+    }
+
+    /**
+     * Returns every mapped file.
+     *
+     * @return A mapping of filenames to filesizes.
+     */
+    public synchronized HashMap<String, Integer> getFiles(){
+        HashMap<String, Integer> files = new HashMap<String, Integer>(this.names.size() * 2);
+        for(Map.Entry<String, String> name : this.names.entrySet()){
+            files.put(name.getKey(), this.contents.get(name.getValue()).filesize);
+        }
+
+        return files;
+    }
+
+    /**
+     * Returns the hashes of every piece of content referenced by a file.
+     *
+     * @return The hashes.
+     */
+    public synchronized ArrayList<String> getHashes(){
+        return new ArrayList<String>(this.contents.keySet());
+    }
+
+    public synchronized int getNumberOfFiles(){
+        return this.names.size();
+    }
+
+    public synchronized int getNumberOfContents(){
+        return this.contents.size();
+    }
+
+    /**
+     * Returns the total size of the mapped files.
+     *
+     * @return The size in bytes.
+     */
+    public synchronized long getBytes(){
+        return this.bytes;
+    }
+
+    /**
+     * Returns the total size of the distinct content held for the mapped files.
+     *
+     * @return The size in bytes.
+     */
+    public synchronized long getStoredBytes(){
+        return this.storedBytes;
+    }
+
+    /**
+     * The size of a piece of content and the number of files referencing it.
+     */
+    private static class ContentEntry{
+
+        // member variables
+        private int filesize;
+        private int references;
+
+        private ContentEntry(int filesize){
+            this.filesize = filesize;
+            this.references = 0;
+        }
+    }
+}
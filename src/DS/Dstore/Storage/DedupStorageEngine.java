@@ -0,0 +1,464 @@
+package DS.Dstore.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+
+import DS.Dstore.Dstore;
+import DS.Dstore.DstoreOptions.DurabilityMode;
+import DS.Protocol.Event.Storage.DedupCleanedEvent;
+import DS.Protocol.Exception.NotEnoughSpaceException;
+
+/**
+ * Storage engine that stores the content of files by its hash, so content stored under several
+ * names is only held once.
+ *
+ * The content of each file is hashed (SHA-256) and stored in the underlying storage engine as an
+ * object named by the hash, with the file mapped to the object in the Dstore's dedup index. A file
+ * whose content is already held is only mapped to the existing object - nothing is written but
+ * the index. An object is removed once no file is mapped to it.
+ *
+ * A received file is gathered in memory so it can be hashed before anything is stored. Files
+ * larger than the Dstore's dedup size limit, and every file stored while deduplication is turned
+ * off, are stored in the underlying engine under their own name as before. Files already mapped
+ * are still found after deduplication is turned off.
+ *
+ * Objects are only visible through this engine - they are not recorded in the Dstore's catalog,
+ * and cannot be loaded or removed by name. On setup, files whose object is missing are unmapped
+ * and objects no file is mapped to (left by a crash part way through a store) are removed.
+ */
+public class DedupStorageEngine implements StorageEngine{
+
+    // constants
+    public static final String OBJECT_PREFIX = ".sha256-"; // name of an object, before its hash
+    private static final int LOCK_STRIPES = 64; // locks shared out between hashes
+
+    // member variables
+    private Dstore dstore;
+    private StorageEngine engine; // storage engine holding the objects (and undeduplicated files)
+    private DedupIndex index;
+    private boolean enabled; // new files are deduplicated
+    private int maxSize; // largest file deduplicated
+    private Object[] locks; // held while the objects for a hash are changed
+    private volatile long stores; // files stored through the engine since startup
+    private volatile long hits; // stores that found their content already held
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the storage engine is for.
+     * @param engine The storage engine the objects are stored in.
+     */
+    public DedupStorageEngine(Dstore dstore, StorageEngine engine){
+        // initializing
+        this.dstore = dstore;
+        this.engine = engine;
+        this.index = new DedupIndex(dstore.getMetadataFolder(), dstore.getOptions().getDurability() != DurabilityMode.NONE);
+        this.enabled = dstore.getOptions().getDedup();
+        this.maxSize = dstore.getOptions().getDedupMaxSize();
+        this.locks = new Object[LOCK_STRIPES];
+        for(int i = 0; i < LOCK_STRIPES; i++){
+            this.locks[i] = new Object();
+        }
+        this.stores = 0;
+        this.hits = 0;
+    }
+
+    /**
+     * Determines if a name is the name of an object rather than of a file.
+     *
+     * @param filename The name.
+     * @return True if the name is that of an object, false if not.
+     */
+    public static boolean isObject(String filename){
+        return filename.startsWith(OBJECT_PREFIX);
+    }
+
+    ///////////
+    // SETUP //
+    ///////////
+
+    public void setup() throws IOException{
+        long startTime = System.currentTimeMillis();
+
+        this.engine.setup();
+        this.index.load();
+
+        // unmapping files whose object is missing
+        int missing = 0;
+        for(String hash : this.index.getHashes()){
+            if(this.engine.getSize(getObjectName(hash)) < 0){
+                for(String filename : this.index.getFilenames(hash)){
+                    this.index.unmap(filename);
+                    missing++;
+                }
+            }
+        }
+
+        // removing objects no file is mapped to
+        int orphans = 0;
+        for(String filename : this.engine.listFiles().keySet()){
+            if(isObject(filename) && !this.index.hasContent(filename.substring(OBJECT_PREFIX.length()))){
+                this.engine.remove(filename);
+                orphans++;
+            }
+        }
+
+        // logging
+        if(missing > 0 || orphans > 0){
+            this.dstore.handleEvent(new DedupCleanedEvent(missing, orphans, System.currentTimeMillis() - startTime));
+        }
+    }
+
+    /////////////
+    // STORING //
+    /////////////
+
+    public void store(String filename, byte[] content) throws IOException{
+        checkFilename(filename);
+
+        // too large (or not deduplicating) - stored under its own name
+        if(!this.shouldDedup(content.length)){
+            this.engine.store(filename, content);
+            this.fileStoredDirectly(filename);
+            return;
+        }
+
+        // storing the content (unless it is already held) and mapping the file to it
+        String hash = getHash(content);
+        String oldHash;
+        synchronized(this.getLock(hash)){
+            this.stores++;
+            if(this.index.hasContent(hash)){
+                this.hits++;
+            }
+            else{
+                this.engine.store(getObjectName(hash), content);
+            }
+            oldHash = this.index.map(filename, hash, content.length);
+        }
+
+        // dropping the file's old content
+        if(oldHash == null){
+            this.engine.remove(filename);
+        }
+        else if(!oldHash.equals(hash)){
+            this.release(oldHash);
+        }
+
+        // recording the change
+        this.dstore.getCatalog().fileStored(filename, content.length);
+    }
+
+    public IncomingFile create(String filename, int filesize) throws NotEnoughSpaceException, IOException{
+        checkFilename(filename);
+
+        // too large (or not deduplicating) - received under its own name
+        if(!this.shouldDedup(filesize)){
+            return new IncomingDirectFile(filename, this.engine.create(filename, filesize));
+        }
+
+        // gathered in memory and hashed once complete (rejected up front if it could not be held)
+        long usableSpace = this.dstore.getFileStore().getUsableSpace();
+        if(usableSpace < filesize){
+            throw new NotEnoughSpaceException(filename, filesize, usableSpace);
+        }
+
+        return new IncomingBufferedFile(filename, filesize);
+    }
+
+    /////////////
+    // LOADING //
+    /////////////
+
+    public ByteBuffer load(String filename) throws IOException{
+        String hash = this.index.getHash(filename);
+
+        if(hash != null){
+            return this.engine.load(getObjectName(hash));
+        }
+
+        return isObject(filename) ? null : this.engine.load(filename);
+    }
+
+    public ByteBuffer read(String filename) throws IOException{
+        String hash = this.index.getHash(filename);
+
+        if(hash != null){
+            return this.engine.read(getObjectName(hash));
+        }
+
+        return isObject(filename) ? null : this.engine.read(filename);
+    }
+
+    public ByteBuffer readRange(String filename, long offset, int length) throws IOException{
+        String hash = this.index.getHash(filename);
+
+        if(hash != null){
+            return this.engine.readRange(getObjectName(hash), offset, length);
+        }
+
+        return isObject(filename) ? null : this.engine.readRange(filename, offset, length);
+    }
+
+    //////////////
+    // REMOVING //
+    //////////////
+
+    public boolean remove(String filename) throws IOException{
+        // not deduplicated
+        if(isObject(filename)){
+            return false;
+        }
+        String hash = this.index.unmap(filename);
+        if(hash == null){
+            return this.engine.remove(filename);
+        }
+
+        // removing the content once nothing refers to it
+        this.release(hash);
+
+        // recording the change
+        this.dstore.getCatalog().fileRemoved(filename);
+
+        return true;
+    }
+
+    /**
+     * Removes a file along with every other file holding the same content, for when the content
+     * has been found to be corrupt.
+     *
+     * @param filename The name of the file.
+     * @return The names of the files removed.
+     * @throws IOException If the files could not be removed.
+     */
+    public ArrayList<String> removeContent(String filename) throws IOException{
+        ArrayList<String> filenames = new ArrayList<String>();
+        String hash = this.index.getHash(filename);
+
+        // not deduplicated
+        if(hash == null){
+            if(this.remove(filename)){
+                filenames.add(filename);
+            }
+            return filenames;
+        }
+
+        // removing the object first, so no new file is mapped to the corrupt content
+        synchronized(this.getLock(hash)){
+            this.engine.remove(getObjectName(hash));
+            for(String sharingFile : this.index.getFilenames(hash)){
+                this.index.unmap(sharingFile);
+                this.dstore.getCatalog().fileRemoved(sharingFile);
+                filenames.add(sharingFile);
+            }
+        }
+
+        return filenames;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Determines if a file of a given size is deduplicated.
+     *
+     * @param filesize The size of the file.
+     * @return True if the file is stored by its hash, false if under its own name.
+     */
+    private boolean shouldDedup(int filesize){
+        return this.enabled && filesize <= this.maxSize;
+    }
+
+    /**
+     * Unmaps a file stored under its own name from any content it was mapped to before.
+     *
+     * @param filename The name of the file.
+     * @throws IOException If the change could not be persisted.
+     */
+    private void fileStoredDirectly(String filename) throws IOException{
+        String oldHash = this.index.unmap(filename);
+        if(oldHash != null){
+            this.release(oldHash);
+        }
+    }
+
+    /**
+     * Removes the object holding a piece of content if no file refers to it any more.
+     *
+     * @param hash The hash of the content.
+     * @throws IOException If the object could not be removed.
+     */
+    private void release(String hash) throws IOException{
+        synchronized(this.getLock(hash)){
+            if(!this.index.hasContent(hash)){
+                this.engine.remove(getObjectName(hash));
+            }
+        }
+    }
+
+    /**
+     * Returns the lock held while the object for a hash is changed.
+     *
+     * @param hash The hash.
+     * @return The lock.
+     */
+    private Object getLock(String hash){
+        return this.locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Rejects the names reserved for objects.
+     *
+     * @param filename The name of the file being stored.
+     * @throws IOException If the name is reserved.
+     */
+    private static void checkFilename(String filename) throws IOException{
+        if(isObject(filename)){
+            throw new IOException("The name '" + filename + "' is reserved for deduplicated content.");
+        }
+    }
+
+    /**
+     * Hashes the content of a file.
+     *
+     * @param content The content.
+     * @return The SHA-256 of the content, as hex digits.
+     */
+    private static String getHash(byte[] content){
+        try{
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        }
+        catch(NoSuchAlgorithmException e){
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the name of the object holding a piece of content.
+     *
+     * @param hash The hash of the content.
+     * @return The name of the object.
+     */
+    public static String getObjectName(String hash){
+        return OBJECT_PREFIX + hash;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getSize(String filename){
+        long filesize = this.index.getSize(filename);
+        if(filesize >= 0){
+            return filesize;
+        }
+
+        return isObject(filename) ? -1 : this.engine.getSize(filename);
+    }
+
+    public HashMap<String, Integer> listFiles(){
+        HashMap<String, Integer> files = new HashMap<String, Integer>();
+        for(HashMap.Entry<String, Integer> file : this.engine.listFiles().entrySet()){
+            if(!isObject(file.getKey())){
+                files.put(file.getKey(), file.getValue());
+            }
+        }
+        files.putAll(this.index.getFiles());
+
+        return files;
+    }
+
+    public StorageEngine getEngine(){
+        return this.engine;
+    }
+
+    public DedupIndex getIndex(){
+        return this.index;
+    }
+
+    public boolean isEnabled(){
+        return this.enabled;
+    }
+
+    public long getStores(){
+        return this.stores;
+    }
+
+    public long getHits(){
+        return this.hits;
+    }
+
+    /**
+     * Returns the deduplication ratio - the size of the deduplicated files over the size of the
+     * distinct content held for them.
+     *
+     * @return The ratio (1 if nothing is held).
+     */
+    public double getRatio(){
+        long storedBytes = this.index.getStoredBytes();
+
+        return (storedBytes == 0) ? 1 : (double) this.index.getBytes() / storedBytes;
+    }
+
+    /**
+     * A file being received to be stored under its own name.
+     */
+    private class IncomingDirectFile implements IncomingFile{
+
+        // member variables
+        private String filename;
+        private IncomingFile file;
+
+        private IncomingDirectFile(String filename, IncomingFile file){
+            this.filename = filename;
+            this.file = file;
+        }
+
+        public void write(ByteBuffer content, long position) throws IOException{
+            this.file.write(content, position);
+        }
+
+        public void commit() throws IOException{
+            this.file.commit();
+            fileStoredDirectly(this.filename);
+        }
+
+        public void discard(){
+            this.file.discard();
+        }
+    }
+
+    /**
+     * A file being received into memory, to be hashed and stored once complete.
+     */
+    private class IncomingBufferedFile implements IncomingFile{
+
+        // member variables
+        private String filename;
+        private byte[] content;
+
+        private IncomingBufferedFile(String filename, int filesize){
+            this.filename = filename;
+            this.content = new byte[filesize];
+        }
+
+        public void write(ByteBuffer content, long position) throws IOException{
+            content.get(this.content, (int) position, content.remaining());
+        }
+
+        public void commit() throws IOException{
+            store(this.filename, this.content);
+        }
+
+        public void discard(){
+            this.content = null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One of the disks of a MultiDiskStorageEngine - a folder with its own storage engine and its own
+ * pool of I/O threads.
+ *
+ * Every operation on the disk runs on its pool, so a slow disk only holds up the requests for the
+ * files stored on it. The number of operations waiting for or running on the pool (the queue depth)
+ * is tracked for placing new files.
+ */
+public class Disk{
+
+    // member variables
+    private int id;
+    private File root;
+    private StorageEngine engine;
+    private ExecutorService pool;
+    private AtomicInteger queueDepth;
+
+    /**
+     * Class constructor.
+     *
+     * @param id The index of the disk within the Dstore.
+     * @param root The folder on the disk that files are stored in.
+     * @param engine The storage engine for the folder.
+     * @param threads The number of I/O threads for the disk.
+     */
+    public Disk(int id, File root, StorageEngine engine, int threads){
+        // initializing
+        this.id = id;
+        this.root = root;
+        this.engine = engine;
+        this.queueDepth = new AtomicInteger(0);
+        this.pool = Executors.newFixedThreadPool(threads, (Runnable runnable) -> {
+            Thread thread = new Thread(runnable, "disk-" + id + "-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /////////
+    // I/O //
+    /////////
+
+    /**
+     * Runs an operation on the disk's I/O pool and waits for its result.
+     *
+     * @param operation The operation.
+     * @return The result of the operation.
+     * @throws IOException If the operation failed.
+     */
+    public <T> T run(Callable<T> operation) throws IOException{
+        this.queueDepth.incrementAndGet();
+        try{
+            Future<T> result = this.pool.submit(operation);
+
+            return result.get();
+        }
+        catch(ExecutionException e){
+            throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        catch(InterruptedException e){
+            throw new IOException("Interrupted waiting for disk " + this.id + ".", e);
+        }
+        finally{
+            this.queueDepth.decrementAndGet();
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getId(){
+        return this.id;
+    }
+
+    public File getRoot(){
+        return this.root;
+    }
+
+    public StorageEngine getEngine(){
+        return this.engine;
+    }
+
+    public int getQueueDepth(){
+        return this.queueDepth.get();
+    }
+
+    public long getUsableSpace(){
+        return this.root.getUsableSpace();
+    }
+}
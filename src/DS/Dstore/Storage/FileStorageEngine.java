@@ -0,0 +1,613 @@
+package DS.Dstore.Storage;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+import DS.Dstore.Dstore;
+import DS.Dstore.Compression.Compressor;
+import DS.Dstore.FileCommitter;
+import DS.Dstore.DstoreOptions.LayoutType;
+import DS.Dstore.FileCommitter.StagedFile;
+import DS.Protocol.Event.Storage.LayoutMigratedEvent;
+import DS.Protocol.Exception.LayoutMigrationException;
+import DS.Protocol.Exception.NotEnoughSpaceException;
+
+/**
+ * Storage engine that stores each file as a file of the same name in a folder (the Dstore's file
+ * store, or one of its disks).
+ *
+ * Files are written through a FileCommitter and loaded through the Dstore's read cache, and are
+ * arranged within the folder by the Dstore's layout:
+ *
+ * - FLAT : Every file directly within the folder.
+ * - SHARDED : Every file within two levels of subfolders named by the CRC32 of its name (e.g.,
+ * 'a.txt' is stored as '.shards/3e/9f/a.txt'), so no single folder grows beyond a few hundred
+ * files even when millions are stored. The shards are kept in a reserved folder (like the
+ * Dstore's metadata folder) so they never clash with the names of files stored flat.
+ *
+ * If files are found in the other layout when the engine is set up, they are moved into the
+ * Dstore's layout by a background thread while the Dstore serves requests. Until the migration is
+ * complete, files are looked up in both layouts.
+ *
+ * A file received from a connection is created at its full size before its content arrives, and
+ * its size is held against the folder's free space until it is committed or discarded, so a file
+ * that would not fit is rejected up front instead of failing part way through.
+ *
+ * Removed files are moved into the folder's trash and deleted in the background, so a remove
+ * returns as soon as the file has been renamed out of the file store.
+ *
+ * Files are stored in the form given by the Dstore's compressor. A received file small enough to
+ * be compressed is gathered in memory and stored once complete - a larger one is written straight
+ * into place behind an uncompressed header.
+ */
+public class FileStorageEngine implements StorageEngine{
+
+    // constants
+    public static final String SHARD_FOLDER = ".shards";
+
+    // member variables
+    private Dstore dstore;
+    private File root;
+    private FileCommitter fileCommitter;
+    private Compressor compressor;
+    private Trash trash;
+    private LayoutType layout;
+    private volatile boolean migrating; // files may still be stored in the other layout
+    private long reserved; // bytes held for files being received
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the storage engine is for.
+     * @param root The folder the files are stored in.
+     */
+    public FileStorageEngine(Dstore dstore, File root){
+        // initializing
+        this.dstore = dstore;
+        this.root = root;
+        this.fileCommitter = new FileCommitter(dstore, dstore.getOptions(), root);
+        this.compressor = dstore.getCompressor();
+        this.trash = new Trash(dstore, root);
+        this.layout = dstore.getOptions().getLayout();
+        this.migrating = false;
+        this.reserved = 0;
+    }
+
+    ///////////
+    // SETUP //
+    ///////////
+
+    public void setup() throws IOException{
+        this.fileCommitter.setup();
+        this.trash.setup();
+
+        // migrating files stored in the other layout
+        if(!this.listFiles(this.getOtherLayout()).isEmpty()){
+            this.migrating = true;
+
+            Thread migrator = new Thread(() -> this.migrate());
+            migrator.setDaemon(true);
+            migrator.start();
+        }
+    }
+
+    /////////////
+    // STORING //
+    /////////////
+
+    public void store(String filename, byte[] content) throws IOException{
+        ByteBuffer stored = this.compressor.encode(filename, content);
+
+        StagedFile file = this.fileCommitter.stage(filename, getFile(this.root, this.layout, filename));
+        try{
+            file.write(stored, 0);
+        }
+        catch(IOException e){
+            this.fileCommitter.discard(file);
+            throw e;
+        }
+
+        // committing the file (records the change)
+        this.fileCommitter.commit(file, content.length);
+    }
+
+    public IncomingFile create(String filename, int filesize) throws NotEnoughSpaceException, IOException{
+        // small enough to compress - gathered in memory and stored once complete
+        if(this.compressor.shouldBuffer(filesize)){
+            this.reserve(filename, filesize);
+
+            return new IncomingBufferedFile(filename, filesize);
+        }
+
+        // holding the space for the file (and its header)
+        ByteBuffer header = this.compressor.frame(filename, filesize);
+        int offset = header.remaining();
+        this.reserve(filename, offset + filesize);
+
+        StagedFile file = null;
+        try{
+            file = this.fileCommitter.stage(filename, getFile(this.root, this.layout, filename));
+            file.preallocate(offset + filesize);
+            file.write(header, 0);
+        }
+        catch(IOException e){
+            if(file != null){
+                this.fileCommitter.discard(file);
+            }
+            this.release(offset + filesize);
+            throw e;
+        }
+
+        return new IncomingStagedFile(file, filesize, offset);
+    }
+
+    /**
+     * Holds space in the folder for a file about to be received.
+     *
+     * @param filename The name of the file.
+     * @param filesize The size of the file in bytes.
+     * @throws NotEnoughSpaceException If the folder's free space, less the space already held,
+     * is too small for the file.
+     */
+    synchronized void reserve(String filename, long filesize) throws NotEnoughSpaceException{
+        long usableSpace = this.root.getUsableSpace() - this.reserved;
+        if(usableSpace < filesize){
+            throw new NotEnoughSpaceException(filename, filesize, Math.max(0, usableSpace));
+        }
+
+        this.reserved += filesize;
+    }
+
+    /**
+     * Releases the space held for a file once it has been committed or discarded.
+     *
+     * @param filesize The size of the file in bytes.
+     */
+    synchronized void release(long filesize){
+        this.reserved -= filesize;
+    }
+
+    /////////////
+    // LOADING //
+    /////////////
+
+    public ByteBuffer load(String filename) throws IOException{
+        File file = this.locate(filename);
+
+        // file not stored
+        if(file == null){
+            return null;
+        }
+
+        // gathering file (from the read cache if it is held there, in its stored form)
+        return this.compressor.decode(filename, this.dstore.getReadCache().get(filename, file));
+    }
+
+    public ByteBuffer read(String filename) throws IOException{
+        File file = this.locate(filename);
+
+        // file not stored
+        if(file == null){
+            return null;
+        }
+
+        // mapping the file (read through the page cache only)
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            return this.compressor.decode(filename, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        catch(NoSuchFileException e){
+            // removed since being located
+            return null;
+        }
+    }
+
+    public ByteBuffer readRange(String filename, long offset, int length) throws IOException{
+        File file = this.locate(filename);
+
+        // file not stored
+        if(file == null){
+            return null;
+        }
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            // compressed - decompressed whole
+            long contentPosition = Compressor.getContentPosition(channel);
+            if(contentPosition < 0){
+                return this.compressor.decodeRange(filename, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), offset, length);
+            }
+
+            // reading only the range, in place
+            long contentSize = channel.size() - contentPosition;
+            if(offset < 0 || length < 0 || offset + length > contentSize){
+                throw new EOFException("The range " + offset + "+" + length + " is not within '" + filename + "' of " + contentSize + " bytes.");
+            }
+            ByteBuffer range = ByteBuffer.allocate(length);
+            while(range.hasRemaining()){
+                if(channel.read(range, contentPosition + offset + range.position()) < 0){
+                    throw new EOFException("'" + filename + "' ended before the range " + offset + "+" + length + ".");
+                }
+            }
+            range.flip();
+
+            return range.asReadOnlyBuffer();
+        }
+        catch(NoSuchFileException e){
+            // removed since being located
+            return null;
+        }
+    }
+
+    //////////////
+    // REMOVING //
+    //////////////
+
+    public boolean remove(String filename) throws IOException{
+        boolean removed = false;
+
+        // removing any copy in the other layout first, so it cannot be migrated back in
+        // (each is moved into the trash, and deleted in the background)
+        if(this.migrating){
+            removed = this.trash.trash(getFile(this.root, this.getOtherLayout(), filename));
+        }
+        removed = this.trash.trash(getFile(this.root, this.layout, filename)) || removed;
+
+        // recording the change
+        if(removed){
+            this.dstore.getCatalog().fileRemoved(filename);
+        }
+
+        return removed;
+    }
+
+    ///////////////
+    // MIGRATION //
+    ///////////////
+
+    /**
+     * Moves every file stored in the other layout into the Dstore's layout. Run by the migration
+     * thread.
+     *
+     * Each file is hard linked into its new location and then unlinked from its old one, so a file
+     * is never missing from both. If a newer copy of a file has already been stored in the new
+     * location, the old copy is deleted instead.
+     */
+    private void migrate(){
+        long startTime = System.currentTimeMillis();
+        LayoutType otherLayout = this.getOtherLayout();
+        int numberOfFiles = 0;
+
+        try{
+            for(String filename : this.listFiles(otherLayout).keySet()){
+                File source = getFile(this.root, otherLayout, filename);
+                File target = getFile(this.root, this.layout, filename);
+
+                try{
+                    Files.createDirectories(target.getParentFile().toPath());
+                    Files.createLink(target.toPath(), source.toPath());
+                    numberOfFiles++;
+                }
+                catch(FileAlreadyExistsException e){
+                    // newer copy already stored
+                }
+                catch(NoSuchFileException e){
+                    // removed since being listed
+                    continue;
+                }
+                this.delete(source);
+            }
+
+            // removing the empty shard folders of a sharded layout
+            if(otherLayout == LayoutType.SHARDED){
+                for(File shard : getShardFolders(this.root)){
+                    for(File subShard : shard.listFiles()){
+                        subShard.delete();
+                    }
+                    shard.delete();
+                }
+                new File(this.root, SHARD_FOLDER).delete();
+            }
+
+            this.migrating = false;
+
+            // logging
+            this.dstore.handleEvent(new LayoutMigratedEvent(this.layout.toString(), numberOfFiles, System.currentTimeMillis() - startTime));
+        }
+        catch(IOException e){
+            // files left in the old layout are still found, and migrated on the next startup
+            this.dstore.handleError(new LayoutMigrationException(e));
+        }
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Finds the file in the file store holding a stored file, looking in both layouts while a
+     * migration is in progress.
+     *
+     * @param filename The name of the stored file.
+     * @return The file in the file store, or null if the file is not stored.
+     */
+    private File locate(String filename){
+        File file = getFile(this.root, this.layout, filename);
+        if(file.isFile()){
+            return file;
+        }
+
+        if(this.migrating){
+            File oldFile = getFile(this.root, this.getOtherLayout(), filename);
+            if(oldFile.isFile()){
+                return oldFile;
+            }
+
+            // the file may have been migrated between the two lookups
+            if(file.isFile()){
+                return file;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Deletes a file from the file store.
+     *
+     * @param file The file.
+     * @return True if the file was deleted, false if it did not exist.
+     * @throws IOException If the file could not be deleted.
+     */
+    private boolean delete(File file) throws IOException{
+        try{
+            Files.delete(file.toPath());
+            return true;
+        }
+        catch(NoSuchFileException e){
+            return false;
+        }
+    }
+
+    /**
+     * Lists the files stored in a layout.
+     *
+     * @param layout The layout.
+     * @return A mapping of filenames to filesizes.
+     */
+    private HashMap<String, Integer> listFiles(LayoutType layout){
+        HashMap<String, Integer> files = new HashMap<String, Integer>();
+
+        // folders holding the files
+        ArrayList<File> folders = new ArrayList<File>();
+        if(layout == LayoutType.FLAT){
+            folders.add(this.root);
+        }
+        else{
+            for(File shard : getShardFolders(this.root)){
+                for(File subShard : shard.listFiles()){
+                    folders.add(subShard);
+                }
+            }
+        }
+
+        for(File folder : folders){
+            File[] folderFiles = folder.listFiles();
+            if(folderFiles == null){
+                continue;
+            }
+            for(File file : folderFiles){
+                if(file.isFile()){
+                    try{
+                        files.put(file.getName(), (int) Compressor.getFilesize(file));
+                    }
+                    catch(IOException e){
+                        // removed since being listed
+                    }
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Returns the location of a stored file within a file store.
+     *
+     * @param fileStore The file store.
+     * @param layout The layout of the file store.
+     * @param filename The name of the stored file.
+     * @return The location of the file.
+     */
+    public static File getFile(File fileStore, LayoutType layout, String filename){
+        // flat
+        if(layout == LayoutType.FLAT){
+            return new File(fileStore, filename);
+        }
+
+        // sharded
+        CRC32 crc = new CRC32();
+        crc.update(filename.getBytes(StandardCharsets.UTF_8));
+        int hash = (int) crc.getValue();
+        File shard = new File(new File(fileStore, SHARD_FOLDER), String.format("%02x", (hash >>> 8) & 0xff));
+        File subShard = new File(shard, String.format("%02x", hash & 0xff));
+
+        return new File(subShard, filename);
+    }
+
+    /**
+     * Returns the first level shard folders within a file store.
+     *
+     * @param fileStore The file store.
+     * @return The shard folders (empty if the file store is not sharded).
+     */
+    private static File[] getShardFolders(File fileStore){
+        File[] shards = new File(fileStore, SHARD_FOLDER).listFiles((File file) -> file.isDirectory());
+
+        return (shards != null) ? shards : new File[0];
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getSize(String filename){
+        File file = this.locate(filename);
+
+        // file not stored
+        if(file == null){
+            return -1;
+        }
+
+        // the size of the content, from the file's header
+        try{
+            return Compressor.getFilesize(file);
+        }
+        catch(IOException e){
+            // removed since being located
+            return -1;
+        }
+    }
+
+    public HashMap<String, Integer> listFiles(){
+        // files not yet migrated (listed first, so a file migrated during the listing is not missed)
+        HashMap<String, Integer> oldFiles = this.migrating ? this.listFiles(this.getOtherLayout()) : new HashMap<String, Integer>();
+
+        HashMap<String, Integer> files = this.listFiles(this.layout);
+        for(HashMap.Entry<String, Integer> file : oldFiles.entrySet()){
+            files.putIfAbsent(file.getKey(), file.getValue());
+        }
+
+        return files;
+    }
+
+    public FileCommitter getFileCommitter(){
+        return this.fileCommitter;
+    }
+
+    public synchronized long getReserved(){
+        return this.reserved;
+    }
+
+    public Trash getTrash(){
+        return this.trash;
+    }
+
+    public LayoutType getLayout(){
+        return this.layout;
+    }
+
+    public boolean isMigrating(){
+        return this.migrating;
+    }
+
+    /**
+     * Returns the layout files are migrated out of.
+     *
+     * @return The layout other than the Dstore's layout.
+     */
+    private LayoutType getOtherLayout(){
+        return (this.layout == LayoutType.FLAT) ? LayoutType.SHARDED : LayoutType.FLAT;
+    }
+
+    /**
+     * A file being received into a staged file of the file store.
+     */
+    private class IncomingStagedFile implements IncomingFile{
+
+        // member variables
+        private StagedFile file;
+        private int filesize;
+        private int offset; // size of the header written before the content
+        private boolean released;
+
+        private IncomingStagedFile(StagedFile file, int filesize, int offset){
+            this.file = file;
+            this.filesize = filesize;
+            this.offset = offset;
+            this.released = false;
+        }
+
+        public void write(ByteBuffer content, long position) throws IOException{
+            this.file.write(content, this.offset + position);
+        }
+
+        public void commit() throws IOException{
+            try{
+                // committing the file (records the change)
+                fileCommitter.commit(this.file, this.filesize);
+            }
+            finally{
+                this.release();
+            }
+        }
+
+        public void discard(){
+            fileCommitter.discard(this.file);
+            this.release();
+        }
+
+        /**
+         * Releases the space held for the file (once only).
+         */
+        private void release(){
+            if(!this.released){
+                this.released = true;
+                FileStorageEngine.this.release(this.offset + this.filesize);
+            }
+        }
+    }
+
+    /**
+     * A file being received into memory, compressed and stored once complete.
+     */
+    private class IncomingBufferedFile implements IncomingFile{
+
+        // member variables
+        private String filename;
+        private byte[] content;
+        private boolean released;
+
+        private IncomingBufferedFile(String filename, int filesize){
+            this.filename = filename;
+            this.content = new byte[filesize];
+            this.released = false;
+        }
+
+        public void write(ByteBuffer content, long position) throws IOException{
+            content.get(this.content, (int) position, content.remaining());
+        }
+
+        public void commit() throws IOException{
+            try{
+                store(this.filename, this.content);
+            }
+            finally{
+                this.release();
+            }
+        }
+
+        public void discard(){
+            this.release();
+        }
+
+        /**
+         * Releases the space held for the file (once only).
+         */
+        private void release(){
+            if(!this.released){
+                this.released = true;
+                FileStorageEngine.this.release(this.content.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package DS.Dstore.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A file being received into a storage engine, created with its full size before any of its
+ * content arrives.
+ *
+ * The content is written at its position within the file as it arrives, and the file only
+ * becomes visible once it is committed. A file that is not committed must be discarded, so that
+ * the space held for it is released.
+ */
+public interface IncomingFile {
+
+    /**
+     * Writes part of the file's content.
+     *
+     * @param content The content being written (its remaining bytes are written).
+     * @param position The position of the content within the file.
+     * @throws IOException If the content could not be written.
+     */
+    public abstract void write(ByteBuffer content, long position) throws IOException;
+
+    /**
+     * Commits the file, returning once it is as durable as the Dstore's durability mode requires.
+     * Records the file in the Dstore's catalog.
+     *
+     * @throws IOException If the file could not be committed.
+     */
+    public abstract void commit() throws IOException;
+
+    /**
+     * Discards the file without storing it.
+     */
+    public abstract void discard();
+}
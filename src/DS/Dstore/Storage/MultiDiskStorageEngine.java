@@ -0,0 +1,254 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import DS.Dstore.Dstore;
+import DS.Protocol.Exception.NotEnoughSpaceException;
+
+/**
+ * Storage engine that spreads the files of a Dstore across several disks (folders), each with a
+ * storage engine and pool of I/O threads of its own.
+ *
+ * A new file is placed on the disk with the most free space relative to the number of operations
+ * queued on it, so a busy disk receives fewer new files until it catches up. A file that is stored
+ * again stays on the disk that already holds it. Requests for a file are routed to its disk through
+ * an in-memory map, rebuilt from the disks on startup.
+ */
+public class MultiDiskStorageEngine implements StorageEngine{
+
+    // member variables
+    private ArrayList<Disk> disks;
+    private ConcurrentHashMap<String, Disk> locations; // the disk each file is stored on
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the storage engine is for.
+     * @param roots The folders on each disk that files are stored in.
+     */
+    public MultiDiskStorageEngine(Dstore dstore, ArrayList<File> roots){
+        // initializing
+        this.disks = new ArrayList<Disk>();
+        for(File root : roots){
+            this.disks.add(new Disk(this.disks.size(), root, dstore.createStorageEngine(root), dstore.getOptions().getDiskThreads()));
+        }
+        this.locations = new ConcurrentHashMap<String, Disk>();
+    }
+
+    ///////////
+    // SETUP //
+    ///////////
+
+    public void setup() throws IOException{
+        for(Disk disk : this.disks){
+            if(!disk.getRoot().exists()){
+                disk.getRoot().mkdirs();
+            }
+            disk.getEngine().setup();
+
+            // mapping the files on the disk
+            for(String filename : disk.getEngine().listFiles().keySet()){
+                this.locations.putIfAbsent(filename, disk);
+            }
+        }
+    }
+
+    /////////////
+    // STORING //
+    /////////////
+
+    public void store(String filename, byte[] content) throws IOException{
+        // choosing the disk (the disk already holding the file, if any)
+        Disk disk = this.locations.computeIfAbsent(filename, (String name) -> this.place(content.length));
+
+        try{
+            disk.run(() -> {
+                disk.getEngine().store(filename, content);
+                return null;
+            });
+        }
+        catch(IOException e){
+            // forgetting the placement if the file did not make it onto the disk
+            if(disk.getEngine().getSize(filename) < 0){
+                this.locations.remove(filename, disk);
+            }
+            throw e;
+        }
+    }
+
+    public IncomingFile create(String filename, int filesize) throws NotEnoughSpaceException, IOException{
+        // choosing the disk (the disk already holding the file, if any)
+        Disk disk = this.locations.computeIfAbsent(filename, (String name) -> this.place(filesize));
+
+        IncomingFile file;
+        try{
+            file = disk.getEngine().create(filename, filesize);
+        }
+        catch(NotEnoughSpaceException | IOException e){
+            // forgetting the placement if the file is not on the disk
+            if(disk.getEngine().getSize(filename) < 0){
+                this.locations.remove(filename, disk);
+            }
+            throw e;
+        }
+
+        return new IncomingDiskFile(filename, disk, file);
+    }
+
+    /////////////
+    // LOADING //
+    /////////////
+
+    public ByteBuffer load(String filename) throws IOException{
+        Disk disk = this.locations.get(filename);
+
+        // file not stored
+        if(disk == null){
+            return null;
+        }
+
+        return disk.run(() -> disk.getEngine().load(filename));
+    }
+
+    public ByteBuffer read(String filename) throws IOException{
+        Disk disk = this.locations.get(filename);
+
+        // file not stored
+        if(disk == null){
+            return null;
+        }
+
+        return disk.run(() -> disk.getEngine().read(filename));
+    }
+
+    public ByteBuffer readRange(String filename, long offset, int length) throws IOException{
+        Disk disk = this.locations.get(filename);
+
+        // file not stored
+        if(disk == null){
+            return null;
+        }
+
+        return disk.run(() -> disk.getEngine().readRange(filename, offset, length));
+    }
+
+    //////////////
+    // REMOVING //
+    //////////////
+
+    public boolean remove(String filename) throws IOException{
+        Disk disk = this.locations.get(filename);
+
+        // file not stored
+        if(disk == null){
+            return false;
+        }
+
+        boolean removed = disk.run(() -> disk.getEngine().remove(filename));
+        this.locations.remove(filename, disk);
+
+        return removed;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Chooses the disk for a new file - the disk with the most usable space per queued operation,
+     * out of the disks with room for the file.
+     *
+     * @param filesize The size of the file.
+     * @return The chosen disk.
+     */
+    private Disk place(int filesize){
+        Disk chosen = null;
+        double chosenScore = -1;
+
+        for(Disk disk : this.disks){
+            long usableSpace = disk.getUsableSpace();
+            if(usableSpace < filesize){
+                continue;
+            }
+
+            double score = (double) usableSpace / (1 + disk.getQueueDepth());
+            if(score > chosenScore){
+                chosen = disk;
+                chosenScore = score;
+            }
+        }
+
+        // no disk with room - the store will fail on the first disk
+        return (chosen != null) ? chosen : this.disks.get(0);
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getSize(String filename){
+        Disk disk = this.locations.get(filename);
+
+        return (disk != null) ? disk.getEngine().getSize(filename) : -1;
+    }
+
+    public HashMap<String, Integer> listFiles(){
+        HashMap<String, Integer> files = new HashMap<String, Integer>();
+        for(Disk disk : this.disks){
+            for(HashMap.Entry<String, Integer> file : disk.getEngine().listFiles().entrySet()){
+                files.putIfAbsent(file.getKey(), file.getValue());
+            }
+        }
+
+        return files;
+    }
+
+    public ArrayList<Disk> getDisks(){
+        return this.disks;
+    }
+
+    /**
+     * A file being received onto one of the disks, written and committed on the disk's I/O pool.
+     */
+    private class IncomingDiskFile implements IncomingFile{
+
+        // member variables
+        private String filename;
+        private Disk disk;
+        private IncomingFile file;
+
+        private IncomingDiskFile(String filename, Disk disk, IncomingFile file){
+            this.filename = filename;
+            this.disk = disk;
+            this.file = file;
+        }
+
+        public void write(ByteBuffer content, long position) throws IOException{
+            this.disk.run(() -> {
+                this.file.write(content, position);
+                return null;
+            });
+        }
+
+        public void commit() throws IOException{
+            this.disk.run(() -> {
+                this.file.commit();
+                return null;
+            });
+        }
+
+        public void discard(){
+            this.file.discard();
+
+            // forgetting the placement if the file did not make it onto the disk
+            if(this.disk.getEngine().getSize(this.filename) < 0){
+                locations.remove(this.filename, this.disk);
+            }
+        }
+    }
+}
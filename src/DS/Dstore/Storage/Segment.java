@@ -0,0 +1,254 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A fixed-capacity, append-only segment file of a SegmentStorageEngine, memory mapped in full.
+ *
+ * A segment holds a sequence of records, each either the content of a file or a tombstone marking
+ * a file as removed:
+ *
+ * <magic:int> <type:byte> <name_length:short> <name:bytes> <size:int> <content:bytes> <crc:int>
+ *
+ * The CRC covers everything from the type to the end of the content, so a record torn by a crash
+ * is detected and treated as the end of the segment.
+ */
+public class Segment{
+
+    // constants
+    public static final byte OBJECT = 1;
+    public static final byte TOMBSTONE = 2;
+    private static final int MAGIC = 0x44534f42; // "DSOB"
+    private static final int HEADER_SIZE = 4 + 1 + 2; // magic, type, name length
+    private static final int TRAILER_SIZE = 4; // crc
+
+    // member variables
+    private int id;
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer map;
+    private int capacity;
+    private volatile int writePosition;
+    private volatile int syncedPosition;
+    private long liveBytes; // bytes of records holding files that are still stored
+
+    /**
+     * Class constructor. Opens (creating if needed) and maps a segment file.
+     *
+     * @param id The id of the segment - segments are replayed in order of id.
+     * @param file The segment file.
+     * @param capacity The capacity of the segment in bytes (ignored if the file already exists).
+     * @throws IOException If the segment file could not be opened and mapped.
+     */
+    public Segment(int id, File file, int capacity) throws IOException{
+        this.id = id;
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.capacity = file.length() > 0 ? (int) file.length() : capacity;
+        this.map = this.randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+        this.writePosition = 0;
+        this.syncedPosition = 0;
+        this.liveBytes = 0;
+    }
+
+    ///////////////
+    // APPENDING //
+    ///////////////
+
+    /**
+     * Returns the size of the record for a file.
+     *
+     * @param filename The name of the file.
+     * @param size The size of the file's content (0 for a tombstone).
+     * @return The size of the record in bytes.
+     */
+    public static int getRecordSize(String filename, int size){
+        return HEADER_SIZE + filename.getBytes(StandardCharsets.UTF_8).length + 4 + size + TRAILER_SIZE;
+    }
+
+    /**
+     * Determines if there is room in the segment for a record.
+     *
+     * @param recordSize The size of the record.
+     * @return True if the record fits, false if not.
+     */
+    public boolean hasRoomFor(int recordSize){
+        return this.writePosition + recordSize <= this.capacity;
+    }
+
+    /**
+     * Appends a record to the segment. Callers must serialize appends and check there is room.
+     *
+     * @param type The type of the record.
+     * @param filename The name of the file.
+     * @param content The content of the file (empty for a tombstone).
+     * @return The position of the content within the segment.
+     */
+    public int append(byte type, String filename, ByteBuffer content){
+        byte[] name = filename.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = this.map.duplicate();
+        record.position(this.writePosition);
+
+        int start = this.writePosition;
+        record.putInt(MAGIC);
+        record.put(type);
+        record.putShort((short) name.length);
+        record.put(name);
+        record.putInt(content.remaining());
+        int contentPosition = record.position();
+        record.put(content.duplicate());
+
+        // checksum of the record
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = this.map.duplicate();
+        checked.position(start + 4).limit(record.position());
+        crc.update(checked);
+        record.putInt((int) crc.getValue());
+
+        this.writePosition = record.position();
+
+        return contentPosition;
+    }
+
+    /**
+     * Forces the records appended so far to disk.
+     */
+    public void force(){
+        int position = this.writePosition;
+        this.map.force();
+        this.syncedPosition = Math.max(this.syncedPosition, position);
+    }
+
+    /////////////
+    // READING //
+    /////////////
+
+    /**
+     * Returns a read-only view of part of the segment, without copying it.
+     *
+     * @param position The position of the content.
+     * @param size The size of the content.
+     * @return The content.
+     */
+    public ByteBuffer slice(int position, int size){
+        ByteBuffer content = this.map.duplicate();
+        content.position(position).limit(position + size);
+
+        return content.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Reads the records of the segment in order, stopping at the first missing or torn record,
+     * and leaves the segment positioned to append after the last valid record.
+     *
+     * @param visitor Called with each valid record.
+     */
+    public void replay(RecordVisitor visitor){
+        int position = 0;
+
+        while(position + HEADER_SIZE <= this.capacity){
+            ByteBuffer record = this.map.duplicate();
+            record.position(position);
+
+            // end of the records
+            if(record.getInt() != MAGIC){
+                break;
+            }
+
+            byte type = record.get();
+            int nameLength = record.getShort() & 0xffff;
+            if(record.position() + nameLength + 4 > this.capacity){
+                break;
+            }
+            byte[] name = new byte[nameLength];
+            record.get(name);
+            int size = record.getInt();
+            if(size < 0 || record.position() + size + TRAILER_SIZE > this.capacity){
+                break;
+            }
+            int contentPosition = record.position();
+            record.position(contentPosition + size);
+
+            // checking the record is complete
+            CRC32 crc = new CRC32();
+            ByteBuffer checked = this.map.duplicate();
+            checked.position(position + 4).limit(record.position());
+            crc.update(checked);
+            if(record.getInt() != (int) crc.getValue()){
+                break;
+            }
+
+            visitor.visit(type, new String(name, StandardCharsets.UTF_8), contentPosition, size, record.position() - position);
+            position = record.position();
+        }
+
+        this.writePosition = position;
+        this.syncedPosition = position;
+    }
+
+    /////////////
+    // CLOSING //
+    /////////////
+
+    /**
+     * Closes and deletes the segment file. Views already returned by slice remain readable.
+     *
+     * @throws IOException If the segment file could not be closed.
+     */
+    public void delete() throws IOException{
+        this.randomAccessFile.close();
+        this.file.delete();
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getId(){
+        return this.id;
+    }
+
+    public int getCapacity(){
+        return this.capacity;
+    }
+
+    public int getWritePosition(){
+        return this.writePosition;
+    }
+
+    public int getSyncedPosition(){
+        return this.syncedPosition;
+    }
+
+    public synchronized long getLiveBytes(){
+        return this.liveBytes;
+    }
+
+    public synchronized void addLiveBytes(long bytes){
+        this.liveBytes += bytes;
+    }
+
+    /**
+     * Called for each record as a segment is replayed.
+     */
+    public interface RecordVisitor {
+
+        /**
+         * Visits a record.
+         *
+         * @param type The type of the record.
+         * @param filename The name of the file.
+         * @param position The position of the content within the segment.
+         * @param size The size of the content.
+         * @param recordSize The size of the whole record.
+         */
+        public abstract void visit(byte type, String filename, int position, int size, int recordSize);
+    }
+}
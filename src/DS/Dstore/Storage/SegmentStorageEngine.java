@@ -0,0 +1,611 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import DS.Dstore.Dstore;
+import DS.Dstore.DstoreOptions;
+import DS.Dstore.Compression.Compressor;
+import DS.Dstore.DstoreOptions.DurabilityMode;
+import DS.Dstore.Scheduler.IOClass;
+import DS.Protocol.Event.Storage.SegmentCompactedEvent;
+import DS.Protocol.Exception.NotEnoughSpaceException;
+import DS.Protocol.Exception.SegmentCompactionException;
+
+/**
+ * Log-structured storage engine that packs small files into large segment files.
+ *
+ * Files no larger than the segment object size are appended to the active segment, and an
+ * in-memory index maps each file to the position of its content. Loads are served straight from
+ * the memory-mapped segments. Removing a file appends a tombstone. Larger files are stored as
+ * files of their own through a FileStorageEngine.
+ *
+ * On startup the index is rebuilt by replaying the segments in order.
+ *
+ * A background compactor copies the files still stored in a mostly-dead segment into the active
+ * segment and deletes it, reclaiming the space of removed and replaced files.
+ *
+ * Appends are synced according to the Dstore's durability mode. In group commit mode a single
+ * sync covers every append made before it, so concurrent stores share one sync.
+ *
+ * Files are appended in the form given by the Dstore's compressor, and decompressed as they are
+ * loaded.
+ */
+public class SegmentStorageEngine implements StorageEngine{
+
+    // constants
+    private static final String SEGMENT_FOLDER = "segments";
+    private static final String SEGMENT_EXTENSION = ".seg";
+    private static final double COMPACTION_THRESHOLD = 0.5; // live fraction below which a segment is compacted
+    private static final long COMPACTION_INTERVAL = 1000; // ms between checks for segments to compact
+
+    // member variables
+    private Dstore dstore;
+    private File root;
+    private DurabilityMode durability;
+    private long groupCommitWindow;
+    private int segmentSize;
+    private int maxObjectSize;
+    private FileStorageEngine largeFiles;
+    private Compressor compressor;
+    private File segmentFolder;
+    private ConcurrentHashMap<Integer, Segment> segments;
+    private ConcurrentHashMap<String, Location> index;
+    private volatile Segment activeSegment;
+    private Object syncLock;
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the storage engine is for.
+     * @param root The folder the files are stored in (segments are kept in its metadata folder).
+     */
+    public SegmentStorageEngine(Dstore dstore, File root){
+        DstoreOptions options = dstore.getOptions();
+
+        // initializing
+        this.dstore = dstore;
+        this.durability = options.getDurability();
+        this.groupCommitWindow = options.getGroupCommitWindow();
+        this.segmentSize = options.getSegmentSize();
+        this.maxObjectSize = options.getSegmentObjectSize();
+        this.root = root;
+        this.largeFiles = new FileStorageEngine(dstore, root);
+        this.compressor = dstore.getCompressor();
+        this.segments = new ConcurrentHashMap<Integer, Segment>();
+        this.index = new ConcurrentHashMap<String, Location>();
+        this.syncLock = new Object();
+    }
+
+    ///////////
+    // SETUP //
+    ///////////
+
+    /**
+     * Opens the segments, rebuilding the index from them, and starts the compactor.
+     *
+     * @throws IOException If the segments could not be opened.
+     */
+    public void setup() throws IOException{
+        this.largeFiles.setup();
+
+        // setting up the segment folder
+        this.segmentFolder = new File(new File(this.root, Dstore.METADATA_FOLDER), SEGMENT_FOLDER);
+        if(!this.segmentFolder.exists()){
+            this.segmentFolder.mkdirs();
+        }
+
+        // opening the segments in order
+        ArrayList<Integer> ids = new ArrayList<Integer>();
+        for(File file : this.segmentFolder.listFiles()){
+            if(file.getName().endsWith(SEGMENT_EXTENSION)){
+                ids.add(Integer.parseInt(file.getName().substring(0, file.getName().length() - SEGMENT_EXTENSION.length())));
+            }
+        }
+        Collections.sort(ids);
+
+        // replaying the segments
+        for(int id : ids){
+            Segment segment = new Segment(id, this.getSegmentFile(id), this.segmentSize);
+            this.segments.put(id, segment);
+
+            segment.replay((type, filename, position, size, recordSize) -> {
+                if(type == Segment.OBJECT){
+                    this.setLocation(filename, new Location(segment, position, size, recordSize, (int) Compressor.getFilesize(segment.slice(position, size))));
+                }
+                else{
+                    this.setLocation(filename, null);
+                }
+            });
+
+            this.activeSegment = segment;
+        }
+
+        // starting a new segment
+        if(this.activeSegment == null){
+            this.roll();
+        }
+
+        // starting the compactor
+        Thread compactor = new Thread(() -> this.runCompactions());
+        compactor.setDaemon(true);
+        compactor.setPriority(Thread.MIN_PRIORITY);
+        compactor.start();
+    }
+
+    /////////////
+    // STORING //
+    /////////////
+
+    public void store(String filename, byte[] content) throws IOException{
+        // large file - stored as a file of its own
+        if(content.length > this.maxObjectSize){
+            if(this.index.containsKey(filename)){
+                this.sync(this.appendTombstone(filename));
+            }
+            this.largeFiles.store(filename, content);
+            return;
+        }
+
+        // replacing a large file
+        if(this.largeFiles.getSize(filename) >= 0){
+            this.largeFiles.remove(filename);
+        }
+
+        // appending the file (in its stored form)
+        Location location = this.append(filename, this.compressor.encode(filename, content), null);
+
+        // recording the change
+        this.dstore.getCatalog().fileStored(filename, content.length);
+
+        // making the file (and the change) durable
+        this.sync(location.segment);
+    }
+
+    public IncomingFile create(String filename, int filesize) throws NotEnoughSpaceException, IOException{
+        // large file - received straight into a file of its own
+        if(filesize > this.maxObjectSize){
+            return new IncomingLargeFile(filename, this.largeFiles.create(filename, filesize));
+        }
+
+        // small file - gathered in memory and appended once complete
+        this.largeFiles.reserve(filename, filesize);
+
+        return new IncomingSmallFile(filename, filesize);
+    }
+
+    /////////////
+    // LOADING //
+    /////////////
+
+    public ByteBuffer load(String filename) throws IOException{
+        Location location = this.index.get(filename);
+
+        // large file
+        if(location == null){
+            return this.largeFiles.load(filename);
+        }
+
+        // served from the mapped segment
+        return this.compressor.decode(filename, location.segment.slice(location.position, location.size));
+    }
+
+    public ByteBuffer read(String filename) throws IOException{
+        Location location = this.index.get(filename);
+
+        // large file
+        if(location == null){
+            return this.largeFiles.read(filename);
+        }
+
+        // segments are never cached
+        return this.compressor.decode(filename, location.segment.slice(location.position, location.size));
+    }
+
+    public ByteBuffer readRange(String filename, long offset, int length) throws IOException{
+        Location location = this.index.get(filename);
+
+        // large file
+        if(location == null){
+            return this.largeFiles.readRange(filename, offset, length);
+        }
+
+        // sliced from the mapped segment (only the pages of the range are read)
+        return this.compressor.decodeRange(filename, location.segment.slice(location.position, location.size), offset, length);
+    }
+
+    //////////////
+    // REMOVING //
+    //////////////
+
+    public boolean remove(String filename) throws IOException{
+        // large file
+        if(!this.index.containsKey(filename)){
+            return this.largeFiles.remove(filename);
+        }
+
+        Segment segment = this.appendTombstone(filename);
+
+        // recording the change
+        this.dstore.getCatalog().fileRemoved(filename);
+
+        // making the removal durable
+        this.sync(segment);
+
+        return true;
+    }
+
+    ///////////////
+    // APPENDING //
+    ///////////////
+
+    /**
+     * Appends a file to the active segment and points the index at it.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     * @param expected If not null, the file is only appended if the index still holds this
+     * location (used by the compactor).
+     * @return The new location of the file, or null if the index no longer held the expected
+     * location.
+     * @throws IOException If a new segment was needed and could not be created.
+     */
+    private synchronized Location append(String filename, ByteBuffer content, Location expected) throws IOException{
+        // file changed since it was chosen for compaction
+        if(expected != null && this.index.get(filename) != expected){
+            return null;
+        }
+
+        int recordSize = Segment.getRecordSize(filename, content.remaining());
+        this.ensureRoomFor(recordSize);
+
+        int filesize = (int) Compressor.getFilesize(content);
+        int position = this.activeSegment.append(Segment.OBJECT, filename, content);
+        Location location = new Location(this.activeSegment, position, content.remaining(), recordSize, filesize);
+        this.setLocation(filename, location);
+
+        return location;
+    }
+
+    /**
+     * Appends a tombstone for a file to the active segment and removes it from the index.
+     *
+     * @param filename The name of the file.
+     * @return The segment the tombstone was appended to.
+     * @throws IOException If a new segment was needed and could not be created.
+     */
+    private synchronized Segment appendTombstone(String filename) throws IOException{
+        this.ensureRoomFor(Segment.getRecordSize(filename, 0));
+
+        this.activeSegment.append(Segment.TOMBSTONE, filename, ByteBuffer.allocate(0));
+        this.setLocation(filename, null);
+
+        return this.activeSegment;
+    }
+
+    /**
+     * Starts a new active segment if there is not room for a record in the current one.
+     *
+     * @param recordSize The size of the record.
+     * @throws IOException If the new segment could not be created.
+     */
+    private void ensureRoomFor(int recordSize) throws IOException{
+        if(!this.activeSegment.hasRoomFor(recordSize)){
+            // everything in the full segment must be durable before moving on
+            if(this.durability != DurabilityMode.NONE){
+                this.activeSegment.force();
+            }
+
+            this.roll();
+        }
+    }
+
+    /**
+     * Starts a new, empty active segment.
+     *
+     * @throws IOException If the new segment could not be created.
+     */
+    private void roll() throws IOException{
+        int id = (this.activeSegment == null) ? 0 : this.activeSegment.getId() + 1;
+        int capacity = Math.max(this.segmentSize, Segment.getRecordSize("", this.maxObjectSize + Compressor.HEADER_SIZE) + Short.MAX_VALUE);
+
+        Segment segment = new Segment(id, this.getSegmentFile(id), capacity);
+        this.segments.put(id, segment);
+        this.activeSegment = segment;
+    }
+
+    /**
+     * Points the index for a file at a new location, updating the live bytes of the segments.
+     *
+     * @param filename The name of the file.
+     * @param location The new location, or null if the file was removed.
+     */
+    private void setLocation(String filename, Location location){
+        Location previous = (location == null) ? this.index.remove(filename) : this.index.put(filename, location);
+
+        if(previous != null){
+            previous.segment.addLiveBytes(-previous.recordSize);
+        }
+        if(location != null){
+            location.segment.addLiveBytes(location.recordSize);
+        }
+    }
+
+    /////////////
+    // SYNCING //
+    /////////////
+
+    /**
+     * Makes the records appended to a segment durable according to the durability mode, along
+     * with the changes recorded in the catalog.
+     *
+     * In group commit mode the first waiting store waits for the group commit window and then
+     * syncs everything appended so far - the stores that were waiting behind it find their
+     * records already synced.
+     *
+     * @param segment The segment the records were appended to.
+     * @throws IOException If the catalog could not be synced.
+     */
+    private void sync(Segment segment) throws IOException{
+        // NONE
+        if(this.durability == DurabilityMode.NONE){
+            return;
+        }
+
+        // PER_FILE
+        if(this.durability == DurabilityMode.PER_FILE){
+            segment.force();
+            this.dstore.getCatalog().sync();
+            return;
+        }
+
+        // GROUP_COMMIT
+        int position = segment.getWritePosition();
+        synchronized(this.syncLock){
+            // already synced by another store
+            if(segment.getSyncedPosition() >= position){
+                return;
+            }
+
+            // letting the group fill up
+            try{
+                Thread.sleep(this.groupCommitWindow);
+            }
+            catch(InterruptedException e){
+                throw new IOException(e);
+            }
+
+            segment.force();
+            this.dstore.getCatalog().sync();
+        }
+    }
+
+    ////////////////
+    // COMPACTION //
+    ////////////////
+
+    /**
+     * Repeatedly compacts the segments that are mostly dead. Run by the compactor thread.
+     */
+    private void runCompactions(){
+        while(true){
+            try{
+                Thread.sleep(COMPACTION_INTERVAL);
+
+                // compacting the oldest segments first
+                ArrayList<Integer> ids = new ArrayList<Integer>(this.segments.keySet());
+                Collections.sort(ids);
+
+                for(int id : ids){
+                    Segment segment = this.segments.get(id);
+
+                    if(segment != this.activeSegment && segment.getLiveBytes() < segment.getWritePosition() * COMPACTION_THRESHOLD){
+                        this.compact(segment, id == ids.get(0));
+                    }
+                }
+            }
+            catch(InterruptedException e){
+                return;
+            }
+            catch(Exception e){
+                this.dstore.handleError(new SegmentCompactionException(e));
+            }
+        }
+    }
+
+    /**
+     * Copies the files still stored in a segment to the active segment, and deletes it.
+     *
+     * @param segment The segment being compacted.
+     * @param oldest Whether the segment is the oldest segment - its tombstones can then be
+     * dropped, as there are no older records for them to hide.
+     * @throws IOException If the segment could not be compacted.
+     * @throws InterruptedException If interrupted while waiting for the I/O scheduler.
+     */
+    private void compact(Segment segment, boolean oldest) throws IOException, InterruptedException{
+        long reclaimed = segment.getWritePosition() - segment.getLiveBytes();
+        ArrayList<Location> live = new ArrayList<Location>();
+        ArrayList<String> liveNames = new ArrayList<String>();
+        ArrayList<String> tombstones = new ArrayList<String>();
+
+        // finding the records still needed
+        for(Map.Entry<String, Location> entry : this.index.entrySet()){
+            if(entry.getValue().segment == segment){
+                liveNames.add(entry.getKey());
+                live.add(entry.getValue());
+            }
+        }
+        if(!oldest){
+            segment.replay((type, filename, position, size, recordSize) -> {
+                if(type == Segment.TOMBSTONE){
+                    tombstones.add(filename);
+                }
+            });
+        }
+
+        // copying the files still stored (as background I/O)
+        long copied = 0;
+        for(int i = 0; i < live.size(); i++){
+            Location location = live.get(i);
+            this.dstore.getScheduler().acquire(IOClass.BACKGROUND, location.recordSize);
+            if(this.append(liveNames.get(i), location.segment.slice(location.position, location.size), location) != null){
+                copied += location.recordSize;
+            }
+        }
+
+        // carrying the tombstones forward
+        for(String filename : tombstones){
+            synchronized(this){
+                if(!this.index.containsKey(filename)){
+                    this.ensureRoomFor(Segment.getRecordSize(filename, 0));
+                    this.activeSegment.append(Segment.TOMBSTONE, filename, ByteBuffer.allocate(0));
+                }
+            }
+        }
+
+        // the copies must be durable before the segment is deleted
+        this.activeSegment.force();
+
+        this.segments.remove(segment.getId());
+        segment.delete();
+
+        // logging
+        this.dstore.handleEvent(new SegmentCompactedEvent(segment.getId(), live.size(), copied, reclaimed));
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getSize(String filename){
+        Location location = this.index.get(filename);
+
+        return (location == null) ? this.largeFiles.getSize(filename) : location.filesize;
+    }
+
+    public HashMap<String, Integer> listFiles(){
+        HashMap<String, Integer> files = this.largeFiles.listFiles();
+        for(Map.Entry<String, Location> entry : this.index.entrySet()){
+            files.put(entry.getKey(), entry.getValue().filesize);
+        }
+
+        return files;
+    }
+
+    public int getNumberOfSegments(){
+        return this.segments.size();
+    }
+
+    /**
+     * Returns the segment file with the given id.
+     *
+     * @param id The id of the segment.
+     * @return The segment file.
+     */
+    private File getSegmentFile(int id){
+        return new File(this.segmentFolder, String.format("%08d", id) + SEGMENT_EXTENSION);
+    }
+
+    /**
+     * The location of a file's content within the segments.
+     */
+    private static class Location{
+
+        // member variables
+        private Segment segment;
+        private int position;
+        private int size; // of the stored form
+        private int recordSize;
+        private int filesize; // of the content
+
+        private Location(Segment segment, int position, int size, int recordSize, int filesize){
+            this.segment = segment;
+            this.position = position;
+            this.size = size;
+            this.recordSize = recordSize;
+            this.filesize = filesize;
+        }
+    }
+
+    /**
+     * A small file being received into memory, appended to the active segment once complete.
+     */
+    private class IncomingSmallFile implements IncomingFile{
+
+        // member variables
+        private String filename;
+        private byte[] content;
+        private boolean released;
+
+        private IncomingSmallFile(String filename, int filesize){
+            this.filename = filename;
+            this.content = new byte[filesize];
+            this.released = false;
+        }
+
+        public void write(ByteBuffer content, long position) throws IOException{
+            content.get(this.content, (int) position, content.remaining());
+        }
+
+        public void commit() throws IOException{
+            try{
+                store(this.filename, this.content);
+            }
+            finally{
+                this.release();
+            }
+        }
+
+        public void discard(){
+            this.release();
+        }
+
+        /**
+         * Releases the space held for the file (once only).
+         */
+        private void release(){
+            if(!this.released){
+                this.released = true;
+                largeFiles.release(this.content.length);
+            }
+        }
+    }
+
+    /**
+     * A large file being received into a file of its own.
+     */
+    private class IncomingLargeFile implements IncomingFile{
+
+        // member variables
+        private String filename;
+        private IncomingFile file;
+
+        private IncomingLargeFile(String filename, IncomingFile file){
+            this.filename = filename;
+            this.file = file;
+        }
+
+        public void write(ByteBuffer content, long position) throws IOException{
+            this.file.write(content, position);
+        }
+
+        public void commit() throws IOException{
+            // replacing a small file
+            if(index.containsKey(this.filename)){
+                sync(appendTombstone(this.filename));
+            }
+
+            this.file.commit();
+        }
+
+        public void discard(){
+            this.file.discard();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package DS.Dstore.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import DS.Protocol.Exception.NotEnoughSpaceException;
+
+/**
+ * Represents the way a Dstore lays out the content of its files on disk.
+ *
+ * A storage engine records every file it stores or removes in the Dstore's catalog.
+ */
+public interface StorageEngine {
+
+    // constants
+    public static final int MAX_FILESIZE = Integer.MAX_VALUE - 8; // largest file held (loaded into one buffer)
+
+    /**
+     * Sets up the storage engine - called before the Dstore's catalog is loaded.
+     *
+     * @throws IOException If the storage engine could not be set up.
+     */
+    public abstract void setup() throws IOException;
+
+    /**
+     * Stores a file, returning once it is as durable as the Dstore's durability mode requires.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     * @throws IOException If the file could not be stored.
+     */
+    public abstract void store(String filename, byte[] content) throws IOException;
+
+    /**
+     * Creates a file of a known size that is about to be received, holding the space for its
+     * content up front.
+     *
+     * @param filename The name of the file.
+     * @param filesize The size of the file in bytes.
+     * @return The file, to be written and then committed or discarded.
+     * @throws NotEnoughSpaceException If there is not enough free space for the file.
+     * @throws IOException If the file could not be created.
+     */
+    public abstract IncomingFile create(String filename, int filesize) throws NotEnoughSpaceException, IOException;
+
+    /**
+     * Loads the content of a file.
+     *
+     * The returned buffer must not be modified.
+     *
+     * @param filename The name of the file.
+     * @return The content of the file, or null if the file is not stored.
+     * @throws IOException If the file could not be read.
+     */
+    public abstract ByteBuffer load(String filename) throws IOException;
+
+    /**
+     * Reads the content of a file straight from the storage, bypassing any cache, so that what is
+     * actually stored can be checked.
+     *
+     * The returned buffer must not be modified.
+     *
+     * @param filename The name of the file.
+     * @return The content of the file, or null if the file is not stored.
+     * @throws IOException If the file could not be read.
+     */
+    public abstract ByteBuffer read(String filename) throws IOException;
+
+    /**
+     * Reads a range of the content of a file, reading only the range itself where the file is
+     * stored uncompressed (compressed files are decompressed whole). The range is not checked
+     * against the file's checksum, and is not served from or added to the read cache.
+     *
+     * The returned buffer must not be modified.
+     *
+     * @param filename The name of the file.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @return The range of the content, or null if the file is not stored.
+     * @throws EOFException If the range is not within the file.
+     * @throws IOException If the file could not be read.
+     */
+    public abstract ByteBuffer readRange(String filename, long offset, int length) throws IOException;
+
+    /**
+     * Removes a file.
+     *
+     * @param filename The name of the file.
+     * @return True if the file was removed, false if it was not stored.
+     * @throws IOException If the file could not be removed.
+     */
+    public abstract boolean remove(String filename) throws IOException;
+
+    /**
+     * Returns the size of a stored file, read from the storage itself rather than the catalog.
+     *
+     * @param filename The name of the file.
+     * @return The size of the file in bytes, or -1 if the file is not stored.
+     */
+    public abstract long getSize(String filename);
+
+    /**
+     * Lists every file in the storage, read from the storage itself rather than the catalog.
+     *
+     * @return A mapping of filenames to filesizes.
+     */
+    public abstract HashMap<String, Integer> listFiles();
+}
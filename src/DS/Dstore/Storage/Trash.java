@@ -0,0 +1,169 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import DS.Dstore.Dstore;
+import DS.Dstore.Scheduler.IOClass;
+import DS.Protocol.Event.Storage.TrashReclaimedEvent;
+
+/**
+ * The trash folder of a file store, which removed files are moved into so that removing a file
+ * never waits for its content to be deleted.
+ *
+ * Moving a file into the trash is a single rename within the same disk, so it is atomic and
+ * quick however large the file is. A background reclaimer then deletes the files in the trash one
+ * at a time, each under the Dstore's background I/O limit, so bulk removes do not crowd out
+ * Client requests.
+ *
+ * Files left in the trash by a crash are reclaimed when the trash is set up.
+ */
+public class Trash{
+
+    // constants
+    private static final String TRASH_FOLDER = "trash";
+    private static final String TRASH_EXTENSION = ".del";
+
+    // member variables
+    private Dstore dstore;
+    private File root;
+    private File trashFolder;
+    private AtomicLong trashCounter;
+    private LinkedBlockingQueue<File> pending; // files in the trash waiting to be deleted
+    private AtomicLong pendingBytes;
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the trash is for.
+     * @param root The folder the removed files are stored in (the trash is kept in its metadata
+     * folder, so files can be renamed into it).
+     */
+    public Trash(Dstore dstore, File root){
+        // initializing
+        this.dstore = dstore;
+        this.root = root;
+        this.trashCounter = new AtomicLong(0);
+        this.pending = new LinkedBlockingQueue<File>();
+        this.pendingBytes = new AtomicLong(0);
+    }
+
+    ///////////
+    // SETUP //
+    ///////////
+
+    /**
+     * Sets up the trash folder, queuing any files left in it for deletion, and starts the
+     * reclaimer.
+     */
+    public void setup(){
+        this.trashFolder = new File(new File(this.root, Dstore.METADATA_FOLDER), TRASH_FOLDER);
+        if(!this.trashFolder.exists()){
+            this.trashFolder.mkdirs();
+        }
+
+        // queuing files left behind by a crash
+        for(File file : this.trashFolder.listFiles()){
+            this.queue(file);
+        }
+
+        // starting the reclaimer
+        Thread reclaimer = new Thread(() -> this.runReclaimer());
+        reclaimer.setDaemon(true);
+        reclaimer.setPriority(Thread.MIN_PRIORITY);
+        reclaimer.start();
+    }
+
+    //////////////
+    // TRASHING //
+    //////////////
+
+    /**
+     * Moves a file into the trash, to be deleted in the background.
+     *
+     * @param file The file.
+     * @return True if the file was moved, false if it did not exist.
+     * @throws IOException If the file could not be moved.
+     */
+    public boolean trash(File file) throws IOException{
+        File trashFile = new File(this.trashFolder, this.trashCounter.incrementAndGet() + TRASH_EXTENSION);
+
+        try{
+            Files.move(file.toPath(), trashFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(NoSuchFileException e){
+            return false;
+        }
+
+        this.queue(trashFile);
+
+        return true;
+    }
+
+    ////////////////
+    // RECLAIMING //
+    ////////////////
+
+    /**
+     * Queues a file in the trash for deletion.
+     *
+     * @param file The file.
+     */
+    private void queue(File file){
+        this.pendingBytes.addAndGet(file.length());
+        this.pending.add(file);
+    }
+
+    /**
+     * Repeatedly deletes the files in the trash, each once the background I/O limit allows it.
+     * Run by the reclaimer thread.
+     */
+    private void runReclaimer(){
+        while(true){
+            try{
+                // waiting for a file to delete
+                File file = this.pending.take();
+                long startTime = System.currentTimeMillis();
+                int numberOfFiles = 0;
+                long bytesReclaimed = 0;
+
+                // deleting files until the trash is empty
+                while(file != null){
+                    long filesize = file.length();
+                    this.dstore.getScheduler().acquire(IOClass.BACKGROUND, filesize);
+
+                    if(file.delete() || !file.exists()){
+                        numberOfFiles++;
+                        bytesReclaimed += filesize;
+                    }
+                    this.pendingBytes.addAndGet(-filesize);
+
+                    file = this.pending.poll();
+                }
+
+                // logging
+                this.dstore.handleEvent(new TrashReclaimedEvent(numberOfFiles, bytesReclaimed, System.currentTimeMillis() - startTime));
+            }
+            catch(InterruptedException e){
+                return;
+            }
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getPendingFiles(){
+        return this.pending.size();
+    }
+
+    public long getPendingBytes(){
+        return this.pendingBytes.get();
+    }
+}
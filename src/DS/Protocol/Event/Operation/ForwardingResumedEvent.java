@@ -0,0 +1,45 @@
+package DS.Protocol.Event.Operation;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Represents the event of a Dstore resuming forwarding a file along a chain, after the connection
+ * to the next Dstore failed part way through.
+ */
+public class ForwardingResumedEvent extends NetworkEvent{
+    
+    // member variables
+    private String filename;
+    private int port;
+    private long offset;
+    
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file forwarded.
+     * @param port The port of the next Dstore.
+     * @param offset The position forwarding was resumed from.
+     */
+    public ForwardingResumedEvent(String filename, int port, long offset){
+        super("Forwarding of file : '" + filename + "' to port : " + port + " resumed from offset : " + offset + ".");
+        this.filename = filename;
+        this.port = port;
+        this.offset = offset;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public int getPort(){
+        return this.port;
+    }
+
+    public long getOffset(){
+        return this.offset;
+    }
+}
@@ -0,0 +1,44 @@
+package DS.Protocol.Event.Operation;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Represents the event of a LOAD_RANGE operation completing.
+ */
+public class LoadRangeCompleteEvent extends NetworkEvent{
+    
+    // member variables
+    private String filename;
+    private long offset;
+    private int length;
+    
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file the range was loaded from.
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     */
+    public LoadRangeCompleteEvent(String filename, long offset, int length){
+        super("'LOAD_RANGE' operation complete for file : '" + filename + "' at offset : " + offset + " of length : " + length + " bytes.");
+        this.filename = filename;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public long getOffset(){
+        return this.offset;
+    }
+
+    public int getLength(){
+        return this.length;
+    }
+}
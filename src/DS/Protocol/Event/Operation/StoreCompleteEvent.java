@@ -9,7 +9,7 @@ public class StoreCompleteEvent extends NetworkEvent{
 
     // member variables
     private String filename;
-    private int filesize;
+    private long filesize;
     
     /**
      * Class constructor.
@@ -17,7 +17,7 @@ public class StoreCompleteEvent extends NetworkEvent{
      * @param filename The name of the file that has been stored.
      * @param filesize The size of the file that has been stored.
      */
-    public StoreCompleteEvent(String filename, int filesize){
+    public StoreCompleteEvent(String filename, long filesize){
         super("'STORE' operation complete for file : '" + filename + "' of size : " + filesize + " bytes.");
         this.filename = filename;
         this.filesize = filesize;
@@ -31,7 +31,7 @@ public class StoreCompleteEvent extends NetworkEvent{
         return this.filename;
     }
 
-    public int getFilesize(){
+    public long getFilesize(){
         return this.filesize;
     }
 }
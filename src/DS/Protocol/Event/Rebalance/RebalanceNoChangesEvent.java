@@ -0,0 +1,17 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a periodic rebalance is skipped because no Dstore reported
+ * changes to its files and the file distribution is already balanced.
+ */
+public class RebalanceNoChangesEvent extends NetworkEvent{
+    
+    /**
+     * Class constructor.
+     */
+    public RebalanceNoChangesEvent(){
+        super("Rebalance not required - no changes reported by Dstores and system is already balanced.");
+    }
+}
@@ -0,0 +1,31 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a rebalance resumes the moves left over from a
+ * previous rebalance that did not complete.
+ */
+public class RebalanceResumedEvent extends NetworkEvent{
+
+    // member variables
+    private int remainingMoves;
+
+    /**
+     * Class constructor.
+     *
+     * @param remainingMoves The number of transfers and removals being resumed.
+     */
+    public RebalanceResumedEvent(int remainingMoves){
+        super("Resuming previous rebalance - " + remainingMoves + " move(s) remaining.");
+        this.remainingMoves = remainingMoves;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getRemainingMoves(){
+        return this.remainingMoves;
+    }
+}
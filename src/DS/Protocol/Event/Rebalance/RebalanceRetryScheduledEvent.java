@@ -0,0 +1,30 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a failed rebalance is rescheduled after a backoff.
+ */
+public class RebalanceRetryScheduledEvent extends NetworkEvent{
+
+    // member variables
+    private long backoff;
+
+    /**
+     * Class constructor.
+     *
+     * @param backoff The time (ms) until the rebalance will be retried.
+     */
+    public RebalanceRetryScheduledEvent(long backoff){
+        super("Rebalance failed - retrying in " + backoff + " ms.");
+        this.backoff = backoff;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getBackoff(){
+        return this.backoff;
+    }
+}
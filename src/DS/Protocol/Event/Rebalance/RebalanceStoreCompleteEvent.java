@@ -10,12 +10,12 @@ public class RebalanceStoreCompleteEvent extends NetworkEvent{
 
     // member variables
     private String filename;
-    private int filesize;
+    private long filesize;
 
     /**
      * Class constructor.
      */
-    public RebalanceStoreCompleteEvent(String filename, int filesize){
+    public RebalanceStoreCompleteEvent(String filename, long filesize){
         super("REBALANCE_STORE request complete for file : '" + filename + "'' of size : " + filesize + " bytes.");
         this.filename = filename;
         this.filesize = filesize;
@@ -29,7 +29,7 @@ public class RebalanceStoreCompleteEvent extends NetworkEvent{
         return this.filename;
     }
 
-    public int getFileSize(){
+    public long getFileSize(){
         return this.filesize;
     }
 }
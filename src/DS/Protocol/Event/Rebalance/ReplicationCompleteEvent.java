@@ -0,0 +1,45 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where under-replicated files have been re-replicated
+ * so that every file is stored on the minimum number of Dstores again.
+ */
+public class ReplicationCompleteEvent extends NetworkEvent{
+
+    // member variables
+    private int numberOfFiles;
+    private long bytes;
+    private long timeToFullRedundancy;
+
+    /**
+     * Class constructor.
+     *
+     * @param numberOfFiles The number of files that were re-replicated.
+     * @param bytes The number of bytes sent between Dstores to re-replicate the files.
+     * @param timeToFullRedundancy The time (ms) between redundancy being lost and being restored.
+     */
+    public ReplicationCompleteEvent(int numberOfFiles, long bytes, long timeToFullRedundancy){
+        super("Re-replication complete for " + numberOfFiles + " file(s) (" + bytes + " bytes sent) - full redundancy restored after " + timeToFullRedundancy + " ms.");
+        this.numberOfFiles = numberOfFiles;
+        this.bytes = bytes;
+        this.timeToFullRedundancy = timeToFullRedundancy;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getNumberOfFiles(){
+        return this.numberOfFiles;
+    }
+
+    public long getBytes(){
+        return this.bytes;
+    }
+
+    public long getTimeToFullRedundancy(){
+        return this.timeToFullRedundancy;
+    }
+}
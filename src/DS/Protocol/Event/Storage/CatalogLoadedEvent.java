@@ -0,0 +1,44 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore has loaded its file catalog on startup.
+ */
+public class CatalogLoadedEvent extends NetworkEvent{
+
+    // member variables
+    private int numberOfFiles;
+    private boolean fromManifest;
+    private long loadTime;
+
+    /**
+     * Class constructor.
+     *
+     * @param numberOfFiles The number of files in the catalog.
+     * @param fromManifest Whether the catalog was loaded from a manifest (true) or by scanning the file store (false).
+     * @param loadTime The time (ms) taken to load the catalog.
+     */
+    public CatalogLoadedEvent(int numberOfFiles, boolean fromManifest, long loadTime){
+        super("File catalog of " + numberOfFiles + " file(s) loaded " + (fromManifest ? "from manifest" : "by scanning the file store") + " in " + loadTime + " ms.");
+        this.numberOfFiles = numberOfFiles;
+        this.fromManifest = fromManifest;
+        this.loadTime = loadTime;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getNumberOfFiles(){
+        return this.numberOfFiles;
+    }
+
+    public boolean isFromManifest(){
+        return this.fromManifest;
+    }
+
+    public long getLoadTime(){
+        return this.loadTime;
+    }
+}
@@ -0,0 +1,45 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where the entries loaded into a Dstore's file catalog have all been
+ * verified against the file store.
+ */
+public class CatalogVerifiedEvent extends NetworkEvent{
+
+    // member variables
+    private int numberOfFiles;
+    private int numberCorrected;
+    private long verifyTime;
+
+    /**
+     * Class constructor.
+     *
+     * @param numberOfFiles The number of entries verified in the background.
+     * @param numberCorrected The number of entries that did not match the file store.
+     * @param verifyTime The time (ms) taken to verify the entries.
+     */
+    public CatalogVerifiedEvent(int numberOfFiles, int numberCorrected, long verifyTime){
+        super("File catalog verified - " + numberOfFiles + " file(s) checked, " + numberCorrected + " corrected, in " + verifyTime + " ms.");
+        this.numberOfFiles = numberOfFiles;
+        this.numberCorrected = numberCorrected;
+        this.verifyTime = verifyTime;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getNumberOfFiles(){
+        return this.numberOfFiles;
+    }
+
+    public int getNumberCorrected(){
+        return this.numberCorrected;
+    }
+
+    public long getVerifyTime(){
+        return this.verifyTime;
+    }
+}
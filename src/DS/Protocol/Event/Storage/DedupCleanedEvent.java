@@ -0,0 +1,45 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a deduplicating Dstore has found its index and stored objects out of
+ * step on startup (e.g., after a crash part way through a store) and corrected them.
+ */
+public class DedupCleanedEvent extends NetworkEvent{
+
+    // member variables
+    private int numberUnmapped;
+    private int numberRemoved;
+    private long cleanTime;
+
+    /**
+     * Class constructor.
+     *
+     * @param numberUnmapped The number of files unmapped because their object was missing.
+     * @param numberRemoved The number of objects removed because no file was mapped to them.
+     * @param cleanTime The time (ms) taken to check the index and objects.
+     */
+    public DedupCleanedEvent(int numberUnmapped, int numberRemoved, long cleanTime){
+        super("Dedup index cleaned - " + numberUnmapped + " file(s) with missing content unmapped, " + numberRemoved + " unreferenced object(s) removed, in " + cleanTime + " ms.");
+        this.numberUnmapped = numberUnmapped;
+        this.numberRemoved = numberRemoved;
+        this.cleanTime = cleanTime;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getNumberUnmapped(){
+        return this.numberUnmapped;
+    }
+
+    public int getNumberRemoved(){
+        return this.numberRemoved;
+    }
+
+    public long getCleanTime(){
+        return this.cleanTime;
+    }
+}
@@ -0,0 +1,37 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where an I/O bandwidth limit of a Dstore has been changed.
+ */
+public class IOLimitChangedEvent extends NetworkEvent{
+
+    // member variables
+    private String ioClass;
+    private long limit;
+
+    /**
+     * Class constructor.
+     *
+     * @param ioClass The I/O class the limit is for.
+     * @param limit The new limit in bytes per second (0 for no limit).
+     */
+    public IOLimitChangedEvent(String ioClass, long limit){
+        super("I/O limit for '" + ioClass + "' set to " + ((limit > 0) ? limit + " bytes/s." : "no limit."));
+        this.ioClass = ioClass;
+        this.limit = limit;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getIoClass(){
+        return this.ioClass;
+    }
+
+    public long getLimit(){
+        return this.limit;
+    }
+}
@@ -0,0 +1,44 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore has moved the files in its file store into a new layout.
+ */
+public class LayoutMigratedEvent extends NetworkEvent{
+
+    // member variables
+    private String layout;
+    private int numberOfFiles;
+    private long migrationTime;
+
+    /**
+     * Class constructor.
+     *
+     * @param layout The layout the files were moved into.
+     * @param numberOfFiles The number of files moved.
+     * @param migrationTime The time (ms) taken to move the files.
+     */
+    public LayoutMigratedEvent(String layout, int numberOfFiles, long migrationTime){
+        super(numberOfFiles + " file(s) migrated into the '" + layout + "' layout in " + migrationTime + " ms.");
+        this.layout = layout;
+        this.numberOfFiles = numberOfFiles;
+        this.migrationTime = migrationTime;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getLayout(){
+        return this.layout;
+    }
+
+    public int getNumberOfFiles(){
+        return this.numberOfFiles;
+    }
+
+    public long getMigrationTime(){
+        return this.migrationTime;
+    }
+}
@@ -0,0 +1,72 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event reporting the effectiveness of a Dstore's read cache.
+ */
+public class ReadCacheStatisticsEvent extends NetworkEvent{
+
+    // member variables
+    private double hitRate;
+    private long hits;
+    private long misses;
+    private long coalescedMisses;
+    private long evictions;
+    private long cachedBytes;
+    private long budget;
+
+    /**
+     * Class constructor.
+     *
+     * @param hitRate The proportion of loads served without reading the file store.
+     * @param hits The number of loads served from the cache.
+     * @param misses The number of loads that read the file store.
+     * @param coalescedMisses The number of loads that shared another load's read of the file store.
+     * @param evictions The number of files evicted from (or not admitted to) the cache.
+     * @param cachedBytes The number of bytes currently held by the cache.
+     * @param budget The maximum number of bytes the cache may hold.
+     */
+    public ReadCacheStatisticsEvent(double hitRate, long hits, long misses, long coalescedMisses, long evictions, long cachedBytes, long budget){
+        super(String.format("Read cache hit rate %.1f%% (%d hit(s), %d miss(es), %d coalesced miss(es), %d eviction(s)) - %d of %d bytes cached.", hitRate * 100, hits, misses, coalescedMisses, evictions, cachedBytes, budget));
+        this.hitRate = hitRate;
+        this.hits = hits;
+        this.misses = misses;
+        this.coalescedMisses = coalescedMisses;
+        this.evictions = evictions;
+        this.cachedBytes = cachedBytes;
+        this.budget = budget;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public double getHitRate(){
+        return this.hitRate;
+    }
+
+    public long getHits(){
+        return this.hits;
+    }
+
+    public long getMisses(){
+        return this.misses;
+    }
+
+    public long getCoalescedMisses(){
+        return this.coalescedMisses;
+    }
+
+    public long getEvictions(){
+        return this.evictions;
+    }
+
+    public long getCachedBytes(){
+        return this.cachedBytes;
+    }
+
+    public long getBudget(){
+        return this.budget;
+    }
+}
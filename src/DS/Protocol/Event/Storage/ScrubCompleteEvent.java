@@ -0,0 +1,58 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore has checked every stored file against its checksum.
+ */
+public class ScrubCompleteEvent extends NetworkEvent{
+
+    // member variables
+    private int pass;
+    private int numberOfFiles;
+    private long bytesScanned;
+    private int corruptFiles;
+    private long scrubTime;
+
+    /**
+     * Class constructor.
+     *
+     * @param pass The number of the scrub.
+     * @param numberOfFiles The number of files checked.
+     * @param bytesScanned The number of bytes read.
+     * @param corruptFiles The number of files found to be corrupt.
+     * @param scrubTime The time (ms) taken to check the files.
+     */
+    public ScrubCompleteEvent(int pass, int numberOfFiles, long bytesScanned, int corruptFiles, long scrubTime){
+        super("Scrub " + pass + " complete - " + numberOfFiles + " file(s) (" + bytesScanned + " bytes) checked, " + corruptFiles + " corrupt, in " + scrubTime + " ms.");
+        this.pass = pass;
+        this.numberOfFiles = numberOfFiles;
+        this.bytesScanned = bytesScanned;
+        this.corruptFiles = corruptFiles;
+        this.scrubTime = scrubTime;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getPass(){
+        return this.pass;
+    }
+
+    public int getNumberOfFiles(){
+        return this.numberOfFiles;
+    }
+
+    public long getBytesScanned(){
+        return this.bytesScanned;
+    }
+
+    public int getCorruptFiles(){
+        return this.corruptFiles;
+    }
+
+    public long getScrubTime(){
+        return this.scrubTime;
+    }
+}
@@ -0,0 +1,51 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore has compacted one of its storage segments.
+ */
+public class SegmentCompactedEvent extends NetworkEvent{
+
+    // member variables
+    private int segmentId;
+    private int numberOfFiles;
+    private long bytesCopied;
+    private long bytesReclaimed;
+
+    /**
+     * Class constructor.
+     *
+     * @param segmentId The id of the segment compacted.
+     * @param numberOfFiles The number of files still stored in the segment.
+     * @param bytesCopied The number of bytes copied into the active segment.
+     * @param bytesReclaimed The number of bytes of removed or replaced files reclaimed.
+     */
+    public SegmentCompactedEvent(int segmentId, int numberOfFiles, long bytesCopied, long bytesReclaimed){
+        super("Segment " + segmentId + " compacted - " + numberOfFiles + " file(s) (" + bytesCopied + " bytes) copied, " + bytesReclaimed + " bytes reclaimed.");
+        this.segmentId = segmentId;
+        this.numberOfFiles = numberOfFiles;
+        this.bytesCopied = bytesCopied;
+        this.bytesReclaimed = bytesReclaimed;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getSegmentId(){
+        return this.segmentId;
+    }
+
+    public int getNumberOfFiles(){
+        return this.numberOfFiles;
+    }
+
+    public long getBytesCopied(){
+        return this.bytesCopied;
+    }
+
+    public long getBytesReclaimed(){
+        return this.bytesReclaimed;
+    }
+}
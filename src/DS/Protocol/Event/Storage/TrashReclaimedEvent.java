@@ -0,0 +1,44 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore has deleted the files waiting in its trash.
+ */
+public class TrashReclaimedEvent extends NetworkEvent{
+
+    // member variables
+    private int numberOfFiles;
+    private long bytesReclaimed;
+    private long reclaimTime;
+
+    /**
+     * Class constructor.
+     *
+     * @param numberOfFiles The number of files deleted.
+     * @param bytesReclaimed The number of bytes freed by deleting the files.
+     * @param reclaimTime The time (ms) taken to delete the files.
+     */
+    public TrashReclaimedEvent(int numberOfFiles, long bytesReclaimed, long reclaimTime){
+        super(numberOfFiles + " removed file(s) deleted from the trash, reclaiming " + bytesReclaimed + " bytes in " + reclaimTime + " ms.");
+        this.numberOfFiles = numberOfFiles;
+        this.bytesReclaimed = bytesReclaimed;
+        this.reclaimTime = reclaimTime;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getNumberOfFiles(){
+        return this.numberOfFiles;
+    }
+
+    public long getBytesReclaimed(){
+        return this.bytesReclaimed;
+    }
+
+    public long getReclaimTime(){
+        return this.reclaimTime;
+    }
+}
@@ -0,0 +1,18 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for when a Dstore cannot persist a change to its file catalog.
+ */
+public class CatalogPersistException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param cause The cause of the failure.
+     */
+    public CatalogPersistException(Exception cause){
+        super("Unable to persist a change to the file catalog.", cause);
+    }
+}
@@ -0,0 +1,45 @@
+package DS.Protocol.Exception;
+
+import DS.Protocol.Protocol;
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * An exception for the case where the content of a file does not match its CRC32C checksum.
+ */
+public class ChecksumMismatchException extends NetworkException{
+
+    // member variables
+    private String filename;
+    private long expected;
+    private long actual;
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file.
+     * @param expected The checksum the content should have.
+     * @param actual The checksum of the content.
+     */
+    public ChecksumMismatchException(String filename, long expected, long actual){
+        super("The content of the file '" + filename + "' does not match its checksum (expected " + Protocol.formatChecksum(expected) + ", found " + Protocol.formatChecksum(actual) + ").");
+        this.filename = filename;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public long getExpected(){
+        return this.expected;
+    }
+
+    public long getActual(){
+        return this.actual;
+    }
+}
@@ -0,0 +1,20 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for when the stored content of a compressed file is damaged and cannot be
+ * decompressed.
+ */
+public class DecompressionException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file.
+     * @param cause The cause of the failure.
+     */
+    public DecompressionException(String filename, Exception cause){
+        super("The stored content of the file '" + filename + "' could not be decompressed.", cause);
+    }
+}
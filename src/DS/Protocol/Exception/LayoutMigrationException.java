@@ -0,0 +1,18 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for when a Dstore cannot move the files in its file store into a new layout.
+ */
+public class LayoutMigrationException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param cause The cause of the failure.
+     */
+    public LayoutMigrationException(Exception cause){
+        super("Unable to migrate the file store into the new layout.", cause);
+    }
+}
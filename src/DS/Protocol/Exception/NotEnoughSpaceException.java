@@ -0,0 +1,43 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * An exception for the case where a Dstore does not have enough free space to store a file.
+ */
+public class NotEnoughSpaceException extends NetworkException{
+
+    // member variables
+    private String filename;
+
+    /**
+     * Class constructor. For the Dstore rejecting the file.
+     * 
+     * @param filename The name of the file being stored.
+     * @param filesize The size of the file being stored.
+     * @param usableSpace The free space available for the file.
+     */
+    public NotEnoughSpaceException(String filename, long filesize, long usableSpace){
+        super("Not enough space to store the file '" + filename + "' (" + filesize + " bytes needed, " + usableSpace + " bytes available).");
+        this.filename = filename;
+    }
+
+    /**
+     * Class constructor. For the sender of the rejected file.
+     * 
+     * @param filename The name of the file being stored.
+     * @param port The port of the Dstore that rejected the file.
+     */
+    public NotEnoughSpaceException(String filename, int port){
+        super("The Dstore on port " + port + " does not have enough space to store the file '" + filename + "'.");
+        this.filename = filename;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+}
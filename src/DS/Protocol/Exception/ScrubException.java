@@ -0,0 +1,19 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for when a Dstore's scrubber cannot check a stored file.
+ */
+public class ScrubException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file being checked.
+     * @param cause The cause of the failure.
+     */
+    public ScrubException(String filename, Exception cause){
+        super("Unable to scrub the file '" + filename + "'.", cause);
+    }
+}
@@ -0,0 +1,18 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for when a Dstore cannot compact one of its storage segments.
+ */
+public class SegmentCompactionException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param cause The cause of the failure.
+     */
+    public SegmentCompactionException(Exception cause){
+        super("Unable to compact a storage segment.", cause);
+    }
+}
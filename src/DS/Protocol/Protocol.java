@@ -1,9 +1,15 @@
 package DS.Protocol;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
+import DS.Protocol.Token.TokenType.FileChange;
 import DS.Protocol.Token.TokenType.FileToSend;
+import Network.MessageEncoder;
 
 /**
  * 包含可以在整个系统中发送的所有消息以及生成这些消息的方法。用于生成系统中各种消息的字符串表示，以便在不同组件之间进行通信
@@ -23,10 +29,22 @@ public class Protocol {
 	public final static String JOIN_CLIENT_HEARTBEAT = "JOIN_CLIENT_HEARTBEAT";
 	public final static String LIST_TOKEN = "LIST"; // also from Controller and Dstores
 	public final static String STORE_TOKEN = "STORE"; // also from Dstores
+	public final static String STORE_RESUME_TOKEN = "STORE_RESUME"; // also from Dstores
 	public final static String LOAD_TOKEN = "LOAD";
 	public final static String LOAD_DATA_TOKEN = "LOAD_DATA";
+	public final static String LOAD_REPLICAS_TOKEN = "LOAD_REPLICAS";
+	public final static String LOAD_RANGE_TOKEN = "LOAD_RANGE"; // to Dstores
 	public final static String RELOAD_TOKEN = "RELOAD";
 	public final static String REMOVE_TOKEN = "REMOVE"; // also from Controller
+	public final static String IO_LIMIT_TOKEN = "IO_LIMIT"; // to Dstores
+	public final static String IO_STATS_TOKEN = "IO_STATS"; // to Dstores, also from Dstores
+	public final static String SCRUB_STATS_TOKEN = "SCRUB_STATS"; // to Dstores, also from Dstores
+	public final static String COMPRESSION_STATS_TOKEN = "COMPRESSION_STATS"; // to Dstores, also from Dstores
+	public final static String DEDUP_STATS_TOKEN = "DEDUP_STATS"; // to Dstores, also from Dstores
+	public final static String IO_LIMIT_TOTAL = "total"; // IO_LIMIT class for the limit shared by every class
+	public final static long NO_CHECKSUM = -1; // STORE and REBALANCE_STORE sent without a checksum
+	public final static String COMPRESSED = "COMPRESSED"; // offers (STORE, LOAD_DATA, REBALANCE_STORE) or accepts (ACK) compressed content
+	public final static String CHAIN = "CHAIN"; // STORE forwarded on by the receiving Dstore to the Dstores that follow
 
 
 	// getter methods //
@@ -43,26 +61,77 @@ public class Protocol {
 		return Protocol.LIST_TOKEN;
 	}
 
-	public static String getListOfFilesMessage(HashMap<String, Integer> files){
-        if(files.size() == 0){
-            return Protocol.LIST_TOKEN + Protocol.SPACE;
-        }
-
-        String filesString = "";
+	public static String getListOfFilesMessage(HashMap<String, ? extends Number> files){
+		return Protocol.encode(Protocol.getListOfFilesEncoder(files));
+	}
 
-        // forming single string
-        for(String file : files.keySet()){
-            filesString += Protocol.SPACE;
-            filesString += file + Protocol.SPACE + files.get(file);
-        }
-        
-		return (Protocol.LIST_TOKEN + filesString);
+	public static MessageEncoder getListOfFilesEncoder(Map<String, ? extends Number> files){
+		return Protocol.getEncoder(Protocol.LIST_TOKEN + " [" + files.size() + " file(s)]", writer -> {
+			writer.write(Protocol.LIST_TOKEN);
+
+			if(files.size() == 0){
+				writer.write(Protocol.SPACE);
+			}
+
+			// writing each file in turn
+			for(Map.Entry<String, ? extends Number> file : files.entrySet()){
+				writer.write(Protocol.SPACE);
+				writer.write(file.getKey());
+				writer.write(Protocol.SPACE);
+				writer.write(Long.toString(file.getValue().longValue()));
+			}
+		});
 	}
 
-	public static String getStoreMessage(String filename, int filesize){
+	public static String getStoreMessage(String filename, long filesize){
 		return (Protocol.STORE_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + filesize);
 	}
 
+	/**
+	 * STORE <filename> <filesize> <crc32c> - to Dstores, with the CRC32C of the content in hex
+	 */
+	public static String getStoreMessage(String filename, long filesize, long checksum){
+		return (Protocol.getStoreMessage(filename, filesize) + Protocol.SPACE + Protocol.formatChecksum(checksum));
+	}
+
+	/**
+	 * STORE <filename> <filesize> <crc32c> [COMPRESSED] - offering to send the content as compressed
+	 * blocks, which the Dstore accepts by replying ACK COMPRESSED
+	 */
+	public static String getStoreMessage(String filename, long filesize, long checksum, boolean compressed){
+		return Protocol.withCompression(Protocol.getStoreMessage(filename, filesize, checksum), compressed);
+	}
+
+	/**
+	 * STORE <filename> <filesize> <crc32c> [COMPRESSED] CHAIN <port> <port> ... - the Dstore stores
+	 * the content and forwards it to the first port as it arrives, passing the rest of the chain on
+	 * (the checksum is left out if it is NO_CHECKSUM)
+	 */
+	public static String getStoreMessage(String filename, long filesize, long checksum, boolean compressed, ArrayList<Integer> chain){
+		String message = (checksum == Protocol.NO_CHECKSUM)
+			? Protocol.withCompression(Protocol.getStoreMessage(filename, filesize), compressed)
+			: Protocol.getStoreMessage(filename, filesize, checksum, compressed);
+		if(chain.isEmpty()){
+			return message;
+		}
+
+		message += Protocol.SPACE + Protocol.CHAIN;
+		for(int port : chain){
+			message += Protocol.SPACE + port;
+		}
+
+		return message;
+	}
+
+	/**
+	 * STORE_RESUME <filename> <filesize> <crc32c> [COMPRESSED] [CHAIN <port>*] - as STORE, but the
+	 * Dstore keeps the content it received before the STORE failed, replying RESUME_FROM with the
+	 * length it already holds
+	 */
+	public static String getStoreResumeMessage(String filename, long filesize, long checksum, boolean compressed, ArrayList<Integer> chain){
+		return Protocol.STORE_RESUME_TOKEN + Protocol.getStoreMessage(filename, filesize, checksum, compressed, chain).substring(Protocol.STORE_TOKEN.length());
+	}
+
 	public static String getLoadMessage(String filename){
 		return (Protocol.LOAD_TOKEN + Protocol.SPACE + filename);
 	}
@@ -71,10 +140,62 @@ public class Protocol {
 		return (Protocol.LOAD_DATA_TOKEN + Protocol.SPACE + filename);
 	}
 
+	/**
+	 * LOAD_DATA <filename> [COMPRESSED] - asking for the content as compressed blocks, which the
+	 * Dstore always sends them as (there is no reply to accept with, as the content follows straight
+	 * away)
+	 */
+	public static String getLoadDataMessage(String filename, boolean compressed){
+		return Protocol.withCompression(Protocol.getLoadDataMessage(filename), compressed);
+	}
+
+	/**
+	 * LOAD_DATA <filename> <offset> <length> [COMPRESSED] - asking for a range of the content
+	 */
+	public static String getLoadDataMessage(String filename, long offset, int length, boolean compressed){
+		return Protocol.withCompression(Protocol.getLoadDataMessage(filename) + Protocol.SPACE + offset + Protocol.SPACE + length, compressed);
+	}
+
+	/**
+	 * LOAD_RANGE <filename> <offset> <length> [COMPRESSED] - asking for only a range of the content,
+	 * which follows straight away (the connection is closed instead if it cannot be sent)
+	 */
+	public static String getLoadRangeMessage(String filename, long offset, int length, boolean compressed){
+		return Protocol.withCompression(Protocol.LOAD_RANGE_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + offset + Protocol.SPACE + length, compressed);
+	}
+
+	public static String getLoadReplicasMessage(String filename){
+		return (Protocol.LOAD_REPLICAS_TOKEN + Protocol.SPACE + filename);
+	}
+
 	public static String getReloadMessage(String filename){
 		return (Protocol.RELOAD_TOKEN + Protocol.SPACE + filename);
 	}
 
+	public static String getIoLimitMessage(String ioClass, long limit){
+		return (Protocol.IO_LIMIT_TOKEN + Protocol.SPACE + ioClass + Protocol.SPACE + limit);
+	}
+
+	public static String getIoStatsMessage(){
+		return Protocol.IO_STATS_TOKEN;
+	}
+
+	public static String getScrubStatsMessage(){
+		return Protocol.SCRUB_STATS_TOKEN;
+	}
+
+	public static String getCompressionStatsMessage(){
+		return Protocol.COMPRESSION_STATS_TOKEN;
+	}
+
+	public static String getCompressionStatsMessage(String filename){
+		return (Protocol.COMPRESSION_STATS_TOKEN + Protocol.SPACE + filename);
+	}
+
+	public static String getDedupStatsMessage(){
+		return Protocol.DEDUP_STATS_TOKEN;
+	}
+
 	public static String getRemoveMessage(String filename){
 		return (Protocol.REMOVE_TOKEN + Protocol.SPACE + filename);
 	}
@@ -87,15 +208,20 @@ public class Protocol {
 
 	public final static String JOIN_ACK_TOKEN = "JOIN_ACK"; // also from Dstores
 	public final static String STORE_TO_TOKEN = "STORE_TO";
+	public final static String STORE_TO_CHUNKS_TOKEN = "STORE_TO_CHUNKS";
 	public final static String STORE_COMPLETE_TOKEN = "STORE_COMPLETE";
 	public final static String LOAD_FROM_TOKEN = "LOAD_FROM";
+	public final static String LOAD_CHUNKS_TOKEN = "LOAD_CHUNKS";
+	public final static String LOAD_FROM_REPLICAS_TOKEN = "LOAD_FROM_REPLICAS";
 	public final static String REMOVE_COMPLETE_TOKEN = "REMOVE_COMPLETE";
 	public final static String REBALANCE_TOKEN = "REBALANCE";
+	public final static String LIST_SINCE_TOKEN = "LIST_SINCE";
 	public final static String ERROR_DSTORE_PORT_IN_USE_TOKEN = "ERROR_DSTORE_PORT_IN_USE";
 	public final static String ERROR_FILE_DOES_NOT_EXIST_TOKEN = "ERROR_FILE_DOES_NOT_EXIST"; // also from Dstores
 	public final static String ERROR_FILE_ALREADY_EXISTS_TOKEN = "ERROR_FILE_ALREADY_EXISTS";
 	public final static String ERROR_NOT_ENOUGH_DSTORES_TOKEN = "ERROR_NOT_ENOUGH_DSTORES";
 	public final static String ERROR_LOAD_TOKEN = "ERROR_LOAD";
+	public final static String CHUNK_MARKER = ".chunk-"; // in the name of each chunk of a large object
 
 	// getter methods //
 
@@ -114,50 +240,85 @@ public class Protocol {
 		return (Protocol.STORE_TO_TOKEN + Protocol.SPACE + String.join(Protocol.SPACE, stringDstores));
 	}
 
+	/**
+	 * STORE_TO_CHUNKS <chunk_size> <replicas> [<port>*<replicas>]* - the Dstores of each chunk in turn
+	 */
+	public static String getStoreToChunksMessage(int chunkSize, ArrayList<ArrayList<Integer>> dstores){
+		StringBuilder message = new StringBuilder(Protocol.STORE_TO_CHUNKS_TOKEN + Protocol.SPACE + chunkSize + Protocol.SPACE + dstores.get(0).size());
+		for(ArrayList<Integer> chunkDstores : dstores){
+			for(int dstore : chunkDstores){
+				message.append(Protocol.SPACE).append(dstore);
+			}
+		}
+
+		return message.toString();
+	}
+
 	public static String getStoreCompleteMessage(){
 		return Protocol.STORE_COMPLETE_TOKEN;
 	}
 
-	public static String getLoadFromMessage(int port, int filesize){
+	public static String getLoadFromMessage(int port, long filesize){
 		return (Protocol.LOAD_FROM_TOKEN + Protocol.SPACE + port + Protocol.SPACE + filesize);
 	}
 
+	/**
+	 * LOAD_FROM_REPLICAS <filesize> <port>* - every Dstore holding the file
+	 */
+	public static String getLoadFromReplicasMessage(long filesize, ArrayList<Integer> dstores){
+		StringBuilder message = new StringBuilder(Protocol.LOAD_FROM_REPLICAS_TOKEN + Protocol.SPACE + filesize);
+		for(int dstore : dstores){
+			message.append(Protocol.SPACE).append(dstore);
+		}
+
+		return message.toString();
+	}
+
+	/**
+	 * LOAD_CHUNKS <filesize> <chunk_size> - each chunk is then loaded by its name
+	 */
+	public static String getLoadChunksMessage(long filesize, int chunkSize){
+		return (Protocol.LOAD_CHUNKS_TOKEN + Protocol.SPACE + filesize + Protocol.SPACE + chunkSize);
+	}
+
 	public static String getRemoveCompleteMessage(){
 		return Protocol.REMOVE_COMPLETE_TOKEN;
 	}
 
 	public static String getRebalanceMessage(ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove){
-        // files to send message
-        String filesToSendMessage = "";
-        if(filesToSend.size() == 0){
-            filesToSendMessage += filesToSend.size() + Protocol.SPACE;
-        }
-        else{
-            filesToSendMessage += filesToSend.size() + Protocol.SPACE;
-            for(FileToSend fileToSend : filesToSend){
-                filesToSendMessage += fileToSend.filename + Protocol.SPACE + fileToSend.filesize + Protocol.SPACE;
-
-                filesToSendMessage += fileToSend.dStores.size() + Protocol.SPACE;
-
-                for(int dstore : fileToSend.dStores){
-                    filesToSendMessage += dstore;
-                    filesToSendMessage += Protocol.SPACE;
-                }
-            }
-        }
-
-        // files to remove message
-        String filesToRemoveMessage = "";
-        if(filesToRemove.size() == 0){
-            filesToRemoveMessage += filesToRemove.size();
-        }
-        else{
-            filesToRemoveMessage += filesToRemove.size() + Protocol.SPACE;
-            filesToRemoveMessage += String.join(Protocol.SPACE, filesToRemove);
-        }
-
-		// final message
-        return (Protocol.REBALANCE_TOKEN + Protocol.SPACE + filesToSendMessage + filesToRemoveMessage);
+		return Protocol.encode(Protocol.getRebalanceEncoder(filesToSend, filesToRemove));
+	}
+
+	public static MessageEncoder getRebalanceEncoder(ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove){
+		String summary = Protocol.REBALANCE_TOKEN + " [" + filesToSend.size() + " file(s) to send, " + filesToRemove.size() + " file(s) to remove]";
+
+		return Protocol.getEncoder(summary, writer -> {
+			writer.write(Protocol.REBALANCE_TOKEN);
+			writer.write(Protocol.SPACE);
+
+			// files to send
+			writer.write(Integer.toString(filesToSend.size()));
+			writer.write(Protocol.SPACE);
+			for(FileToSend fileToSend : filesToSend){
+				writer.write(fileToSend.filename + Protocol.SPACE + fileToSend.filesize + Protocol.SPACE);
+				writer.write(fileToSend.dStores.size() + Protocol.SPACE);
+
+				for(int dstore : fileToSend.dStores){
+					writer.write(dstore + Protocol.SPACE);
+				}
+			}
+
+			// files to remove
+			writer.write(Integer.toString(filesToRemove.size()));
+			for(String fileToRemove : filesToRemove){
+				writer.write(Protocol.SPACE);
+				writer.write(fileToRemove);
+			}
+		});
+	}
+
+	public static String getListSinceMessage(long version){
+		return (Protocol.LIST_SINCE_TOKEN + Protocol.SPACE + version);
 	}
 
 	public static String getErrorDstorePortInUseMessage(){
@@ -192,10 +353,16 @@ public class Protocol {
 
 	public final static String JOIN_DSTORE_TOKEN = "JOIN_DSTORE";
 	public final static String ACK_TOKEN = "ACK";
+	public final static String RESUME_FROM_TOKEN = "RESUME_FROM";
 	public final static String STORE_ACK_TOKEN = "STORE_ACK";
 	public final static String REMOVE_ACK_TOKEN = "REMOVE_ACK";
 	public final static String REBALANCE_STORE_TOKEN = "REBALANCE_STORE";
 	public final static String REBALANCE_COMPLETE_TOKEN = "REBALANCE_COMPLETE";
+	public final static String LIST_DELTA_TOKEN = "LIST_DELTA";
+	public final static String REBALANCE_STORE_ACK_TOKEN = "REBALANCE_STORE_ACK";
+	public final static String REBALANCE_REMOVE_ACK_TOKEN = "REBALANCE_REMOVE_ACK";
+	public final static String ERROR_NOT_ENOUGH_SPACE_TOKEN = "ERROR_NOT_ENOUGH_SPACE";
+	public final static String CORRUPT_TOKEN = "CORRUPT";
 
 	// getter methods //
 
@@ -207,6 +374,21 @@ public class Protocol {
 		return Protocol.ACK_TOKEN;
 	}
 
+	/**
+	 * ACK [COMPRESSED] - accepting an offer to send the content as compressed blocks
+	 */
+	public static String getAckMessage(boolean compressed){
+		return Protocol.withCompression(Protocol.getAckMessage(), compressed);
+	}
+
+	/**
+	 * RESUME_FROM <offset> [COMPRESSED] - reply to STORE_RESUME, the content then being sent from
+	 * the offset on (compressed if accepted, as for ACK)
+	 */
+	public static String getResumeFromMessage(long offset, boolean compressed){
+		return Protocol.withCompression(Protocol.RESUME_FROM_TOKEN + Protocol.SPACE + offset, compressed);
+	}
+
 	public static String getStoreAckMessage(String filename){
 		return (Protocol.STORE_ACK_TOKEN + Protocol.SPACE + filename);
 	}
@@ -215,24 +397,261 @@ public class Protocol {
 		return (Protocol.REMOVE_ACK_TOKEN + Protocol.SPACE + filename);
 	}
 
-	public static String getRebalanceStoreMessage(String filename, int filesize){
+	public static String getRebalanceStoreMessage(String filename, long filesize){
 		
 		return (Protocol.REBALANCE_STORE_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + filesize);
 	}
 
+	/**
+	 * REBALANCE_STORE <filename> <filesize> <crc32c> - with the CRC32C of the content in hex
+	 */
+	public static String getRebalanceStoreMessage(String filename, long filesize, long checksum){
+		return (Protocol.getRebalanceStoreMessage(filename, filesize) + Protocol.SPACE + Protocol.formatChecksum(checksum));
+	}
+
+	/**
+	 * REBALANCE_STORE <filename> <filesize> <crc32c> [COMPRESSED] - offering to send the content as
+	 * compressed blocks, which the Dstore accepts by replying ACK COMPRESSED
+	 */
+	public static String getRebalanceStoreMessage(String filename, long filesize, long checksum, boolean compressed){
+		return Protocol.withCompression(Protocol.getRebalanceStoreMessage(filename, filesize, checksum), compressed);
+	}
+
+	public static String getRebalanceStoreAckMessage(String filename, long filesize){
+		return (Protocol.REBALANCE_STORE_ACK_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + filesize);
+	}
+
+	public static String getRebalanceRemoveAckMessage(String filename){
+		return (Protocol.REBALANCE_REMOVE_ACK_TOKEN + Protocol.SPACE + filename);
+	}
+
+	public static String getErrorNotEnoughSpaceMessage(String filename){
+		return (Protocol.ERROR_NOT_ENOUGH_SPACE_TOKEN + Protocol.SPACE + filename);
+	}
+
+	/**
+	 * IO_STATS <limit> [<class> <limit> <bytes_per_second> <bytes> <operations> <average_queue_ms>]*
+	 */
+	public static String getIoStatsMessage(long limit, ArrayList<String> classStatistics){
+		StringBuilder message = new StringBuilder(Protocol.IO_STATS_TOKEN + Protocol.SPACE + limit);
+		for(String statistics : classStatistics){
+			message.append(Protocol.SPACE + statistics);
+		}
+
+		return message.toString();
+	}
+
+	/**
+	 * SCRUB_STATS <pass> <files_scanned> <files_in_pass> <bytes_scanned> <bytes_per_second> <corrupt_files> <limit>
+	 */
+	public static String getScrubStatsMessage(int pass, int filesScanned, int filesInPass, long bytesScanned, long rate, int corruptFiles, long limit){
+		return (Protocol.SCRUB_STATS_TOKEN + Protocol.SPACE + pass + Protocol.SPACE + filesScanned + Protocol.SPACE + filesInPass + Protocol.SPACE + bytesScanned + Protocol.SPACE + rate + Protocol.SPACE + corruptFiles + Protocol.SPACE + limit);
+	}
+
+	/**
+	 * COMPRESSION_STATS <mode> <bytes> <stored_bytes> [<codec> <objects> <bytes> <stored_bytes> <ratio> <compress_ms> <decompressions> <decompress_ms>]*
+	 */
+	public static String getCompressionStatsMessage(String mode, long bytes, long storedBytes, ArrayList<String> codecStatistics){
+		StringBuilder message = new StringBuilder(Protocol.COMPRESSION_STATS_TOKEN + Protocol.SPACE + mode + Protocol.SPACE + bytes + Protocol.SPACE + storedBytes);
+		for(String statistics : codecStatistics){
+			message.append(Protocol.SPACE + statistics);
+		}
+
+		return message.toString();
+	}
+
+	/**
+	 * COMPRESSION_STATS <filename> <codec> <filesize> <stored_size> <ratio> <compress_us> <decompress_us>
+	 */
+	public static String getObjectCompressionStatsMessage(String filename, String codec, long filesize, long storedSize, double ratio, long compressTime, long decompressTime){
+		return (Protocol.COMPRESSION_STATS_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + codec + Protocol.SPACE + filesize + Protocol.SPACE + storedSize + Protocol.SPACE + String.format("%.3f", ratio) + Protocol.SPACE + compressTime + Protocol.SPACE + decompressTime);
+	}
+
+	/**
+	 * DEDUP_STATS <mode> <files> <objects> <bytes> <stored_bytes> <ratio> <stores> <hits>
+	 */
+	public static String getDedupStatsMessage(String mode, int files, int objects, long bytes, long storedBytes, double ratio, long stores, long hits){
+		return (Protocol.DEDUP_STATS_TOKEN + Protocol.SPACE + mode + Protocol.SPACE + files + Protocol.SPACE + objects + Protocol.SPACE + bytes + Protocol.SPACE + storedBytes + Protocol.SPACE + String.format("%.3f", ratio) + Protocol.SPACE + stores + Protocol.SPACE + hits);
+	}
+
+	public static String getCorruptMessage(String filename){
+		return (Protocol.CORRUPT_TOKEN + Protocol.SPACE + filename);
+	}
+
 	public static String getRebalanceCompleteMessage(HashMap<String, Integer> files){
-        if(files.size() == 0){
-            return (Protocol.REBALANCE_COMPLETE_TOKEN + Protocol.SPACE);
-        }
-        else{
-            String filesString = "";
-
-            // forming single string
-            for(String file : files.keySet()){
-                filesString += Protocol.SPACE + file + Protocol.SPACE + files.get(file);
-            }
-            
-            return (Protocol.REBALANCE_COMPLETE_TOKEN + filesString);
-        }
-	}
-}
\ No newline at end of file
+		return Protocol.encode(Protocol.getRebalanceCompleteEncoder(files));
+	}
+
+	public static MessageEncoder getRebalanceCompleteEncoder(Map<String, Integer> files){
+		return Protocol.getEncoder(Protocol.REBALANCE_COMPLETE_TOKEN + " [" + files.size() + " file(s)]", writer -> {
+			writer.write(Protocol.REBALANCE_COMPLETE_TOKEN);
+
+			if(files.size() == 0){
+				writer.write(Protocol.SPACE);
+			}
+
+			// writing each file in turn
+			for(Map.Entry<String, Integer> file : files.entrySet()){
+				writer.write(Protocol.SPACE);
+				writer.write(file.getKey());
+				writer.write(Protocol.SPACE);
+				writer.write(Integer.toString(file.getValue()));
+			}
+		});
+	}
+
+	public static String getListDeltaMessage(long version, ArrayList<FileChange> changes){
+		return Protocol.encode(Protocol.getListDeltaEncoder(version, changes));
+	}
+
+	public static String getFullListDeltaMessage(long version, HashMap<String, Integer> files){
+		return Protocol.encode(Protocol.getFullListDeltaEncoder(version, files));
+	}
+
+	public static MessageEncoder getListDeltaEncoder(long version, ArrayList<FileChange> changes){
+		String summary = Protocol.LIST_DELTA_TOKEN + Protocol.SPACE + version + " 0 " + changes.size() + " ...";
+
+		return Protocol.getEncoder(summary, writer -> {
+			Protocol.writeListDeltaHeader(writer, version, false, changes.size());
+
+			// writing each change in turn
+			for(FileChange change : changes){
+				writer.write(Protocol.SPACE);
+				writer.write(change.toString());
+			}
+		});
+	}
+
+	public static MessageEncoder getFullListDeltaEncoder(long version, Map<String, Integer> files){
+		String summary = Protocol.LIST_DELTA_TOKEN + Protocol.SPACE + version + " 1 " + files.size() + " ...";
+
+		return Protocol.getEncoder(summary, writer -> {
+			Protocol.writeListDeltaHeader(writer, version, true, files.size());
+
+			// a full listing is every file being stored
+			for(Map.Entry<String, Integer> file : files.entrySet()){
+				writer.write(Protocol.SPACE);
+				writer.write(FileChange.STORED + Protocol.SPACE + file.getKey() + Protocol.SPACE + file.getValue());
+			}
+		});
+	}
+
+	private static void writeListDeltaHeader(Writer writer, long version, boolean full, int numberOfChanges) throws IOException{
+		writer.write(Protocol.LIST_DELTA_TOKEN);
+		writer.write(Protocol.SPACE + version);
+		writer.write(Protocol.SPACE + (full ? 1 : 0));
+		writer.write(Protocol.SPACE + numberOfChanges);
+	}
+
+	//////////////
+	// ENCODING //
+	//////////////
+
+	/**
+	 * Writes the body of a message.
+	 */
+	private interface MessageBody{
+		public void write(Writer writer) throws IOException;
+	}
+
+	/**
+	 * Creates an encoder that writes the given message body.
+	 *
+	 * @param summary The summary of the message used in logging.
+	 * @param body The body of the message.
+	 * @return The encoder for the message.
+	 */
+	private static MessageEncoder getEncoder(String summary, MessageBody body){
+		return new MessageEncoder(){
+			public void encode(Writer writer) throws IOException{
+				body.write(writer);
+			}
+
+			public String getSummary(){
+				return summary;
+			}
+		};
+	}
+
+	/**
+	 * Encodes a message into a single String.
+	 *
+	 * @param encoder The encoder for the message.
+	 * @return The message as a String.
+	 */
+	private static String encode(MessageEncoder encoder){
+		try{
+			StringWriter writer = new StringWriter();
+			encoder.encode(writer);
+			return writer.toString();
+		}
+		catch(IOException e){
+			// cannot happen writing to a String
+			throw new IllegalStateException(e);
+		}
+	}
+
+	////////////////////
+	// HELPER METHODS //
+	////////////////////
+
+	/**
+	 * Formats a CRC32C checksum for a message.
+	 *
+	 * @param checksum The checksum.
+	 * @return The checksum as eight hex digits.
+	 */
+	public static String formatChecksum(long checksum){
+		return String.format("%08x", checksum);
+	}
+
+	/**
+	 * Parses a CRC32C checksum from a message.
+	 *
+	 * @param checksum The checksum as hex digits.
+	 * @return The checksum.
+	 * @throws NumberFormatException If the checksum is not valid.
+	 */
+	public static long parseChecksum(String checksum){
+		long value = Long.parseLong(checksum, 16);
+		if(value < 0 || value > 0xffffffffL){
+			throw new NumberFormatException("Invalid checksum : " + checksum);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Returns the number of chunks a large object is split into.
+	 *
+	 * @param filesize The size of the object in bytes.
+	 * @param chunkSize The size of each chunk (the last may be smaller).
+	 * @return The number of chunks.
+	 */
+	public static int getNumberOfChunks(long filesize, int chunkSize){
+		return (int) ((filesize + chunkSize - 1) / chunkSize);
+	}
+
+	/**
+	 * Returns the name a chunk of a large object is stored under.
+	 *
+	 * @param filename The name of the object.
+	 * @param chunk The index of the chunk.
+	 * @param numberOfChunks The number of chunks in the object.
+	 * @return The name of the chunk.
+	 */
+	public static String getChunkName(String filename, int chunk, int numberOfChunks){
+		return (filename + Protocol.CHUNK_MARKER + chunk + "-of-" + numberOfChunks);
+	}
+
+	/**
+	 * Appends the compression keyword to a message if compressed content is offered or accepted.
+	 *
+	 * @param message The message.
+	 * @param compressed Whether compressed content is offered or accepted.
+	 * @return The message, with the keyword if compressed.
+	 */
+	private static String withCompression(String message, boolean compressed){
+		return compressed ? (message + Protocol.SPACE + Protocol.COMPRESSED) : message;
+	}
+}
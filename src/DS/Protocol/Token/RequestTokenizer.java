@@ -1,22 +1,110 @@
 package DS.Protocol.Token;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.StringTokenizer;
 
 import DS.Protocol.Protocol;
 import DS.Protocol.Token.TokenType.*;
+import Network.Connection;
+import Network.MessageReader;
+import Network.Protocol.Exception.ConnectorDisconnectedException;
+import Network.Protocol.Exception.MessageReceivedException;
 
 /**
  * 标记消息字符串。用于解析消息字符串并生成相应 Token 对象
  */
 public class RequestTokenizer {
+
+    // constants
+    private static final List<String> STREAMED_TOKENS = List.of(Protocol.LIST_TOKEN, Protocol.LIST_DELTA_TOKEN, Protocol.REBALANCE_TOKEN, Protocol.REBALANCE_COMPLETE_TOKEN);
     
     /**
      * Class constuctor. Private as class is static.
      */
     private RequestTokenizer(){}
 
+    /**
+     * Gathers the next token from a connection.
+     * 
+     * Messages that can carry very large numbers of entries are parsed a word at a time as they
+     * arrive instead of being read into a single String first. A LIST_DELTA is streamed - its
+     * entries are left on the connection to be read by the handler. All other messages are read
+     * in full and tokenized as usual.
+     * 
+     * @param connection The connection the token is read from.
+     * @return The gathered token.
+     * @throws MessageReceivedException If the message could not be read from the connection.
+     */
+    public static Token getToken(Connection connection) throws MessageReceivedException{
+        MessageReader reader = connection.getMessageReader();
+
+        try{
+            String firstToken = reader.startMessage();
+
+            // connection closed
+            if(firstToken == null){
+                throw new ConnectorDisconnectedException(connection.getPort());
+            }
+
+            // message with entries
+            if(!reader.isEndOfMessage() && STREAMED_TOKENS.contains(firstToken)){
+                Token token = getToken(firstToken, reader);
+
+                // logging
+                connection.logMessageReceived(token.message);
+
+                return token;
+            }
+
+            // any other message
+            String message = reader.isEndOfMessage() ? firstToken : (firstToken + " " + reader.readRestOfMessage());
+
+            // logging
+            connection.logMessageReceived(message);
+
+            return getToken(message);
+        }
+        catch(Exception e){
+            throw new MessageReceivedException(connection.getPort(), e);
+        }
+    }
+
+    /**
+     * Gathers a token with entries from a MessageReader, positioned after the first word of
+     * the message.
+     * 
+     * @param firstToken The first word of the message.
+     * @param reader The reader the rest of the message is read from.
+     * @return The gathered token.
+     * @throws IOException If the message could not be read.
+     */
+    private static Token getToken(String firstToken, MessageReader reader) throws IOException{
+        // LIST (files) //
+        if(firstToken.equals(Protocol.LIST_TOKEN)){
+            return getListToken(reader);
+        }
+
+        // LIST_DELTA //
+        else if(firstToken.equals(Protocol.LIST_DELTA_TOKEN)){
+            return getListDeltaToken(reader);
+        }
+
+        // REBALANCE //
+        else if(firstToken.equals(Protocol.REBALANCE_TOKEN)){
+            return getRebalanceToken(reader);
+        }
+
+        // REBALANCE_COMPLETE (file list is not used) //
+        else{
+            reader.skipRestOfMessage();
+            return new RebalanceCompleteToken(Protocol.REBALANCE_COMPLETE_TOKEN + " ...");
+        }
+    }
+
     /**
      * Gathers a token from a message string.
      * @param message The message string.
@@ -64,7 +152,12 @@ public class RequestTokenizer {
 
         // ACK //
         else if(firstToken.equals(Protocol.ACK_TOKEN)) {
-            return new AckToken(message);
+            return getAckToken(message, sTokenizer);
+        }
+
+        // RESUME_FROM //
+        else if(firstToken.equals(Protocol.RESUME_FROM_TOKEN)){
+            return getResumeFromToken(message, sTokenizer);
         }
 
         // STORE //
@@ -72,11 +165,21 @@ public class RequestTokenizer {
             return getStoreToken(message, sTokenizer);
         }
 
+        // STORE_RESUME //
+        else if(firstToken.equals(Protocol.STORE_RESUME_TOKEN)){
+            return getStoreResumeToken(message, sTokenizer);
+        }
+
         // STORE_TO //
         else if(firstToken.equals(Protocol.STORE_TO_TOKEN)){
             return getStoreToToken(message, sTokenizer);
         }
 
+        // STORE_TO_CHUNKS //
+        else if(firstToken.equals(Protocol.STORE_TO_CHUNKS_TOKEN)){
+            return getStoreToChunksToken(message, sTokenizer);
+        }
+
         // STORE_ACK //
         else if(firstToken.equals(Protocol.STORE_ACK_TOKEN)){
             return getStoreAckToken(message, sTokenizer);
@@ -97,6 +200,26 @@ public class RequestTokenizer {
             return getLoadFromToken(message, sTokenizer);
         }
 
+        // LOAD_CHUNKS //
+        else if(firstToken.equals(Protocol.LOAD_CHUNKS_TOKEN)){
+            return getLoadChunksToken(message, sTokenizer);
+        }
+
+        // LOAD_RANGE //
+        else if(firstToken.equals(Protocol.LOAD_RANGE_TOKEN)){
+            return getLoadRangeToken(message, sTokenizer);
+        }
+
+        // LOAD_REPLICAS //
+        else if(firstToken.equals(Protocol.LOAD_REPLICAS_TOKEN)){
+            return getLoadReplicasToken(message, sTokenizer);
+        }
+
+        // LOAD_FROM_REPLICAS //
+        else if(firstToken.equals(Protocol.LOAD_FROM_REPLICAS_TOKEN)){
+            return getLoadFromReplicasToken(message, sTokenizer);
+        }
+
         // LOAD_DATA //
         else if(firstToken.equals(Protocol.LOAD_DATA_TOKEN)){
             return getLoadDataToken(message, sTokenizer);
@@ -127,9 +250,47 @@ public class RequestTokenizer {
             return getListToken(message, sTokenizer);
         }
 
-        // REBALANCE //
-        else if (firstToken.equals(Protocol.REBALANCE_TOKEN)){
-            return getRebalanceToken(message, sTokenizer);
+        // LIST_SINCE //
+        else if(firstToken.equals(Protocol.LIST_SINCE_TOKEN)){
+            return getListSinceToken(message, sTokenizer);
+        }
+
+        // IO_LIMIT //
+        else if(firstToken.equals(Protocol.IO_LIMIT_TOKEN)){
+            return getIoLimitToken(message, sTokenizer);
+        }
+
+        // IO_STATS //
+        else if(firstToken.equals(Protocol.IO_STATS_TOKEN)){
+            return new IoStatsToken(message);
+        }
+
+        // SCRUB_STATS //
+        else if(firstToken.equals(Protocol.SCRUB_STATS_TOKEN)){
+            return new ScrubStatsToken(message);
+        }
+
+        // COMPRESSION_STATS //
+        else if(firstToken.equals(Protocol.COMPRESSION_STATS_TOKEN)){
+            return new CompressionStatsToken(message, sTokenizer.hasMoreTokens() ? sTokenizer.nextToken() : null);
+        }
+
+        // DEDUP_STATS //
+        else if(firstToken.equals(Protocol.DEDUP_STATS_TOKEN)){
+            return new DedupStatsToken(message);
+        }
+
+        // LIST_DELTA and REBALANCE (parsed in the same way as from a connection) //
+        else if(firstToken.equals(Protocol.LIST_DELTA_TOKEN) || firstToken.equals(Protocol.REBALANCE_TOKEN)){
+            try{
+                MessageReader reader = new MessageReader(new StringReader(message));
+                reader.startMessage();
+
+                return getToken(firstToken, reader);
+            }
+            catch(IOException e){
+                return new InvalidRequestToken(message);
+            }
         }
 
         // REBALANCE_STORE //
@@ -137,6 +298,16 @@ public class RequestTokenizer {
             return getRebalanceStoreToken(message, sTokenizer);
         }
 
+        // REBALANCE_STORE_ACK //
+        else if (firstToken.equals(Protocol.REBALANCE_STORE_ACK_TOKEN)){
+            return getRebalanceStoreAckToken(message, sTokenizer);
+        }
+
+        // REBALANCE_REMOVE_ACK //
+        else if (firstToken.equals(Protocol.REBALANCE_REMOVE_ACK_TOKEN)){
+            return getRebalanceRemoveAckToken(message, sTokenizer);
+        }
+
         // REBALANCE_COMPLETE //
         else if(firstToken.equals(Protocol.REBALANCE_COMPLETE_TOKEN)){
             return new RebalanceCompleteToken(message);
@@ -167,6 +338,16 @@ public class RequestTokenizer {
             return new ErrorLoadToken(message);
         }
 
+        // ERROR_NOT_ENOUGH_SPACE //
+        else if(firstToken.equals(Protocol.ERROR_NOT_ENOUGH_SPACE_TOKEN)){
+            return getErrorNotEnoughSpaceToken(message, sTokenizer);
+        }
+
+        // CORRUPT //
+        else if(firstToken.equals(Protocol.CORRUPT_TOKEN)){
+            return getCorruptToken(message, sTokenizer);
+        }
+
         // Unrecognized //
         else{
             return new InvalidRequestToken(message);
@@ -209,6 +390,41 @@ public class RequestTokenizer {
         }
     }
 
+    /**
+     * Gathers an ACK token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getAckToken(String message, StringTokenizer sTokenizer){
+        boolean compressed = sTokenizer.hasMoreTokens() && sTokenizer.nextToken().equals(Protocol.COMPRESSED);
+
+        return new AckToken(message, compressed);
+    }
+
+    /**
+     * Gathers a RESUME_FROM token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getResumeFromToken(String message, StringTokenizer sTokenizer){
+        try{
+            long offset = Long.parseLong(sTokenizer.nextToken());
+            boolean compressed = sTokenizer.hasMoreTokens() && sTokenizer.nextToken().equals(Protocol.COMPRESSED);
+            if(offset < 0){
+                return new InvalidRequestToken(message);
+            }
+
+            return new ResumeFromToken(message, offset, compressed);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
     /**
      * Gathers a STORE token from a message string.
      * 
@@ -219,14 +435,52 @@ public class RequestTokenizer {
     private static Token getStoreToken(String message, StringTokenizer sTokenizer) {
         try{
             String filename = sTokenizer.nextToken();
-            int filesize = Integer.parseInt(sTokenizer.nextToken());
-            return new StoreToken(message, filename, filesize);
+            long filesize = Long.parseLong(sTokenizer.nextToken());
+            long checksum = Protocol.NO_CHECKSUM;
+            boolean compressed = false;
+            ArrayList<Integer> chain = new ArrayList<Integer>();
+            while(sTokenizer.hasMoreTokens()){
+                String token = sTokenizer.nextToken();
+                if(token.equals(Protocol.COMPRESSED)){
+                    compressed = true;
+                }
+                else if(token.equals(Protocol.CHAIN)){
+                    // the rest of the message is the chain of ports
+                    while(sTokenizer.hasMoreTokens()){
+                        chain.add(Integer.parseInt(sTokenizer.nextToken()));
+                    }
+                    if(chain.isEmpty()){
+                        return new InvalidRequestToken(message);
+                    }
+                }
+                else{
+                    checksum = Protocol.parseChecksum(token);
+                }
+            }
+            return new StoreToken(message, filename, filesize, checksum, compressed, chain);
         }
         catch(Exception e){
             return new InvalidRequestToken(message);
         }
     }
 
+    /**
+     * Gathers a STORE_RESUME token from a message string (the same form as STORE).
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getStoreResumeToken(String message, StringTokenizer sTokenizer){
+        Token token = getStoreToken(message, sTokenizer);
+        if(!(token instanceof StoreToken)){
+            return token;
+        }
+
+        StoreToken storeToken = (StoreToken) token;
+        return new StoreResumeToken(message, storeToken.filename, storeToken.filesize, storeToken.checksum, storeToken.compressed, storeToken.chain);
+    }
+
     /**
      * Gathers a STORE_TO token from a message string.
      * 
@@ -250,6 +504,36 @@ public class RequestTokenizer {
         }
     }
 
+    /**
+     * Gathers a STORE_TO_CHUNKS token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getStoreToChunksToken(String message, StringTokenizer sTokenizer){
+        ArrayList<ArrayList<Integer>> ports = new ArrayList<ArrayList<Integer>>();
+
+        try{
+            int chunkSize = Integer.parseInt(sTokenizer.nextToken());
+            int replicas = Integer.parseInt(sTokenizer.nextToken());
+
+            // the Dstores of each chunk in turn
+            while(sTokenizer.hasMoreTokens()){
+                ArrayList<Integer> chunkPorts = new ArrayList<Integer>();
+                for(int i = 0; i < replicas; i++){
+                    chunkPorts.add(Integer.parseInt(sTokenizer.nextToken()));
+                }
+                ports.add(chunkPorts);
+            }
+
+            return new StoreToChunksToken(message, chunkSize, ports);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
     /**
      * Gathers a STORE_ACK token from a message string.
      * 
@@ -297,7 +581,7 @@ public class RequestTokenizer {
         try{
             int port = Integer.parseInt(sTokenizer.nextToken());
 
-            int filesize = Integer.parseInt(sTokenizer.nextToken());
+            long filesize = Long.parseLong(sTokenizer.nextToken());
 
             return new LoadFromToken(message, port, filesize);
         }
@@ -306,6 +590,89 @@ public class RequestTokenizer {
         }
     }
 
+    /**
+     * Gathers a LOAD_CHUNKS token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getLoadChunksToken(String message, StringTokenizer sTokenizer){
+        try{
+            long filesize = Long.parseLong(sTokenizer.nextToken());
+            int chunkSize = Integer.parseInt(sTokenizer.nextToken());
+
+            return new LoadChunksToken(message, filesize, chunkSize);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a LOAD_RANGE token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getLoadRangeToken(String message, StringTokenizer sTokenizer){
+        try{
+            String filename = sTokenizer.nextToken();
+            long offset = Long.parseLong(sTokenizer.nextToken());
+            int length = Integer.parseInt(sTokenizer.nextToken());
+            boolean compressed = sTokenizer.hasMoreTokens() && sTokenizer.nextToken().equals(Protocol.COMPRESSED);
+            if(offset < 0 || length < 0){
+                return new InvalidRequestToken(message);
+            }
+
+            return new LoadRangeToken(message, filename, offset, length, compressed);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a LOAD_REPLICAS token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getLoadReplicasToken(String message, StringTokenizer sTokenizer){
+        try{
+            String filename = sTokenizer.nextToken();
+
+            return new LoadReplicasToken(message, filename);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a LOAD_FROM_REPLICAS token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getLoadFromReplicasToken(String message, StringTokenizer sTokenizer){
+        try{
+            long filesize = Long.parseLong(sTokenizer.nextToken());
+            ArrayList<Integer> ports = new ArrayList<Integer>();
+            while(sTokenizer.hasMoreTokens()){
+                ports.add(Integer.parseInt(sTokenizer.nextToken()));
+            }
+
+            return new LoadFromReplicasToken(message, filesize, ports);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
     /**
      * Gathers a LOAD_DATA token from a message string.
      * 
@@ -316,8 +683,22 @@ public class RequestTokenizer {
     private static Token getLoadDataToken(String message, StringTokenizer sTokenizer) {
         try{
             String filename = sTokenizer.nextToken();
+            String nextToken = sTokenizer.hasMoreTokens() ? sTokenizer.nextToken() : null;
+
+            // range of the file
+            long offset = 0;
+            int length = LoadDataToken.WHOLE_FILE;
+            if(nextToken != null && !nextToken.equals(Protocol.COMPRESSED)){
+                offset = Long.parseLong(nextToken);
+                length = Integer.parseInt(sTokenizer.nextToken());
+                nextToken = sTokenizer.hasMoreTokens() ? sTokenizer.nextToken() : null;
+                if(offset < 0 || length < 0){
+                    return new InvalidRequestToken(message);
+                }
+            }
+            boolean compressed = nextToken != null && nextToken.equals(Protocol.COMPRESSED);
 
-            return new LoadDataToken(message, filename);
+            return new LoadDataToken(message, filename, offset, length, compressed);
         }
         catch(Exception e){
             return new InvalidRequestToken(message);
@@ -396,6 +777,42 @@ public class RequestTokenizer {
         }
     }
 
+    /**
+     * Gathers an ERROR_NOT_ENOUGH_SPACE token from a message string.
+     * 
+     * @param message The message.
+     * @param sTokenizer The tokenizer, past the first token.
+     * @return The token, or an invalid request token if the message is malformed.
+     */
+    private static Token getErrorNotEnoughSpaceToken(String message, StringTokenizer sTokenizer){
+        try{
+            String filename = sTokenizer.nextToken();
+
+            return new ErrorNotEnoughSpaceToken(message, filename);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a CORRUPT token from a message string.
+     * 
+     * @param message The message.
+     * @param sTokenizer The tokenizer, past the first token.
+     * @return The token, or an invalid request token if the message is malformed.
+     */
+    private static Token getCorruptToken(String message, StringTokenizer sTokenizer){
+        try{
+            String filename = sTokenizer.nextToken();
+
+            return new CorruptToken(message, filename);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
     /**
      * Gathers a LIST token from a message string.
      * 
@@ -406,11 +823,11 @@ public class RequestTokenizer {
     private static Token getListToken(String message, StringTokenizer sTokenizer) {
         try{
             if(sTokenizer.hasMoreTokens()){
-                HashMap<String,Integer> files = new HashMap<String,Integer>();
+                HashMap<String,Long> files = new HashMap<String,Long>();
                 while(sTokenizer.hasMoreTokens()){
                     String filename = sTokenizer.nextToken();
 
-                    int filesize = Integer.parseInt(sTokenizer.nextToken());
+                    long filesize = Long.parseLong(sTokenizer.nextToken());
 
                     files.put(filename, filesize);
                 }
@@ -418,7 +835,7 @@ public class RequestTokenizer {
                 return new ListFilesToken(message, files);
             }
             else if(message.length() == 5){ // ERROR FIX : Case where there are no files but is still a LIST filenames token - just LIST followed by space and therefore has 5 characters
-                HashMap<String,Integer> files = new HashMap<String,Integer>();
+                HashMap<String,Long> files = new HashMap<String,Long>();
                 return new ListFilesToken(message, files);
             }
             else{
@@ -431,32 +848,118 @@ public class RequestTokenizer {
     }
 
     /**
-     * Gathers a REBALANC token from a message string.
+     * Gathers a LIST_SINCE token from a message string.
      * 
      * @param message
      * @param sTokenizer
      * @return
      */
-    private static Token getRebalanceToken(String message, StringTokenizer sTokenizer) {
+    private static Token getListSinceToken(String message, StringTokenizer sTokenizer) {
+        try{
+            long version = Long.parseLong(sTokenizer.nextToken());
+
+            return new ListSinceToken(message, version);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers an IO_LIMIT token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getIoLimitToken(String message, StringTokenizer sTokenizer) {
+        try{
+            String ioClass = sTokenizer.nextToken();
+            long limit = Long.parseLong(sTokenizer.nextToken());
+
+            return new IoLimitToken(message, ioClass, limit);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a LIST (files) token from a MessageReader.
+     * 
+     * @param reader
+     * @return
+     */
+    private static Token getListToken(MessageReader reader) throws IOException{
+        HashMap<String,Long> files = new HashMap<String,Long>();
+
+        try{
+            String filename;
+            while((filename = reader.nextWord()) != null){
+                long filesize = Long.parseLong(reader.nextWord());
+
+                files.put(filename, filesize);
+            }
+
+            return new ListFilesToken(Protocol.LIST_TOKEN + " [" + files.size() + " file(s)]", files);
+        }
+        catch(Exception e){
+            reader.skipRestOfMessage();
+            return new InvalidRequestToken(Protocol.LIST_TOKEN + " ...");
+        }
+    }
+
+    /**
+     * Gathers a LIST_DELTA token from a MessageReader. Only the header is read - the changes
+     * are left to be streamed by the token.
+     * 
+     * @param reader
+     * @return
+     */
+    private static Token getListDeltaToken(MessageReader reader) throws IOException{
+        try{
+            long version = Long.parseLong(reader.nextWord());
+
+            boolean full = Integer.parseInt(reader.nextWord()) == 1;
+
+            int numberOfChanges = Integer.parseInt(reader.nextWord());
+
+            String message = Protocol.LIST_DELTA_TOKEN + " " + version + " " + (full ? 1 : 0) + " " + numberOfChanges + " ...";
+
+            return new ListDeltaToken(message, version, full, numberOfChanges, reader);
+        }
+        catch(Exception e){
+            reader.skipRestOfMessage();
+            return new InvalidRequestToken(Protocol.LIST_DELTA_TOKEN + " ...");
+        }
+    }
+
+    /**
+     * Gathers a REBALANCE token from a MessageReader.
+     * 
+     * @param reader
+     * @return
+     */
+    private static Token getRebalanceToken(MessageReader reader) throws IOException{
         try{
             
             // Files to send //
 
-            int numberOfFilesToSend = Integer.parseInt(sTokenizer.nextToken());
+            int numberOfFilesToSend = Integer.parseInt(reader.nextWord());
 
             ArrayList<FileToSend> filesToSend = new ArrayList<FileToSend>();
 
             for(int i = 0; i < numberOfFilesToSend; i++){
-                String filename = sTokenizer.nextToken();
+                String filename = reader.nextWord();
 
-                int filesize = Integer.parseInt(sTokenizer.nextToken());
+                long filesize = Long.parseLong(reader.nextWord());
 
-                int numberOfDStores = Integer.parseInt(sTokenizer.nextToken());
+                int numberOfDStores = Integer.parseInt(reader.nextWord());
 
                 ArrayList<Integer> ports = new ArrayList<Integer>();
 
                 for(int j = 0; j < numberOfDStores; j++){
-                    int port = Integer.parseInt(sTokenizer.nextToken());
+                    int port = Integer.parseInt(reader.nextWord());
 
                     ports.add(port);
                 }
@@ -467,20 +970,32 @@ public class RequestTokenizer {
 
             // Files to remove //
 
-            int numberOfFilesToRemove = Integer.parseInt(sTokenizer.nextToken());
+            int numberOfFilesToRemove = Integer.parseInt(reader.nextWord());
 
             ArrayList<String> filesToRemove = new ArrayList<String>();
 
             for(int i = 0; i < numberOfFilesToRemove; i++){
-                String filename = sTokenizer.nextToken();
+                String filename = reader.nextWord();
+
+                if(filename == null){
+                    throw new IOException("REBALANCE message ended early.");
+                }
 
                 filesToRemove.add(filename);
             }
 
+            // nothing may follow the files to remove
+            if(reader.nextWord() != null){
+                throw new IOException("Unexpected content after REBALANCE message.");
+            }
+
+            String message = Protocol.REBALANCE_TOKEN + " [" + filesToSend.size() + " file(s) to send, " + filesToRemove.size() + " file(s) to remove]";
+
             return new RebalanceToken(message, filesToSend, filesToRemove);
         }
         catch(Exception e){
-            return new InvalidRequestToken(message);
+            reader.skipRestOfMessage();
+            return new InvalidRequestToken(Protocol.REBALANCE_TOKEN + " ...");
         }
     }
 
@@ -494,11 +1009,58 @@ public class RequestTokenizer {
     private static Token getRebalanceStoreToken(String message, StringTokenizer sTokenizer) {
         try{
             String filename = sTokenizer.nextToken();
-            int filesize = Integer.parseInt(sTokenizer.nextToken());
-            return new RebalanceStoreToken(message, filename, filesize);
+            long filesize = Long.parseLong(sTokenizer.nextToken());
+            long checksum = Protocol.NO_CHECKSUM;
+            boolean compressed = false;
+            while(sTokenizer.hasMoreTokens()){
+                String token = sTokenizer.nextToken();
+                if(token.equals(Protocol.COMPRESSED)){
+                    compressed = true;
+                }
+                else{
+                    checksum = Protocol.parseChecksum(token);
+                }
+            }
+            return new RebalanceStoreToken(message, filename, filesize, checksum, compressed);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a REBALANCE_STORE_ACK token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getRebalanceStoreAckToken(String message, StringTokenizer sTokenizer) {
+        try{
+            String filename = sTokenizer.nextToken();
+            long filesize = Long.parseLong(sTokenizer.nextToken());
+            return new RebalanceStoreAckToken(message, filename, filesize);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a REBALANCE_REMOVE_ACK token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getRebalanceRemoveAckToken(String message, StringTokenizer sTokenizer) {
+        try{
+            String filename = sTokenizer.nextToken();
+
+            return new RebalanceRemoveAckToken(message, filename);
         }
         catch(Exception e){
             return new InvalidRequestToken(message);
         }
     }
-}
\ No newline at end of file
+}
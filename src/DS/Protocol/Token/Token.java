@@ -1,8 +1,43 @@
 package DS.Protocol.Token;
 
+import java.util.concurrent.CountDownLatch;
+
 /** 
  * The Token Prototype.
+ * 
+ * A token whose handler goes on to read from the connection it arrived on (a streamed token, or
+ * a request followed by file content) holds the connection until it is released, so that the
+ * connection's next message is not read while the handler is still reading.
  */
 public abstract class Token {
     public String message;
+
+    // member variables
+    private CountDownLatch released = new CountDownLatch(1);
+
+    /**
+     * Determines if the token's entries are streamed from the connection as they are handled,
+     * rather than having been parsed before the token was created.
+     * 
+     * @return True if the token is streamed, false if not.
+     */
+    public boolean isStreamed(){
+        return false;
+    }
+
+    /**
+     * Releases the connection the token arrived on once the token has been handled.
+     */
+    public void release(){
+        this.released.countDown();
+    }
+
+    /**
+     * Waits for the token to be released.
+     * 
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void awaitRelease() throws InterruptedException{
+        this.released.await();
+    }
 }
@@ -9,7 +9,10 @@ import DS.Protocol.Token.Token;
  */
 public class AckToken extends Token{
     
-    public AckToken(String message){
+    public boolean compressed; // offer of compressed content accepted
+
+    public AckToken(String message, boolean compressed){
         this.message = message;
+        this.compressed = compressed;
     }
 }
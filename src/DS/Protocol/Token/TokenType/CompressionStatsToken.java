@@ -0,0 +1,18 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a request for the compression statistics of a Dstore, or of one file stored on it.
+ * 
+ * Syntax: COMPRESSION_STATS [filename]
+ */
+public class CompressionStatsToken extends Token{
+
+    public String filename; // null for the statistics of the whole Dstore
+
+    public CompressionStatsToken(String message, String filename){
+        this.message = message;
+        this.filename = filename;
+    }
+}
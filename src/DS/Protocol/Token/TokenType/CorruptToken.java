@@ -0,0 +1,18 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a Dstore reporting that its copy of a file is corrupt (and has been removed).
+ * 
+ * Syntax: CORRUPT filename
+ */
+public class CorruptToken extends Token{
+
+    public String filename;
+
+    public CorruptToken(String message, String filename){
+        this.message = message;
+        this.filename = filename;
+    }
+}
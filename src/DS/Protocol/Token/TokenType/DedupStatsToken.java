@@ -0,0 +1,15 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a request for the deduplication statistics of a Dstore.
+ * 
+ * Syntax: DEDUP_STATS
+ */
+public class DedupStatsToken extends Token{
+
+    public DedupStatsToken(String message){
+        this.message = message;
+    }
+}
@@ -0,0 +1,18 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a Dstore rejecting a file it does not have enough free space to store.
+ * 
+ * Syntax: ERROR_NOT_ENOUGH_SPACE filename
+ */
+public class ErrorNotEnoughSpaceToken extends Token{
+
+    public String filename;
+
+    public ErrorNotEnoughSpaceToken(String message, String filename){
+        this.message = message;
+        this.filename = filename;
+    }
+}
@@ -0,0 +1,32 @@
+package DS.Protocol.Token.TokenType;
+
+/**
+ * A single change to the files stored on a Dstore, as sent in a LIST_DELTA message.
+ * 
+ * Syntax: + <filename> <filesize> (file stored) or - <filename> (file removed)
+ */
+public class FileChange{
+
+    // constants
+    public static final String STORED = "+";
+    public static final String REMOVED = "-";
+
+    public String filename;
+    public long filesize;
+    public boolean removed;
+
+    public FileChange(String filename, long filesize, boolean removed){
+        this.filename = filename;
+        this.filesize = filesize;
+        this.removed = removed;
+    }
+
+    public String toString(){
+        if(this.removed){
+            return (FileChange.REMOVED + " " + this.filename);
+        }
+        else{
+            return (FileChange.STORED + " " + this.filename + " " + this.filesize);
+        }
+    }
+}
@@ -10,10 +10,10 @@ import java.util.ArrayList;
 public class FileToSend{
     
     public String filename;
-    public int filesize;
+    public long filesize;
     public ArrayList<Integer> dStores;
 
-    public FileToSend(String filename, int filesize, ArrayList<Integer> dStores){
+    public FileToSend(String filename, long filesize, ArrayList<Integer> dStores){
         this.filename = filename;
         this.filesize = filesize;
         this.dStores = dStores;
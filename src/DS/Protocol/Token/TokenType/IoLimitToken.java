@@ -0,0 +1,20 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a request to change an I/O bandwidth limit of a Dstore.
+ * 
+ * Syntax: IO_LIMIT <class> <bytes_per_second>
+ */
+public class IoLimitToken extends Token{
+
+    public String ioClass; // 'total' for the limit shared by every class
+    public long limit;
+
+    public IoLimitToken(String message, String ioClass, long limit){
+        this.message = message;
+        this.ioClass = ioClass;
+        this.limit = limit;
+    }
+}
@@ -0,0 +1,15 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a request for the I/O statistics of a Dstore.
+ * 
+ * Syntax: IO_STATS
+ */
+public class IoStatsToken extends Token{
+
+    public IoStatsToken(String message){
+        this.message = message;
+    }
+}
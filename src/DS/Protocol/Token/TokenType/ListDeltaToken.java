@@ -0,0 +1,81 @@
+package DS.Protocol.Token.TokenType;
+
+import java.io.IOException;
+
+import DS.Protocol.Token.Token;
+import Network.MessageReader;
+
+/**
+ * Token for a Dstore reporting the changes to its files since the version requested in a
+ * LIST_SINCE message. If 'full' is set the changes are a complete listing of the Dstore's files,
+ * which replaces whatever the Controller knew about the Dstore.
+ * 
+ * The changes are streamed - they are read from the message one at a time as they are handled,
+ * so a listing of any size can be handled without holding it in memory.
+ * 
+ * Syntax: LIST_DELTA <version> <full> <number_of_changes> <change1> <change2> ...
+ */
+public class ListDeltaToken extends Token{
+
+    public long version;
+    public boolean full;
+    public int numberOfChanges;
+
+    // member variables
+    private MessageReader reader;
+    private int changesRead;
+
+    public ListDeltaToken(String message, long version, boolean full, int numberOfChanges, MessageReader reader){
+        this.message = message;
+        this.version = version;
+        this.full = full;
+        this.numberOfChanges = numberOfChanges;
+        this.reader = reader;
+        this.changesRead = 0;
+    }
+
+    /**
+     * Reads the next change from the message.
+     * 
+     * @return The next change, or null if all changes have been read.
+     * @throws IOException If the change could not be read, or is not a valid change.
+     */
+    public FileChange nextChange() throws IOException{
+        // all changes read
+        if(this.changesRead == this.numberOfChanges){
+            return null;
+        }
+
+        try{
+            String type = this.reader.nextWord();
+            String filename = this.reader.nextWord();
+
+            if(filename == null){
+                throw new IOException("Message ended after " + this.changesRead + " of " + this.numberOfChanges + " changes.");
+            }
+
+            this.changesRead++;
+
+            // file stored
+            if(FileChange.STORED.equals(type)){
+                long filesize = Long.parseLong(this.reader.nextWord());
+                return new FileChange(filename, filesize, false);
+            }
+            // file removed
+            else if(FileChange.REMOVED.equals(type)){
+                return new FileChange(filename, 0, true);
+            }
+            else{
+                throw new IOException("Invalid change type : " + type);
+            }
+        }
+        catch(NumberFormatException e){
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean isStreamed(){
+        return true;
+    }
+}
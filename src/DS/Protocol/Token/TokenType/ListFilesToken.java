@@ -11,9 +11,9 @@ import DS.Protocol.Token.Token;
  */
 public class ListFilesToken extends Token{
     
-    public HashMap<String, Integer> files;
+    public HashMap<String, Long> files;
 
-    public ListFilesToken(String message, HashMap<String, Integer> files){
+    public ListFilesToken(String message, HashMap<String, Long> files){
         this.message = message;
         this.files = files;
     }
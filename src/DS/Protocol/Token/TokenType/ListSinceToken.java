@@ -0,0 +1,18 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a Controller requesting the changes to a Dstore's files since a given version.
+ * 
+ * Syntax: LIST_SINCE <version>
+ */
+public class ListSinceToken extends Token{
+
+    public long version;
+
+    public ListSinceToken(String message, long version){
+        this.message = message;
+        this.version = version;
+    }
+}
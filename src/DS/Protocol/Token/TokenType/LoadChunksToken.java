@@ -0,0 +1,20 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a large object to be loaded chunk by chunk.
+ * 
+ * Syntax: LOAD_CHUNKS <filesize> <chunk_size>
+ */
+public class LoadChunksToken extends Token{
+
+    public long filesize;
+    public int chunkSize;
+
+    public LoadChunksToken(String message, long filesize, int chunkSize){
+        this.message = message;
+        this.filesize = filesize;
+        this.chunkSize = chunkSize;
+    }
+}
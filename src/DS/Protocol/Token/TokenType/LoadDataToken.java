@@ -10,9 +10,21 @@ import DS.Protocol.Token.Token;
 public class LoadDataToken extends Token{
     
     public String filename;
+    public long offset; // start of the range asked for
+    public int length; // length of the range asked for (WHOLE_FILE for all of the file)
+    public boolean compressed; // content asked for as compressed blocks
 
-    public LoadDataToken(String message, String filename){
+    public static final int WHOLE_FILE = -1;
+
+    public LoadDataToken(String message, String filename, boolean compressed){
+        this(message, filename, 0, WHOLE_FILE, compressed);
+    }
+
+    public LoadDataToken(String message, String filename, long offset, int length, boolean compressed){
         this.message = message;
         this.filename = filename;
+        this.offset = offset;
+        this.length = length;
+        this.compressed = compressed;
     }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package DS.Protocol.Token.TokenType;
+
+import java.util.ArrayList;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for the Dstores a file can be loaded from, in reply to LOAD_REPLICAS.
+ * 
+ * Syntax: LOAD_FROM_REPLICAS <filesize> <port>*
+ */
+public class LoadFromReplicasToken extends Token{
+
+    public long filesize;
+    public ArrayList<Integer> ports;
+
+    public LoadFromReplicasToken(String message, long filesize, ArrayList<Integer> ports){
+        this.message = message;
+        this.filesize = filesize;
+        this.ports = ports;
+    }
+}
@@ -10,9 +10,9 @@ import DS.Protocol.Token.Token;
 public class LoadFromToken extends Token{
     
     public int port;
-    public int filesize;
+    public long filesize;
 
-    public LoadFromToken(String message, int port, int filesize){
+    public LoadFromToken(String message, int port, long filesize){
         this.message = message;
         this.port = port;
         this.filesize = filesize;
@@ -0,0 +1,25 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a request for a range of a file, read from the Dstore's storage without loading the
+ * rest of the file.
+ * 
+ * Syntax: LOAD_RANGE <filename> <offset> <length> [COMPRESSED]
+ */
+public class LoadRangeToken extends Token{
+
+    public String filename;
+    public long offset;
+    public int length;
+    public boolean compressed; // content asked for as compressed blocks
+
+    public LoadRangeToken(String message, String filename, long offset, int length, boolean compressed){
+        this.message = message;
+        this.filename = filename;
+        this.offset = offset;
+        this.length = length;
+        this.compressed = compressed;
+    }
+}
@@ -0,0 +1,18 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a request for every Dstore holding a file, so it can be loaded from all of them at once.
+ * 
+ * Syntax: LOAD_REPLICAS <filename>
+ */
+public class LoadReplicasToken extends Token{
+
+    public String filename;
+
+    public LoadReplicasToken(String message, String filename){
+        this.message = message;
+        this.filename = filename;
+    }
+}
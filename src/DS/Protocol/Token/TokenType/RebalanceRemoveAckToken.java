@@ -0,0 +1,18 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a Dstore reporting that a file has been removed from it during a rebalance.
+ * 
+ * Syntax: REBALANCE_REMOVE_ACK <filename>
+ */
+public class RebalanceRemoveAckToken extends Token{
+
+    public String filename;
+
+    public RebalanceRemoveAckToken(String message, String filename){
+        this.message = message;
+        this.filename = filename;
+    }
+}
@@ -0,0 +1,20 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a Dstore reporting that a file sent to it during a rebalance has been stored.
+ * 
+ * Syntax: REBALANCE_STORE_ACK <filename> <filesize>
+ */
+public class RebalanceStoreAckToken extends Token{
+
+    public String filename;
+    public long filesize;
+
+    public RebalanceStoreAckToken(String message, String filename, long filesize){
+        this.message = message;
+        this.filename = filename;
+        this.filesize = filesize;
+    }
+}
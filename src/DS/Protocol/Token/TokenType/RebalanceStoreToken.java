@@ -10,11 +10,15 @@ import DS.Protocol.Token.Token;
 public class RebalanceStoreToken extends Token{
     
     public String filename;
-    public int filesize;
+    public long filesize;
+    public long checksum; // CRC32C of the content, or Protocol.NO_CHECKSUM if not given
+    public boolean compressed; // sender offers to send the content as compressed blocks
 
-    public RebalanceStoreToken(String message, String filename, int filesize){
+    public RebalanceStoreToken(String message, String filename, long filesize, long checksum, boolean compressed){
         this.message = message;
         this.filename = filename;
         this.filesize = filesize;
+        this.checksum = checksum;
+        this.compressed = compressed;
     }
 }
\ No newline at end of file
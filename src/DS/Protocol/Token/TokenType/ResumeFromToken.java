@@ -0,0 +1,20 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for the reply to a STORE_RESUME.
+ * 
+ * Syntax: RESUME_FROM <offset> [COMPRESSED]
+ */
+public class ResumeFromToken extends Token{
+    
+    public long offset; // length of the content the Dstore already holds
+    public boolean compressed; // offer of compressed content accepted
+
+    public ResumeFromToken(String message, long offset, boolean compressed){
+        this.message = message;
+        this.offset = offset;
+        this.compressed = compressed;
+    }
+}
@@ -0,0 +1,15 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a request for the scrubbing statistics of a Dstore.
+ * 
+ * Syntax: SCRUB_STATS
+ */
+public class ScrubStatsToken extends Token{
+
+    public ScrubStatsToken(String message){
+        this.message = message;
+    }
+}
@@ -0,0 +1,28 @@
+package DS.Protocol.Token.TokenType;
+
+import java.util.ArrayList;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a STORE_RESUME request - a STORE continuing the content received before it failed.
+ * 
+ * Syntax: STORE_RESUME <filename> <filesize> <crc32c> [COMPRESSED] [CHAIN <port>*]
+ */
+public class StoreResumeToken extends Token{
+    
+    public String filename;
+    public long filesize;
+    public long checksum; // CRC32C of the content, or Protocol.NO_CHECKSUM if not given
+    public boolean compressed; // sender offers to send the content as compressed blocks
+    public ArrayList<Integer> chain; // Dstores the content is forwarded to, in order (empty if none)
+
+    public StoreResumeToken(String message, String filename, long filesize, long checksum, boolean compressed, ArrayList<Integer> chain){
+        this.message = message;
+        this.filename = filename;
+        this.filesize = filesize;
+        this.checksum = checksum;
+        this.compressed = compressed;
+        this.chain = chain;
+    }
+}
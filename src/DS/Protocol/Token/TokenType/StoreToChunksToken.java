@@ -0,0 +1,22 @@
+package DS.Protocol.Token.TokenType;
+
+import java.util.ArrayList;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for the Dstores each chunk of a large object is to be stored on.
+ * 
+ * Syntax: STORE_TO_CHUNKS <chunk_size> <replicas> [<port>*<replicas>]*
+ */
+public class StoreToChunksToken extends Token{
+
+    public int chunkSize;
+    public ArrayList<ArrayList<Integer>> ports; // the Dstores of each chunk in turn
+
+    public StoreToChunksToken(String message, int chunkSize, ArrayList<ArrayList<Integer>> ports){
+        this.message = message;
+        this.chunkSize = chunkSize;
+        this.ports = ports;
+    }
+}
@@ -1,5 +1,7 @@
 package DS.Protocol.Token.TokenType;
 
+import java.util.ArrayList;
+
 import DS.Protocol.Token.Token;
 
 /**
@@ -10,11 +12,21 @@ import DS.Protocol.Token.Token;
 public class StoreToken extends Token{
     
     public String filename;
-    public int filesize;
+    public long filesize;
+    public long checksum; // CRC32C of the content, or Protocol.NO_CHECKSUM if not given
+    public boolean compressed; // sender offers to send the content as compressed blocks
+    public ArrayList<Integer> chain; // Dstores the content is forwarded to, in order (empty if none)
+
+    public StoreToken(String message, String filename, long filesize, long checksum, boolean compressed){
+        this(message, filename, filesize, checksum, compressed, new ArrayList<Integer>());
+    }
 
-    public StoreToken(String message, String filename, int filesize){
+    public StoreToken(String message, String filename, long filesize, long checksum, boolean compressed, ArrayList<Integer> chain){
         this.message = message;
         this.filename = filename;
         this.filesize = filesize;
+        this.checksum = checksum;
+        this.compressed = compressed;
+        this.chain = chain;
     }
 }
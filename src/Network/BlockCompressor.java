@@ -0,0 +1,232 @@
+package Network;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Streaming block compression for file content sent through a Connection.
+ *
+ * Content is cut into blocks of up to BLOCK_SIZE bytes, each sent as a header (codec, raw length
+ * and payload length) followed by its payload, so the receiver can handle each block as soon as
+ * it arrives without holding the whole file. Blocks are compressed with the fastest deflate
+ * level.
+ *
+ * Compression is adaptive: a block that does not shrink to below MAX_RATIO of its size is sent
+ * raw, and compression is then skipped for a number of blocks that doubles (up to MAX_BACKOFF)
+ * each time it fails again, so incompressible content costs little more than sending it raw.
+ *
+ * A BlockCompressor can also be turned off, sending every block raw, for a receiver that expects
+ * blocks but compression is not wanted for. One BlockCompressor is used per transfer, and is not
+ * thread safe.
+ */
+public class BlockCompressor{
+
+    // constants
+    public static final int BLOCK_SIZE = 64 * 1024; // raw bytes per block
+    public static final int HEADER_SIZE = 9; // codec byte, raw length int, payload length int
+    public static final byte RAW = 0;
+    public static final byte DEFLATE = 1;
+    private static final double MAX_RATIO = 0.9; // compressed/raw above which a block is sent raw
+    private static final int MAX_BACKOFF = 64; // most blocks sent raw before compression is tried again
+
+    // member variables
+    private boolean enabled;
+    private Deflater deflater;
+    private Inflater inflater;
+    private byte[] frame; // header and payload of the block being sent
+    private int backoff; // blocks skipped after the last failure
+    private int skip; // blocks left to send raw
+    private long rawBytes;
+    private long sentBytes;
+    private int compressedBlocks;
+    private int rawBlocks;
+
+    /**
+     * Class constructor. Creates a compressor that compresses blocks.
+     */
+    public BlockCompressor(){
+        this(true);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param enabled Whether blocks are compressed (false to send every block raw).
+     */
+    public BlockCompressor(boolean enabled){
+        // initializing
+        this.enabled = enabled;
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.inflater = new Inflater();
+        this.backoff = 0;
+        this.skip = 0;
+    }
+
+    //////////////
+    // ENCODING //
+    //////////////
+
+    /**
+     * Encodes a block of content, compressing it if that is worthwhile.
+     *
+     * @param block The array holding the block.
+     * @param length The length of the block (at most BLOCK_SIZE).
+     * @return The header and payload of the block, only valid until the next block is encoded.
+     */
+    public ByteBuffer encode(byte[] block, int length){
+        if(this.frame == null){
+            this.frame = new byte[HEADER_SIZE + BLOCK_SIZE];
+        }
+
+        // compressing (unless backing off), into at most MAX_RATIO of the block's size
+        int payloadLength = -1;
+        if(this.enabled && this.skip > 0){
+            this.skip--;
+        }
+        else if(this.enabled){
+            this.deflater.reset();
+            this.deflater.setInput(block, 0, length);
+            this.deflater.finish();
+            int maxLength = (int) (length * MAX_RATIO);
+            int compressedLength = this.deflater.deflate(this.frame, HEADER_SIZE, maxLength);
+
+            if(this.deflater.finished() && compressedLength < maxLength){
+                payloadLength = compressedLength;
+                this.backoff = 0;
+            }
+            else{
+                // poor ratio - backing off
+                this.backoff = Math.min(MAX_BACKOFF, Math.max(1, this.backoff * 2));
+                this.skip = this.backoff;
+            }
+        }
+
+        // falling back to the raw block
+        byte codec = DEFLATE;
+        if(payloadLength < 0){
+            codec = RAW;
+            payloadLength = length;
+            System.arraycopy(block, 0, this.frame, HEADER_SIZE, length);
+            this.rawBlocks++;
+        }
+        else{
+            this.compressedBlocks++;
+        }
+
+        // writing the header
+        ByteBuffer header = ByteBuffer.wrap(this.frame, 0, HEADER_SIZE);
+        header.put(codec);
+        header.putInt(length);
+        header.putInt(payloadLength);
+
+        this.rawBytes += length;
+        this.sentBytes += HEADER_SIZE + payloadLength;
+
+        return ByteBuffer.wrap(this.frame, 0, HEADER_SIZE + payloadLength);
+    }
+
+    //////////////
+    // DECODING //
+    //////////////
+
+    /**
+     * Reads the header of a block.
+     *
+     * @param header The HEADER_SIZE bytes of the header.
+     * @return The codec, raw length and payload length of the block.
+     * @throws ZipException If the header is not valid.
+     */
+    public static int[] parseHeader(byte[] header) throws ZipException{
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        int codec = buffer.get();
+        int rawLength = buffer.getInt();
+        int payloadLength = buffer.getInt();
+
+        if((codec != RAW && codec != DEFLATE) || rawLength <= 0 || rawLength > BLOCK_SIZE
+            || payloadLength <= 0 || payloadLength > BLOCK_SIZE || (codec == RAW && payloadLength != rawLength)){
+            throw new ZipException("Invalid block header");
+        }
+
+        return new int[]{codec, rawLength, payloadLength};
+    }
+
+    /**
+     * Decodes the payload of a block.
+     *
+     * @param codec The codec of the block.
+     * @param payload The array holding the payload.
+     * @param payloadLength The length of the payload.
+     * @param output The array the raw block is written into (at least BLOCK_SIZE bytes).
+     * @param rawLength The raw length of the block.
+     * @throws ZipException If the payload could not be decompressed to the raw length.
+     */
+    public void decode(int codec, byte[] payload, int payloadLength, byte[] output, int rawLength) throws ZipException{
+        if(codec == RAW){
+            // raw blocks may have been read straight into the output
+            if(payload != output){
+                System.arraycopy(payload, 0, output, 0, rawLength);
+            }
+        }
+        else{
+            try{
+                this.inflater.reset();
+                this.inflater.setInput(payload, 0, payloadLength);
+                int length = this.inflater.inflate(output, 0, rawLength);
+                if(length != rawLength || !this.inflater.finished()){
+                    throw new ZipException("Block decompressed to the wrong length");
+                }
+            }
+            catch(DataFormatException e){
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        this.rawBytes += rawLength;
+        this.sentBytes += HEADER_SIZE + payloadLength;
+    }
+
+    /**
+     * Releases the codec's native resources.
+     */
+    public void end(){
+        this.deflater.end();
+        this.inflater.end();
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getRawBytes(){
+        return this.rawBytes;
+    }
+
+    /**
+     * Returns the number of bytes sent (or received) for the blocks, including their headers.
+     *
+     * @return The number of bytes.
+     */
+    public long getSentBytes(){
+        return this.sentBytes;
+    }
+
+    public int getCompressedBlocks(){
+        return this.compressedBlocks;
+    }
+
+    public int getRawBlocks(){
+        return this.rawBlocks;
+    }
+
+    /**
+     * Returns the ratio of the bytes sent to the content's size.
+     *
+     * @return The ratio (1 if nothing has been sent).
+     */
+    public double getRatio(){
+        return (this.rawBytes == 0) ? 1 : (double) this.sentBytes / this.rawBytes;
+    }
+}
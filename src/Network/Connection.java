@@ -3,7 +3,9 @@ package Network;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.zip.ZipException;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -23,6 +25,10 @@ import Network.Server.Server.ServerType;
  * 具有允许发送消息和接收消息的方法，并且还处理将这些消息记录到给定的 NetworkInterface。
  */
 public class Connection{
+
+    // constants
+    private static final int SEND_CHUNK_SIZE = 64 * 1024; // bytes copied per write from a direct buffer
+    private static final int RECEIVE_CHUNK_SIZE = 64 * 1024; // bytes read per chunk when receiving in chunks
     
     // member variables
     private NetworkInterface networkInterface;
@@ -34,6 +40,7 @@ public class Connection{
     private InputStream dataIn;
     private ArrayList<String> messagesSent;
     private ArrayList<String> messagesReceived;
+    private MessageReader messageReader;
 
 //    /**
 //     * Class constructor. For a connection from Server -> Client (Connection on server end).
@@ -52,6 +59,7 @@ public class Connection{
             this.dataIn = this.socket.getInputStream();
             this.messagesSent = new ArrayList<String>();
             this.messagesReceived = new ArrayList<String>();
+            this.messageReader = new MessageReader(this.textIn);
         }
         catch(Exception e){
             throw new ConnectionSetupException(socket.getPort(),e);
@@ -83,6 +91,7 @@ public class Connection{
             this.dataIn = this.socket.getInputStream();
             this.messagesSent = new ArrayList<String>();
             this.messagesReceived = new ArrayList<String>();
+            this.messageReader = new MessageReader(this.textIn);
 
             // logging creation of connection
             this.networkInterface.getNetworkProcess().handleEvent(new ClientConnectionEvent(serverType, port));
@@ -123,7 +132,7 @@ public class Connection{
      * @param message 要发送的消息。
      * @throws MessageSendException 如果无法发送消息。
      */
-    public void sendMessage(String message) throws MessageSendException{
+    public synchronized void sendMessage(String message) throws MessageSendException{
         try{
             // 发送请求
             this.textOut.println(message);
@@ -138,6 +147,45 @@ public class Connection{
         }
     }
 
+    /**
+     * Sends a message to the connection endpoint by encoding it straight onto the connection's
+     * output, so that the message is never held in memory as a whole.
+     *
+     * @param encoder The encoder for the message to be sent.
+     * @throws MessageSendException If the message could not be sent.
+     */
+    public synchronized void sendMessage(MessageEncoder encoder) throws MessageSendException{
+        try{
+            // 发送请求
+            encoder.encode(this.textOut);
+            this.textOut.println();
+            this.textOut.flush();
+
+            // PrintWriter hides write errors
+            if(this.textOut.checkError()){
+                throw new ConnectionClosedException(this.getPort());
+            }
+
+            // logging message
+            this.messagesSent.add(encoder.getSummary());
+            this.networkInterface.logMessageSent(this.socket, encoder.getSummary());
+        }
+        catch(Exception e){
+            throw new MessageSendException(encoder.getSummary(), this.getPort(), e);
+        }
+    }
+
+    /**
+     * Logs a message that was received through the connection's MessageReader rather than
+     * one of the getMessage methods.
+     *
+     * @param message The message (or summary of the message) received.
+     */
+    public void logMessageReceived(String message){
+        this.messagesReceived.add(message);
+        this.networkInterface.logMessageReceived(this.socket, message);
+    }
+
     /**
      *等待传入消息的时间长度为未绑定的时间长度.
      * 
@@ -238,6 +286,123 @@ public class Connection{
 
     }
 
+    /**
+     * Sends the remaining bytes of a buffer to the connection end point. The buffer's position
+     * is not changed, so the same buffer can be sent to several connections at once.
+     * 
+     * @param bytes The buffer of bytes to be sent.
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendBytes(ByteBuffer bytes) throws MessageSendException{
+        try{
+            ByteBuffer content = bytes.duplicate();
+
+            // Sending request (in chunks if the buffer is not backed by an array)
+            if(content.hasArray()){
+                this.dataOut.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+            }
+            else{
+                byte[] chunk = new byte[Math.min(SEND_CHUNK_SIZE, content.remaining())];
+                while(content.hasRemaining()){
+                    int length = Math.min(chunk.length, content.remaining());
+                    content.get(chunk, 0, length);
+                    this.dataOut.write(chunk, 0, length);
+                }
+            }
+            this.textOut.flush();
+
+            // logging
+            this.messagesSent.add("[FILE CONTENT]");
+            this.networkInterface.logMessageSent(this.socket, "[FILE CONTENT]");
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
+    /**
+     * Sends the bytes of an array to the connection end point as compressed blocks (see
+     * BlockCompressor). Only used once the end point has agreed to compressed content.
+     *
+     * @param bytes The array of bytes to be sent.
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendCompressedBytes(byte[] bytes) throws MessageSendException{
+        this.sendCompressedBytes(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Sends the remaining bytes of a buffer to the connection end point as compressed blocks (see
+     * BlockCompressor). The buffer's position is not changed. Only used once the end point has
+     * agreed to compressed content.
+     *
+     * @param bytes The buffer of bytes to be sent.
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendCompressedBytes(ByteBuffer bytes) throws MessageSendException{
+        this.sendCompressedBytes(bytes, true);
+    }
+
+    /**
+     * Sends the remaining bytes of a buffer to the connection end point as blocks (see
+     * BlockCompressor), compressing them only if asked to. The buffer's position is not changed.
+     *
+     * @param bytes The buffer of bytes to be sent.
+     * @param compress Whether the blocks are compressed (sent raw if not).
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendCompressedBytes(ByteBuffer bytes, boolean compress) throws MessageSendException{
+        BlockCompressor compressor = new BlockCompressor(compress);
+        try{
+            ByteBuffer content = bytes.duplicate();
+
+            // Sending request, one block at a time
+            byte[] block = new byte[Math.min(BlockCompressor.BLOCK_SIZE, content.remaining())];
+            while(content.hasRemaining()){
+                int length = Math.min(block.length, content.remaining());
+                content.get(block, 0, length);
+                ByteBuffer frame = compressor.encode(block, length);
+                this.dataOut.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            }
+            this.textOut.flush();
+
+            // logging
+            String log = "[COMPRESSED FILE CONTENT " + compressor.getRawBytes() + " -> " + compressor.getSentBytes() + " bytes]";
+            this.messagesSent.add(log);
+            this.networkInterface.logMessageSent(this.socket, log);
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+        finally{
+            compressor.end();
+        }
+    }
+
+    /**
+     * Starts sending file content to the connection end point piece by piece (see
+     * ContentOutput), so content of any size can be sent from a fixed buffer.
+     *
+     * @param compressed Whether the content is sent as compressed blocks (see BlockCompressor).
+     * Only used once the end point has agreed to compressed content.
+     * @return The output the content is written to.
+     */
+    public ContentOutput getContentOutput(boolean compressed){
+        return new ContentOutput(compressed, true);
+    }
+
+    /**
+     * Starts sending file content to the connection end point piece by piece (see
+     * ContentOutput), as blocks compressed only if asked to (see sendCompressedBytes).
+     *
+     * @param blocks Whether the content is sent as blocks (see BlockCompressor).
+     * @param compress Whether the blocks are compressed (sent raw if not).
+     * @return The output the content is written to.
+     */
+    public ContentOutput getContentOutput(boolean blocks, boolean compress){
+        return new ContentOutput(blocks, compress);
+    }
+
     /**
      * 等待 N 个字节在给定的超时内到达。
      * 
@@ -287,6 +452,147 @@ public class Connection{
         }
     }
 
+    /**
+     * Waits for N bytes to arrive within the given timeout, handing them to a handler in chunks
+     * as they arrive rather than gathering them into one array. The timeout applies to each
+     * chunk.
+     * 
+     * @param n The number of bytes to receive.
+     * @param timeout The timeout to wait for each chunk to arrive.
+     * @param handler The handler the chunks are passed to, in order.
+     * @throws MessageReceivedException If the bytes could not be receieved, or could not be
+     * received within the timeout period.
+     * @throws Exception If the handler failed to handle a chunk.
+     */
+    public void receiveBytesWithinTimeout(long n, int timeout, ChunkHandler handler) throws Exception{
+        byte[] chunk = new byte[(int) Math.max(1, Math.min(RECEIVE_CHUNK_SIZE, n))];
+        long position = 0;
+
+        while(position < n){
+            int length;
+            try{
+                // setting socket timeout
+                this.socket.setSoTimeout(timeout);
+
+                // reading the next chunk - returns -1 as soon as connection drops
+                length = this.dataIn.read(chunk, 0, (int) Math.min(chunk.length, n - position));
+                this.socket.setSoTimeout(0);
+
+                if(length < 0){
+                    throw new ConnectorDisconnectedException(this.getPort());
+                }
+            }
+            catch(Exception e){
+                this.socket.setSoTimeout(0);
+
+                // Socket timeout exception - throw a message timeout exception
+                if(e instanceof SocketTimeoutException){
+                    throw new MessageReceivedException(this.getPort(), new MessageTimeoutException());
+                }
+                // other form of exception
+                else{
+                    throw new MessageReceivedException(this.getPort(), e);
+                }
+            }
+
+            // handing the chunk over
+            handler.handle(ByteBuffer.wrap(chunk, 0, length), position);
+            position += length;
+        }
+
+        // logging message
+        this.messagesReceived.add("[FILE CONTENT]");
+        this.networkInterface.logMessageReceived(this.socket, "[FILE CONTENT]");
+    }
+
+    /**
+     * Waits for N bytes sent as compressed blocks (see BlockCompressor) to arrive within the
+     * given timeout, gathering them into one array.
+     *
+     * @param n The number of (decompressed) bytes to receive.
+     * @param timeout The timeout to wait for each block to arrive.
+     * @return The array of bytes gathered from the connection.
+     * @throws MessageReceivedException If the bytes could not be receieved, could not be
+     * received within the timeout period, or were not valid compressed blocks.
+     */
+    public byte[] getNCompressedBytesWithinTimeout(int n, int timeout) throws Exception{
+        byte[] bytes = new byte[n];
+        this.receiveCompressedBytesWithinTimeout(n, timeout, (ByteBuffer chunk, long position) -> {
+            chunk.get(bytes, (int) position, chunk.remaining());
+        });
+        return bytes;
+    }
+
+    /**
+     * Waits for N bytes sent as compressed blocks (see BlockCompressor) to arrive within the
+     * given timeout, handing them to a handler decompressed, one block at a time. The timeout
+     * applies to each block.
+     *
+     * @param n The number of (decompressed) bytes to receive.
+     * @param timeout The timeout to wait for each block to arrive.
+     * @param handler The handler the decompressed blocks are passed to, in order.
+     * @throws MessageReceivedException If the bytes could not be receieved, could not be
+     * received within the timeout period, or were not valid compressed blocks.
+     * @throws Exception If the handler failed to handle a block.
+     */
+    public void receiveCompressedBytesWithinTimeout(long n, int timeout, ChunkHandler handler) throws Exception{
+        BlockCompressor compressor = new BlockCompressor();
+        byte[] payload = new byte[BlockCompressor.BLOCK_SIZE];
+        byte[] block = new byte[BlockCompressor.BLOCK_SIZE];
+        long position = 0;
+
+        try{
+            while(position < n){
+                int[] header;
+                try{
+                    // setting socket timeout
+                    this.socket.setSoTimeout(timeout);
+
+                    // reading the next block - returns short as soon as connection drops
+                    byte[] headerBytes = this.dataIn.readNBytes(BlockCompressor.HEADER_SIZE);
+                    if(headerBytes.length < BlockCompressor.HEADER_SIZE){
+                        throw new ConnectorDisconnectedException(this.getPort());
+                    }
+                    header = BlockCompressor.parseHeader(headerBytes);
+                    if(position + header[1] > n){
+                        throw new ZipException("Block past the end of the content");
+                    }
+                    byte[] input = (header[0] == BlockCompressor.RAW) ? block : payload;
+                    if(this.dataIn.readNBytes(input, 0, header[2]) < header[2]){
+                        throw new ConnectorDisconnectedException(this.getPort());
+                    }
+                    this.socket.setSoTimeout(0);
+
+                    compressor.decode(header[0], input, header[2], block, header[1]);
+                }
+                catch(Exception e){
+                    this.socket.setSoTimeout(0);
+
+                    // Socket timeout exception - throw a message timeout exception
+                    if(e instanceof SocketTimeoutException){
+                        throw new MessageReceivedException(this.getPort(), new MessageTimeoutException());
+                    }
+                    // other form of exception
+                    else{
+                        throw new MessageReceivedException(this.getPort(), e);
+                    }
+                }
+
+                // handing the block over
+                handler.handle(ByteBuffer.wrap(block, 0, header[1]), position);
+                position += header[1];
+            }
+        }
+        finally{
+            compressor.end();
+        }
+
+        // logging message
+        String log = "[COMPRESSED FILE CONTENT " + compressor.getSentBytes() + " -> " + compressor.getRawBytes() + " bytes]";
+        this.messagesReceived.add(log);
+        this.networkInterface.logMessageReceived(this.socket, log);
+    }
+
     /////////////////////////
     // GETTERS AND SETTERS //
     /////////////////////////
@@ -318,4 +624,123 @@ public class Connection{
     public ArrayList<String> getMessagesReceived(){
         return this.messagesReceived;
     }
-}
\ No newline at end of file
+
+    public MessageReader getMessageReader(){
+        return this.messageReader;
+    }
+
+    /**
+     * Sends file content to the connection end point piece by piece, as it becomes available.
+     * Compressed content is sent as one stream of blocks, so a piece of any size can be written,
+     * and the content is only logged once it has all been sent.
+     */
+    public class ContentOutput{
+
+        // member variables
+        private BlockCompressor compressor; // null if the content is sent raw
+        private byte[] block;
+        private long bytes;
+
+        /**
+         * Class constructor.
+         *
+         * @param compressed Whether the content is sent as blocks.
+         * @param compress Whether the blocks are compressed (sent raw if not).
+         */
+        private ContentOutput(boolean compressed, boolean compress){
+            this.compressor = compressed ? new BlockCompressor(compress) : null;
+            this.block = compressed ? new byte[BlockCompressor.BLOCK_SIZE] : null;
+            this.bytes = 0;
+        }
+
+        /**
+         * Sends the remaining bytes of a buffer. The buffer's position is not changed.
+         *
+         * @param bytes The buffer of bytes to be sent.
+         * @throws MessageSendException If the bytes could not be sent.
+         */
+        public void write(ByteBuffer bytes) throws MessageSendException{
+            try{
+                ByteBuffer content = bytes.duplicate();
+                this.bytes += content.remaining();
+
+                // sending the bytes (one block at a time if compressed)
+                if(this.compressor != null){
+                    while(content.hasRemaining()){
+                        int length = Math.min(this.block.length, content.remaining());
+                        content.get(this.block, 0, length);
+                        ByteBuffer frame = this.compressor.encode(this.block, length);
+                        Connection.this.dataOut.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+                    }
+                }
+                else if(content.hasArray()){
+                    Connection.this.dataOut.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+                }
+                else{
+                    byte[] chunk = new byte[Math.min(SEND_CHUNK_SIZE, content.remaining())];
+                    while(content.hasRemaining()){
+                        int length = Math.min(chunk.length, content.remaining());
+                        content.get(chunk, 0, length);
+                        Connection.this.dataOut.write(chunk, 0, length);
+                    }
+                }
+            }
+            catch(Exception e){
+                this.end();
+                throw new MessageSendException(Connection.this.getPort(), e);
+            }
+        }
+
+        /**
+         * Finishes sending the content, flushing it to the end point.
+         *
+         * @throws MessageSendException If the content could not be flushed.
+         */
+        public void finish() throws MessageSendException{
+            try{
+                Connection.this.textOut.flush();
+
+                // logging
+                String log = (this.compressor != null)
+                    ? "[COMPRESSED FILE CONTENT " + this.compressor.getRawBytes() + " -> " + this.compressor.getSentBytes() + " bytes]"
+                    : "[FILE CONTENT]";
+                Connection.this.messagesSent.add(log);
+                Connection.this.networkInterface.logMessageSent(Connection.this.socket, log);
+            }
+            catch(Exception e){
+                throw new MessageSendException(Connection.this.getPort(), e);
+            }
+            finally{
+                this.end();
+            }
+        }
+
+        /**
+         * Releases the compressor (if any).
+         */
+        private void end(){
+            if(this.compressor != null){
+                this.compressor.end();
+            }
+        }
+
+        public long getBytes(){
+            return this.bytes;
+        }
+    }
+
+    /**
+     * Handles the chunks of bytes received through a connection.
+     */
+    public interface ChunkHandler{
+
+        /**
+         * Handles a chunk of bytes. The chunk's content is only valid until the handler returns.
+         *
+         * @param chunk The bytes received.
+         * @param position The position of the chunk's first byte within the bytes being received.
+         * @throws Exception If the chunk could not be handled.
+         */
+        public abstract void handle(ByteBuffer chunk, long position) throws Exception;
+    }
+}
@@ -0,0 +1,30 @@
+package Network;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Encodes a message directly onto a connection's output, one entry at a time.
+ *
+ * Used for messages that may be too large to build as a single String (e.g., listings of every
+ * file on a Dstore). The message is written without its line terminator, which is added by the
+ * Connection sending it.
+ */
+public interface MessageEncoder{
+
+    /**
+     * Writes the message to the given writer.
+     *
+     * @param writer The writer the message is written to.
+     * @throws IOException If the message could not be written.
+     */
+    public void encode(Writer writer) throws IOException;
+
+    /**
+     * Returns a short description of the message, used when logging it in place of the
+     * full message.
+     *
+     * @return A short description of the message.
+     */
+    public String getSummary();
+}
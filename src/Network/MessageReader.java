@@ -0,0 +1,152 @@
+package Network;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a message from a connection one space-separated word at a time.
+ *
+ * Allows a large message to be parsed as it arrives, without first reading the whole line into
+ * a single String. Words are read up to the end of the current line, after which the next
+ * message can be started.
+ */
+public class MessageReader{
+
+    // constants
+    private static final int END_OF_STREAM = -1;
+
+    // member variables
+    private Reader reader;
+    private boolean endOfLine;
+    private boolean atEndOfStream;
+
+    /**
+     * Class constructor.
+     *
+     * @param reader The reader the messages are read from.
+     */
+    public MessageReader(Reader reader){
+        // initializing
+        this.reader = reader;
+        this.endOfLine = true;
+        this.atEndOfStream = false;
+    }
+
+    /**
+     * Starts reading a new message, returning its first word.
+     *
+     * @return The first word of the message, or null if the end of the stream was reached.
+     * @throws IOException If the message could not be read.
+     */
+    public String startMessage() throws IOException{
+        this.endOfLine = false;
+
+        String word = this.nextWord();
+
+        // nothing read before the stream ended
+        if(word == null && this.endOfLine && this.atEndOfStream){
+            return null;
+        }
+
+        return (word == null) ? "" : word;
+    }
+
+    /**
+     * Reads the next word of the current message.
+     *
+     * @return The next word, or null if the end of the message has been reached.
+     * @throws IOException If the word could not be read.
+     */
+    public String nextWord() throws IOException{
+        while(!this.endOfLine){
+            StringBuilder word = new StringBuilder();
+
+            // reading up to the next separator
+            while(true){
+                int c = this.reader.read();
+
+                if(c == END_OF_STREAM){
+                    this.atEndOfStream = true;
+                    this.endOfLine = true;
+                    break;
+                }
+                else if(c == '\n'){
+                    this.endOfLine = true;
+                    break;
+                }
+                else if(c == ' '){
+                    break;
+                }
+                else if(c != '\r'){
+                    word.append((char) c);
+                }
+            }
+
+            // skipping repeated separators
+            if(word.length() > 0){
+                return word.toString();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the remainder of the current message.
+     *
+     * @return The remainder of the message after the separator following the last word read, or
+     * an empty String if the end of the message has already been reached.
+     * @throws IOException If the message could not be read.
+     */
+    public String readRestOfMessage() throws IOException{
+        StringBuilder rest = new StringBuilder();
+
+        while(!this.endOfLine){
+            int c = this.reader.read();
+
+            if(c == END_OF_STREAM){
+                this.atEndOfStream = true;
+                this.endOfLine = true;
+            }
+            else if(c == '\n'){
+                this.endOfLine = true;
+            }
+            else if(c != '\r'){
+                rest.append((char) c);
+            }
+        }
+
+        return rest.toString();
+    }
+
+    /**
+     * Discards the remainder of the current message without holding it in memory.
+     *
+     * @throws IOException If the message could not be read.
+     */
+    public void skipRestOfMessage() throws IOException{
+        while(!this.endOfLine){
+            int c = this.reader.read();
+
+            if(c == END_OF_STREAM){
+                this.atEndOfStream = true;
+                this.endOfLine = true;
+            }
+            else if(c == '\n'){
+                this.endOfLine = true;
+            }
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public boolean isEndOfMessage(){
+        return this.endOfLine;
+    }
+
+    public boolean isEndOfStream(){
+        return this.atEndOfStream;
+    }
+}
@@ -51,14 +51,32 @@ public abstract class RequestHandler {
 
         // 可为请求线程运行
         Runnable runnable = () -> {
-            // handling the request
-            this.handleRequestAux(connection, request);
+            try{
+                // handling the request
+                this.handleRequestAux(connection, request);
+            }
+            finally{
+                // handing the connection back for the next request
+                request.release();
+            }
         };
 
         // starting a thread to handle the request
         new Thread(runnable).start();
     }
 
+    /**
+     * Determines if handling the given request reads further data from the connection it
+     * arrived on. If so, the connection's next request is not read until the request has been
+     * handled.
+     * 
+     * @param request The request being handled.
+     * @return True if the request reads from its connection, false if not.
+     */
+    public boolean readsFromConnection(Token request){
+        return request.isStreamed();
+    }
+
     /**
      * Handles a given request.
      * 
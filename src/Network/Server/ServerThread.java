@@ -46,11 +46,8 @@ public class ServerThread extends Thread {
     public void waitForRequest(){
         try{
             while(this.connection.isOpen()){
-                // getting request
-                String request = this.connection.getMessage();
-
-                // tokenizing request
-                Token requestToken = RequestTokenizer.getToken(request);
+                // getting and tokenizing request (large requests are streamed as they are handled)
+                Token requestToken = RequestTokenizer.getToken(this.connection);
 
                 // handling request (need loop as the request handler could be disabled)
                 while(true){
@@ -66,7 +63,17 @@ public class ServerThread extends Thread {
                         Thread.onSpinWait();
                     }
                 }
-                
+
+                // waiting for the handler to finish reading from the connection
+                if(this.server.getRequestHandler().readsFromConnection(requestToken)){
+                    requestToken.awaitRelease();
+                }
+
+                // discarding anything a streamed request's handler did not read
+                if(requestToken.isStreamed()){
+                    this.connection.getMessageReader().skipRestOfMessage();
+                }
+
             }
         }
         catch(Exception e){